@@ -32,6 +32,15 @@ public interface Model {
 		}
 		
 		public StringBuilder toCsv(){
+			return getCommonCsv();
+		}
+		
+		/**
+		 * Returns the metrics common to every type of model in the order of {@link #getCsvHeader()}, without any model
+		 * specific values that subclasses add to {@link #toCsv()}
+		 * @return
+		 */
+		public final StringBuilder getCommonCsv(){
 			StringBuilder builder = new StringBuilder();
 			
 			appendCsvValue(timeToBuildModel, builder);
@@ -49,6 +58,28 @@ public interface Model {
 			return builder;
 		}
 		
+		/**
+		 * Returns the names of the values written by {@link #getCommonCsv()}, in the same order
+		 * @return
+		 */
+		public static StringBuilder getCsvHeader(){
+			StringBuilder builder = new StringBuilder();
+			
+			appendCsvValue("timeToBuildModel", builder);
+			appendCsvValue("timeToClassify", builder);
+			appendCsvValue("numPositives", builder);
+			appendCsvValue("numNegatives", builder);
+			appendCsvValue("truePositiveRate", builder);
+			appendCsvValue("trueNegativeRate", builder);
+			appendCsvValue("errorRate", builder);
+			appendCsvValue("accuracy", builder);
+			appendCsvValue("weightedAccuracy", builder);
+			appendCsvValue("weightedErrorRate", builder);
+			appendCsvValue("fMeasure", builder, true);
+			
+			return builder;
+		}
+		
 		public static void appendCsvValue(Object value, StringBuilder builder) {
 			appendCsvValue(value, builder, false);
 		}
@@ -1,10 +1,24 @@
 package com.ahaines.machinelearning.api;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 import com.ahaines.machinelearning.api.Model.Metrics;
+import com.ahaines.machinelearning.api.dataset.Classification;
 import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
 import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
 import com.ahaines.machinelearning.api.dataset.Dataset;
+import com.ahaines.machinelearning.api.dataset.Dataset.DatasetBuilder;
 import com.ahaines.machinelearning.api.dataset.FeatureSet;
+import com.ahaines.machinelearning.api.dataset.Identifier;
+import com.ahaines.machinelearning.api.dataset.IdentifierMap;
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
 
 public interface ModelService<T extends Model, C> {
 	
@@ -25,7 +39,131 @@ public interface ModelService<T extends Model, C> {
 	 */
 	ClassifiedDataset<C> classifyDataset(Dataset<? extends FeatureSet> dataset, T model);
 	
+	/**
+	 * Classifies a block of instances against the supplied model without creating a classification object per instance.
+	 * The ordinal of the predicted classification of <code>instances.get(i)</code> is written to
+	 * <code>classificationOrdinals[i]</code>, or -1 if the model could not classify it. When
+	 * <code>classificationProbabilities</code> is not null the probability the model assigns to its prediction is written
+	 * to the same index, or {@link Double#NaN} if the model does not estimate one.
+	 * @param instances
+	 * @param model
+	 * @param classificationOrdinals must be at least as long as the list of instances
+	 * @param classificationProbabilities may be null, otherwise must be at least as long as the list of instances
+	 */
+	void classifyBatch(List<? extends FeatureSet> instances, T model, int[] classificationOrdinals, double[] classificationProbabilities);
+	
 	static class Utils extends com.ahaines.machinelearning.api.util.Utils{
+		
+		/**
+		 * The number of instances scored by each task of {@link #classifyInParallel(Iterable, Function, ExecutorService)}
+		 */
+		public static final int CLASSIFICATION_PARTITION_SIZE = 1024;
+		
+		/**
+		 * Classifies the instances on the executor and returns the classifications indexed by the identifier of their
+		 * instance. The instances are split into contiguous partitions that are scored as separate tasks, each writing into its
+		 * own slots of a pre-sized array so that no locking is needed. Once every task has completed the classifications are
+		 * indexed in instance order on the calling thread. The classifier must be safe to call from multiple threads.
+		 * @param instances
+		 * @param classifier
+		 * @param executor
+		 * @return
+		 */
+		public <R> Map<Identifier, R> classifyInParallel(Iterable<? extends FeatureSet> instances, final Function<FeatureSet, R> classifier, ExecutorService executor){
+			final List<? extends FeatureSet> instanceList = (instances instanceof List)? (List<? extends FeatureSet>)instances: Lists.newArrayList(instances);
+			final Object[] classifications = new Object[instanceList.size()];
+			
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+			for (int start = 0; start < classifications.length; start += CLASSIFICATION_PARTITION_SIZE){
+				final int partitionStart = start;
+				final int partitionEnd = Math.min(start + CLASSIFICATION_PARTITION_SIZE, classifications.length);
+				tasks.add(new Callable<Void>(){
+					
+					@Override
+					public Void call(){
+						for (int i = partitionStart; i < partitionEnd; i++){
+							classifications[i] = classifier.apply(instanceList.get(i));
+						}
+						return null;
+					}
+				});
+			}
+			
+			try{
+				for (Future<Void> result: executor.invokeAll(tasks)){
+					result.get();
+				}
+			} catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("interrupted whilst classifying instances", e);
+			} catch (ExecutionException e){
+				if (e.getCause() instanceof RuntimeException){
+					throw (RuntimeException)e.getCause();
+				}
+				throw new RuntimeException("issue classifying instances", e.getCause());
+			}
+			
+			Map<Identifier, R> indexedClassifications = new IdentifierMap<R>(classifications.length);
+			for (int i = 0; i < classifications.length; i++){
+				@SuppressWarnings("unchecked")
+				R classification = (R)classifications[i];
+				indexedClassifications.put(instanceList.get(i).getId(), classification);
+			}
+			return indexedClassifications;
+		}
+		
+		/**
+		 * Throws an {@link IllegalArgumentException} if the output arrays of a batch classification cannot hold the batch
+		 * @param batchSize
+		 * @param classificationOrdinals
+		 * @param classificationProbabilities
+		 */
+		public void checkBatch(int batchSize, int[] classificationOrdinals, double[] classificationProbabilities){
+			if (classificationOrdinals.length < batchSize){
+				throw new IllegalArgumentException("classificationOrdinals can only hold "+classificationOrdinals.length+" of the "+batchSize+" instances in the batch");
+			}
+			if (classificationProbabilities != null && classificationProbabilities.length < batchSize){
+				throw new IllegalArgumentException("classificationProbabilities can only hold "+classificationProbabilities.length+" of the "+batchSize+" instances in the batch");
+			}
+		}
+		
+		/**
+		 * Implements {@link ModelService#classifyBatch(List, Model, int[], double[])} for services that can only classify
+		 * whole datasets by classifying the batch as a dataset and copying the results out. The instances in the batch must
+		 * have unique identifiers and classifications must be enums. No probabilities are reported.
+		 * @param modelService
+		 * @param instances
+		 * @param model
+		 * @param classificationOrdinals
+		 * @param classificationProbabilities
+		 */
+		public <T extends Model, C> void classifyBatchAsDataset(ModelService<T, C> modelService, List<? extends FeatureSet> instances, T model, int[] classificationOrdinals, double[] classificationProbabilities){
+			checkBatch(instances.size(), classificationOrdinals, classificationProbabilities);
+			if (instances.isEmpty()){
+				return;
+			}
+			
+			DatasetBuilder builder = new DatasetBuilder(instances.get(0).getFeatureTypes());
+			for (FeatureSet instance: instances){
+				builder.addInstance(instance);
+			}
+			ClassifiedDataset<C> classifiedDataset = modelService.classifyDataset(builder.build(), model);
+			
+			for (int i = 0; i < instances.size(); i++){
+				C classification = classifiedDataset.getInstance(instances.get(i).getId()).getClassification().getValue();
+				
+				if (classification == null){
+					classificationOrdinals[i] = -1;
+				} else if (classification instanceof Enum){
+					classificationOrdinals[i] = ((Enum<?>)classification).ordinal();
+				} else{
+					throw new IllegalArgumentException("classification: "+classification+" is not an enum so has no ordinal");
+				}
+				if (classificationProbabilities != null){
+					classificationProbabilities[i] = Double.NaN;
+				}
+			}
+		}
 
 		public <T extends Model, C> T getMetrics(ClassifiedDataset<C>trainingSet, ClassifiedDataset<C> expectedTestSet, ModelService<T, C> modelService, C positiveClassification) {
 			// calculate distribution
@@ -55,25 +193,29 @@ public interface ModelService<T extends Model, C> {
 			int numPredictedPositives = 0;
 			int numPredictedNegatives = 0;
 			
+			// only the predicted classification is needed so look it up without creating the predicted instance
+			Map<Identifier, ? extends Classification<C>> predictedClassifications = predictedClassifiedSet.getClassifications();
 			for (ClassifiedFeatureSet<C> instance: expectedTestSet.getInstances()){
-				ClassifiedFeatureSet<C> predictedInstance = predictedClassifiedSet.getInstance(instance.getId());
-				if (instance.getClassification().getValue().equals(positiveClassifcation)){
+				C expectedClassification = instance.getClassification().getValue();
+				C predictedClassification = predictedClassifications.get(instance.getId()).getValue();
+				boolean isPredictedPositive = predictedClassification.equals(positiveClassifcation);
+				if (expectedClassification.equals(positiveClassifcation)){
 					positiveCount++;
-					if (predictedInstance.getClassification().getValue().equals(positiveClassifcation)){
+					if (isPredictedPositive){
 						numTruePositives++;
 					}
 				} else {
 					negativeCount++;
-					if (!predictedInstance.getClassification().getValue().equals(positiveClassifcation)){
+					if (!isPredictedPositive){
 						numTrueNegatives++;
 					}
 				}
 				totalNumInstances++;
-				if (instance.getClassification().getValue().equals(predictedInstance.getClassification().getValue())){
+				if (expectedClassification.equals(predictedClassification)){
 					totalCorrectlyClassified++;
 				}
 				
-				if (predictedInstance.getClassification().getValue().equals(positiveClassifcation)){
+				if (isPredictedPositive){
 					numPredictedPositives++;
 				} else{
 					numPredictedNegatives++;
@@ -0,0 +1,124 @@
+package com.ahaines.machinelearning.api;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.FeatureSet;
+import com.ahaines.machinelearning.api.dataset.InstanceSink;
+
+/**
+ * Classifies instances as they are streamed from a loader and writes the predictions to a {@link Writer}, so that a
+ * dataset can be scored without being held in memory. Instances are collected into a batch of fixed size which is
+ * classified with {@link ModelService#classifyBatch(List, Model, int[], double[])} once full. The batch, the output
+ * arrays and the buffer each batch of predictions is formatted into are allocated once and reused, so memory use is
+ * bounded by the batch size rather than the size of the dataset. As the sink is called on the loader's thread, the
+ * loader cannot read further ahead than one batch.
+ *
+ * Each prediction is written as a line of the form <code>id,classification,probability</code>. Instances the model
+ * could not classify are written with a classification of <code>?</code> and the probability is left empty when the
+ * model does not estimate one.
+ *
+ * {@link #close()} classifies the final partial batch and flushes, but does not close, the writer.
+ *
+ * @author andrewhaines
+ *
+ * @param <T>
+ * @param <C>
+ */
+public class StreamingClassifier<T extends Model, C extends Enum<C>> implements InstanceSink<C>, Closeable {
+
+	private static final char SEPARATOR = ',';
+	private static final String UNCLASSIFIED = "?";
+
+	private final ModelService<T, C> modelService;
+	private final T model;
+	private final C[] classifications;
+	private final Writer output;
+	private final List<FeatureSet> batch;
+	private final int batchSize;
+	private final int[] classificationOrdinals;
+	private final double[] classificationProbabilities;
+	private final StringBuilder buffer;
+	private char[] chars;
+	private long instancesClassified = 0;
+
+	public StreamingClassifier(ModelService<T, C> modelService, T model, Class<C> classificationType, int batchSize, Writer output){
+		if (batchSize < 1){
+			throw new IllegalArgumentException("batch size must be positive: "+batchSize);
+		}
+		this.modelService = modelService;
+		this.model = model;
+		this.classifications = classificationType.getEnumConstants();
+		this.output = output;
+		this.batchSize = batchSize;
+		this.batch = new ArrayList<FeatureSet>(batchSize);
+		this.classificationOrdinals = new int[batchSize];
+		this.classificationProbabilities = new double[batchSize];
+		this.buffer = new StringBuilder(batchSize * 32);
+		this.chars = new char[buffer.capacity()];
+	}
+
+	@Override
+	public void addInstance(ClassifiedFeatureSet<C> instance) {
+		addInstance((FeatureSet)instance);
+	}
+
+	/**
+	 * Adds an unclassified instance to the current batch, classifying the batch if it is full
+	 * @param instance
+	 */
+	public void addInstance(FeatureSet instance){
+		batch.add(instance);
+		if (batch.size() == batchSize){
+			try{
+				classifyBatch();
+			} catch (IOException e){
+				throw new RuntimeException("unable to write predictions", e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of instances whose predictions have been written
+	 * @return
+	 */
+	public long getInstancesClassified(){
+		return instancesClassified;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!batch.isEmpty()){
+			classifyBatch();
+		}
+		output.flush();
+	}
+
+	private void classifyBatch() throws IOException{
+		modelService.classifyBatch(batch, model, classificationOrdinals, classificationProbabilities);
+
+		buffer.setLength(0);
+		for (int i = 0; i < batch.size(); i++){
+			buffer.append(batch.get(i).getId()).append(SEPARATOR);
+			int ordinal = classificationOrdinals[i];
+			buffer.append((ordinal < 0)? UNCLASSIFIED: classifications[ordinal].name()).append(SEPARATOR);
+			double probability = classificationProbabilities[i];
+			if (!Double.isNaN(probability)){
+				buffer.append(probability);
+			}
+			buffer.append('\n');
+		}
+		if (chars.length < buffer.length()){
+			chars = new char[buffer.capacity()];
+		}
+		buffer.getChars(0, buffer.length(), chars, 0);
+		output.write(chars, 0, buffer.length());
+
+		instancesClassified += batch.size();
+		batch.clear();
+	}
+}
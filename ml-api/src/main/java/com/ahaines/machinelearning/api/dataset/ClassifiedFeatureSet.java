@@ -21,6 +21,15 @@ public class ClassifiedFeatureSet<C> implements FeatureSet, ClassifiedInstance<C
 		this.classification = classification;
 	}
 
+	/**
+	 * For subclasses that resolve their features and classification lazily rather than wrapping another
+	 * {@link FeatureSet}. Subclasses using this constructor must override every accessor.
+	 */
+	protected ClassifiedFeatureSet(){
+		this.instance = null;
+		this.classification = null;
+	}
+
 	public Classification<C> getClassification() {
 		return classification;
 	}
@@ -39,11 +48,21 @@ public class ClassifiedFeatureSet<C> implements FeatureSet, ClassifiedInstance<C
 		return instance.getFeature(featureType);
 	}
 
+	@Override
+	public Feature<?> getFeature(int slot) {
+		return instance.getFeature(slot);
+	}
+
 	@Override
 	public Iterable<Class<? extends Feature<?>>> getFeatureTypes() {
 		return instance.getFeatureTypes();
 	}
 
+	@Override
+	public FeatureSchema getSchema() {
+		return instance.getSchema();
+	}
+
 	@Override
 	public Iterable<Feature<?>> getFeatures() {
 		return instance.getFeatures();
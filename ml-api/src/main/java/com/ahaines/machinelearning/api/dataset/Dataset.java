@@ -1,7 +1,6 @@
 package com.ahaines.machinelearning.api.dataset;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 
 import com.haines.ml.model.Feature;
@@ -67,7 +66,7 @@ public interface Dataset<T extends FeatureSet> {
 		private final Iterable<? extends Class<? extends Feature<?>>> featureTypes;
 		
 		public DatasetBuilder(Iterable<? extends Class<? extends Feature<?>>> featureTypes){
-			this(new HashMap<Identifier, FeatureSet>(),featureTypes);
+			this(new IdentifierMap<FeatureSet>(),featureTypes);
 		}
 		
 		public DatasetBuilder(Iterable<FeatureSet> features, Iterable<? extends Class<? extends Feature<?>>> featureTypes){
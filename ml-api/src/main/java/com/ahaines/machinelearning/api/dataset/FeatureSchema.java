@@ -0,0 +1,73 @@
+package com.ahaines.machinelearning.api.dataset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.haines.ml.model.Feature;
+
+/**
+ * Defines a stable mapping of feature types to dense integer slots. Instances created against the same schema store
+ * their features in an array indexed by slot so {@link FeatureSet#getFeature(Class)} is an identity lookup followed by
+ * an array read, and callers that resolve the slot up front using {@link #getSlot(Class)} can use
+ * {@link FeatureSet#getFeature(int)} to avoid the lookup altogether.
+ *
+ * @author andrewhaines
+ *
+ */
+public class FeatureSchema {
+
+	public static final int NOT_IN_SCHEMA = -1;
+
+	private final List<Class<? extends Feature<?>>> featureTypes;
+	private final Map<Class<? extends Feature<?>>, Integer> slots;
+
+	public FeatureSchema(Iterable<? extends Class<? extends Feature<?>>> featureTypes){
+		List<Class<? extends Feature<?>>> orderedFeatureTypes = new ArrayList<Class<? extends Feature<?>>>();
+		this.slots = new IdentityHashMap<Class<? extends Feature<?>>, Integer>();
+
+		for (Class<? extends Feature<?>> featureType: featureTypes){
+			if (slots.put(featureType, orderedFeatureTypes.size()) != null){
+				throw new IllegalArgumentException("the feature type: "+featureType+" is defined more than once");
+			}
+			orderedFeatureTypes.add(featureType);
+		}
+		this.featureTypes = Collections.unmodifiableList(orderedFeatureTypes);
+	}
+
+	/**
+	 * Returns the slot of the supplied feature type or {@link #NOT_IN_SCHEMA} if the type is not part of this schema
+	 * @param featureType
+	 * @return
+	 */
+	public int getSlot(Class<? extends Feature<?>> featureType){
+		Integer slot = slots.get(featureType);
+
+		if (slot == null){
+			return NOT_IN_SCHEMA;
+		}
+		return slot;
+	}
+
+	public Class<? extends Feature<?>> getFeatureType(int slot){
+		return featureTypes.get(slot);
+	}
+
+	/**
+	 * Returns all feature types in slot order
+	 * @return
+	 */
+	public List<Class<? extends Feature<?>>> getFeatureTypes(){
+		return featureTypes;
+	}
+
+	public int size(){
+		return featureTypes.size();
+	}
+
+	public String toString(){
+		return featureTypes.toString();
+	}
+}
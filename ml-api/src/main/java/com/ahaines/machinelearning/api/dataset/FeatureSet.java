@@ -1,8 +1,7 @@
 package com.ahaines.machinelearning.api.dataset;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Arrays;
+import java.util.Collections;
 
 import com.haines.ml.model.Feature;
 import com.haines.ml.model.Instance;
@@ -22,36 +21,57 @@ public interface FeatureSet extends Identifiable, Instance{
 	 */
 	<T extends Feature<?>> T getFeature(Class<T> featureType);
 	
+	/**
+	 * Returns the feature held in the supplied slot of this instance's {@link #getSchema()}. This avoids the type
+	 * lookup of {@link #getFeature(Class)} for callers that have already resolved the slot.
+	 * @param slot
+	 * @return
+	 */
+	Feature<?> getFeature(int slot);
+	
 	/**
 	 * Returns all the types of this instance
 	 * @return
 	 */
 	Iterable<Class<? extends Feature<?>>> getFeatureTypes();
 	
+	/**
+	 * Returns the schema that maps this instance's feature types to slots
+	 * @return
+	 */
+	FeatureSchema getSchema();
+	
 	static class FeatureSetImpl implements FeatureSet{
 
-		private final Map<Class<? extends Feature<?>>, Feature<?>> features;
+		private final Feature<?>[] features;
 		private final Identifier id;
-		private final Iterable<Class<? extends Feature<?>>> featureTypes;
+		private final FeatureSchema schema;
 		
-		private FeatureSetImpl(Identifier id, Map<Class<? extends Feature<?>>, Feature<?>> features, Iterable<Class<? extends Feature<?>>> featureTypes){
+		private FeatureSetImpl(Identifier id, Feature<?>[] features, FeatureSchema schema){
 			this.features = features;
 			this.id = id;
-			this.featureTypes = featureTypes;
+			this.schema = schema;
 		}
 		
 		@Override
 		public <T extends Feature<?>> T getFeature(Class<T> featureType){
-			@SuppressWarnings("unchecked")
-			T feature = (T)features.get(featureType);
+			int slot = schema.getSlot(featureType);
 			
-			if (feature == null){
+			if (slot == FeatureSchema.NOT_IN_SCHEMA){
 				throw new IllegalArgumentException("a feature of type: "+featureType+" does not exist in this feature set");
 			}
 			
+			@SuppressWarnings("unchecked")
+			T feature = (T)features[slot];
+			
 			return feature;
 		}
 		
+		@Override
+		public Feature<?> getFeature(int slot){
+			return features[slot];
+		}
+		
 		public Identifier getId() {
 			return id;
 		}
@@ -60,11 +80,11 @@ public interface FeatureSet extends Identifiable, Instance{
 			StringBuilder builder = new StringBuilder("(");
 			builder.append(getId());
 			builder.append(")");
-			for (Entry<Class<? extends Feature<?>>, Feature<?>> feature: features.entrySet()){
+			for (int i = 0; i < features.length; i++){
 				builder.append("{")
-					   .append(feature.getKey().getSimpleName())
+					   .append(schema.getFeatureType(i).getSimpleName())
 					   .append(",")
-					   .append(feature.getValue())
+					   .append(features[i])
 					   .append("} ");
 			}
 			
@@ -73,70 +93,70 @@ public interface FeatureSet extends Identifiable, Instance{
 		
 		@Override
 		public Iterable<Class<? extends Feature<?>>> getFeatureTypes(){
-			return featureTypes;
+			return schema.getFeatureTypes();
 		}
 
 		@Override
 		public Iterable<Feature<?>> getFeatures() {
-			return features.values();
+			return Collections.unmodifiableList(Arrays.asList(features));
+		}
+		
+		@Override
+		public FeatureSchema getSchema(){
+			return schema;
 		}
 	}
 	
 	/**
 	 * This factory can be used to create immutable {@link FeatureSet} instances with all features
-	 * verified and set.
+	 * verified and set. All instances created by a factory share the same {@link FeatureSchema}.
 	 * @author andrewhaines
 	 *
 	 */
 	public static class FeatureSetFactory{
-		private final Map<Class<? extends Feature<?>>, Integer> featureWeights;
-		private final int expectedFeatureWeight;
-		private final Iterable<? extends Class<? extends Feature<?>>> featureTypes;
+		private final FeatureSchema schema;
 		
 		public FeatureSetFactory(Iterable<? extends Class<? extends Feature<?>>> featureTypes){
-			this.featureWeights = new HashMap<Class<? extends Feature<?>>, Integer>();
-			
-			int weightAccumulator = 0;
-			
-			int i = 1;
-			for (Class<? extends Feature<?>> featureType: featureTypes){
-				int featureWeight = 31* i;
-				weightAccumulator += featureWeight;
-				featureWeights.put(featureType, featureWeight);
-			}
-			
-			this.expectedFeatureWeight = weightAccumulator;
-			this.featureTypes = featureTypes;
+			this(new FeatureSchema(featureTypes));
+		}
+		
+		public FeatureSetFactory(FeatureSchema schema){
+			this.schema = schema;
 		}
 		
-		@SuppressWarnings("unchecked")
 		public Iterable<Class<? extends Feature<?>>> getFeatureTypes(){
-			return (Iterable<Class<? extends Feature<?>>>)(Iterable<?>)featureTypes;
+			return schema.getFeatureTypes();
+		}
+		
+		public FeatureSchema getSchema(){
+			return schema;
 		}
 
 		public FeatureSet createFeatureSet(Identifier id, Iterable<FeatureDefinition> features){
-			Map<Class<? extends Feature<?>>, Feature<?>> featuresMap = new HashMap<Class<? extends Feature<?>>, Feature<?>>();
+			Feature<?>[] featureSlots = new Feature<?>[schema.size()];
 			
-			int actualFeatureWeights = 0;
 			for (FeatureDefinition featureDef: features){
 				Class<? extends Feature<?>> currentFeatureType = featureDef.getFeatureType();
-				Feature<?> feature = featureDef.getFeature();
-				featuresMap.put(currentFeatureType, feature);
-
-				Integer weight = featureWeights.get(currentFeatureType);
+				int slot = schema.getSlot(currentFeatureType);
 				
-				if (weight == null){
+				if (slot == FeatureSchema.NOT_IN_SCHEMA){
 					throw new IllegalArgumentException("the feature type: "+currentFeatureType+" is not valid for this feature set");
 				}
 				
-				actualFeatureWeights += weight;
+				if (featureSlots[slot] != null){
+					throw new IllegalArgumentException("the feature type: "+currentFeatureType+" has been supplied more than once");
+				}
+				
+				featureSlots[slot] = featureDef.getFeature();
 			}
 			
-			if (featureWeights.size() != featuresMap.size() || expectedFeatureWeight != actualFeatureWeights){
-				throw new IllegalArgumentException("The features supplied do not contain all the features expected. feature types: "+featuresMap.keySet()+", expected feature types: "+featureWeights.keySet());
+			for (int slot = 0; slot < featureSlots.length; slot++){
+				if (featureSlots[slot] == null){
+					throw new IllegalArgumentException("The features supplied do not contain all the features expected. missing feature type: "+schema.getFeatureType(slot)+", expected feature types: "+schema);
+				}
 			}
 			
-			return new FeatureSetImpl(id, featuresMap, getFeatureTypes());
+			return new FeatureSetImpl(id, featureSlots, schema);
 		}
 	}
 }
@@ -1,6 +1,5 @@
 package com.ahaines.machinelearning.api.dataset;
 
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -17,7 +16,7 @@ public interface Identifiable {
 	static class Utils{
 		
 		public <T extends Identifiable> Map<Identifier, T> index(Iterable<T> identifiables){
-			return index(identifiables, new HashMap<Identifier, T>());
+			return index(identifiables, new IdentifierMap<T>());
 		}
 		
 		public <T extends Identifiable> Map<Identifier, T> index(Iterable<T> identifiables, Map<Identifier, T> mapToIndexTo){
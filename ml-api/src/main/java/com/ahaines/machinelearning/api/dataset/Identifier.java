@@ -21,14 +21,8 @@ public interface Identifier {
 		 * @param id
 		 * @return
 		 */
-		public Identifier createIdentifier(final int id){
-			return new AbstractIdentifier(){
-
-				@Override
-				protected Object getPrimitiveValue() {
-					return id;
-				}
-			};
+		public Identifier createIdentifier(int id){
+			return new PrimitiveIdentifier(id, true);
 		}
 		
 		/**
@@ -36,14 +30,8 @@ public interface Identifier {
 		 * @param id
 		 * @return
 		 */
-		public Identifier createIdentifier(final long id){
-			return new AbstractIdentifier(){
-
-				@Override
-				protected Object getPrimitiveValue() {
-					return id;
-				}
-			};
+		public Identifier createIdentifier(long id){
+			return new PrimitiveIdentifier(id, false);
 		}
 		
 		/**
@@ -86,4 +74,62 @@ public interface Identifier {
 			return getPrimitiveValue().toString();
 		}
 	}
+	
+	/**
+	 * An identifier holding an int or long without boxing it. It is equal to the identifiers created from the same value
+	 * of the same primitive type, so an int identifier is never equal to a long identifier, and hashes as the boxed value
+	 * would.
+	 * @author andrewhaines
+	 *
+	 */
+	public static final class PrimitiveIdentifier extends AbstractIdentifier{
+		
+		private final long value;
+		private final boolean isInt;
+		
+		private PrimitiveIdentifier(long value, boolean isInt){
+			this.value = value;
+			this.isInt = isInt;
+		}
+		
+		public long getValue(){
+			return value;
+		}
+		
+		/**
+		 * Returns true if this identifier was created from an int rather than a long
+		 * @return
+		 */
+		public boolean isInt(){
+			return isInt;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj instanceof PrimitiveIdentifier){
+				PrimitiveIdentifier other = (PrimitiveIdentifier)obj;
+				
+				return value == other.value && isInt == other.isInt;
+			}
+			return super.equals(obj);
+		}
+
+		@Override
+		public int hashCode() {
+			return isInt? (int)value: (int)(value ^ (value >>> 32));
+		}
+		
+		@Override
+		protected Object getPrimitiveValue() {
+			if (isInt){
+				return (int)value;
+			}
+			return value;
+		}
+		
+		@Override
+		public String toString(){
+			return Long.toString(value);
+		}
+	}
 }
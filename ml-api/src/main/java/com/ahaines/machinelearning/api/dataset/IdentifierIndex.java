@@ -0,0 +1,122 @@
+package com.ahaines.machinelearning.api.dataset;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.ahaines.machinelearning.api.dataset.Identifier.PrimitiveIdentifier;
+import com.ahaines.machinelearning.api.util.LongIntMap;
+
+/**
+ * Indexes identifiers to positions, such as the rows of a dataset. Identifiers created from an int or a long by
+ * {@link Identifier#FACTORY} are indexed by their primitive value in a {@link LongIntMap}, so neither the identifier
+ * nor its position is boxed and no map entry is created for it. Any other identifiers are indexed in a hash map.
+ * Positions cannot be removed.
+ *
+ * This class is not thread safe. Once populated it can be read from multiple threads as long as it has been safely
+ * published.
+ * @author andrewhaines
+ *
+ */
+public class IdentifierIndex {
+
+	/**
+	 * The position returned for an identifier that is not in the index
+	 */
+	public static final int NOT_INDEXED = LongIntMap.NO_VALUE;
+
+	private final int expectedSize;
+	private LongIntMap intIds;
+	private LongIntMap longIds; // int and long identifiers of the same value are not equal so are kept apart
+	private Map<Identifier, Integer> otherIds;
+	private int size = 0;
+
+	public IdentifierIndex(){
+		this(0);
+	}
+
+	/**
+	 * Creates an index that can hold the supplied number of identifiers without resizing
+	 * @param expectedSize
+	 */
+	public IdentifierIndex(int expectedSize){
+		this.expectedSize = expectedSize;
+	}
+
+	/**
+	 * Returns an index of each identifier to its position in the supplied array
+	 * @param ids
+	 * @return
+	 * @throws IllegalArgumentException if an identifier appears more than once
+	 */
+	public static IdentifierIndex index(Identifier[] ids){
+		IdentifierIndex index = new IdentifierIndex(ids.length);
+		for (int i = 0; i < ids.length; i++){
+			if (index.put(ids[i], i) != NOT_INDEXED){
+				throw new IllegalArgumentException("duplicate instance id: "+ids[i]);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the position of the supplied identifier or {@link #NOT_INDEXED} if it is not in the index
+	 * @param id
+	 * @return
+	 */
+	public int get(Identifier id){
+		if (id instanceof PrimitiveIdentifier){
+			PrimitiveIdentifier primitiveId = (PrimitiveIdentifier)id;
+			LongIntMap ids = primitiveId.isInt()? intIds: longIds;
+
+			return ids == null? NOT_INDEXED: ids.get(primitiveId.getValue());
+		}
+		if (otherIds == null){
+			return NOT_INDEXED;
+		}
+		Integer position = otherIds.get(id);
+
+		return position == null? NOT_INDEXED: position;
+	}
+
+	/**
+	 * Indexes the identifier to the supplied position, returning the position it replaced or {@link #NOT_INDEXED} if
+	 * the identifier was not already in the index
+	 * @param id
+	 * @param position must not be negative
+	 * @return
+	 */
+	public int put(Identifier id, int position){
+		if (position < 0){
+			throw new IllegalArgumentException("positions must not be negative: "+position);
+		}
+		int previous;
+		if (id instanceof PrimitiveIdentifier){
+			PrimitiveIdentifier primitiveId = (PrimitiveIdentifier)id;
+			if (primitiveId.isInt()){
+				if (intIds == null){
+					intIds = new LongIntMap(expectedSize);
+				}
+				previous = intIds.put(primitiveId.getValue(), position);
+			} else{
+				if (longIds == null){
+					longIds = new LongIntMap(expectedSize);
+				}
+				previous = longIds.put(primitiveId.getValue(), position);
+			}
+		} else{
+			if (otherIds == null){
+				otherIds = new HashMap<Identifier, Integer>();
+			}
+			Integer previousPosition = otherIds.put(id, position);
+			previous = previousPosition == null? NOT_INDEXED: previousPosition;
+		}
+		if (previous == NOT_INDEXED){
+			size++;
+		}
+		return previous;
+	}
+
+	public int size(){
+		return size;
+	}
+}
@@ -0,0 +1,177 @@
+package com.ahaines.machinelearning.api.dataset;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map keyed by {@link Identifier} that holds its keys and values in arrays and finds them through an
+ * {@link IdentifierIndex}, so the identifiers created by {@link Identifier#FACTORY} are looked up without boxing and
+ * without an entry object per mapping. Entries are iterated in the order their keys were first put. Entries cannot be
+ * removed.
+ * @author andrewhaines
+ *
+ * @param <V>
+ */
+public class IdentifierMap<V> extends AbstractMap<Identifier, V>{
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final IdentifierIndex index;
+	private Identifier[] keys;
+	private Object[] values;
+	private int size = 0;
+
+	public IdentifierMap(){
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Creates a map that can hold the supplied number of entries without resizing
+	 * @param expectedSize
+	 */
+	public IdentifierMap(int expectedSize){
+		this.index = new IdentifierIndex(expectedSize);
+		this.keys = new Identifier[Math.max(1, expectedSize)];
+		this.values = new Object[keys.length];
+	}
+
+	@Override
+	public V get(Object key) {
+		int position = indexOf(key);
+
+		return position == IdentifierIndex.NOT_INDEXED? null: getValue(position);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) != IdentifierIndex.NOT_INDEXED;
+	}
+
+	@Override
+	public V put(Identifier key, V value) {
+		if (key == null){
+			throw new NullPointerException("identifiers must not be null");
+		}
+		int position = index.get(key);
+		if (position != IdentifierIndex.NOT_INDEXED){
+			V previous = getValue(position);
+			values[position] = value;
+			return previous;
+		}
+		if (size == keys.length){
+			keys = Arrays.copyOf(keys, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		index.put(key, size);
+		keys[size] = key;
+		values[size++] = value;
+		return null;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the values in the order their keys were first put, read straight from the array that holds them
+	 */
+	@Override
+	public Collection<V> values() {
+		return new AbstractCollection<V>(){
+
+			@Override
+			public Iterator<V> iterator() {
+				return new Iterator<V>(){
+
+					private int position = 0;
+
+					@Override
+					public boolean hasNext() {
+						return position < size;
+					}
+
+					@Override
+					public V next() {
+						if (!hasNext()){
+							throw new NoSuchElementException();
+						}
+						return getValue(position++);
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException("entries cannot be removed");
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	@Override
+	public Set<Entry<Identifier, V>> entrySet() {
+		return new AbstractSet<Entry<Identifier, V>>(){
+
+			@Override
+			public Iterator<Entry<Identifier, V>> iterator() {
+				return new Iterator<Entry<Identifier, V>>(){
+
+					private int position = 0;
+
+					@Override
+					public boolean hasNext() {
+						return position < size;
+					}
+
+					@Override
+					public Entry<Identifier, V> next() {
+						if (!hasNext()){
+							throw new NoSuchElementException();
+						}
+						final int entryPosition = position++;
+						return new SimpleEntry<Identifier, V>(keys[entryPosition], getValue(entryPosition)){
+
+							private static final long serialVersionUID = 1L;
+
+							@Override
+							public V setValue(V value) {
+								values[entryPosition] = value;
+								return super.setValue(value);
+							}
+						};
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException("entries cannot be removed");
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	private int indexOf(Object key){
+		return (key instanceof Identifier)? index.get((Identifier)key): IdentifierIndex.NOT_INDEXED;
+	}
+
+	@SuppressWarnings("unchecked")
+	private V getValue(int position){
+		return (V)values[position];
+	}
+}
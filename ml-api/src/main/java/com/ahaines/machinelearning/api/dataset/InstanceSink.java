@@ -0,0 +1,18 @@
+package com.ahaines.machinelearning.api.dataset;
+
+/**
+ * Receives instances one at a time as they are produced, allowing a loader to stream a dataset through a consumer without
+ * holding all of the instances in memory.
+ *
+ * @author andrewhaines
+ *
+ * @param <C> The classification type of the instances
+ */
+public interface InstanceSink<C> {
+
+	/**
+	 * Called with each instance in the order it was produced
+	 * @param instance
+	 */
+	void addInstance(ClassifiedFeatureSet<C> instance);
+}
@@ -1,34 +1,48 @@
 package com.ahaines.machinelearning.api.dataset;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 
+import com.ahaines.machinelearning.api.dataset.columnar.ColumnarClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.columnar.FeatureColumn;
 import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser;
 import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser.QuantiserEventProcessor;
 import com.ahaines.machinelearning.api.dataset.quantiser.RangeFeature;
-import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.ahaines.machinelearning.api.dataset.Classification;
 import com.haines.ml.model.ContinuousFeature;
 import com.haines.ml.model.Feature;
 
 /**
  *Returns a dataset that contains no continuous values. All continuous values will have been discretised
+ *
+ * The dataset is a view of the dataset that was discretised. Each continuous feature of a row is replaced by the range
+ * it was quantised into, which is looked up by the row's index, so neither the instances nor their features are copied.
+ * The discretised view of a {@link ColumnarClassifiedDataset} is itself columnar, with the continuous columns replaced
+ * by {@link FeatureColumn#substitute(Feature[], int[])} views. Features that were not reported in any range keep their
+ * original value.
  * @author andrewhaines
  *
  */
 public final class QuantisedDataset<C> implements ClassifiedDataset<C>{
 
+	private static final int NO_RANGE = -1;
+
 	private final ClassifiedDataset<C> dataset;
 	private final Map<Class<? extends ContinuousFeature<?>>, Collection<RangeFeature<?>>> quantisedRanges;
-	
+
 	private QuantisedDataset(ClassifiedDataset<C> dataset, Map<Class<? extends ContinuousFeature<?>>, Collection<RangeFeature<?>>> quantisedRanges){
 		this.dataset = dataset;
 		this.quantisedRanges = quantisedRanges;
 	}
-	
+
 	@Override
 	public ClassifiedFeatureSet<C> getInstance(Identifier instanceId) {
 		return dataset.getInstance(instanceId);
@@ -43,77 +57,267 @@ public final class QuantisedDataset<C> implements ClassifiedDataset<C>{
 	public Iterable<Class<? extends Feature<?>>> getFeatureTypes() {
 		return dataset.getFeatureTypes();
 	}
-	
+
 	public Map<Class<? extends ContinuousFeature<?>>, Collection<RangeFeature<?>>> getQuantisedRanges() {
 		return quantisedRanges;
 	}
-	
+
 	@Override
 	public Map<Identifier, ? extends Classification<C>> getClassifications() {
 		return dataset.getClassifications();
 	}
-	
+
+	/**
+	 * Returns the discretised view of the dataset. For columnar datasets this is a {@link ColumnarClassifiedDataset}
+	 * @return
+	 */
+	public ClassifiedDataset<C> getDataset(){
+		return dataset;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public static <C extends Enum<C>> QuantisedDataset<C> discretise(ClassifiedDataset<C> dataset, ContinuousFeatureQuantiser quantiser){
-		
-		FeatureSet.FeatureSetFactory instanceFactory = new FeatureSet.FeatureSetFactory(dataset.getFeatureTypes());
-		final Map<Identifier, Map<Class<? extends Feature<?>>, RangeFeature<?>>> ranges = new HashMap<Identifier, Map<Class<? extends Feature<?>>, RangeFeature<?>>>();
+
+		final ColumnarClassifiedDataset<C> columnarDataset = (dataset instanceof ColumnarClassifiedDataset)? (ColumnarClassifiedDataset<C>)dataset: null;
+		final List<ClassifiedFeatureSet<C>> rows;
+		final Map<ClassifiedFeatureSet<?>, Integer> rowIndexes;
+		if (columnarDataset != null){
+			rows = columnarDataset.getInstances();
+			rowIndexes = null;
+		} else{
+			Iterable<ClassifiedFeatureSet<C>> instances = dataset.getInstances();
+			rows = (instances instanceof List)? (List<ClassifiedFeatureSet<C>>)instances: Lists.newArrayList(instances);
+			rowIndexes = new IdentityHashMap<ClassifiedFeatureSet<?>, Integer>(rows.size());
+			for (int row = 0; row < rows.size(); row++){
+				rowIndexes.put(rows.get(row), row);
+			}
+		}
+
 		Map<Class<? extends ContinuousFeature<?>>, Collection<RangeFeature<?>>> quantisedRanges = new HashMap<Class<? extends ContinuousFeature<?>>, Collection<RangeFeature<?>>>();
-		int featureSetSize = Iterables.size(dataset.getFeatureTypes());
-		
-		// work out ranges based on all features
+		Map<Class<? extends Feature<?>>, Substitution> substitutions = new HashMap<Class<? extends Feature<?>>, Substitution>();
+
+		// work out ranges based on all features, recording the range each row was reported in
 		for (final Class<? extends Feature<?>> featureType : dataset.getFeatureTypes()){
 			if (ContinuousFeature.class.isAssignableFrom(featureType)){
 				// discretise
-				Collection<RangeFeature<?>> allFeatureRanges = quantiser.quantise(dataset.getInstances(), (Class)featureType, new QuantiserEventProcessor(){
+				final int[] rangeIndexes = new int[rows.size()];
+				Arrays.fill(rangeIndexes, NO_RANGE);
+				final List<RangeFeature<?>> reportedRanges = new ArrayList<RangeFeature<?>>();
+				Collection<RangeFeature<?>> allFeatureRanges = quantiser.quantise(rows, (Class)featureType, new QuantiserEventProcessor(){
 
 					@Override
 					public <T extends Number & Comparable<T>> void newRangeDetermined(RangeFeature<T> range, Iterable<? extends ClassifiedFeatureSet<? extends Enum<?>>> instanceInSplit) {
+						int rangeIndex = reportedRanges.size();
+						reportedRanges.add(range);
 						for (ClassifiedFeatureSet<? extends Enum<?>> instance: instanceInSplit){
-							
-							Map<Class<? extends Feature<?>>, RangeFeature<?>> rangeValues = ranges.get(instance.getId());
-							
-							if (rangeValues == null){
-								rangeValues = new HashMap<Class<? extends Feature<?>>, RangeFeature<?>>();
-							}
-							if (rangeValues.put(featureType, range) != null){
+							int row = getRow(instance, columnarDataset, rowIndexes);
+							if (rangeIndexes[row] != NO_RANGE){
 								throw new IllegalStateException("There should not have been a feature range already assigned for type: "+featureType.getSimpleName());
 							}
-							
-							ranges.put(instance.getId(), rangeValues);
+							rangeIndexes[row] = rangeIndex;
 						}
 					}
-					
+
 				});
 				quantisedRanges.put((Class<? extends ContinuousFeature<?>>)featureType, allFeatureRanges);
+				substitutions.put(featureType, new Substitution(reportedRanges.toArray(new Feature<?>[reportedRanges.size()]), rangeIndexes));
+			}
+		}
+
+		// now view the instances replacing continuous values with their computed ranges
+
+		if (columnarDataset != null){
+			List<FeatureColumn> quantisedColumns = new ArrayList<FeatureColumn>(substitutions.size());
+			for (Map.Entry<Class<? extends Feature<?>>, Substitution> substitution: substitutions.entrySet()){
+				quantisedColumns.add(columnarDataset.getColumn(substitution.getKey()).substitute(substitution.getValue().substitutes, substitution.getValue().substituteIndexes));
+			}
+			return new QuantisedDataset<C>(columnarDataset.withColumns(quantisedColumns), quantisedRanges);
+		}
+		return new QuantisedDataset<C>(new SubstitutedDataset<C>(dataset, rows, substitutions), quantisedRanges);
+	}
+
+	/*
+	 * returns the index of the instance in the rows supplied to the quantiser
+	 */
+	private static int getRow(ClassifiedFeatureSet<?> instance, ColumnarClassifiedDataset<?> columnarDataset, Map<ClassifiedFeatureSet<?>, Integer> rowIndexes){
+		int row;
+		if (columnarDataset != null){
+			if (instance instanceof ColumnarClassifiedDataset.Row && ((ColumnarClassifiedDataset<?>.Row)instance).getDataset() == columnarDataset){
+				row = ((ColumnarClassifiedDataset<?>.Row)instance).getRow();
+			} else{
+				row = columnarDataset.getRowIndex(instance.getId());
+			}
+		} else{
+			Integer rowIndex = rowIndexes.get(instance);
+			row = (rowIndex == null)? -1: rowIndex;
+		}
+		if (row == -1){
+			throw new IllegalStateException("quantiser reported an instance it was not given: "+instance.getId());
+		}
+		return row;
+	}
+
+	/*
+	 * The features a continuous feature is replaced by, indexed by row. Rows without a substitute hold NO_RANGE
+	 */
+	private static class Substitution{
+
+		private final Feature<?>[] substitutes;
+		private final int[] substituteIndexes;
+
+		private Substitution(Feature<?>[] substitutes, int[] substituteIndexes){
+			this.substitutes = substitutes;
+			this.substituteIndexes = substituteIndexes;
+		}
+
+		private Feature<?> getSubstitute(int row){
+			int substituteIndex = substituteIndexes[row];
+
+			return (substituteIndex == NO_RANGE)? null: substitutes[substituteIndex];
+		}
+	}
+
+	/*
+	 * A view of the rows of a dataset with the substituted features in place of the originals. Instances are lightweight
+	 * views created on access that refer to the original instance and its row.
+	 */
+	private static class SubstitutedDataset<C> implements ClassifiedDataset<C>{
+
+		private final ClassifiedDataset<C> dataset;
+		private final List<ClassifiedFeatureSet<C>> rows;
+		private final Map<Class<? extends Feature<?>>, Substitution> substitutions;
+		private final List<ClassifiedFeatureSet<C>> instances;
+		private volatile IdentifierIndex rowIndex; // only built if an instance is looked up by identifier
+
+		private SubstitutedDataset(ClassifiedDataset<C> dataset, List<ClassifiedFeatureSet<C>> rows, Map<Class<? extends Feature<?>>, Substitution> substitutions){
+			this.dataset = dataset;
+			this.rows = rows;
+			this.substitutions = substitutions;
+			this.instances = new InstanceList();
+		}
+
+		@Override
+		public ClassifiedFeatureSet<C> getInstance(Identifier instanceId) {
+			int row = getRowIndex().get(instanceId);
+
+			if (row == IdentifierIndex.NOT_INDEXED){
+				return null;
+			}
+			return new SubstitutedFeatureSet(row);
+		}
+
+		private IdentifierIndex getRowIndex(){
+			IdentifierIndex index = rowIndex;
+			if (index == null){
+				index = new IdentifierIndex(rows.size());
+				for (int row = 0; row < rows.size(); row++){
+					index.put(rows.get(row).getId(), row);
+				}
+				rowIndex = index;
+			}
+			return index;
+		}
+
+		@Override
+		public Iterable<ClassifiedFeatureSet<C>> getInstances() {
+			return instances;
+		}
+
+		@Override
+		public Iterable<Class<? extends Feature<?>>> getFeatureTypes() {
+			return dataset.getFeatureTypes();
+		}
+
+		@Override
+		public Map<Identifier, ? extends Classification<C>> getClassifications() {
+			return dataset.getClassifications();
+		}
+
+		private class InstanceList extends AbstractList<ClassifiedFeatureSet<C>> implements RandomAccess{
+
+			@Override
+			public ClassifiedFeatureSet<C> get(int index) {
+				if (index < 0 || index >= rows.size()){
+					throw new IndexOutOfBoundsException("index: "+index+", size: "+rows.size());
+				}
+				return new SubstitutedFeatureSet(index);
+			}
+
+			@Override
+			public int size() {
+				return rows.size();
 			}
 		}
-		
-		// now re add instances replacing continuous values with their computed ranges
-		
-		Dataset.DatasetBuilder builder = new Dataset.DatasetBuilder(dataset.getFeatureTypes());
-		Map<Identifier, ? extends Classification<C>> classifications = dataset.getClassifications();
-		
-		for (ClassifiedFeatureSet<C> instance: dataset.getInstances()){
-			List<FeatureDefinition> features = new ArrayList<FeatureDefinition>(featureSetSize);
-			
-			Map<Class<? extends Feature<?>>, RangeFeature<?>> discretisedFeatures = ranges.get(instance.getId());
-			
-			for (Class<? extends Feature<?>> featureType: instance.getFeatureTypes()){
-				
-				Feature<?> featureValue = instance.getFeature(featureType);
-				if (discretisedFeatures != null){
-					Feature<?> discretisedFeatureValue = discretisedFeatures.get(featureType); // see if we have a discretised feature for this type first
-					
-					if (discretisedFeatureValue != null){ // if not use the original feature value
-						featureValue = discretisedFeatureValue;
+
+		private class SubstitutedFeatureSet extends ClassifiedFeatureSet<C>{
+
+			private final int row;
+
+			private SubstitutedFeatureSet(int row){
+				this.row = row;
+			}
+
+			@Override
+			public Classification<C> getClassification() {
+				return rows.get(row).getClassification();
+			}
+
+			@Override
+			public Identifier getId() {
+				return rows.get(row).getId();
+			}
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public <T extends Feature<?>> T getFeature(Class<T> featureType) {
+				Substitution substitution = substitutions.get(featureType);
+				if (substitution != null){
+					Feature<?> substitute = substitution.getSubstitute(row);
+					if (substitute != null){
+						return (T)substitute;
 					}
 				}
-				features.add(new FeatureDefinition(featureValue, featureType));
+				return rows.get(row).getFeature(featureType);
+			}
+
+			@Override
+			public Feature<?> getFeature(int slot) {
+				return getFeature(getSchema().getFeatureType(slot));
+			}
+
+			@Override
+			public Iterable<Class<? extends Feature<?>>> getFeatureTypes() {
+				return rows.get(row).getFeatureTypes();
+			}
+
+			@Override
+			public FeatureSchema getSchema() {
+				return rows.get(row).getSchema();
+			}
+
+			@Override
+			public Iterable<Feature<?>> getFeatures() {
+				List<Feature<?>> features = new ArrayList<Feature<?>>();
+				for (Class<? extends Feature<?>> featureType: getFeatureTypes()){
+					features.add(getFeature(featureType));
+				}
+				return features;
+			}
+
+			@Override
+			public String toString(){
+				StringBuilder builder = new StringBuilder("(");
+				builder.append(getId());
+				builder.append(")");
+				for (Class<? extends Feature<?>> featureType: getFeatureTypes()){
+					builder.append("{")
+						   .append(featureType.getSimpleName())
+						   .append(",")
+						   .append(getFeature(featureType))
+						   .append("} ");
+				}
+				return builder.append(" -> ").append(getClassification()).toString();
 			}
-				
-			builder.addInstance(instanceFactory.createFeatureSet(instance.getId(), features));
 		}
-	
-		return new QuantisedDataset<C>(ClassifiedDataset.FACTORY.create(builder.build(), classifications), quantisedRanges);
 	}
 }
@@ -0,0 +1,127 @@
+package com.ahaines.machinelearning.api.dataset.columnar;
+
+import com.ahaines.machinelearning.api.dataset.FeatureSchema;
+import com.ahaines.machinelearning.api.dataset.FeatureSet;
+import com.ahaines.machinelearning.api.dataset.columnar.FeatureColumn.NumericColumn;
+import com.ahaines.machinelearning.api.dataset.columnar.FeatureColumn.OrdinalColumn;
+import com.haines.ml.model.Feature;
+import com.haines.ml.model.Feature.Features;
+
+/**
+ * Reads the values of a single feature type from instances which may or may not be {@link ColumnarClassifiedDataset.Row}
+ * views. Row views are served straight from their primitive columns and any other {@link FeatureSet} is read by slot.
+ * The column and slot of the most recently seen dataset and schema are cached so a reader should be created per loop
+ * and is not thread safe.
+ *
+ * @author andrewhaines
+ *
+ */
+public class ColumnReader {
+
+	private final Class<? extends Feature<?>> featureType;
+	private ColumnarClassifiedDataset<?> lastDataset;
+	private FeatureColumn lastColumn;
+	private FeatureSchema lastSchema;
+	private int lastSlot;
+
+	public ColumnReader(Class<? extends Feature<?>> featureType){
+		this.featureType = featureType;
+	}
+
+	public Class<? extends Feature<?>> getFeatureType() {
+		return featureType;
+	}
+
+	/**
+	 * Returns the column backing the supplied instance or null if the instance is not a columnar row view
+	 * @param instance
+	 * @return
+	 */
+	public FeatureColumn getColumn(FeatureSet instance){
+		if (instance instanceof ColumnarClassifiedDataset.Row){
+			ColumnarClassifiedDataset<?> dataset = ((ColumnarClassifiedDataset<?>.Row)instance).getDataset();
+			if (dataset != lastDataset){
+				lastColumn = dataset.getColumn(featureType);
+				lastDataset = dataset;
+			}
+			return lastColumn;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the feature of the supplied instance, resolving it by slot rather than type
+	 * @param instance
+	 * @return
+	 */
+	public Feature<?> getFeature(FeatureSet instance){
+		FeatureSchema schema = instance.getSchema();
+		if (schema != lastSchema){
+			lastSlot = schema.getSlot(featureType);
+			lastSchema = schema;
+		}
+		if (lastSlot == FeatureSchema.NOT_IN_SCHEMA){
+			throw new IllegalArgumentException("a feature of type: "+featureType+" does not exist in this feature set");
+		}
+		return instance.getFeature(lastSlot);
+	}
+
+	public boolean isMissing(FeatureSet instance){
+		FeatureColumn column = getColumn(instance);
+		if (column != null){
+			return column.isMissing(getRow(instance));
+		}
+		return getFeature(instance) == Features.MISSING;
+	}
+
+	/**
+	 * Returns the value of a continuous feature as a double.
+	 * @param instance
+	 * @return
+	 */
+	public double getDouble(FeatureSet instance){
+		FeatureColumn column = getColumn(instance);
+		if (column instanceof NumericColumn){
+			return ((NumericColumn)column).getDouble(getRow(instance));
+		}
+		return ((Number)getFeature(instance).getValue()).doubleValue();
+	}
+
+	/**
+	 * Returns the value of a continuous feature with the same semantics as {@link Number#intValue()}
+	 * @param instance
+	 * @return
+	 */
+	public int getIntValue(FeatureSet instance){
+		FeatureColumn column = getColumn(instance);
+		if (column instanceof NumericColumn){
+			return ((NumericColumn)column).getIntValue(getRow(instance));
+		}
+		return ((Number)getFeature(instance).getValue()).intValue();
+	}
+
+	/**
+	 * Returns the ordinal of an enum based discrete feature or -1 if the feature is missing
+	 * @param instance
+	 * @return
+	 */
+	public int getOrdinal(FeatureSet instance){
+		FeatureColumn column = getColumn(instance);
+		if (column instanceof OrdinalColumn){
+			int row = getRow(instance);
+			if (column.isMissing(row)){
+				return -1;
+			}
+			return ((OrdinalColumn)column).getOrdinal(row);
+		}
+		Feature<?> feature = getFeature(instance);
+		if (feature == Features.MISSING){
+			return -1;
+		}
+		return ((Enum<?>)feature).ordinal();
+	}
+
+	private static int getRow(FeatureSet instance){
+		return ((ColumnarClassifiedDataset<?>.Row)instance).getRow();
+	}
+}
@@ -0,0 +1,807 @@
+package com.ahaines.machinelearning.api.dataset.columnar;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import com.ahaines.machinelearning.api.dataset.Classification;
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.FeatureSchema;
+import com.ahaines.machinelearning.api.dataset.FeatureSet;
+import com.ahaines.machinelearning.api.dataset.Identifier;
+import com.ahaines.machinelearning.api.dataset.Identifier.PrimitiveIdentifier;
+import com.ahaines.machinelearning.api.dataset.IdentifierIndex;
+import com.ahaines.machinelearning.api.dataset.columnar.FeatureColumn.ColumnBuilder;
+import com.ahaines.machinelearning.api.util.ModelFiles;
+import com.google.common.base.Predicate;
+import com.haines.ml.model.Feature;
+
+/**
+ * A {@link ClassifiedDataset} that stores its instances column by column in primitive arrays (see {@link FeatureColumn})
+ * rather than as a collection of {@link FeatureSet} objects. Instances are exposed as lightweight {@link Row} views
+ * over the columns so it can be used anywhere a {@link ClassifiedDataset} is expected, but consumers that detect this
+ * type can read the columns directly and avoid materialising features altogether.
+ *
+ * Projected ({@link #project(Iterable)}), filtered ({@link #select(int[])}, {@link #filter(Predicate)}) and substituted
+ * ({@link #withColumns(Iterable)}) views of a dataset are themselves columnar datasets that share its columns,
+ * identifiers and classifications. Views hold at most an array of the rows they select, so they can be chained
+ * without copying any features, and their rows can still be read straight from the columns.
+ *
+ * A dataset can be read in place from a file it was written to with {@link #open(Path, FeatureSchema, Class, long)},
+ * which must be closed with {@link #close()} once it is no longer needed. The columns of an opened dataset are not held on
+ * the heap, but any consumer that collects its rows still holds an object per row.
+ *
+ * @author andrewhaines
+ *
+ * @param <C> The enum that represents the classifications
+ */
+public class ColumnarClassifiedDataset<C extends Enum<C>> implements ClassifiedDataset<C>, Closeable{
+
+	private static final int MAGIC = 0x434F4C44; // COLD
+	private static final int VERSION = 1;
+
+	private final RowData rowData;
+	private final ColumnarClassifiedDataset<C> parent;
+	private final int[] parentRows; // the ascending rows of the parent each row of a filtered view is
+	private final FeatureSchema schema;
+	private final FeatureColumn[] columns;
+	private final C[] classificationValues;
+	private final List<ClassifiedFeatureSet<C>> instances;
+	private final Map<Identifier, Classification<C>> classifications;
+
+	private ColumnarClassifiedDataset(Identifier[] ids, FeatureSchema schema, FeatureColumn[] columns, C[] classificationValues, short[] classificationOrdinals){
+		this(RowData.index(ids, classificationOrdinals), null, null, schema, columns, classificationValues);
+	}
+
+	private ColumnarClassifiedDataset(RowData rowData, ColumnarClassifiedDataset<C> parent, int[] parentRows, FeatureSchema schema, FeatureColumn[] columns, C[] classificationValues){
+		this.rowData = rowData;
+		this.parent = parent;
+		this.parentRows = parentRows;
+		this.schema = schema;
+		this.columns = columns;
+		this.classificationValues = classificationValues;
+
+		this.instances = new RowList();
+		this.classifications = new ClassificationMap();
+	}
+
+	/**
+	 * Returns the number of instances in this dataset
+	 * @return
+	 */
+	public int size(){
+		return rowData.size;
+	}
+
+	/**
+	 * Returns the column holding all values of the supplied feature type
+	 * @param featureType
+	 * @return
+	 */
+	public FeatureColumn getColumn(Class<? extends Feature<?>> featureType){
+		int slot = schema.getSlot(featureType);
+
+		if (slot == FeatureSchema.NOT_IN_SCHEMA){
+			throw new IllegalArgumentException("a feature of type: "+featureType+" does not exist in this dataset");
+		}
+		return columns[slot];
+	}
+
+	/**
+	 * Returns the column in the supplied slot of this dataset's {@link #getSchema()}
+	 * @param slot
+	 * @return
+	 */
+	public FeatureColumn getColumn(int slot){
+		return columns[slot];
+	}
+
+	public FeatureSchema getSchema(){
+		return schema;
+	}
+
+	public Identifier getId(int row){
+		return rowData.getId(row);
+	}
+
+	/**
+	 * Returns the row index of the supplied instance or -1 if it is not in this dataset
+	 * @param instanceId
+	 * @return
+	 */
+	public int getRowIndex(Identifier instanceId){
+		if (parentRows != null){
+			int parentRow = parent.getRowIndex(instanceId);
+			if (parentRow == -1){
+				return -1;
+			}
+			int row = Arrays.binarySearch(parentRows, parentRow);
+
+			return row < 0? -1 : row;
+		}
+		return rowData.getIndex().get(instanceId);
+	}
+
+	public int getClassificationOrdinal(int row){
+		return rowData.getClassificationOrdinal(row);
+	}
+
+	public C getClassificationValue(int row){
+		return classificationValues[rowData.getClassificationOrdinal(row)];
+	}
+
+	/**
+	 * Returns all possible classification values indexed by ordinal
+	 * @return
+	 */
+	public C[] getClassificationValues(){
+		return classificationValues.clone();
+	}
+
+	/**
+	 * Returns the number of possible classification values without copying them
+	 * @return
+	 */
+	public int getNumClassificationValues(){
+		return classificationValues.length;
+	}
+
+	public Row getRow(int row){
+		return new Row(row);
+	}
+
+	@Override
+	public Row getInstance(Identifier instanceId) {
+		int row = getRowIndex(instanceId);
+
+		if (row == -1){
+			return null;
+		}
+		return new Row(row);
+	}
+
+	@Override
+	public List<ClassifiedFeatureSet<C>> getInstances() {
+		return instances;
+	}
+
+	/**
+	 * Returns a view of this dataset holding only the supplied feature types, in the order given
+	 * @param featureTypes
+	 * @return
+	 * @throws IllegalArgumentException if any of the feature types is not in this dataset
+	 */
+	public ColumnarClassifiedDataset<C> project(Iterable<? extends Class<? extends Feature<?>>> featureTypes){
+		FeatureSchema projectedSchema = new FeatureSchema(featureTypes);
+		FeatureColumn[] projectedColumns = new FeatureColumn[projectedSchema.size()];
+		for (int slot = 0; slot < projectedColumns.length; slot++){
+			projectedColumns[slot] = getColumn(projectedSchema.getFeatureType(slot));
+		}
+		return new ColumnarClassifiedDataset<C>(rowData, parent, parentRows, projectedSchema, projectedColumns, classificationValues);
+	}
+
+	/**
+	 * Returns a view of this dataset in which the columns of the same feature types as the supplied columns are
+	 * replaced by them, such as with a {@link FeatureColumn#substitute(Feature[], int[])} view of the original column.
+	 * Each replacement column must hold a value for every row of this dataset.
+	 * @param replacementColumns
+	 * @return
+	 * @throws IllegalArgumentException if any of the columns is not of a feature type in this dataset
+	 */
+	public ColumnarClassifiedDataset<C> withColumns(Iterable<? extends FeatureColumn> replacementColumns){
+		FeatureColumn[] replacedColumns = columns.clone();
+		for (FeatureColumn column: replacementColumns){
+			int slot = schema.getSlot(column.getFeatureType());
+
+			if (slot == FeatureSchema.NOT_IN_SCHEMA){
+				throw new IllegalArgumentException("a feature of type: "+column.getFeatureType()+" does not exist in this dataset");
+			}
+			replacedColumns[slot] = column;
+		}
+		return new ColumnarClassifiedDataset<C>(rowData, parent, parentRows, schema, replacedColumns, classificationValues);
+	}
+
+	/**
+	 * Returns a view of the supplied rows of this dataset. Row <code>i</code> of the view is row <code>rows[i]</code>
+	 * of this dataset. The view holds its own copy of the identifiers and classification ordinals of the selected rows
+	 * but shares the columns of this dataset.
+	 * @param rows the rows to select in strictly ascending order
+	 * @return
+	 * @throws IllegalArgumentException if the rows are not in strictly ascending order or are not rows of this dataset
+	 */
+	public ColumnarClassifiedDataset<C> select(int[] rows){
+		Identifier[] selectedIds = new Identifier[rows.length];
+		short[] selectedOrdinals = new short[rows.length];
+		for (int i = 0; i < rows.length; i++){
+			if (rows[i] < 0 || rows[i] >= rowData.size || (i > 0 && rows[i] <= rows[i - 1])){
+				throw new IllegalArgumentException("rows must be ascending rows of this dataset of "+rowData.size+" rows but found: "+rows[i]+" at index: "+i);
+			}
+			selectedIds[i] = rowData.getId(rows[i]);
+			selectedOrdinals[i] = (short)rowData.getClassificationOrdinal(rows[i]);
+		}
+		FeatureColumn[] selectedColumns = new FeatureColumn[columns.length];
+		for (int slot = 0; slot < columns.length; slot++){
+			selectedColumns[slot] = columns[slot].select(rows);
+		}
+		return new ColumnarClassifiedDataset<C>(RowData.select(selectedIds, selectedOrdinals, rowData.file), this, rows, schema, selectedColumns, classificationValues);
+	}
+
+	/**
+	 * Returns a view of the rows of this dataset that the predicate applies to. See {@link #select(int[])}.
+	 * @param predicate
+	 * @return
+	 */
+	public ColumnarClassifiedDataset<C> filter(Predicate<? super ClassifiedFeatureSet<C>> predicate){
+		int[] rows = new int[rowData.size];
+		int numRows = 0;
+		for (int row = 0; row < rowData.size; row++){
+			if (predicate.apply(new Row(row))){
+				rows[numRows++] = row;
+			}
+		}
+		return select(Arrays.copyOf(rows, numRows));
+	}
+
+	@Override
+	public Iterable<Class<? extends Feature<?>>> getFeatureTypes() {
+		return schema.getFeatureTypes();
+	}
+
+	@Override
+	public Map<Identifier, Classification<C>> getClassifications() {
+		return classifications;
+	}
+
+	public String toString(){
+		StringBuilder builder = new StringBuilder();
+		for (ClassifiedFeatureSet<C> instance: getInstances()){
+			builder.append(instance);
+			builder.append("\n");
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Converts any {@link ClassifiedDataset} into its columnar form. If the supplied dataset is already columnar it is
+	 * returned as is.
+	 * @param dataset
+	 * @param classificationType
+	 * @return
+	 */
+	public static <C extends Enum<C>> ColumnarClassifiedDataset<C> create(ClassifiedDataset<C> dataset, Class<C> classificationType){
+		if (dataset instanceof ColumnarClassifiedDataset){
+			return (ColumnarClassifiedDataset<C>)dataset;
+		}
+		Builder<C> builder = new Builder<C>(dataset.getFeatureTypes(), classificationType);
+
+		for (ClassifiedFeatureSet<C> instance: dataset.getInstances()){
+			builder.addInstance(instance, instance.getClassification().getValue());
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Writes this dataset to the supplied file so that it can be reloaded with
+	 * {@link #load(Path, FeatureSchema, Class, long)} without parsing the source it was read from. The checksum of that
+	 * source (see {@link ModelFiles#checksum(Path)}) is written with it so that a stale file can be detected. The file is
+	 * written to a temporary file alongside it and then moved into place, so readers never see a partially written file.
+	 * @param file
+	 * @param sourceChecksum
+	 * @throws IOException
+	 * @throws UnsupportedOperationException if any column holds feature instances, is a view or is mapped from a file, or any identifier is not an integer
+	 * identifier created by {@link Identifier#FACTORY}
+	 */
+	public void write(Path file, long sourceChecksum) throws IOException{
+		int[] intIds = new int[rowData.size];
+		for (int row = 0; row < rowData.size; row++){
+			intIds[row] = getIntId(rowData.getId(row));
+		}
+		for (FeatureColumn column: columns){
+			if (!column.isWritable()){
+				throw new UnsupportedOperationException("the column of feature type: "+column.getFeatureType()+" holds feature instances or is a view, which cannot be written");
+			}
+		}
+
+		Path tempFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+		try{
+			DataOutputStream out = ModelFiles.create(tempFile, MAGIC, VERSION);
+			try{
+				out.writeLong(sourceChecksum);
+				ModelFiles.writeClass(out, classificationValues.getClass().getComponentType());
+				out.writeInt(classificationValues.length);
+				out.writeInt(rowData.size);
+				out.writeInt(columns.length);
+				ModelFiles.writeInts(out, intIds);
+				for (int row = 0; row < rowData.size; row++){
+					out.writeShort(rowData.getClassificationOrdinal(row));
+				}
+				for (FeatureColumn column: columns){
+					column.write(out);
+				}
+			} finally{
+				out.close();
+			}
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally{
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	private static int getIntId(Identifier id){
+		if (id instanceof PrimitiveIdentifier && ((PrimitiveIdentifier)id).isInt()){
+			return (int)((PrimitiveIdentifier)id).getValue();
+		}
+		throw new UnsupportedOperationException("only datasets with integer identifiers can be written: "+id);
+	}
+
+	/**
+	 * Loads a dataset written by {@link #write(Path, long)}. The file is memory mapped and each column copied out of
+	 * it in bulk. The loaded dataset uses the supplied schema, which must hold the same feature types in the same order
+	 * as the written dataset.
+	 * @param file
+	 * @param schema
+	 * @param classificationType
+	 * @param sourceChecksum the current checksum of the source the dataset was read from
+	 * @return the dataset or null if it was written from a different version of the source
+	 * @throws IOException if the file is not a dataset of the supplied schema and classification type
+	 */
+	public static <C extends Enum<C>> ColumnarClassifiedDataset<C> load(Path file, FeatureSchema schema, Class<C> classificationType, long sourceChecksum) throws IOException{
+		ByteBuffer buffer = ModelFiles.map(file, MAGIC, VERSION);
+		try{
+			if (buffer.getLong() != sourceChecksum){
+				return null;
+			}
+			C[] classificationValues = readClassificationValues(buffer, file, classificationType);
+			int size = ModelFiles.readLength(buffer, file, 6); // an identifier and classification ordinal per row
+			FeatureColumn[] columns = new FeatureColumn[readNumColumns(buffer, file, schema)];
+			int[] intIds = new int[size];
+			ModelFiles.readInts(buffer, intIds);
+			short[] classificationOrdinals = new short[size];
+			ModelFiles.readShorts(buffer, classificationOrdinals);
+			for (int slot = 0; slot < columns.length; slot++){
+				columns[slot] = checkColumn(FeatureColumn.read(buffer, size), slot, file, schema);
+			}
+
+			Identifier[] ids = new Identifier[size];
+			for (int row = 0; row < size; row++){
+				ids[row] = Identifier.FACTORY.createIdentifier(intIds[row]);
+			}
+			return new ColumnarClassifiedDataset<C>(ids, schema, columns, classificationValues, classificationOrdinals);
+		} catch (BufferUnderflowException e){
+			throw new IOException(file+" is truncated", e);
+		}
+	}
+
+	/**
+	 * Opens a dataset written by {@link #write(Path, long)} without loading it onto the heap. The file is memory mapped
+	 * and the identifiers, classifications and primitive columns of the dataset are read in place from the mapping. Only
+	 * the index used to look up instances by identifier is built on the heap, the first time one is looked up. The opened
+	 * dataset uses the supplied schema, which must hold the same feature types in the same order as the written dataset.
+	 *
+	 * Rows are created as they are iterated, so a single pass over the opened dataset reads the columns without holding
+	 * the rows. Training is not bounded in the same way. A decision tree builder collects a row object per instance into
+	 * the lists of each node, and when presorting it also keeps a sorted list of the rows for each continuous feature, so
+	 * it needs heap in proportion to the number of rows times the number of continuous features. Quantising a continuous
+	 * feature likewise holds its values and the rows of each range on the heap.
+	 *
+	 * The dataset must be closed once it is no longer needed, after which neither it nor any view of it can be read.
+	 * @param file
+	 * @param schema
+	 * @param classificationType
+	 * @param sourceChecksum the current checksum of the source the dataset was read from
+	 * @return the dataset or null if it was written from a different version of the source
+	 * @throws IOException if the file is not a dataset of the supplied schema and classification type
+	 */
+	public static <C extends Enum<C>> ColumnarClassifiedDataset<C> open(Path file, FeatureSchema schema, Class<C> classificationType, long sourceChecksum) throws IOException{
+		MappedFile mappedFile = MappedFile.open(file);
+		boolean opened = false;
+		try{
+			ByteBuffer header = mappedFile.window();
+			ModelFiles.checkHeader(header, file, MAGIC, VERSION);
+			if (header.getLong() != sourceChecksum){
+				return null;
+			}
+			C[] classificationValues = readClassificationValues(header, file, classificationType);
+			int size = header.getInt();
+			FeatureColumn[] columns = new FeatureColumn[readNumColumns(header, file, schema)];
+			mappedFile.skip(header.position());
+
+			MappedFile.Region ids = mappedFile.mapNext(size * 4L);
+			MappedFile.Region classificationOrdinals = mappedFile.mapNext(size * 2L);
+			for (int slot = 0; slot < columns.length; slot++){
+				columns[slot] = checkColumn(FeatureColumn.map(mappedFile, size), slot, file, schema);
+			}
+			opened = true;
+
+			return new ColumnarClassifiedDataset<C>(RowData.map(mappedFile, ids, classificationOrdinals, size), null, null, schema, columns, classificationValues);
+		} catch (BufferUnderflowException e){
+			throw new IOException(file+" is truncated", e);
+		} finally{
+			if (!opened){
+				mappedFile.close();
+			}
+		}
+	}
+
+	/**
+	 * Closes the file that a dataset opened by {@link #open(Path, FeatureSchema, Class, long)} is read from. The file is
+	 * shared with every view of the dataset, so closing the dataset or any of its views closes them all. Datasets held
+	 * on the heap have nothing to close.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (rowData.file != null){
+			rowData.file.close();
+		}
+	}
+
+	private static <C extends Enum<C>> C[] readClassificationValues(ByteBuffer buffer, Path file, Class<C> classificationType) throws IOException{
+		C[] classificationValues = classificationType.getEnumConstants();
+		Class<?> fileClassificationType = ModelFiles.readClass(buffer);
+		int numClassifications = buffer.getInt();
+		if (fileClassificationType != classificationType || numClassifications != classificationValues.length){
+			throw new IOException(file+" holds "+numClassifications+" classifications of "+fileClassificationType+" but expected "+classificationValues.length+" of "+classificationType);
+		}
+		return classificationValues;
+	}
+
+	private static int readNumColumns(ByteBuffer buffer, Path file, FeatureSchema schema) throws IOException{
+		int numColumns = buffer.getInt();
+		if (numColumns != schema.size()){
+			throw new IOException(file+" holds "+numColumns+" columns but the schema has "+schema.size());
+		}
+		return numColumns;
+	}
+
+	private static FeatureColumn checkColumn(FeatureColumn column, int slot, Path file, FeatureSchema schema) throws IOException{
+		if (column.getFeatureType() != schema.getFeatureType(slot)){
+			throw new IOException(file+" holds "+column.getFeatureType()+" in slot "+slot+" but the schema has "+schema.getFeatureType(slot));
+		}
+		return column;
+	}
+
+	/**
+	 * A view of a single row in the dataset. Features are read from the underlying columns on demand.
+	 * @author andrewhaines
+	 *
+	 */
+	public class Row extends ClassifiedFeatureSet<C>{
+
+		private final int row;
+
+		private Row(int row){
+			this.row = row;
+		}
+
+		public int getRow(){
+			return row;
+		}
+
+		public ColumnarClassifiedDataset<C> getDataset(){
+			return ColumnarClassifiedDataset.this;
+		}
+
+		@Override
+		public Classification<C> getClassification() {
+			return new Classification<C>(rowData.getId(row), getClassificationValue(row));
+		}
+
+		@Override
+		public Identifier getId() {
+			return rowData.getId(row);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <T extends Feature<?>> T getFeature(Class<T> featureType) {
+			return (T)getColumn(featureType).getFeature(row);
+		}
+
+		@Override
+		public Feature<?> getFeature(int slot) {
+			return columns[slot].getFeature(row);
+		}
+
+		@Override
+		public Iterable<Class<? extends Feature<?>>> getFeatureTypes() {
+			return schema.getFeatureTypes();
+		}
+
+		@Override
+		public FeatureSchema getSchema() {
+			return schema;
+		}
+
+		@Override
+		public Iterable<Feature<?>> getFeatures() {
+			List<Feature<?>> features = new ArrayList<Feature<?>>(columns.length);
+			for (FeatureColumn column: columns){
+				features.add(column.getFeature(row));
+			}
+			return features;
+		}
+
+		@Override
+		public String toString(){
+			StringBuilder builder = new StringBuilder("(");
+			builder.append(getId());
+			builder.append(")");
+			for (FeatureColumn column: columns){
+				builder.append("{")
+					   .append(column.getFeatureType().getSimpleName())
+					   .append(",")
+					   .append(column.getFeature(row))
+					   .append("} ");
+			}
+			builder.append(" -> ").append(getClassificationValue(row));
+			return builder.toString();
+		}
+	}
+
+	private class RowList extends AbstractList<ClassifiedFeatureSet<C>> implements RandomAccess{
+
+		@Override
+		public ClassifiedFeatureSet<C> get(int index) {
+			if (index < 0 || index >= rowData.size){
+				throw new IndexOutOfBoundsException("index: "+index+", size: "+rowData.size);
+			}
+			return new Row(index);
+		}
+
+		@Override
+		public int size() {
+			return rowData.size;
+		}
+	}
+
+	private class ClassificationMap extends AbstractMap<Identifier, Classification<C>>{
+
+		@Override
+		public Classification<C> get(Object key) {
+			int row = (key instanceof Identifier)? getRowIndex((Identifier)key): -1;
+
+			if (row == -1){
+				return null;
+			}
+			return new Classification<C>(rowData.getId(row), getClassificationValue(row));
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return key instanceof Identifier && getRowIndex((Identifier)key) != -1;
+		}
+
+		@Override
+		public int size() {
+			return rowData.size;
+		}
+
+		@Override
+		public Set<Entry<Identifier, Classification<C>>> entrySet() {
+			return new AbstractSet<Entry<Identifier, Classification<C>>>(){
+
+				@Override
+				public Iterator<Entry<Identifier, Classification<C>>> iterator() {
+					return new Iterator<Entry<Identifier, Classification<C>>>(){
+
+						private int row = 0;
+
+						@Override
+						public boolean hasNext() {
+							return row < rowData.size;
+						}
+
+						@Override
+						public Entry<Identifier, Classification<C>> next() {
+							if (!hasNext()){
+								throw new NoSuchElementException();
+							}
+							Identifier id = rowData.getId(row);
+							Classification<C> classification = new Classification<C>(id, getClassificationValue(row++));
+							return new SimpleImmutableEntry<Identifier, Classification<C>>(id, classification);
+						}
+
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException("dataset is immutable");
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return rowData.size;
+				}
+			};
+		}
+	}
+
+	/*
+	 * the identifiers and classification ordinals of the rows of a dataset, which are shared by its projected and
+	 * substituted views. They are held in arrays or, for a dataset opened from a file, read in place from the file
+	 */
+	private static final class RowData{
+
+		private final int size;
+		private final Identifier[] ids;
+		private final short[] classificationOrdinals;
+		private final MappedFile file; // the file the rows or their columns are read from, if any
+		private final MappedFile.Region idRegion;
+		private final MappedFile.Region classificationRegion;
+		private volatile IdentifierIndex index;
+
+		private RowData(int size, Identifier[] ids, short[] classificationOrdinals, MappedFile file, MappedFile.Region idRegion, MappedFile.Region classificationRegion, IdentifierIndex index){
+			this.size = size;
+			this.ids = ids;
+			this.classificationOrdinals = classificationOrdinals;
+			this.file = file;
+			this.idRegion = idRegion;
+			this.classificationRegion = classificationRegion;
+			this.index = index;
+		}
+
+		/*
+		 * rows held in arrays, indexed up front so that duplicate identifiers are rejected when the dataset is built
+		 */
+		static RowData index(Identifier[] ids, short[] classificationOrdinals){
+			return new RowData(ids.length, ids, classificationOrdinals, null, null, null, IdentifierIndex.index(ids));
+		}
+
+		/*
+		 * the rows of a filtered view, which finds its rows through its parent so is never indexed
+		 */
+		static RowData select(Identifier[] ids, short[] classificationOrdinals, MappedFile file){
+			return new RowData(ids.length, ids, classificationOrdinals, file, null, null, null);
+		}
+
+		/*
+		 * rows read from a mapped file of int identifiers and short classification ordinals, indexed on first lookup
+		 */
+		static RowData map(MappedFile file, MappedFile.Region ids, MappedFile.Region classificationOrdinals, int size){
+			return new RowData(size, null, null, file, ids, classificationOrdinals, null);
+		}
+
+		Identifier getId(int row){
+			if (ids != null){
+				return ids[row];
+			}
+			return Identifier.FACTORY.createIdentifier(idRegion.getInt(row));
+		}
+
+		int getClassificationOrdinal(int row){
+			if (classificationOrdinals != null){
+				return classificationOrdinals[row];
+			}
+			return classificationRegion.getShort(row);
+		}
+
+		IdentifierIndex getIndex(){
+			IdentifierIndex index = this.index;
+			if (index == null){
+				synchronized(this){
+					index = this.index;
+					if (index == null){
+						index = new IdentifierIndex(size);
+						for (int row = 0; row < size; row++){
+							if (index.put(getId(row), row) != IdentifierIndex.NOT_INDEXED){
+								throw new IllegalStateException("duplicate instance id: "+getId(row));
+							}
+						}
+						this.index = index;
+					}
+				}
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Builds a {@link ColumnarClassifiedDataset} a row at a time. Rows can either be added from existing
+	 * {@link FeatureSet} instances using {@link #addInstance(FeatureSet, Enum)} or by appending primitive values
+	 * directly to each {@link #getColumnBuilder(Class)} and then calling {@link #endRow(Identifier, Enum)}.
+	 * @author andrewhaines
+	 *
+	 */
+	public static class Builder<C extends Enum<C>>{
+
+		private final FeatureSchema schema;
+		private final ColumnBuilder[] columns;
+		private final C[] classificationValues;
+		private Identifier[] ids = new Identifier[0];
+		private short[] classificationOrdinals = new short[0];
+		private int size = 0;
+
+		public Builder(Iterable<? extends Class<? extends Feature<?>>> featureTypes, Class<C> classificationType){
+			this(new FeatureSchema(featureTypes), classificationType);
+		}
+
+		public Builder(FeatureSchema schema, Class<C> classificationType){
+			this.schema = schema;
+			this.columns = new ColumnBuilder[schema.size()];
+			for (int slot = 0; slot < columns.length; slot++){
+				columns[slot] = FeatureColumn.builderFor(schema.getFeatureType(slot));
+			}
+			this.classificationValues = classificationType.getEnumConstants();
+		}
+
+		public ColumnBuilder getColumnBuilder(Class<? extends Feature<?>> featureType){
+			int slot = schema.getSlot(featureType);
+
+			if (slot == FeatureSchema.NOT_IN_SCHEMA){
+				throw new IllegalArgumentException("the feature type: "+featureType+" is not valid for this dataset");
+			}
+			return columns[slot];
+		}
+
+		public ColumnBuilder getColumnBuilder(int slot){
+			return columns[slot];
+		}
+
+		public Builder<C> addInstance(FeatureSet instance, C classification){
+			if (instance.getSchema() == schema){
+				for (int slot = 0; slot < columns.length; slot++){
+					columns[slot].append(instance.getFeature(slot));
+				}
+			} else{
+				for (ColumnBuilder column: columns){
+					column.append(instance.getFeature(column.getFeatureType()));
+				}
+			}
+			return endRow(instance.getId(), classification);
+		}
+
+		/**
+		 * Completes a row whose values have been appended directly to the column builders. Every column must have
+		 * had exactly one value appended since the last row was completed.
+		 * @param id
+		 * @param classification
+		 * @return
+		 */
+		public Builder<C> endRow(Identifier id, C classification){
+			for (ColumnBuilder column: columns){
+				if (column.size() != size + 1){
+					throw new IllegalStateException("column: "+column.getFeatureType()+" has "+column.size()+" values but expected "+(size + 1));
+				}
+			}
+			if (ids.length == size){
+				int newCapacity = ColumnBuilder.grow(ids.length, size + 1);
+				ids = Arrays.copyOf(ids, newCapacity);
+				classificationOrdinals = Arrays.copyOf(classificationOrdinals, newCapacity);
+			}
+			ids[size] = id;
+			classificationOrdinals[size] = (short)classification.ordinal();
+			size++;
+			return this;
+		}
+
+		public int size(){
+			return size;
+		}
+
+		public ColumnarClassifiedDataset<C> build(){
+			FeatureColumn[] builtColumns = new FeatureColumn[columns.length];
+			for (int slot = 0; slot < columns.length; slot++){
+				builtColumns[slot] = columns[slot].build();
+			}
+			return new ColumnarClassifiedDataset<C>(Arrays.copyOf(ids, size), schema, builtColumns, classificationValues, Arrays.copyOf(classificationOrdinals, size));
+		}
+	}
+}
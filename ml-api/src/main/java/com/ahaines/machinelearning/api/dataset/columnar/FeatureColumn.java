@@ -0,0 +1,1142 @@
+package com.ahaines.machinelearning.api.dataset.columnar;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.ahaines.machinelearning.api.util.ModelFiles;
+import com.haines.ml.model.ContinuousFeature.DoubleFeature;
+import com.haines.ml.model.ContinuousFeature.IntegerFeature;
+import com.haines.ml.model.ContinuousFeature.LongFeature;
+import com.haines.ml.model.DiscreteFeature;
+import com.haines.ml.model.Feature;
+import com.haines.ml.model.Feature.Features;
+
+/**
+ * All the values of a single feature type in a {@link ColumnarClassifiedDataset}. Values are held as primitive
+ * arrays rather than {@link Feature} instances and {@link Features#MISSING} values are recorded in a bitset. The
+ * columns of a dataset opened from a file read both in place from the file instead.
+ * Consumers that know they are dealing with a column should use the primitive accessors of the subtypes
+ * ({@link NumericColumn#getDouble(int)}, {@link OrdinalColumn#getOrdinal(int)}) rather than {@link #getFeature(int)}
+ * which may have to materialise a new feature instance.
+ *
+ * @author andrewhaines
+ *
+ */
+public abstract class FeatureColumn {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	// the kinds of column that can be written, identifying how the values that follow are stored
+	private static final byte INT_COLUMN = 0;
+	private static final byte LONG_COLUMN = 1;
+	private static final byte DOUBLE_COLUMN = 2;
+	private static final byte BYTE_ORDINAL_COLUMN = 3;
+	private static final byte SHORT_ORDINAL_COLUMN = 4;
+
+	private final Class<? extends Feature<?>> featureType;
+	private final BitSet missing;
+
+	FeatureColumn(Class<? extends Feature<?>> featureType, BitSet missing){
+		this.featureType = featureType;
+		this.missing = missing;
+	}
+
+	public Class<? extends Feature<?>> getFeatureType() {
+		return featureType;
+	}
+
+	public boolean isMissing(int row){
+		return missing.get(row);
+	}
+
+	/**
+	 * Returns the feature at the given row. Note that continuous columns create a new feature instance on each call.
+	 * @param row
+	 * @return
+	 */
+	public Feature<?> getFeature(int row){
+		if (isMissing(row)){
+			return Features.MISSING;
+		}
+		return getPresentFeature(row);
+	}
+
+	protected abstract Feature<?> getPresentFeature(int row);
+
+	/**
+	 * Returns a view of the supplied rows of this column, where row <code>i</code> of the view is row
+	 * <code>rows[i]</code> of this column. The view shares the values of this column and keeps its kind, so the
+	 * primitive accessors of {@link NumericColumn} and {@link OrdinalColumn} remain available. Views cannot be written.
+	 * @param rows
+	 * @return
+	 */
+	public FeatureColumn select(int[] rows){
+		return new SelectedColumn(this, rows);
+	}
+
+	/**
+	 * Returns a view of this column in which the feature of each row is replaced by
+	 * <code>substitutes[substituteIndexes[row]]</code>. Rows with a negative substitute index keep the feature of this
+	 * column. The view cannot be written.
+	 * @param substitutes
+	 * @param substituteIndexes
+	 * @return
+	 */
+	public SubstitutedColumn substitute(Feature<?>[] substitutes, int[] substituteIndexes){
+		return new SubstitutedColumn(this, substitutes, substituteIndexes);
+	}
+
+	/**
+	 * Returns true if this column can be written by {@link #write(DataOutputStream)}
+	 * @return
+	 */
+	boolean isWritable(){
+		return true;
+	}
+
+	/**
+	 * Writes the feature type, missing rows and values of this column so that it can be recreated by
+	 * {@link #read(ByteBuffer, int)}
+	 * @param out
+	 * @throws IOException
+	 * @throws UnsupportedOperationException if the column holds feature instances rather than primitive values or is a
+	 * view of another column
+	 */
+	void write(DataOutputStream out) throws IOException{
+		if (!isWritable()){
+			throw new UnsupportedOperationException("the column of feature type: "+featureType+" cannot be written");
+		}
+		ModelFiles.writeClass(out, featureType);
+		long[] missingWords = missing.toLongArray();
+		out.writeInt(missingWords.length);
+		ModelFiles.writeLongs(out, missingWords);
+		writeValues(out);
+	}
+
+	/**
+	 * Writes the kind of this column followed by its values
+	 * @param out
+	 * @throws IOException
+	 */
+	abstract void writeValues(DataOutputStream out) throws IOException;
+
+	/**
+	 * Reads a column of the supplied number of rows written by {@link #write(DataOutputStream)}
+	 * @param buffer
+	 * @param size
+	 * @return
+	 * @throws IOException if the column cannot be recreated from the current feature type
+	 */
+	static FeatureColumn read(ByteBuffer buffer, int size) throws IOException{
+		@SuppressWarnings("unchecked")
+		Class<? extends Feature<?>> featureType = (Class<? extends Feature<?>>)ModelFiles.readClass(buffer);
+		long[] missingWords = new long[ModelFiles.readLength(buffer, null, 8)];
+		ModelFiles.readLongs(buffer, missingWords);
+		BitSet missing = BitSet.valueOf(missingWords);
+
+		byte kind = buffer.get();
+		switch (kind){
+		case INT_COLUMN:
+			int[] ints = new int[size];
+			ModelFiles.readInts(buffer, ints);
+			return new IntColumn(featureType, missing, getReadConstructor(featureType, Integer.class, int.class), ints);
+		case LONG_COLUMN:
+			long[] longs = new long[size];
+			ModelFiles.readLongs(buffer, longs);
+			return new LongColumn(featureType, missing, getReadConstructor(featureType, Long.class, long.class), longs);
+		case DOUBLE_COLUMN:
+			double[] doubles = new double[size];
+			ModelFiles.readDoubles(buffer, doubles);
+			return new DoubleColumn(featureType, missing, getReadConstructor(featureType, Double.class, double.class), doubles);
+		case BYTE_ORDINAL_COLUMN:
+			checkNumValues(featureType, buffer.getInt());
+			byte[] byteOrdinals = new byte[size];
+			buffer.get(byteOrdinals);
+			return new ByteOrdinalColumn(featureType, missing, byteOrdinals);
+		case SHORT_ORDINAL_COLUMN:
+			checkNumValues(featureType, buffer.getInt());
+			short[] shortOrdinals = new short[size];
+			ModelFiles.readShorts(buffer, shortOrdinals);
+			return new ShortOrdinalColumn(featureType, missing, shortOrdinals);
+		default:
+			throw new IOException("unknown column kind: "+kind+" for feature type: "+featureType);
+		}
+	}
+
+	/**
+	 * Maps a column of the supplied number of rows written by {@link #write(DataOutputStream)} from the current position
+	 * of the file. The values and missing rows of the column are read in place from the file rather than copied onto the
+	 * heap, so the column can only be read until the file is closed. The mapped column cannot be written.
+	 * @param file
+	 * @param size
+	 * @return
+	 * @throws IOException if the column cannot be recreated from the current feature type or the file is truncated
+	 */
+	static FeatureColumn map(MappedFile file, int size) throws IOException{
+		ByteBuffer header = file.window();
+		@SuppressWarnings("unchecked")
+		Class<? extends Feature<?>> featureType = (Class<? extends Feature<?>>)ModelFiles.readClass(header);
+		int numMissingWords = header.getInt();
+		file.skip(header.position());
+		MappedFile.Region missingWords = file.mapNext(numMissingWords * 8L);
+
+		header = file.window();
+		byte kind = header.get();
+		if (kind == BYTE_ORDINAL_COLUMN || kind == SHORT_ORDINAL_COLUMN){
+			checkNumValues(featureType, header.getInt());
+		}
+		file.skip(header.position());
+
+		switch (kind){
+		case INT_COLUMN:
+			return new MappedIntColumn(featureType, missingWords, getReadConstructor(featureType, Integer.class, int.class), file.mapNext(size * 4L));
+		case LONG_COLUMN:
+			return new MappedLongColumn(featureType, missingWords, getReadConstructor(featureType, Long.class, long.class), file.mapNext(size * 8L));
+		case DOUBLE_COLUMN:
+			return new MappedDoubleColumn(featureType, missingWords, getReadConstructor(featureType, Double.class, double.class), file.mapNext(size * 8L));
+		case BYTE_ORDINAL_COLUMN:
+			return new MappedByteOrdinalColumn(featureType, missingWords, file.mapNext(size));
+		case SHORT_ORDINAL_COLUMN:
+			return new MappedShortOrdinalColumn(featureType, missingWords, file.mapNext(size * 2L));
+		default:
+			throw new IOException("unknown column kind: "+kind+" for feature type: "+featureType);
+		}
+	}
+
+	/*
+	 * reads the bit of the row from the words of a bitset written by write. Trailing words without any set bits are not
+	 * written
+	 */
+	private static boolean isMissing(MappedFile.Region missingWords, int row){
+		long word = row >>> 6;
+		if (word >= missingWords.getLength() >>> 3){
+			return false;
+		}
+		return (missingWords.getLong(word) & (1L << row)) != 0;
+	}
+
+	private static Constructor<? extends Feature<?>> getReadConstructor(Class<? extends Feature<?>> featureType, Class<?>... valueTypes) throws IOException{
+		Constructor<? extends Feature<?>> constructor = getConstructor(featureType, valueTypes);
+		if (constructor == null){
+			throw new IOException("the feature type: "+featureType+" can no longer be created from a "+valueTypes[1]);
+		}
+		return constructor;
+	}
+
+	private static void checkNumValues(Class<? extends Feature<?>> featureType, int numValues) throws IOException{
+		if (featureType.getEnumConstants() == null || featureType.getEnumConstants().length != numValues){
+			throw new IOException("the feature type: "+featureType+" no longer has "+numValues+" values");
+		}
+	}
+
+	/**
+	 * Creates a builder appropriate for the supplied feature type. Integer, long and double continuous features
+	 * that expose a public single argument constructor of their value type are stored as primitive arrays, enum
+	 * discrete features are stored as ordinals and everything else falls back to holding the feature instances.
+	 * @param featureType
+	 * @return
+	 */
+	public static ColumnBuilder builderFor(Class<? extends Feature<?>> featureType){
+		if (IntegerFeature.class.isAssignableFrom(featureType)){
+			Constructor<? extends Feature<?>> constructor = getConstructor(featureType, Integer.class, int.class);
+			if (constructor != null){
+				return new IntColumnBuilder(featureType, constructor);
+			}
+		} else if (LongFeature.class.isAssignableFrom(featureType)){
+			Constructor<? extends Feature<?>> constructor = getConstructor(featureType, Long.class, long.class);
+			if (constructor != null){
+				return new LongColumnBuilder(featureType, constructor);
+			}
+		} else if (DoubleFeature.class.isAssignableFrom(featureType)){
+			Constructor<? extends Feature<?>> constructor = getConstructor(featureType, Double.class, double.class);
+			if (constructor != null){
+				return new DoubleColumnBuilder(featureType, constructor);
+			}
+		} else if (DiscreteFeature.class.isAssignableFrom(featureType) && featureType.isEnum()){
+			return new OrdinalColumnBuilder(featureType);
+		}
+		return new ObjectColumnBuilder(featureType);
+	}
+
+	private static Constructor<? extends Feature<?>> getConstructor(Class<? extends Feature<?>> featureType, Class<?>... valueTypes){
+		for (Class<?> valueType: valueTypes){
+			try{
+				Constructor<? extends Feature<?>> constructor = featureType.getConstructor(valueType);
+				constructor.setAccessible(true); // the feature class itself may not be public
+				return constructor;
+			} catch (NoSuchMethodException e){
+				// try the next value type
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * A column of continuous values.
+	 * @author andrewhaines
+	 *
+	 */
+	public static abstract class NumericColumn extends FeatureColumn{
+
+		private final Constructor<? extends Feature<?>> featureConstructor;
+
+		NumericColumn(Class<? extends Feature<?>> featureType, BitSet missing, Constructor<? extends Feature<?>> featureConstructor){
+			super(featureType, missing);
+			this.featureConstructor = featureConstructor;
+		}
+
+		/**
+		 * Returns the value at the given row widened to a double. The result is undefined for missing rows.
+		 * @param row
+		 * @return
+		 */
+		public abstract double getDouble(int row);
+
+		/**
+		 * Returns the value at the given row with the same semantics as {@link Number#intValue()}.
+		 * @param row
+		 * @return
+		 */
+		public abstract int getIntValue(int row);
+
+		protected abstract Number getNumber(int row);
+
+		@Override
+		public NumericColumn select(int[] rows){
+			return new SelectedNumericColumn(this, rows);
+		}
+
+		@Override
+		protected Feature<?> getPresentFeature(int row){
+			try {
+				return featureConstructor.newInstance(getNumber(row));
+			} catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+				throw new IllegalStateException("Unable to create feature of type: "+getFeatureType(), e);
+			}
+		}
+	}
+
+	public static final class IntColumn extends NumericColumn{
+
+		private final int[] values;
+
+		IntColumn(Class<? extends Feature<?>> featureType, BitSet missing, Constructor<? extends Feature<?>> featureConstructor, int[] values){
+			super(featureType, missing, featureConstructor);
+			this.values = values;
+		}
+
+		public int getInt(int row){
+			return values[row];
+		}
+
+		@Override
+		public double getDouble(int row) {
+			return values[row];
+		}
+
+		@Override
+		public int getIntValue(int row) {
+			return values[row];
+		}
+
+		@Override
+		protected Number getNumber(int row) {
+			return values[row];
+		}
+
+		@Override
+		void writeValues(DataOutputStream out) throws IOException {
+			out.writeByte(INT_COLUMN);
+			ModelFiles.writeInts(out, values);
+		}
+	}
+
+	public static final class LongColumn extends NumericColumn{
+
+		private final long[] values;
+
+		LongColumn(Class<? extends Feature<?>> featureType, BitSet missing, Constructor<? extends Feature<?>> featureConstructor, long[] values){
+			super(featureType, missing, featureConstructor);
+			this.values = values;
+		}
+
+		public long getLong(int row){
+			return values[row];
+		}
+
+		@Override
+		public double getDouble(int row) {
+			return values[row];
+		}
+
+		@Override
+		public int getIntValue(int row) {
+			return (int)values[row];
+		}
+
+		@Override
+		protected Number getNumber(int row) {
+			return values[row];
+		}
+
+		@Override
+		void writeValues(DataOutputStream out) throws IOException {
+			out.writeByte(LONG_COLUMN);
+			ModelFiles.writeLongs(out, values);
+		}
+	}
+
+	public static final class DoubleColumn extends NumericColumn{
+
+		private final double[] values;
+
+		DoubleColumn(Class<? extends Feature<?>> featureType, BitSet missing, Constructor<? extends Feature<?>> featureConstructor, double[] values){
+			super(featureType, missing, featureConstructor);
+			this.values = values;
+		}
+
+		@Override
+		public double getDouble(int row) {
+			return values[row];
+		}
+
+		@Override
+		public int getIntValue(int row) {
+			return (int)values[row];
+		}
+
+		@Override
+		protected Number getNumber(int row) {
+			return values[row];
+		}
+
+		@Override
+		void writeValues(DataOutputStream out) throws IOException {
+			out.writeByte(DOUBLE_COLUMN);
+			ModelFiles.writeDoubles(out, values);
+		}
+	}
+
+	/**
+	 * A column of enum based discrete features stored by ordinal.
+	 * @author andrewhaines
+	 *
+	 */
+	public static abstract class OrdinalColumn extends FeatureColumn{
+
+		private final Feature<?>[] values;
+
+		OrdinalColumn(Class<? extends Feature<?>> featureType, BitSet missing){
+			super(featureType, missing);
+			this.values = (Feature<?>[])featureType.getEnumConstants();
+		}
+
+		/**
+		 * Returns the ordinal of the enum at the given row. The result is undefined for missing rows.
+		 * @param row
+		 * @return
+		 */
+		public abstract int getOrdinal(int row);
+
+		/**
+		 * Returns all the possible values of this column indexed by ordinal
+		 * @return
+		 */
+		public Feature<?>[] getValues(){
+			return values;
+		}
+
+		@Override
+		public OrdinalColumn select(int[] rows){
+			return new SelectedOrdinalColumn(this, rows);
+		}
+
+		@Override
+		protected Feature<?> getPresentFeature(int row){
+			return values[getOrdinal(row)];
+		}
+	}
+
+	static final class ByteOrdinalColumn extends OrdinalColumn{
+
+		private final byte[] ordinals;
+
+		ByteOrdinalColumn(Class<? extends Feature<?>> featureType, BitSet missing, byte[] ordinals){
+			super(featureType, missing);
+			this.ordinals = ordinals;
+		}
+
+		@Override
+		public int getOrdinal(int row) {
+			return ordinals[row];
+		}
+
+		@Override
+		void writeValues(DataOutputStream out) throws IOException {
+			out.writeByte(BYTE_ORDINAL_COLUMN);
+			out.writeInt(getValues().length);
+			out.write(ordinals);
+		}
+	}
+
+	static final class ShortOrdinalColumn extends OrdinalColumn{
+
+		private final short[] ordinals;
+
+		ShortOrdinalColumn(Class<? extends Feature<?>> featureType, BitSet missing, short[] ordinals){
+			super(featureType, missing);
+			this.ordinals = ordinals;
+		}
+
+		@Override
+		public int getOrdinal(int row) {
+			return ordinals[row];
+		}
+
+		@Override
+		void writeValues(DataOutputStream out) throws IOException {
+			out.writeByte(SHORT_ORDINAL_COLUMN);
+			out.writeInt(getValues().length);
+			ModelFiles.writeShorts(out, ordinals);
+		}
+	}
+
+	/**
+	 * A fall back column for feature types that have no primitive representation.
+	 * @author andrewhaines
+	 *
+	 */
+	public static final class ObjectColumn extends FeatureColumn{
+
+		private final Feature<?>[] values;
+
+		ObjectColumn(Class<? extends Feature<?>> featureType, BitSet missing, Feature<?>[] values){
+			super(featureType, missing);
+			this.values = values;
+		}
+
+		@Override
+		protected Feature<?> getPresentFeature(int row) {
+			return values[row];
+		}
+
+		@Override
+		boolean isWritable(){
+			return false;
+		}
+
+		@Override
+		void writeValues(DataOutputStream out) throws IOException {
+			throw new UnsupportedOperationException("the column of feature type: "+getFeatureType()+" holds feature instances which cannot be written");
+		}
+	}
+
+	/*
+	 * an int column read in place from a mapped file
+	 */
+	private static final class MappedIntColumn extends NumericColumn{
+
+		private final MappedFile.Region missingWords;
+		private final MappedFile.Region values;
+
+		private MappedIntColumn(Class<? extends Feature<?>> featureType, MappedFile.Region missingWords, Constructor<? extends Feature<?>> featureConstructor, MappedFile.Region values){
+			super(featureType, null, featureConstructor);
+			this.missingWords = missingWords;
+			this.values = values;
+		}
+
+		@Override
+		public boolean isMissing(int row){
+			return FeatureColumn.isMissing(missingWords, row);
+		}
+
+		@Override
+		public double getDouble(int row) {
+			return values.getInt(row);
+		}
+
+		@Override
+		public int getIntValue(int row) {
+			return values.getInt(row);
+		}
+
+		@Override
+		protected Number getNumber(int row) {
+			return values.getInt(row);
+		}
+
+		@Override
+		boolean isWritable(){
+			return false;
+		}
+
+		@Override
+		void writeValues(DataOutputStream out) throws IOException {
+			throw new UnsupportedOperationException("the column of feature type: "+getFeatureType()+" is mapped from a file which cannot be written");
+		}
+	}
+
+	/*
+	 * a long column read in place from a mapped file
+	 */
+	private static final class MappedLongColumn extends NumericColumn{
+
+		private final MappedFile.Region missingWords;
+		private final MappedFile.Region values;
+
+		private MappedLongColumn(Class<? extends Feature<?>> featureType, MappedFile.Region missingWords, Constructor<? extends Feature<?>> featureConstructor, MappedFile.Region values){
+			super(featureType, null, featureConstructor);
+			this.missingWords = missingWords;
+			this.values = values;
+		}
+
+		@Override
+		public boolean isMissing(int row){
+			return FeatureColumn.isMissing(missingWords, row);
+		}
+
+		@Override
+		public double getDouble(int row) {
+			return values.getLong(row);
+		}
+
+		@Override
+		public int getIntValue(int row) {
+			return (int)values.getLong(row);
+		}
+
+		@Override
+		protected Number getNumber(int row) {
+			return values.getLong(row);
+		}
+
+		@Override
+		boolean isWritable(){
+			return false;
+		}
+
+		@Override
+		void writeValues(DataOutputStream out) throws IOException {
+			throw new UnsupportedOperationException("the column of feature type: "+getFeatureType()+" is mapped from a file which cannot be written");
+		}
+	}
+
+	/*
+	 * a double column read in place from a mapped file
+	 */
+	private static final class MappedDoubleColumn extends NumericColumn{
+
+		private final MappedFile.Region missingWords;
+		private final MappedFile.Region values;
+
+		private MappedDoubleColumn(Class<? extends Feature<?>> featureType, MappedFile.Region missingWords, Constructor<? extends Feature<?>> featureConstructor, MappedFile.Region values){
+			super(featureType, null, featureConstructor);
+			this.missingWords = missingWords;
+			this.values = values;
+		}
+
+		@Override
+		public boolean isMissing(int row){
+			return FeatureColumn.isMissing(missingWords, row);
+		}
+
+		@Override
+		public double getDouble(int row) {
+			return values.getDouble(row);
+		}
+
+		@Override
+		public int getIntValue(int row) {
+			return (int)values.getDouble(row);
+		}
+
+		@Override
+		protected Number getNumber(int row) {
+			return values.getDouble(row);
+		}
+
+		@Override
+		boolean isWritable(){
+			return false;
+		}
+
+		@Override
+		void writeValues(DataOutputStream out) throws IOException {
+			throw new UnsupportedOperationException("the column of feature type: "+getFeatureType()+" is mapped from a file which cannot be written");
+		}
+	}
+
+	/*
+	 * an ordinal column of byte ordinals read in place from a mapped file
+	 */
+	private static final class MappedByteOrdinalColumn extends OrdinalColumn{
+
+		private final MappedFile.Region missingWords;
+		private final MappedFile.Region ordinals;
+
+		private MappedByteOrdinalColumn(Class<? extends Feature<?>> featureType, MappedFile.Region missingWords, MappedFile.Region ordinals){
+			super(featureType, null);
+			this.missingWords = missingWords;
+			this.ordinals = ordinals;
+		}
+
+		@Override
+		public boolean isMissing(int row){
+			return FeatureColumn.isMissing(missingWords, row);
+		}
+
+		@Override
+		public int getOrdinal(int row) {
+			return ordinals.getByte(row);
+		}
+
+		@Override
+		boolean isWritable(){
+			return false;
+		}
+
+		@Override
+		void writeValues(DataOutputStream out) throws IOException {
+			throw new UnsupportedOperationException("the column of feature type: "+getFeatureType()+" is mapped from a file which cannot be written");
+		}
+	}
+
+	/*
+	 * an ordinal column of short ordinals read in place from a mapped file
+	 */
+	private static final class MappedShortOrdinalColumn extends OrdinalColumn{
+
+		private final MappedFile.Region missingWords;
+		private final MappedFile.Region ordinals;
+
+		private MappedShortOrdinalColumn(Class<? extends Feature<?>> featureType, MappedFile.Region missingWords, MappedFile.Region ordinals){
+			super(featureType, null);
+			this.missingWords = missingWords;
+			this.ordinals = ordinals;
+		}
+
+		@Override
+		public boolean isMissing(int row){
+			return FeatureColumn.isMissing(missingWords, row);
+		}
+
+		@Override
+		public int getOrdinal(int row) {
+			return ordinals.getShort(row);
+		}
+
+		@Override
+		boolean isWritable(){
+			return false;
+		}
+
+		@Override
+		void writeValues(DataOutputStream out) throws IOException {
+			throw new UnsupportedOperationException("the column of feature type: "+getFeatureType()+" is mapped from a file which cannot be written");
+		}
+	}
+
+	/*
+	 * a view of selected rows of a column of any kind
+	 */
+	private static final class SelectedColumn extends FeatureColumn{
+
+		private final FeatureColumn column;
+		private final int[] rows;
+
+		private SelectedColumn(FeatureColumn column, int[] rows){
+			super(column.getFeatureType(), null);
+			this.column = column;
+			this.rows = rows;
+		}
+
+		@Override
+		public boolean isMissing(int row){
+			return column.isMissing(rows[row]);
+		}
+
+		@Override
+		protected Feature<?> getPresentFeature(int row) {
+			return column.getPresentFeature(rows[row]);
+		}
+
+		@Override
+		boolean isWritable(){
+			return false;
+		}
+
+		@Override
+		void writeValues(DataOutputStream out) throws IOException {
+			throw new UnsupportedOperationException("the column of feature type: "+getFeatureType()+" is a view which cannot be written");
+		}
+	}
+
+	/*
+	 * a view of selected rows of a numeric column
+	 */
+	private static final class SelectedNumericColumn extends NumericColumn{
+
+		private final NumericColumn column;
+		private final int[] rows;
+
+		private SelectedNumericColumn(NumericColumn column, int[] rows){
+			super(column.getFeatureType(), null, column.featureConstructor);
+			this.column = column;
+			this.rows = rows;
+		}
+
+		@Override
+		public boolean isMissing(int row){
+			return column.isMissing(rows[row]);
+		}
+
+		@Override
+		public double getDouble(int row) {
+			return column.getDouble(rows[row]);
+		}
+
+		@Override
+		public int getIntValue(int row) {
+			return column.getIntValue(rows[row]);
+		}
+
+		@Override
+		protected Number getNumber(int row) {
+			return column.getNumber(rows[row]);
+		}
+
+		@Override
+		boolean isWritable(){
+			return false;
+		}
+
+		@Override
+		void writeValues(DataOutputStream out) throws IOException {
+			throw new UnsupportedOperationException("the column of feature type: "+getFeatureType()+" is a view which cannot be written");
+		}
+	}
+
+	/*
+	 * a view of selected rows of an ordinal column
+	 */
+	private static final class SelectedOrdinalColumn extends OrdinalColumn{
+
+		private final OrdinalColumn column;
+		private final int[] rows;
+
+		private SelectedOrdinalColumn(OrdinalColumn column, int[] rows){
+			super(column.getFeatureType(), null);
+			this.column = column;
+			this.rows = rows;
+		}
+
+		@Override
+		public boolean isMissing(int row){
+			return column.isMissing(rows[row]);
+		}
+
+		@Override
+		public int getOrdinal(int row) {
+			return column.getOrdinal(rows[row]);
+		}
+
+		@Override
+		boolean isWritable(){
+			return false;
+		}
+
+		@Override
+		void writeValues(DataOutputStream out) throws IOException {
+			throw new UnsupportedOperationException("the column of feature type: "+getFeatureType()+" is a view which cannot be written");
+		}
+	}
+
+	/**
+	 * A view of a column in which some rows hold a substitute feature, such as the range a continuous value was
+	 * quantised into. The substitutes are shared between rows, so substituting a feature creates no feature instances.
+	 * @author andrewhaines
+	 *
+	 */
+	public static final class SubstitutedColumn extends FeatureColumn{
+
+		private final FeatureColumn column;
+		private final Feature<?>[] substitutes;
+		private final int[] substituteIndexes;
+
+		private SubstitutedColumn(FeatureColumn column, Feature<?>[] substitutes, int[] substituteIndexes){
+			super(column.getFeatureType(), null);
+			this.column = column;
+			this.substitutes = substitutes;
+			this.substituteIndexes = substituteIndexes;
+		}
+
+		/**
+		 * Returns the index of the substitute of the row, or a negative number if the row keeps its original feature
+		 * @param row
+		 * @return
+		 */
+		public int getSubstituteIndex(int row){
+			return substituteIndexes[row];
+		}
+
+		/**
+		 * Returns the column whose features are substituted
+		 * @return
+		 */
+		public FeatureColumn getOriginalColumn(){
+			return column;
+		}
+
+		@Override
+		public boolean isMissing(int row){
+			return substituteIndexes[row] < 0 && column.isMissing(row);
+		}
+
+		@Override
+		protected Feature<?> getPresentFeature(int row) {
+			int substituteIndex = substituteIndexes[row];
+			if (substituteIndex < 0){
+				return column.getPresentFeature(row);
+			}
+			return substitutes[substituteIndex];
+		}
+
+		@Override
+		boolean isWritable(){
+			return false;
+		}
+
+		@Override
+		void writeValues(DataOutputStream out) throws IOException {
+			throw new UnsupportedOperationException("the column of feature type: "+getFeatureType()+" is a view which cannot be written");
+		}
+	}
+
+	/**
+	 * Accumulates the values of a column a row at a time. Each row must be appended exactly once, either as a
+	 * {@link Feature} or using the primitive append method of the concrete builder.
+	 * @author andrewhaines
+	 *
+	 */
+	public static abstract class ColumnBuilder{
+
+		private final Class<? extends Feature<?>> featureType;
+		private final BitSet missing = new BitSet();
+		private int size = 0;
+
+		private ColumnBuilder(Class<? extends Feature<?>> featureType){
+			this.featureType = featureType;
+		}
+
+		public Class<? extends Feature<?>> getFeatureType() {
+			return featureType;
+		}
+
+		public int size(){
+			return size;
+		}
+
+		public void appendMissing(){
+			ensureCapacity(size + 1);
+			missing.set(size++);
+		}
+
+		public void append(Feature<?> feature){
+			if (feature == Features.MISSING){
+				appendMissing();
+			} else{
+				ensureCapacity(size + 1);
+				set(size++, feature);
+			}
+		}
+
+		int nextRow(){
+			ensureCapacity(size + 1);
+			return size++;
+		}
+
+		BitSet getMissing(){
+			return missing;
+		}
+
+		static int grow(int currentCapacity, int minCapacity){
+			return Math.max(minCapacity, Math.max(DEFAULT_CAPACITY, currentCapacity + (currentCapacity >> 1)));
+		}
+
+		protected abstract void ensureCapacity(int capacity);
+
+		protected abstract void set(int row, Feature<?> feature);
+
+		public abstract FeatureColumn build();
+	}
+
+	public static final class IntColumnBuilder extends ColumnBuilder{
+
+		private final Constructor<? extends Feature<?>> featureConstructor;
+		private int[] values = new int[0];
+
+		private IntColumnBuilder(Class<? extends Feature<?>> featureType, Constructor<? extends Feature<?>> featureConstructor){
+			super(featureType);
+			this.featureConstructor = featureConstructor;
+		}
+
+		public void appendInt(int value){
+			int row = nextRow();
+			values[row] = value;
+		}
+
+		@Override
+		protected void ensureCapacity(int capacity) {
+			if (values.length < capacity){
+				values = Arrays.copyOf(values, grow(values.length, capacity));
+			}
+		}
+
+		@Override
+		protected void set(int row, Feature<?> feature) {
+			values[row] = ((Number)feature.getValue()).intValue();
+		}
+
+		@Override
+		public FeatureColumn build() {
+			return new IntColumn(getFeatureType(), getMissing(), featureConstructor, Arrays.copyOf(values, size()));
+		}
+	}
+
+	public static final class LongColumnBuilder extends ColumnBuilder{
+
+		private final Constructor<? extends Feature<?>> featureConstructor;
+		private long[] values = new long[0];
+
+		private LongColumnBuilder(Class<? extends Feature<?>> featureType, Constructor<? extends Feature<?>> featureConstructor){
+			super(featureType);
+			this.featureConstructor = featureConstructor;
+		}
+
+		public void appendLong(long value){
+			int row = nextRow();
+			values[row] = value;
+		}
+
+		@Override
+		protected void ensureCapacity(int capacity) {
+			if (values.length < capacity){
+				values = Arrays.copyOf(values, grow(values.length, capacity));
+			}
+		}
+
+		@Override
+		protected void set(int row, Feature<?> feature) {
+			values[row] = ((Number)feature.getValue()).longValue();
+		}
+
+		@Override
+		public FeatureColumn build() {
+			return new LongColumn(getFeatureType(), getMissing(), featureConstructor, Arrays.copyOf(values, size()));
+		}
+	}
+
+	public static final class DoubleColumnBuilder extends ColumnBuilder{
+
+		private final Constructor<? extends Feature<?>> featureConstructor;
+		private double[] values = new double[0];
+
+		private DoubleColumnBuilder(Class<? extends Feature<?>> featureType, Constructor<? extends Feature<?>> featureConstructor){
+			super(featureType);
+			this.featureConstructor = featureConstructor;
+		}
+
+		public void appendDouble(double value){
+			int row = nextRow();
+			values[row] = value;
+		}
+
+		@Override
+		protected void ensureCapacity(int capacity) {
+			if (values.length < capacity){
+				values = Arrays.copyOf(values, grow(values.length, capacity));
+			}
+		}
+
+		@Override
+		protected void set(int row, Feature<?> feature) {
+			values[row] = ((Number)feature.getValue()).doubleValue();
+		}
+
+		@Override
+		public FeatureColumn build() {
+			return new DoubleColumn(getFeatureType(), getMissing(), featureConstructor, Arrays.copyOf(values, size()));
+		}
+	}
+
+	public static final class OrdinalColumnBuilder extends ColumnBuilder{
+
+		private final int numValues;
+		private short[] ordinals = new short[0];
+
+		private OrdinalColumnBuilder(Class<? extends Feature<?>> featureType){
+			super(featureType);
+			this.numValues = featureType.getEnumConstants().length;
+		}
+
+		public void appendOrdinal(int ordinal){
+			int row = nextRow();
+			ordinals[row] = (short)ordinal;
+		}
+
+		@Override
+		protected void ensureCapacity(int capacity) {
+			if (ordinals.length < capacity){
+				ordinals = Arrays.copyOf(ordinals, grow(ordinals.length, capacity));
+			}
+		}
+
+		@Override
+		protected void set(int row, Feature<?> feature) {
+			ordinals[row] = (short)((Enum<?>)feature).ordinal();
+		}
+
+		@Override
+		public FeatureColumn build() {
+			if (numValues <= Byte.MAX_VALUE){
+				byte[] byteOrdinals = new byte[size()];
+				for (int i = 0; i < byteOrdinals.length; i++){
+					byteOrdinals[i] = (byte)ordinals[i];
+				}
+				return new ByteOrdinalColumn(getFeatureType(), getMissing(), byteOrdinals);
+			}
+			return new ShortOrdinalColumn(getFeatureType(), getMissing(), Arrays.copyOf(ordinals, size()));
+		}
+	}
+
+	public static final class ObjectColumnBuilder extends ColumnBuilder{
+
+		private Feature<?>[] values = new Feature<?>[0];
+
+		private ObjectColumnBuilder(Class<? extends Feature<?>> featureType){
+			super(featureType);
+		}
+
+		@Override
+		protected void ensureCapacity(int capacity) {
+			if (values.length < capacity){
+				values = Arrays.copyOf(values, grow(values.length, capacity));
+			}
+		}
+
+		@Override
+		protected void set(int row, Feature<?> feature) {
+			values[row] = feature;
+		}
+
+		@Override
+		public FeatureColumn build() {
+			return new ObjectColumn(getFeatureType(), getMissing(), Arrays.copyOf(values, size()));
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package com.ahaines.machinelearning.api.dataset.columnar;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A file whose contents are read in place through memory mappings rather than copied onto the heap, so that files
+ * larger than the heap can be read. A single mapping can address at most 2GB so each region of the file is mapped in
+ * segments. Segments are a power of two in size and a multiple of 8 bytes from the start of their region, so no value
+ * of a region spans two segments. The file is read sequentially when it is opened, mapping each region as it is
+ * reached.
+ *
+ * Closing the file closes its channel and invalidates its regions, after which reading any of them throws an
+ * {@link IllegalStateException}. The memory of the mappings is released by the JVM once they have been garbage
+ * collected. A file must not be closed whilst another thread is reading it.
+ * @author andrewhaines
+ *
+ */
+final class MappedFile implements Closeable{
+
+	static final int DEFAULT_SEGMENT_SHIFT = 30; // 1GB segments
+	private static final int MIN_SEGMENT_SHIFT = 3;
+	private static final int WINDOW_SIZE = 64 * 1024;
+
+	private final Path file;
+	private final FileChannel channel;
+	private final int segmentShift;
+	private final long size;
+	private final List<Region> regions = new ArrayList<Region>();
+	private long position = 0;
+	private boolean closed = false;
+
+	private MappedFile(Path file, FileChannel channel, int segmentShift) throws IOException{
+		this.file = file;
+		this.channel = channel;
+		this.segmentShift = segmentShift;
+		this.size = channel.size();
+	}
+
+	static MappedFile open(Path file) throws IOException{
+		return open(file, DEFAULT_SEGMENT_SHIFT);
+	}
+
+	/**
+	 * Opens the file, mapping its regions in segments of <code>1 << segmentShift</code> bytes
+	 * @param file
+	 * @param segmentShift
+	 * @return
+	 * @throws IOException
+	 */
+	static MappedFile open(Path file, int segmentShift) throws IOException{
+		if (segmentShift < MIN_SEGMENT_SHIFT || segmentShift > DEFAULT_SEGMENT_SHIFT){
+			throw new IllegalArgumentException("segmentShift must be between "+MIN_SEGMENT_SHIFT+" and "+DEFAULT_SEGMENT_SHIFT+": "+segmentShift);
+		}
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try{
+			return new MappedFile(file, channel, segmentShift);
+		} catch (IOException e){
+			channel.close();
+			throw e;
+		}
+	}
+
+	Path getFile(){
+		return file;
+	}
+
+	long getPosition(){
+		return position;
+	}
+
+	/**
+	 * Maps up to 64KB of the file from the current position, for reading a header of unknown length. The current
+	 * position is not moved, so {@link #skip(long)} should be called with the number of bytes read from the window.
+	 * @return
+	 * @throws IOException
+	 */
+	synchronized ByteBuffer window() throws IOException{
+		checkOpen();
+		return channel.map(MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+	}
+
+	/**
+	 * Moves the current position on by the supplied number of bytes
+	 * @param numBytes
+	 * @throws IOException if the file ends before the new position
+	 */
+	synchronized void skip(long numBytes) throws IOException{
+		checkRemaining(numBytes);
+		position += numBytes;
+	}
+
+	/**
+	 * Maps the supplied number of bytes from the current position and moves the current position past them
+	 * @param length
+	 * @return
+	 * @throws IOException if the file ends before the region does
+	 */
+	synchronized Region mapNext(long length) throws IOException{
+		checkOpen();
+		checkRemaining(length);
+		long segmentSize = 1L << segmentShift;
+		ByteBuffer[] segments = new ByteBuffer[(int)((length + segmentSize - 1) >>> segmentShift)];
+		for (int segment = 0; segment < segments.length; segment++){
+			long offset = (long)segment << segmentShift;
+			segments[segment] = channel.map(MapMode.READ_ONLY, position + offset, Math.min(segmentSize, length - offset));
+		}
+		Region region = new Region(segments, segmentShift, length);
+		regions.add(region);
+		position += length;
+
+		return region;
+	}
+
+	@Override
+	public synchronized void close() throws IOException{
+		if (!closed){
+			closed = true;
+			for (Region region: regions){
+				region.invalidate();
+			}
+			regions.clear();
+			channel.close();
+		}
+	}
+
+	private void checkOpen(){
+		if (closed){
+			throw new IllegalStateException(file+" has been closed");
+		}
+	}
+
+	private void checkRemaining(long numBytes) throws IOException{
+		if (numBytes < 0 || numBytes > size - position){
+			throw new IOException(file+" is truncated: "+numBytes+" bytes were expected at position "+position+" of "+size);
+		}
+	}
+
+	/**
+	 * A mapped region of the file holding values of a single width. Values are read by their index in the region.
+	 * @author andrewhaines
+	 *
+	 */
+	static final class Region{
+
+		private final int segmentShift;
+		private final long segmentMask;
+		private final long length;
+		private ByteBuffer[] segments; // null once the file is closed
+
+		private Region(ByteBuffer[] segments, int segmentShift, long length){
+			this.segments = segments;
+			this.segmentShift = segmentShift;
+			this.segmentMask = (1L << segmentShift) - 1;
+			this.length = length;
+		}
+
+		/**
+		 * Returns the length of the region in bytes
+		 * @return
+		 */
+		long getLength(){
+			return length;
+		}
+
+		byte getByte(long index){
+			return getSegment(index).get((int)(index & segmentMask));
+		}
+
+		short getShort(long index){
+			long offset = index << 1;
+			return getSegment(offset).getShort((int)(offset & segmentMask));
+		}
+
+		int getInt(long index){
+			long offset = index << 2;
+			return getSegment(offset).getInt((int)(offset & segmentMask));
+		}
+
+		long getLong(long index){
+			long offset = index << 3;
+			return getSegment(offset).getLong((int)(offset & segmentMask));
+		}
+
+		double getDouble(long index){
+			long offset = index << 3;
+			return getSegment(offset).getDouble((int)(offset & segmentMask));
+		}
+
+		private ByteBuffer getSegment(long offset){
+			ByteBuffer[] segments = this.segments;
+			if (segments == null){
+				throw new IllegalStateException("the mapped file has been closed");
+			}
+			return segments[(int)(offset >>> segmentShift)];
+		}
+
+		private void invalidate(){
+			segments = null;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package com.ahaines.machinelearning.api.dataset.quantiser;
+
+import java.util.Arrays;
+
+/**
+ * The bins a {@link ColumnQuantiser} divided a column into. Each bin has a lower bound and an upper bound, where the
+ * upper bound of the last bin is inclusive and the others are exclusive, in the same way as the {@link RangeFeature}s of
+ * {@link ContinuousFeatureQuantisers}. The rows reported in each bin are held contiguously in one array, in the order
+ * the quantiser reported them, with the rows of bin <code>b</code> found at the indexes from {@link #getBinStart(int)}
+ * up to {@link #getBinEnd(int)}. A row is normally reported in exactly one bin, but the strategies are free to leave a
+ * row out of every bin.
+ *
+ * @author andrewhaines
+ *
+ */
+public final class ColumnQuantisation {
+
+	private final double[] lowerBounds;
+	private final double[] upperBounds;
+	private final int[] binStarts; // one longer than the number of bins
+	private final int[] rows;
+
+	private ColumnQuantisation(double[] lowerBounds, double[] upperBounds, int[] binStarts, int[] rows){
+		this.lowerBounds = lowerBounds;
+		this.upperBounds = upperBounds;
+		this.binStarts = binStarts;
+		this.rows = rows;
+	}
+
+	public int getNumBins(){
+		return lowerBounds.length;
+	}
+
+	public double getLowerBound(int bin){
+		return lowerBounds[bin];
+	}
+
+	public double getUpperBound(int bin){
+		return upperBounds[bin];
+	}
+
+	/**
+	 * Returns true if the upper bound of the bin is part of it, which is only the case for the last bin
+	 * @param bin
+	 * @return
+	 */
+	public boolean isUpperBoundInclusive(int bin){
+		return bin == lowerBounds.length - 1;
+	}
+
+	/**
+	 * Returns the index of the first row of the bin in {@link #getRow(int)}
+	 * @param bin
+	 * @return
+	 */
+	public int getBinStart(int bin){
+		return binStarts[bin];
+	}
+
+	/**
+	 * Returns the index after the last row of the bin in {@link #getRow(int)}
+	 * @param bin
+	 * @return
+	 */
+	public int getBinEnd(int bin){
+		return binStarts[bin + 1];
+	}
+
+	public int getRow(int index){
+		return rows[index];
+	}
+
+	/**
+	 * Collects the bins of a quantisation in the order they are determined. Rows added belong to the most recently
+	 * started bin.
+	 */
+	static final class Builder{
+
+		private double[] lowerBounds = new double[4];
+		private double[] upperBounds = new double[4];
+		private int[] binStarts = new int[5];
+		private int[] rows;
+		private int numBins = 0;
+		private int numRows = 0;
+
+		Builder(int expectedRows){
+			this.rows = new int[expectedRows];
+		}
+
+		Builder startBin(double lowerBound, double upperBound){
+			if (numBins == lowerBounds.length){
+				lowerBounds = Arrays.copyOf(lowerBounds, numBins * 2);
+				upperBounds = Arrays.copyOf(upperBounds, numBins * 2);
+				binStarts = Arrays.copyOf(binStarts, numBins * 2 + 1);
+			}
+			lowerBounds[numBins] = lowerBound;
+			upperBounds[numBins] = upperBound;
+			binStarts[numBins] = numRows;
+			numBins++;
+
+			return this;
+		}
+
+		void addRow(int row){
+			if (numRows == rows.length){
+				rows = Arrays.copyOf(rows, Math.max(1, numRows * 2));
+			}
+			rows[numRows++] = row;
+		}
+
+		ColumnQuantisation build(){
+			binStarts[numBins] = numRows;
+
+			return new ColumnQuantisation(Arrays.copyOf(lowerBounds, numBins), Arrays.copyOf(upperBounds, numBins), Arrays.copyOf(binStarts, numBins + 1), (numRows == rows.length)? rows: Arrays.copyOf(rows, numRows));
+		}
+	}
+}
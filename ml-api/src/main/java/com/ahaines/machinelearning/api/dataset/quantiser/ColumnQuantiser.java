@@ -0,0 +1,101 @@
+package com.ahaines.machinelearning.api.dataset.quantiser;
+
+/**
+ * Quantises a continuous feature held as a primitive column rather than as feature objects. The values of the feature
+ * and the classification ordinals of the instances are supplied as parallel arrays indexed by row, and the bins are
+ * returned as a {@link ColumnQuantisation} holding the edges of each bin and the rows reported in it, so no feature is
+ * boxed and no iterable is built per bin. Use {@link ContinuousFeatureQuantisers#getColumnQuantiserAdapter(ColumnQuantiser)}
+ * to use a column quantiser where a {@link ContinuousFeatureQuantiser} is expected.
+ *
+ * @author andrewhaines
+ *
+ */
+public interface ColumnQuantiser {
+
+	/**
+	 * Quantises the first <code>size</code> rows of the column
+	 * @param values the value of the feature of each row
+	 * @param valueType the type of number the feature holds, which determines how computed bin edges are cast
+	 * @param classOrdinals the ordinal of the classification of each row
+	 * @param size the number of rows to quantise, which must be at least 1
+	 * @return
+	 */
+	ColumnQuantisation quantise(double[] values, ValueType valueType, int[] classOrdinals, int size);
+
+	/**
+	 * The type of number held by a continuous feature. Values and edges are held as doubles, with each type casting and
+	 * bounding them as its {@link com.haines.ml.util.NumberConverter} does, so bins match those computed on the feature
+	 * objects. Long values beyond 2^53 lose precision.
+	 */
+	public static enum ValueType {
+		INT(Integer.MIN_VALUE, Integer.MAX_VALUE){
+			@Override
+			public double cast(double value) {
+				return (int)value;
+			}
+		},
+		LONG(Long.MIN_VALUE, Long.MAX_VALUE){
+			@Override
+			public double cast(double value) {
+				return (long)value;
+			}
+
+			@Override
+			public int intValue(double value) {
+				return (int)(long)value;
+			}
+		},
+		DOUBLE(Double.MIN_VALUE, Double.MAX_VALUE){
+			@Override
+			public double cast(double value) {
+				return value;
+			}
+		};
+
+		private final double minPossibleValue;
+		private final double maxPossibleValue;
+
+		private ValueType(double minPossibleValue, double maxPossibleValue){
+			this.minPossibleValue = minPossibleValue;
+			this.maxPossibleValue = maxPossibleValue;
+		}
+
+		/**
+		 * Returns the value cast to this type, as {@link com.haines.ml.util.NumberConverter#castToType(Number)} does
+		 * @param value
+		 * @return
+		 */
+		public abstract double cast(double value);
+
+		/**
+		 * Returns the value with the semantics of {@link Number#intValue()} of this type
+		 * @param value
+		 * @return
+		 */
+		public int intValue(double value){
+			return (int)value;
+		}
+
+		public double getMinPossibleValue() {
+			return minPossibleValue;
+		}
+
+		public double getMaxPossibleValue() {
+			return maxPossibleValue;
+		}
+
+		/**
+		 * Returns the type of the supplied value
+		 * @param value
+		 * @return
+		 */
+		public static ValueType of(Number value){
+			if (value instanceof Integer || value instanceof Short || value instanceof Byte){
+				return INT;
+			} else if (value instanceof Long){
+				return LONG;
+			}
+			return DOUBLE;
+		}
+	}
+}
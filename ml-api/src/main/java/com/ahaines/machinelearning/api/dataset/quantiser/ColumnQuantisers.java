@@ -0,0 +1,222 @@
+package com.ahaines.machinelearning.api.dataset.quantiser;
+
+import java.util.Arrays;
+
+import com.ahaines.machinelearning.api.dataset.quantiser.ColumnQuantiser.ValueType;
+
+/**
+ * The {@link ColumnQuantiser} implementations of the strategies offered by {@link ContinuousFeatureQuantisers}. Each
+ * determines the same bins, and reports the same rows in each bin in the same order, as the strategy does on the feature
+ * objects. The sorting strategies order the rows with a stable sort of the values, which is skipped when the values are
+ * already in order.
+ *
+ * @author andrewhaines
+ *
+ */
+public class ColumnQuantisers {
+
+	/**
+	 * Splits the column into values below the average and values at or above it. Rows are reported in column order.
+	 * @return
+	 */
+	public static ColumnQuantiser getAveragePivotQuantiser(){
+		return new ColumnQuantiser(){
+
+			@Override
+			public ColumnQuantisation quantise(double[] values, ValueType valueType, int[] classOrdinals, int size) {
+				double sum = 0;
+				for (int row = 0; row < size; row++){
+					sum += values[row];
+				}
+				double average = sum / size;
+				double pivot = valueType.cast(average);
+
+				ColumnQuantisation.Builder builder = new ColumnQuantisation.Builder(size);
+				int[] rowsAbove = new int[size];
+				int numRowsAbove = 0;
+
+				builder.startBin(valueType.getMinPossibleValue(), pivot);
+				for (int row = 0; row < size; row++){
+					if (valueType.intValue(values[row]) < average){
+						builder.addRow(row);
+					} else{
+						rowsAbove[numRowsAbove++] = row;
+					}
+				}
+				builder.startBin(pivot, valueType.getMaxPossibleValue());
+				for (int i = 0; i < numRowsAbove; i++){
+					builder.addRow(rowsAbove[i]);
+				}
+				return builder.build();
+			}
+		};
+	}
+
+	/**
+	 * Walks the rows in value order, starting a new bin each time the classification changes at a new value. Rows are
+	 * reported in value order.
+	 * @return
+	 */
+	public static ColumnQuantiser getClusteredQuantiser(){
+		return new ColumnQuantiser(){
+
+			@Override
+			public ColumnQuantisation quantise(double[] values, ValueType valueType, int[] classOrdinals, int size) {
+				int[] sortedRows = sortRows(values, size);
+				ColumnQuantisation.Builder builder = new ColumnQuantisation.Builder(size);
+
+				/*
+				 * the rows of the current bin are only known to be complete once the next bin starts, and the edges of a
+				 * bin are given when it starts, so the start of each bin is found first and the rows added afterwards
+				 */
+				double[] binLowerBounds = new double[8];
+				int[] binFirstIndexes = new int[8];
+				int numBins = 0;
+
+				double min = valueType.getMinPossibleValue();
+				double lastRecord = values[sortedRows[0]];
+				int lastClassification = classOrdinals[sortedRows[0]];
+				binLowerBounds[numBins] = min;
+				binFirstIndexes[numBins++] = 0;
+				for (int i = 1; i < size; i++){
+					int row = sortedRows[i];
+					double newRecord = values[row];
+					if (classOrdinals[row] != lastClassification && Double.compare(lastRecord, newRecord) != 0){
+						lastClassification = classOrdinals[row];
+						if (numBins == binLowerBounds.length){
+							binLowerBounds = Arrays.copyOf(binLowerBounds, numBins * 2);
+							binFirstIndexes = Arrays.copyOf(binFirstIndexes, numBins * 2);
+						}
+						binLowerBounds[numBins] = newRecord;
+						binFirstIndexes[numBins++] = i;
+						lastRecord = newRecord;
+					}
+				}
+
+				for (int bin = 0; bin < numBins; bin++){
+					boolean isLast = bin == numBins - 1;
+					builder.startBin(binLowerBounds[bin], isLast? valueType.getMaxPossibleValue(): binLowerBounds[bin + 1]);
+					int end = isLast? size: binFirstIndexes[bin + 1];
+					for (int i = binFirstIndexes[bin]; i < end; i++){
+						builder.addRow(sortedRows[i]);
+					}
+				}
+				return builder.build();
+			}
+		};
+	}
+
+	/**
+	 * Splits the range of values into buckets of equal width, with a bucket for the values at or below the minimum plus
+	 * one and a bucket for the values at or above the maximum. Rows are reported in value order except for those of the
+	 * last bucket, which are reported from the largest value down.
+	 * @param numBuckets
+	 * @return
+	 */
+	public static ColumnQuantiser getConstantBucketQuantiser(final int numBuckets){
+		return new ColumnQuantiser(){
+
+			@Override
+			public ColumnQuantisation quantise(double[] values, ValueType valueType, int[] classOrdinals, int size) {
+				int[] sortedRows = sortRows(values, size);
+				ColumnQuantisation.Builder builder = new ColumnQuantisation.Builder(size);
+
+				double minValue = valueType.cast(values[sortedRows[0]] + 1);
+				double maxValue = values[sortedRows[size - 1]];
+
+				if (Double.compare(minValue, maxValue) >= 0){
+					// there is no range to split as min > max. Just create a single range for the entire natural value of numbers
+					builder.startBin(valueType.getMinPossibleValue(), valueType.getMaxPossibleValue());
+					for (int i = 0; i < size; i++){
+						builder.addRow(sortedRows[i]);
+					}
+					return builder.build();
+				}
+
+				builder.startBin(valueType.getMinPossibleValue(), minValue);
+				int index = 0;
+				while (index < size && Double.compare(values[sortedRows[index]], minValue) <= 0){
+					builder.addRow(sortedRows[index++]);
+				}
+
+				// inbetween bands
+
+				int numRangeBuckets = Math.max(1, numBuckets - 2); // subtract the 2 extremity bounds, keeping at least 1 range bucket
+				double range = (maxValue - minValue) / numRangeBuckets;
+
+				for (int i = 0; i < numRangeBuckets; i++){
+					double lowerBoundRange = range * i + minValue;
+					double typedLowerBound = valueType.cast(lowerBoundRange);
+					double typedUpperBound = valueType.cast(lowerBoundRange + range);
+
+					builder.startBin(typedLowerBound, typedUpperBound);
+					int current = index;
+					while (current < size && Double.compare(values[sortedRows[current]], typedLowerBound) < 0){
+						current++; // values between the previous bucket and this one are in no bucket
+					}
+					while (current < size && Double.compare(values[sortedRows[current]], typedUpperBound) < 0){
+						builder.addRow(sortedRows[current++]);
+						index = current;
+					}
+				}
+
+				builder.startBin(maxValue, valueType.getMaxPossibleValue());
+				for (int i = size - 1; i >= 0 && Double.compare(values[sortedRows[i]], maxValue) >= 0; i--){
+					builder.addRow(sortedRows[i]);
+				}
+				return builder.build();
+			}
+		};
+	}
+
+	/**
+	 * Returns the rows in ascending order of value, with rows of equal values left in row order. Values that are already
+	 * in order, such as those read from a {@link SortedInstanceList}, are detected in a single pass and not sorted again.
+	 * @param values
+	 * @param size
+	 * @return
+	 */
+	static int[] sortRows(double[] values, int size){
+		int[] sortedRows = new int[size];
+		boolean isSorted = true;
+		for (int row = 1; row < size && isSorted; row++){
+			isSorted = Double.compare(values[row - 1], values[row]) <= 0;
+		}
+		if (isSorted){
+			for (int row = 0; row < size; row++){
+				sortedRows[row] = row;
+			}
+			return sortedRows;
+		}
+
+		/*
+		 * sort the values and then place each row after the rows before it that share its value, which is a stable sort
+		 * without boxing the rows
+		 */
+		double[] sortedValues = Arrays.copyOf(values, size);
+		Arrays.sort(sortedValues);
+		int[] numPlaced = new int[size];
+		for (int row = 0; row < size; row++){
+			int first = firstIndexOf(sortedValues, values[row]);
+			sortedRows[first + numPlaced[first]++] = row;
+		}
+		return sortedRows;
+	}
+
+	/*
+	 * binary search for the first index of the value in the sorted array
+	 */
+	private static int firstIndexOf(double[] sortedValues, double value){
+		int low = 0;
+		int high = sortedValues.length;
+		while (low < high){
+			int mid = (low + high) >>> 1;
+			if (Double.compare(sortedValues[mid], value) < 0){
+				low = mid + 1;
+			} else{
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
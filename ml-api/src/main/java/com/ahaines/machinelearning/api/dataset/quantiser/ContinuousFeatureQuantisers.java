@@ -1,147 +1,42 @@
 package com.ahaines.machinelearning.api.dataset.quantiser;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
-import com.google.common.base.Predicate;
-import com.google.common.collect.Iterables;
+import com.ahaines.machinelearning.api.dataset.columnar.ColumnReader;
+import com.ahaines.machinelearning.api.dataset.quantiser.ColumnQuantiser.ValueType;
 import com.google.common.collect.Lists;
 import com.haines.ml.model.ContinuousFeature;
 import com.haines.ml.util.NumberConverter;
 
+/**
+ * The quantisation strategies available to the models. Each strategy is implemented over primitive columns by
+ * {@link ColumnQuantisers} and adapted to quantise feature sets with {@link #getColumnQuantiserAdapter(ColumnQuantiser)}.
+ *
+ * @author andrewhaines
+ *
+ */
 public class ContinuousFeatureQuantisers {
 
+	/**
+	 * Returns a feature quantiser that splits a continuous feature into the values below the average and those at or
+	 * above it
+	 * @return
+	 */
 	public static ContinuousFeatureQuantiser getAveragePivotQuantiser(){
-		
-		return new ContinuousFeatureQuantiser(){
-
-			@Override
-			public <T extends Number & Comparable<T>> Collection<RangeFeature<T>> quantise(Iterable<? extends ClassifiedFeatureSet<? extends Enum<?>>> instances, final Class<? extends ContinuousFeature<T>> featureQuantiserType, QuantiserEventProcessor processor) {
-				
-				final Collection<RangeFeature<T>> allFeatureRanges = new ArrayList<RangeFeature<T>>();
-				
-				// calculate average
-				
-				int count = 0;
-				NumberConverter<T> converter = null;
-				
-				double sum = 0;
-				
-				for (ClassifiedFeatureSet<? extends Enum<?>> instance: instances){
-					
-					ContinuousFeature<T> conFeature = instance.getFeature(featureQuantiserType);
-					if (converter == null){
-						converter = conFeature.getNumberConverter();
-					}
-					sum += conFeature.getValue().doubleValue();
-					count++;
-				}
-				
-				final double average = (double)sum / (double)count;
-				
-				// now put all instances in buckets above and below the average
-				
-				RangeFeature<T> newFeature = createRangeFeature(converter.getMinPossibleValue(), converter.castToType(average), allFeatureRanges);
-				
-				processor.newRangeDetermined(newFeature, Iterables.filter(instances, new Predicate<ClassifiedFeatureSet<? extends Enum<?>>>() {
-					
-					public boolean apply(ClassifiedFeatureSet<? extends Enum<?>> instance){
-						return instance.getFeature(featureQuantiserType).getValue().intValue() < average;
-					}
-					
-				}));
-				
-				newFeature = createRangeFeature(converter.castToType(average), converter.getMaxPossibleValue(), true, allFeatureRanges);
-				
-				processor.newRangeDetermined(newFeature, Iterables.filter(instances, new Predicate<ClassifiedFeatureSet<? extends Enum<?>>>() {
-					
-					public boolean apply(ClassifiedFeatureSet<? extends Enum<?>> instance){
-						return instance.getFeature(featureQuantiserType).getValue().intValue() >= average;
-					}
-					
-				}));
-				
-				return allFeatureRanges;
-			}
-			
-		};
-	}
-	
-	private static <T extends Number & Comparable<T>> RangeFeature<T> createRangeFeature(T lowerBound, T upperBound, Collection<RangeFeature<T>> allFeatureRanges){
-		RangeFeature<T> newRange = new RangeFeature<T>(lowerBound, upperBound);
-		allFeatureRanges.add(newRange);
-		
-		return newRange;
-	}
-	
-	private static <T extends Number & Comparable<T>> RangeFeature<T> createRangeFeature(T lowerBound, T upperBound, boolean inclusive, Collection<RangeFeature<T>> allFeatureRanges){
-		RangeFeature<T> newRange = new RangeFeature<T>(lowerBound, upperBound, inclusive);
-		allFeatureRanges.add(newRange);
-		
-		return newRange;
+		return getColumnQuantiserAdapter(ColumnQuantisers.getAveragePivotQuantiser());
 	}
 	
+	/**
+	 * Returns a feature quantiser that sorts the instances by the feature and starts a new range each time the
+	 * classification changes
+	 * @return
+	 */
 	public static ContinuousFeatureQuantiser getClusteredQuantiser(){
-		return new ContinuousFeatureQuantiser(){
-
-			@Override
-			public <T extends Number & Comparable<T>> Collection<RangeFeature<T>> quantise(Iterable<? extends ClassifiedFeatureSet<? extends Enum<?>>> instances, final Class<? extends ContinuousFeature<T>> featureQuantiserType, QuantiserEventProcessor processor) {
-				
-				final Collection<RangeFeature<T>> allFeatureRanges = new ArrayList<RangeFeature<T>>();
-
-				/*
-				 * This algorithm basically sorts the instance set by the feature and then runs through creating
-				 * RangeFeature's with lower, upper bounds as the classification of each instance changes
-				 */
-				
-				List<ClassifiedFeatureSet<? extends Enum<?>>> sortedList = sortInstancesBasedOnFeature(instances, featureQuantiserType);
-				
-				/*
-				 *  not sure if this is correct. What if a particular classification does not exist in this set?
-				 *  Wont this mean its impossible to get this classification if it ends up going down this branch?
-				 */
-				
-				T min = null;
-				T lastRecord = null;
-				Enum<?> lastClassification = null;
-				Collection<ClassifiedFeatureSet<? extends Enum<?>>> tempInstanceSplit = new ArrayList<ClassifiedFeatureSet<? extends Enum<?>>>();
-				NumberConverter<T> converter = null;
-				
-				for (ClassifiedFeatureSet<? extends Enum<?>> instance: sortedList){
-					T newRecord = instance.getFeature(featureQuantiserType).getValue();
-					if (lastClassification == null){
-						lastClassification = instance.getClassification().getValue();
-						lastRecord = newRecord;
-						converter = instance.getFeature(featureQuantiserType).getNumberConverter();
-						min = converter.getMinPossibleValue();
-						
-					} else if (!lastClassification.equals(instance.getClassification().getValue())){
-						if (!lastRecord.equals(newRecord)){ // only split if the value has actually changed else we will split with this value twice
-							lastClassification = instance.getClassification().getValue();
-							
-							RangeFeature<T> newRange = createRangeFeature(min, newRecord, allFeatureRanges);
-							processor.newRangeDetermined(newRange, tempInstanceSplit);
-							tempInstanceSplit = new ArrayList<ClassifiedFeatureSet<? extends Enum<?>>>();
-							min = newRecord;
-							lastRecord = newRecord;
-						}
-					}
-					
-					tempInstanceSplit.add(instance);
-				}
-				
-				processor.newRangeDetermined(createRangeFeature(min, converter.getMaxPossibleValue(), true, allFeatureRanges), tempInstanceSplit);
-				
-				return allFeatureRanges;
-			}
-			
-		};
+		return getColumnQuantiserAdapter(ColumnQuantisers.getClusteredQuantiser());
 	}
 	
 	/**
@@ -161,198 +56,94 @@ public class ContinuousFeatureQuantisers {
 	 * @param numBuckets
 	 * @return
 	 */
-	public static ContinuousFeatureQuantiser getConstantBucketQuantiser(final int numBuckets){
+	public static ContinuousFeatureQuantiser getConstantBucketQuantiser(int numBuckets){
+		return getColumnQuantiserAdapter(ColumnQuantisers.getConstantBucketQuantiser(numBuckets));
+	}
+	
+	/**
+	 * Returns a feature quantiser that reads the feature and classification of each instance into primitive arrays,
+	 * quantises them with the supplied column quantiser and reports each bin to the {@link QuantiserEventProcessor} as a
+	 * range holding a view of the instances in it. The feature is read straight from the columns of columnar row views.
+	 * The instances must include at least one instance.
+	 * @param columnQuantiser
+	 * @return
+	 */
+	public static ContinuousFeatureQuantiser getColumnQuantiserAdapter(final ColumnQuantiser columnQuantiser){
 		return new ContinuousFeatureQuantiser(){
 
+			@SuppressWarnings("unchecked")
 			@Override
-			public <T extends Number & Comparable<T>> Collection<RangeFeature<T>> quantise(Iterable<? extends ClassifiedFeatureSet<? extends Enum<?>>> instances, final Class<? extends ContinuousFeature<T>> featureQuantiserType, QuantiserEventProcessor processor) {
-				final List<ClassifiedFeatureSet<? extends Enum<?>>> sortedList = sortInstancesBasedOnFeature(instances, featureQuantiserType);
-				final Collection<RangeFeature<T>> allFeatureRanges = new ArrayList<RangeFeature<T>>();
-				final NumberConverter<T> converter = sortedList.get(0).getFeature(featureQuantiserType).getNumberConverter();
-				
-				T minValue = sortedList.get(0).getFeature(featureQuantiserType).getValue();
-				minValue = converter.castToType(minValue.doubleValue() + 1);
-				T maxValue = sortedList.get(sortedList.size()-1).getFeature(featureQuantiserType).getValue();
-				
-				if (minValue.compareTo(maxValue) >= 0){
-					// there is no range to split as min > max. Just create a single range feature for the entire natural value of numbers
-					RangeFeature<T> range = createRangeFeature(converter.getMinPossibleValue(), converter.getMaxPossibleValue(), true, allFeatureRanges);
-					processor.newRangeDetermined(range, sortedList);
-					
-					return allFeatureRanges;
+			public <T extends Number & Comparable<T>> Collection<RangeFeature<T>> quantise(Iterable<? extends ClassifiedFeatureSet<? extends Enum<?>>> instances, Class<? extends ContinuousFeature<T>> featureQuantiserType, QuantiserEventProcessor processor) {
+				List<? extends ClassifiedFeatureSet<? extends Enum<?>>> rows;
+				if (instances instanceof List){
+					rows = (List<? extends ClassifiedFeatureSet<? extends Enum<?>>>)instances;
+				} else{
+					rows = Lists.newArrayList(instances);
 				}
-				
-				RangeFeature<T> lowerBound = createRangeFeature(converter.getMinPossibleValue(), minValue, allFeatureRanges);
-				
-				SingleValueIteratorFromSortedList<T> it = new SingleValueIteratorFromSortedList<T>(minValue, sortedList, featureQuantiserType, true);
-				
-				processor.newRangeDetermined(lowerBound, it);
-				
-				// inbetween bands
-				
-				int numRangeBuckets = numBuckets - 2; // subtract the 2 extremity bounds
-				
-				if (numRangeBuckets < 1){
-					numRangeBuckets = 1; // we have to have at least 1 range bucket
+				int size = rows.size();
+				if (size == 0){
+					throw new IllegalArgumentException("there are no instances to quantise "+featureQuantiserType.getSimpleName()+" over");
 				}
 				
-				double range = (maxValue.doubleValue() - minValue.doubleValue()) / numRangeBuckets;
-				
-				final AtomicInteger latestInstanceIndex = new AtomicInteger(it.getIteratorSize());
-				for (int i = 0; i < numRangeBuckets; i++){
-					double lowerBoundRange = range * i + minValue.doubleValue();
-					final double upperBoundRange = lowerBoundRange + range;
-					
-					
-					final T typedLowerBound = converter.castToType(lowerBoundRange);
-					final T typedUpperBound = converter.castToType(upperBoundRange);
-					
-					RangeFeature<T> newRange = createRangeFeature(typedLowerBound, typedUpperBound, allFeatureRanges);
-					final int seekForwardAmount = latestInstanceIndex.get(); // optimisation because we dont want to re-iterate over instance that we have already added. Note that this only works if, the caller iterates.
-					processor.newRangeDetermined(newRange, new Iterable<ClassifiedFeatureSet<? extends Enum<?>>>(){
-
-						@Override
-						public Iterator<ClassifiedFeatureSet<? extends Enum<?>>> iterator() {
-							return new Iterator<ClassifiedFeatureSet<? extends Enum<?>>>(){
-								
-								private int currentIndex = seekForwardAmount;
-
-								@Override
-								public boolean hasNext() {
-									
-									boolean isInRange = false;
-									while(!isInRange && currentIndex < sortedList.size()){
-										if (sortedList.get(currentIndex).getFeature(featureQuantiserType).getValue().compareTo(typedLowerBound) < 0){
-											currentIndex++;
-										} else{
-											isInRange = true;
-										}
-									}
-									return sortedList.size() > currentIndex && sortedList.get(currentIndex).getFeature(featureQuantiserType).getValue().compareTo(typedUpperBound) < 0;
-								}
-
-								@Override
-								public ClassifiedFeatureSet<? extends Enum<?>> next() {
-									ClassifiedFeatureSet<? extends Enum<?>> instance = sortedList.get(currentIndex++);
-									latestInstanceIndex.set(currentIndex);
-									
-									return instance;
-								}
-
-								@Override
-								public void remove() {
-									throw new UnsupportedOperationException();
-								}
-								
-							};
-						}
-						
-					});
+				double[] values = new double[size];
+				int[] classOrdinals = new int[size];
+				ColumnReader reader = new ColumnReader(featureQuantiserType);
+				for (int row = 0; row < size; row++){
+					ClassifiedFeatureSet<? extends Enum<?>> instance = rows.get(row);
+					values[row] = reader.getDouble(instance);
+					classOrdinals[row] = instance.getClassification().getValue().ordinal();
+				}
+				ContinuousFeature<T> firstFeature = rows.get(0).getFeature(featureQuantiserType);
+				NumberConverter<T> converter = firstFeature.getNumberConverter();
+				
+				ColumnQuantisation quantisation = columnQuantiser.quantise(values, ValueType.of(firstFeature.getValue()), classOrdinals, size);
+				
+				Collection<RangeFeature<T>> allFeatureRanges = new ArrayList<RangeFeature<T>>(quantisation.getNumBins());
+				for (int bin = 0; bin < quantisation.getNumBins(); bin++){
+					T lowerBound = converter.castToType(quantisation.getLowerBound(bin));
+					T upperBound = converter.castToType(quantisation.getUpperBound(bin));
+					RangeFeature<T> range;
+					if (quantisation.isUpperBoundInclusive(bin)){
+						range = new RangeFeature<T>(lowerBound, upperBound, true);
+					} else{
+						range = new RangeFeature<T>(lowerBound, upperBound);
+					}
+					allFeatureRanges.add(range);
+					processor.newRangeDetermined(range, new BinInstances(rows, quantisation, bin));
 				}
-				
-				RangeFeature<T> upperBound = createRangeFeature(maxValue, converter.getMaxPossibleValue(), true, allFeatureRanges);
-				
-				processor.newRangeDetermined(upperBound, new SingleValueIteratorFromSortedList<T>(maxValue, sortedList, featureQuantiserType, false));
-				
 				return allFeatureRanges;
 			}
-			
 		};
 	}
 	
-	private static List<ClassifiedFeatureSet<? extends Enum<?>>> sortInstancesBasedOnFeature(Iterable<? extends ClassifiedFeatureSet<? extends Enum<?>>> instances, final Class<? extends ContinuousFeature<?>> featureType){
-		List<ClassifiedFeatureSet<? extends Enum<?>>> sortedList = Lists.newArrayList(instances);
-		Collections.sort(sortedList, new Comparator<ClassifiedFeatureSet<? extends Enum<?>>>(){
-
-			@Override
-			public int compare(ClassifiedFeatureSet<? extends Enum<?>> o1, ClassifiedFeatureSet<? extends Enum<?>> o2) {
-				Number feature1 = o1.getFeature(featureType).getValue();
-				Number feature2 = o2.getFeature(featureType).getValue();
-				return (int)(feature1.doubleValue() - feature2.doubleValue());
-			}
-			
-		});
+	/*
+	 * a view of the instances reported in one bin of a quantisation
+	 */
+	private static class BinInstances extends AbstractList<ClassifiedFeatureSet<? extends Enum<?>>>{
 		
-		return sortedList;
-	}
-	
-	private static class SingleValueIteratorFromSortedList<T extends Number & Comparable<T>> implements Iterable<ClassifiedFeatureSet<? extends Enum<?>>>{
-
-		private static final int NOT_INITALISED = -1;
-		private final T value;
-		private final Iterable<ClassifiedFeatureSet<? extends Enum<?>>> items;
-		private final Class<? extends ContinuousFeature<T>> featureType;
-		private final boolean greaterThan;
-		private int iteratorSize = NOT_INITALISED;
+		private final List<? extends ClassifiedFeatureSet<? extends Enum<?>>> rows;
+		private final ColumnQuantisation quantisation;
+		private final int start;
+		private final int size;
 		
-		private SingleValueIteratorFromSortedList(T value, List<ClassifiedFeatureSet<? extends Enum<?>>> items, Class<? extends ContinuousFeature<T>> featureType, boolean greaterThan){
-			this.value = value;
-			if(greaterThan){
-				this.items = items;
-			} else{
-				this.items = Lists.reverse(items);
-			}
-			this.featureType = featureType;
-			this.greaterThan = greaterThan;
+		private BinInstances(List<? extends ClassifiedFeatureSet<? extends Enum<?>>> rows, ColumnQuantisation quantisation, int bin){
+			this.rows = rows;
+			this.quantisation = quantisation;
+			this.start = quantisation.getBinStart(bin);
+			this.size = quantisation.getBinEnd(bin) - start;
 		}
-		@Override
-		public Iterator<ClassifiedFeatureSet<? extends Enum<?>>> iterator() {
-			
-			final Iterator<ClassifiedFeatureSet<? extends Enum<?>>> masterIt = items.iterator();
-			iteratorSize = 0;
-			return new Iterator<ClassifiedFeatureSet<? extends Enum<?>>>(){
-
-				boolean hasFinished = false;
-				ClassifiedFeatureSet<? extends Enum<?>> nextValue;
-				@Override
-				public boolean hasNext() {
-					
-					if (!masterIt.hasNext() || hasFinished){
-						return false;
-					}
-					if (nextValue == null){
-						nextValue = masterIt.next();
-					}
-					
-					if (greaterThan){
-						if (nextValue.getFeature(featureType).getValue().compareTo(value) > 0){
-							hasFinished = true;
-						}
-					} else {
-						if (nextValue.getFeature(featureType).getValue().compareTo(value) < 0){
-							hasFinished = true;
-						}
-					}
-					
-					return !hasFinished;
-				}
 
-				@Override
-				public ClassifiedFeatureSet<? extends Enum<?>> next() {
-					if (nextValue == null){
-						nextValue = masterIt.next();
-					}
-					try{
-						return nextValue;
-					} finally{
-						nextValue = null;
-						iteratorSize++;
-					}
-				}
-
-				@Override
-				public void remove() {
-					throw new UnsupportedOperationException();
-				}
-				
-			};
-		}
-		public int getIteratorSize() {
-			if (iteratorSize == NOT_INITALISED){
-				for (@SuppressWarnings("unused") ClassifiedFeatureSet<? extends Enum<?>> value: this){}
+		@Override
+		public ClassifiedFeatureSet<? extends Enum<?>> get(int index) {
+			if (index < 0 || index >= size){
+				throw new IndexOutOfBoundsException("index: "+index+", size: "+size);
 			}
-			return iteratorSize;
+			return rows.get(quantisation.getRow(start + index));
+		}
+
+		@Override
+		public int size() {
+			return size;
 		}
-		
 	}
 }
@@ -0,0 +1,278 @@
+package com.ahaines.machinelearning.api.dataset.quantiser;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser.QuantiserEventProcessor;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+import com.haines.ml.model.ContinuousFeature;
+
+/**
+ * Remembers how a quantiser divided each continuous feature of a training set so that models trained again on the same
+ * dataset with the same quantiser do not quantise it again. An entry is kept per dataset, feature type and quantiser and
+ * holds the ranges the quantiser returned along with the rows of the dataset it reported in each range, in the order it
+ * reported them. Replaying an entry notifies the {@link QuantiserEventProcessor} exactly as the quantiser did.
+ *
+ * Datasets are compared by identity and quantisers by equals, which is identity for the quantisers of
+ * {@link ContinuousFeatureQuantisers}, so the same quantiser instance must be shared to benefit. Each entry is weighed by
+ * the number of row assignments it holds. Once the total weight exceeds the maximum weight, the least recently used
+ * entries are evicted. An entry holds a reference to its dataset until it is evicted or the cache is cleared.
+ *
+ * The cache is thread safe. When several threads ask for the same missing entry, one of them quantises the feature and
+ * the others wait for its result.
+ *
+ * @author andrewhaines
+ *
+ */
+public class QuantisationCache {
+
+	private final long maximumWeight;
+	private final LinkedHashMap<Key, CacheEntry> entries = new LinkedHashMap<Key, CacheEntry>(16, 0.75f, true);
+	private long weight = 0;
+
+	public QuantisationCache(long maximumWeight){
+		if (maximumWeight < 1){
+			throw new IllegalArgumentException("maximum weight must be positive: "+maximumWeight);
+		}
+		this.maximumWeight = maximumWeight;
+	}
+
+	/**
+	 * Returns a quantiser that quantises the instances of the supplied dataset using the entries of this cache,
+	 * quantising with the supplied quantiser and caching the result on a miss. The returned quantiser must only be
+	 * given all the instances of the dataset in the order the dataset iterates them. It quantises any other number of
+	 * instances without the cache.
+	 * @param dataset
+	 * @param quantiser
+	 * @return
+	 */
+	public ContinuousFeatureQuantiser getQuantiser(final ClassifiedDataset<?> dataset, final ContinuousFeatureQuantiser quantiser){
+		return new ContinuousFeatureQuantiser(){
+
+			@Override
+			public <T extends Number & Comparable<T>> Collection<RangeFeature<T>> quantise(Iterable<? extends ClassifiedFeatureSet<? extends Enum<?>>> instances, Class<? extends ContinuousFeature<T>> featureQuantiserType, QuantiserEventProcessor processor) {
+				List<ClassifiedFeatureSet<? extends Enum<?>>> rows = Lists.newArrayList(instances);
+				QuantisedFeature quantisedFeature = get(new Key(dataset, featureQuantiserType, quantiser), rows);
+				if (quantisedFeature.numRows != rows.size()){
+					return quantiser.quantise(rows, featureQuantiserType, processor);
+				}
+				return quantisedFeature.replay(rows, processor);
+			}
+		};
+	}
+
+	/**
+	 * Returns the total weight of the entries currently cached
+	 * @return
+	 */
+	public synchronized long getWeight(){
+		return weight;
+	}
+
+	public synchronized int size(){
+		return entries.size();
+	}
+
+	public synchronized void clear(){
+		entries.clear();
+		weight = 0;
+	}
+
+	private QuantisedFeature get(final Key key, final List<ClassifiedFeatureSet<? extends Enum<?>>> rows){
+		CacheEntry entry;
+		boolean quantising = false;
+		synchronized(this){
+			entry = entries.get(key);
+			if (entry == null){
+				entry = new CacheEntry(new FutureTask<QuantisedFeature>(new Callable<QuantisedFeature>(){
+
+					@Override
+					public QuantisedFeature call(){
+						return QuantisedFeature.record(key.quantiser, rows, key.featureType);
+					}
+				}));
+				entries.put(key, entry);
+				quantising = true;
+			}
+		}
+		if (quantising){
+			entry.task.run();
+		}
+
+		QuantisedFeature quantisedFeature;
+		try{
+			quantisedFeature = entry.task.get();
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("interrupted whilst waiting for quantisation of "+key.featureType.getSimpleName(), e);
+		} catch (ExecutionException e){
+			if (quantising){
+				synchronized(this){
+					if (entries.get(key) == entry){
+						entries.remove(key);
+					}
+				}
+			}
+			if (e.getCause() instanceof RuntimeException){
+				throw (RuntimeException)e.getCause();
+			}
+			throw new RuntimeException("issue quantising "+key.featureType.getSimpleName(), e.getCause());
+		}
+
+		if (quantising){
+			synchronized(this){
+				if (entries.get(key) == entry){ // not cleared whilst quantising
+					entry.weight = quantisedFeature.getWeight();
+					weight += entry.weight;
+					evict();
+				}
+			}
+		}
+		return quantisedFeature;
+	}
+
+	/*
+	 * removes the least recently used entries until the cache is within its maximum weight. Entries still being
+	 * quantised have no weight yet and are left in place.
+	 */
+	private void evict(){
+		Iterator<CacheEntry> it = entries.values().iterator();
+		while (weight > maximumWeight && it.hasNext()){
+			CacheEntry entry = it.next();
+			if (entry.task.isDone()){
+				weight -= entry.weight;
+				it.remove();
+			}
+		}
+	}
+
+	private static class CacheEntry{
+
+		private final FutureTask<QuantisedFeature> task;
+		private long weight = 0;
+
+		private CacheEntry(FutureTask<QuantisedFeature> task){
+			this.task = task;
+		}
+	}
+
+	private static class Key{
+
+		private final ClassifiedDataset<?> dataset;
+		private final Class<? extends ContinuousFeature<?>> featureType;
+		private final ContinuousFeatureQuantiser quantiser;
+
+		private Key(ClassifiedDataset<?> dataset, Class<? extends ContinuousFeature<?>> featureType, ContinuousFeatureQuantiser quantiser){
+			this.dataset = dataset;
+			this.featureType = featureType;
+			this.quantiser = quantiser;
+		}
+
+		@Override
+		public boolean equals(Object obj){
+			if (obj instanceof Key){
+				Key other = (Key)obj;
+
+				return other.dataset == dataset && other.featureType.equals(featureType) && other.quantiser.equals(quantiser);
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode(){
+			int val = System.identityHashCode(dataset);
+
+			val = val * 31 + featureType.hashCode();
+			val = val * 31 + quantiser.hashCode();
+
+			return val;
+		}
+	}
+
+	/*
+	 * The result of quantising one feature of a dataset. Rows are indexes into the instances in the order they were
+	 * supplied to the quantiser.
+	 */
+	private static class QuantisedFeature{
+
+		private final List<RangeFeature<?>> ranges;
+		private final List<RangeFeature<?>> reportedRanges;
+		private final List<int[]> reportedRows;
+		private final int numRows;
+
+		private QuantisedFeature(List<RangeFeature<?>> ranges, List<RangeFeature<?>> reportedRanges, List<int[]> reportedRows, int numRows){
+			this.ranges = ranges;
+			this.reportedRanges = reportedRanges;
+			this.reportedRows = reportedRows;
+			this.numRows = numRows;
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private static QuantisedFeature record(ContinuousFeatureQuantiser quantiser, List<ClassifiedFeatureSet<? extends Enum<?>>> rows, Class<? extends ContinuousFeature<?>> featureType){
+			final Map<ClassifiedFeatureSet<?>, Integer> rowIndexes = new IdentityHashMap<ClassifiedFeatureSet<?>, Integer>(rows.size());
+			for (int i = 0; i < rows.size(); i++){
+				rowIndexes.put(rows.get(i), i);
+			}
+
+			final List<RangeFeature<?>> reportedRanges = new ArrayList<RangeFeature<?>>();
+			final List<int[]> reportedRows = new ArrayList<int[]>();
+			Collection<RangeFeature<?>> ranges = quantiser.quantise(rows, (Class)featureType, new QuantiserEventProcessor(){
+
+				@Override
+				public <T extends Number & Comparable<T>> void newRangeDetermined(RangeFeature<T> range, Iterable<? extends ClassifiedFeatureSet<? extends Enum<?>>> instancesInRange) {
+					List<Integer> rowsInRange = new ArrayList<Integer>();
+					for (ClassifiedFeatureSet<? extends Enum<?>> instance: instancesInRange){
+						Integer row = rowIndexes.get(instance);
+						if (row == null){
+							throw new IllegalStateException("quantiser reported an instance it was not given: "+instance.getId());
+						}
+						rowsInRange.add(row);
+					}
+					reportedRanges.add(range);
+					reportedRows.add(Ints.toArray(rowsInRange));
+				}
+			});
+			return new QuantisedFeature(new ArrayList<RangeFeature<?>>(ranges), reportedRanges, reportedRows, rows.size());
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private <T extends Number & Comparable<T>> Collection<RangeFeature<T>> replay(final List<ClassifiedFeatureSet<? extends Enum<?>>> rows, QuantiserEventProcessor processor){
+			for (int i = 0; i < reportedRanges.size(); i++){
+				final int[] rowsInRange = reportedRows.get(i);
+				processor.newRangeDetermined((RangeFeature)reportedRanges.get(i), new AbstractList<ClassifiedFeatureSet<? extends Enum<?>>>(){
+
+					@Override
+					public ClassifiedFeatureSet<? extends Enum<?>> get(int index) {
+						return rows.get(rowsInRange[index]);
+					}
+
+					@Override
+					public int size() {
+						return rowsInRange.length;
+					}
+				});
+			}
+			return new ArrayList(ranges);
+		}
+
+		private long getWeight(){
+			long weight = ranges.size();
+			for (int[] rowsInRange: reportedRows){
+				weight += rowsInRange.length;
+			}
+			return weight;
+		}
+	}
+}
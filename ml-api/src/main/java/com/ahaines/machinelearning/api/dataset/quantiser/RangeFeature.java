@@ -1,5 +1,6 @@
 package com.ahaines.machinelearning.api.dataset.quantiser;
 
+import java.io.Serializable;
 
 import com.haines.ml.model.ContinuousFeature;
 import com.haines.ml.model.Feature;
@@ -10,7 +11,9 @@ import com.haines.ml.model.Feature;
  *
  * @param <T>
  */
-public class RangeFeature<T extends Number & Comparable<T>> implements Feature<T>, Comparable<Feature<T>>{
+public class RangeFeature<T extends Number & Comparable<T>> implements Feature<T>, Comparable<Feature<T>>, Serializable{
+	
+	private static final long serialVersionUID = 1L;
 	
 	private final T lowerBound;
 	private final T upperBound;
@@ -26,6 +29,22 @@ public class RangeFeature<T extends Number & Comparable<T>> implements Feature<T
 		this(lowerBound, upperBound, false);
 	}
 	
+	public T getLowerBound() {
+		return lowerBound;
+	}
+
+	public T getUpperBound() {
+		return upperBound;
+	}
+
+	/**
+	 * Returns true if the upper bound is part of this range
+	 * @return
+	 */
+	public boolean isInclusive() {
+		return inclusive;
+	}
+
 	@Override
 	public T getValue() {
 		throw new UnsupportedOperationException("getValue not supported on a range feature");
@@ -0,0 +1,167 @@
+package com.ahaines.machinelearning.api.dataset.quantiser;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.columnar.ColumnReader;
+import com.google.common.collect.Lists;
+import com.haines.ml.model.ContinuousFeature;
+
+/**
+ * An immutable list of instances that is known to be sorted in ascending order of a given continuous feature. Instances
+ * with equal values retain the order in which they were supplied. The column quantisers check whether the values they
+ * are given are already in ascending order and, if so, skip their own sort, so quantising this list by its feature
+ * costs a single linear scan. A caller that needs to quantise repeated subsets of the same instances can therefore sort
+ * once using {@link #sort(Iterable, Class)} and then split it into its subsets with {@link #partition(Partition)}, which
+ * preserves the ordering in a single pass over the list.
+ *
+ * @author andrewhaines
+ *
+ * @param <E> The type of instance held in the list
+ */
+public class SortedInstanceList<E extends ClassifiedFeatureSet<?>> extends AbstractList<E> implements RandomAccess{
+
+	private final Class<? extends ContinuousFeature<?>> featureType;
+	private final List<E> instances;
+
+	private SortedInstanceList(Class<? extends ContinuousFeature<?>> featureType, List<E> instances){
+		this.featureType = featureType;
+		this.instances = instances;
+	}
+
+	/**
+	 * Creates a stably sorted copy of the supplied instances ordered by the given feature
+	 * @param instances
+	 * @param featureType
+	 * @return
+	 */
+	public static <E extends ClassifiedFeatureSet<?>> SortedInstanceList<E> sort(Iterable<? extends E> instances, Class<? extends ContinuousFeature<?>> featureType){
+		List<E> sortedInstances = Lists.newArrayList(instances);
+		Collections.sort(sortedInstances, getComparator(featureType));
+
+		return new SortedInstanceList<E>(featureType, sortedInstances);
+	}
+
+	/**
+	 * Returns a comparator that orders instances by the natural ordering of the supplied continuous feature
+	 * @param featureType
+	 * @return
+	 */
+	public static Comparator<ClassifiedFeatureSet<?>> getComparator(Class<? extends ContinuousFeature<?>> featureType){
+		final ColumnReader reader = new ColumnReader(featureType);
+		return new Comparator<ClassifiedFeatureSet<?>>(){
+
+			@Override
+			public int compare(ClassifiedFeatureSet<?> o1, ClassifiedFeatureSet<?> o2) {
+				return Double.compare(reader.getDouble(o1), reader.getDouble(o2));
+			}
+		};
+	}
+
+	public Class<? extends ContinuousFeature<?>> getFeatureType() {
+		return featureType;
+	}
+
+	/**
+	 * Splits this list into one sorted list per subset of the partition in a single pass, keeping the ordering of this list
+	 * in each. Instances that are in several subsets are placed in each of their lists and instances that are in none are
+	 * left out.
+	 * @param partition
+	 * @return the sorted list of each subset, in the order of the subsets
+	 */
+	public List<SortedInstanceList<E>> partition(Partition partition){
+		List<List<E>> subsetInstances = new ArrayList<List<E>>(partition.getNumSubsets());
+		for (int subset = 0; subset < partition.getNumSubsets(); subset++){
+			subsetInstances.add(new ArrayList<E>(partition.getSubsetSize(subset)));
+		}
+		for (E instance: instances){
+			int[] subsets = partition.getSubsets(instance);
+			if (subsets != null){
+				for (int subset: subsets){
+					subsetInstances.get(subset).add(instance);
+				}
+			}
+		}
+
+		List<SortedInstanceList<E>> sortedSubsets = new ArrayList<SortedInstanceList<E>>(subsetInstances.size());
+		for (List<E> subset: subsetInstances){
+			sortedSubsets.add(new SortedInstanceList<E>(featureType, subset));
+		}
+		return sortedSubsets;
+	}
+
+	@Override
+	public E get(int index) {
+		return instances.get(index);
+	}
+
+	@Override
+	public int size() {
+		return instances.size();
+	}
+
+	/**
+	 * Records the subsets that each instance belongs to, so that any number of sorted lists of the same instances can be
+	 * split into those subsets with {@link SortedInstanceList#partition(Partition)}. Instances are compared by identity.
+	 * @author andrewhaines
+	 *
+	 */
+	public static final class Partition{
+
+		private final Map<Object, int[]> instanceSubsets;
+		private final int[] subsetSizes;
+
+		private Partition(Map<Object, int[]> instanceSubsets, int[] subsetSizes){
+			this.instanceSubsets = instanceSubsets;
+			this.subsetSizes = subsetSizes;
+		}
+
+		/**
+		 * Creates a partition of the supplied subsets, in which an instance may be in more than one subset
+		 * @param subsets
+		 * @return
+		 */
+		public static Partition of(List<? extends Iterable<?>> subsets){
+			Map<Object, int[]> instanceSubsets = new IdentityHashMap<Object, int[]>();
+			int[] subsetSizes = new int[subsets.size()];
+			for (int subset = 0; subset < subsets.size(); subset++){
+				for (Object instance: subsets.get(subset)){
+					int[] previousSubsets = instanceSubsets.get(instance);
+					if (previousSubsets == null){
+						instanceSubsets.put(instance, new int[]{subset});
+						subsetSizes[subset]++;
+					} else if (previousSubsets[previousSubsets.length - 1] != subset){ // not already recorded in this subset
+						int[] newSubsets = Arrays.copyOf(previousSubsets, previousSubsets.length + 1);
+						newSubsets[previousSubsets.length] = subset;
+						instanceSubsets.put(instance, newSubsets);
+						subsetSizes[subset]++;
+					}
+				}
+			}
+			return new Partition(instanceSubsets, subsetSizes);
+		}
+
+		public int getNumSubsets(){
+			return subsetSizes.length;
+		}
+
+		int getSubsetSize(int subset){
+			return subsetSizes[subset];
+		}
+
+		/*
+		 * returns the subsets of the instance in ascending order, or null if it is in none
+		 */
+		int[] getSubsets(Object instance){
+			return instanceSubsets.get(instance);
+		}
+	}
+}
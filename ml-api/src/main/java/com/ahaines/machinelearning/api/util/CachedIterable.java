@@ -1,116 +1,191 @@
 package com.ahaines.machinelearning.api.util;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.AbstractCollection;
-import java.util.Deque;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
 import com.google.common.collect.Iterables;
 
 /**
  * An iterable that caches constructed iterables. Use this if you have an iterator that performs a lot of computational work
- * to create each item for each iteration. The cache is only made available if a full iteration to the end has been completed.
- * 
+ * to create each item for each iteration. Items are materialised from a single iterator of the delegate into a growable
+ * array the first time any iteration reaches them, so an iteration that stops early leaves its prefix cached for the next
+ * one, which carries on from where the delegate was left rather than starting again. Items can also be accessed by index,
+ * which materialises the items up to that index.
+ *
+ * The cache is thread safe. Concurrent iterations share the items already materialised without locking and take turns
+ * advancing the delegate, so each item is created exactly once. Once the delegate is exhausted no locks are taken. If the
+ * delegate throws whilst being advanced, the next iteration to need more items starts a new iterator of the delegate and
+ * skips the items already cached. Items cannot be removed. Both the item count and the array holding the items are
+ * volatile, and the count is written after its item and read before the array, so any thread that sees an item counted
+ * also sees the item.
+ *
  * Note that the supplied iterable is assumed but not enforced to be immutable and deterministic.
  * @author andrewhaines
  *
  * @param <E>
  */
-public class CachedIterable<E> extends AbstractCollection<E>{
-	
+public class CachedIterable<E> extends AbstractList<E> implements RandomAccess{
+
+	private static final int INITIAL_CAPACITY = 16;
+
 	private final Iterable<E> delegate;
-	private final Collection<E> cache;
-	private boolean finished = false;
-	
+	private final Collection<E> collection; // set when the delegate is already a collection, which needs no caching
+	private Iterator<E> delegateIt;
+	private volatile Object[] items = new Object[INITIAL_CAPACITY]; // only replaced by a fully copied array
+	private volatile int numItems = 0; // written after the item it counts so readers of it see the item
+	private volatile boolean finished = false;
+
+	@SuppressWarnings("unchecked")
 	public CachedIterable(Iterable<E> delegate){
 		this.delegate = delegate;
-		if (delegate instanceof Collection){ // instances of collection are already cached some just assign reference
-			this.cache = (Collection<E>)delegate;
+		if (delegate instanceof Collection){ // instances of collection are already cached so just assign reference
+			this.collection = (Collection<E>)delegate;
 			this.finished = true;
 		} else{
-			cache = new ArrayList<E>();
+			this.collection = null;
 		}
 	}
 
 	@Override
 	public Iterator<E> iterator() {
-		if (finished){
-			return cache.iterator();
-		} else{
-			final Iterator<E> delegateIt = delegate.iterator();
-			
-			/* 
-			 * The following exists as it is very posible that a user may not iterate to the end of the iteration (errors etc). 
-			 * If this temp store was not used then further invocations of iterations would result in incomplete results
-			*/
-			final Deque<E> tempCache = new LinkedList<E>();
-			return new Iterator<E>(){
-
-				@Override
-				public boolean hasNext() {
-					boolean hasNext = delegateIt.hasNext();
-					if (!hasNext){
-						CachedIterable.this.finished = true;
-						CachedIterable.this.cache.addAll(tempCache);
-					}
-					return hasNext;
-				}
+		if (collection != null){
+			return collection.iterator();
+		}
+		return new Iterator<E>(){
 
-				@Override
-				public E next() {
-					E item = delegateIt.next();
-					tempCache.add(item);
-				
-					return item;
-				}
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return isAvailable(index);
+			}
 
-				@Override
-				public void remove() {
-					delegateIt.remove();
-					tempCache.removeLast();
+			@Override
+			public E next() {
+				if (!isAvailable(index)){
+					throw new NoSuchElementException();
 				}
-			};
-		}
-	}
-	private void fillCache(){
-		Iterator<E> it = this.iterator();
-		
-		while(it.hasNext()){
-			it.next();
+				return getItem(index++);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("cached items cannot be removed");
+			}
 		};
 	}
 
 	@Override
-	public int size(){
-		if (!finished){
-			fillCache();
+	public E get(int index) {
+		if (collection != null){
+			return Iterables.get(collection, index);
+		}
+		if (index < 0 || !isAvailable(index)){
+			throw new IndexOutOfBoundsException("index: "+index+", size: "+numItems);
 		}
-		return cache.size();
+		return getItem(index);
 	}
 
 	@Override
-	public boolean equals(Object obj){
-		if (obj instanceof CachedIterable){
-			CachedIterable<?> it = (CachedIterable<?>)obj;
-			return Iterables.elementsEqual(this, it);
+	public int size(){
+		if (collection != null){
+			return collection.size();
 		}
-		return false;
+		fillCache();
+		return numItems;
 	}
-	
+
 	@Override
 	public Object[] toArray(){
-		if (!finished){
-			super.toArray();	
+		if (collection != null){
+			return collection.toArray();
 		}
-		return cache.toArray();
+		fillCache();
+		int numItems = this.numItems; // read before the array so that the array holds at least this many items
+		return Arrays.copyOf(items, numItems);
 	}
-	
+
 	@Override
 	public <T> T[] toArray(T[] a) {
-		if (!finished){
-			super.toArray(a);
+		if (collection != null){
+			return collection.toArray(a);
+		}
+		return super.toArray(a);
+	}
+
+	/**
+	 * Returns the number of items materialised so far, without advancing the delegate
+	 * @return
+	 */
+	public int getNumCachedItems(){
+		if (collection != null){
+			return collection.size();
+		}
+		return numItems;
+	}
+
+	private void fillCache(){
+		isAvailable(Integer.MAX_VALUE); // advances the delegate to its end under one lock
+	}
+
+	@SuppressWarnings("unchecked")
+	private E getItem(int index){
+		/*
+		 * isAvailable has read a count greater than the index. The item was written before that count, and any array
+		 * read after it was either written before it too or replaced it by copying every item counted so far, so the
+		 * item is visible in whichever array is read here
+		 */
+		return (E)items[index];
+	}
+
+	/*
+	 * returns true if the item at the index exists, advancing the delegate to it if it has not yet been materialised
+	 */
+	private boolean isAvailable(int index){
+		if (index < numItems){
+			return true;
+		}
+		if (finished){
+			return false;
+		}
+		synchronized(this){
+			while (index >= numItems && !finished){
+				boolean advanced = false;
+				try{
+					if (delegateIt == null){
+						delegateIt = delegate.iterator();
+						for (int i = 0; i < numItems; i++){ // resume after a delegate failure
+							delegateIt.next();
+						}
+					}
+					if (delegateIt.hasNext()){
+						cache(delegateIt.next());
+					} else{
+						finished = true;
+						delegateIt = null;
+					}
+					advanced = true;
+				} finally{
+					if (!advanced){
+						delegateIt = null; // its state is unknown so start again from a new iterator
+					}
+				}
+			}
+			return index < numItems;
+		}
+	}
+
+	private void cache(E item){
+		Object[] items = this.items;
+		if (numItems == items.length){
+			items = Arrays.copyOf(items, numItems * 2);
+			this.items = items; // published only once the copy is complete
 		}
-		return cache.toArray(a);
+		items[numItems] = item;
+		numItems++;
 	}
 }
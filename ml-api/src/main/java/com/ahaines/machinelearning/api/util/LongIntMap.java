@@ -0,0 +1,141 @@
+package com.ahaines.machinelearning.api.util;
+
+import java.util.Arrays;
+
+/**
+ * A map of primitive long keys to non negative int values that boxes neither. Entries are held in two parallel arrays
+ * using open addressing with linear probing, so each entry costs 12 bytes per slot rather than the entry, key and value
+ * objects of a {@link java.util.HashMap}. The table is a power of two in size and is kept at most half full, so a probe
+ * rarely looks at more than a couple of slots. Entries cannot be removed.
+ *
+ * This class is not thread safe. Once populated it can be read from multiple threads as long as it has been safely
+ * published.
+ * @author andrewhaines
+ *
+ */
+public class LongIntMap {
+
+	/**
+	 * The value returned by {@link #get(long)} and {@link #put(long, int)} when a key has no value
+	 */
+	public static final int NO_VALUE = -1;
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private int[] values; // NO_VALUE marks an empty slot
+	private int mask;
+	private int size = 0;
+
+	public LongIntMap(){
+		this(MIN_CAPACITY / 2);
+	}
+
+	/**
+	 * Creates a map that can hold the supplied number of entries without resizing
+	 * @param expectedSize
+	 */
+	public LongIntMap(int expectedSize){
+		allocate(tableSizeFor(expectedSize));
+	}
+
+	/**
+	 * Returns the value of the supplied key or {@link #NO_VALUE} if it has none
+	 * @param key
+	 * @return
+	 */
+	public int get(long key){
+		for (int slot = slot(key); ; slot = (slot + 1) & mask){
+			int value = values[slot];
+			if (value == NO_VALUE || keys[slot] == key){
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the supplied key has a value
+	 * @param key
+	 * @return
+	 */
+	public boolean containsKey(long key){
+		return get(key) != NO_VALUE;
+	}
+
+	/**
+	 * Associates the supplied value with the key, returning the value it replaced or {@link #NO_VALUE} if the key had none
+	 * @param key
+	 * @param value must not be negative
+	 * @return
+	 */
+	public int put(long key, int value){
+		if (value < 0){
+			throw new IllegalArgumentException("values must not be negative: "+value);
+		}
+		int slot = slot(key);
+		while (values[slot] != NO_VALUE){
+			if (keys[slot] == key){
+				int previous = values[slot];
+				values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size > values.length / 2){
+			resize();
+		}
+		return NO_VALUE;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	private int slot(long key){
+		// the finaliser of murmur3 spreads sequential keys, the common case for row identifiers, across the table
+		long hash = key;
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		return (int)hash & mask;
+	}
+
+	private void resize(){
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(oldValues.length * 2);
+		for (int i = 0; i < oldValues.length; i++){
+			if (oldValues[i] != NO_VALUE){
+				int slot = slot(oldKeys[i]);
+				while (values[slot] != NO_VALUE){
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int tableSize){
+		keys = new long[tableSize];
+		values = new int[tableSize];
+		Arrays.fill(values, NO_VALUE);
+		mask = tableSize - 1;
+	}
+
+	/*
+	 * the smallest power of two that holds the expected number of entries at most half full
+	 */
+	private static int tableSizeFor(int expectedSize){
+		if (expectedSize < 0){
+			throw new IllegalArgumentException("expectedSize must not be negative: "+expectedSize);
+		}
+		long minSize = Math.max(MIN_CAPACITY, (long)expectedSize * 2);
+		if (minSize > 1 << 30){
+			throw new IllegalArgumentException("too many entries: "+expectedSize);
+		}
+		return Integer.highestOneBit((int)minSize - 1) << 1;
+	}
+}
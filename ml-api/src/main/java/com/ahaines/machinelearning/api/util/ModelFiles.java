@@ -0,0 +1,268 @@
+package com.ahaines.machinelearning.api.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes the binary files that compiled models and cached datasets are saved in. A file starts with a magic number identifying
+ * the type of model and the version of its format, followed by sections of primitive values. Arrays are written as
+ * contiguous big endian values so that they can be copied straight out of a memory mapped file in bulk rather than
+ * being parsed value by value.
+ *
+ * @author andrewhaines
+ *
+ */
+public final class ModelFiles {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int CHECKSUM_BUFFER_SIZE = 64 * 1024;
+
+	private ModelFiles(){
+	}
+
+	/**
+	 * Creates the file, writing the header of a model of the supplied type and format version
+	 * @param file
+	 * @param magic
+	 * @param version
+	 * @return
+	 * @throws IOException
+	 */
+	public static DataOutputStream create(Path file, int magic, int version) throws IOException{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+		out.writeInt(magic);
+		out.writeInt(version);
+
+		return out;
+	}
+
+	/**
+	 * Maps the file into memory and checks that its header matches the supplied type and format version. The returned
+	 * buffer is positioned after the header.
+	 * @param file
+	 * @param magic
+	 * @param version
+	 * @return
+	 * @throws IOException if the file is not a model of the supplied type and version
+	 */
+	public static ByteBuffer map(Path file, int magic, int version) throws IOException{
+		ByteBuffer buffer;
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try{
+			buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+		} finally{
+			channel.close(); // the mapping remains valid once the channel is closed
+		}
+		checkHeader(buffer, file, magic, version);
+
+		return buffer;
+	}
+
+	/**
+	 * Reads the header from the start of the buffer and checks that it matches the supplied type and format version.
+	 * The buffer is left positioned after the header.
+	 * @param buffer
+	 * @param file the file the buffer was read from
+	 * @param magic
+	 * @param version
+	 * @throws IOException if the file is not a model of the supplied type and version
+	 */
+	public static void checkHeader(ByteBuffer buffer, Path file, int magic, int version) throws IOException{
+		if (buffer.remaining() < 8 || buffer.getInt() != magic){
+			throw new IOException(file+" is not a model file of the expected type");
+		}
+		int fileVersion = buffer.getInt();
+		if (fileVersion != version){
+			throw new IOException(file+" has format version "+fileVersion+" but only version "+version+" can be read");
+		}
+	}
+
+	public static void writeString(DataOutputStream out, String value) throws IOException{
+		byte[] bytes = value.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a string written by {@link #writeString(DataOutputStream, String)}
+	 * @param buffer
+	 * @return
+	 * @throws IOException if the length of the string is longer than the rest of the buffer
+	 */
+	public static String readString(ByteBuffer buffer) throws IOException{
+		byte[] bytes = new byte[readLength(buffer, null, 1)];
+		buffer.get(bytes);
+
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * Writes the name of the class, or an empty string if it is null
+	 * @param out
+	 * @param type
+	 * @throws IOException
+	 */
+	public static void writeClass(DataOutputStream out, Class<?> type) throws IOException{
+		writeString(out, (type == null)? "": type.getName());
+	}
+
+	/**
+	 * Reads and loads a class written by {@link #writeClass(DataOutputStream, Class)}, returning null if none was written
+	 * @param buffer
+	 * @return
+	 * @throws IOException if the class cannot be found
+	 */
+	public static Class<?> readClass(ByteBuffer buffer) throws IOException{
+		String name = readString(buffer);
+		if (name.isEmpty()){
+			return null;
+		}
+		try{
+			return Class.forName(name);
+		} catch (ClassNotFoundException e){
+			throw new IOException("unable to load class: "+name, e);
+		}
+	}
+
+	/**
+	 * Reads the length of an array that is followed by at least that many values of the supplied size in bytes, so a
+	 * corrupt length is reported before an array is created for it
+	 * @param buffer
+	 * @param file the file the buffer was read from, or null if it is unknown
+	 * @param valueSize the minimum number of bytes each value of the array takes up in the rest of the buffer
+	 * @return
+	 * @throws IOException if the length is negative or the rest of the buffer is too short to hold it
+	 */
+	public static int readLength(ByteBuffer buffer, Path file, int valueSize) throws IOException{
+		int length = buffer.getInt();
+		checkRemaining(buffer, file, length, valueSize);
+
+		return length;
+	}
+
+	/**
+	 * Checks that the rest of the buffer can hold the supplied number of values of the supplied size in bytes
+	 * @param buffer
+	 * @param file the file the buffer was read from, or null if it is unknown
+	 * @param length
+	 * @param valueSize
+	 * @throws IOException if the length is negative or the rest of the buffer is too short to hold it
+	 */
+	public static void checkRemaining(ByteBuffer buffer, Path file, int length, int valueSize) throws IOException{
+		if (length < 0 || (long)length * valueSize > buffer.remaining()){
+			throw new IOException(((file == null)? "the file": file.toString())+" is corrupt: "+length+" values of "+valueSize+" bytes were expected but only "+buffer.remaining()+" bytes remain");
+		}
+	}
+
+	/**
+	 * Returns the CRC32 checksum of the contents of the file, used to tell whether a file derived from it is stale
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static long checksum(Path file) throws IOException{
+		CRC32 crc = new CRC32();
+		byte[] bytes = new byte[CHECKSUM_BUFFER_SIZE];
+		InputStream in = Files.newInputStream(file);
+		try{
+			int read;
+			while ((read = in.read(bytes)) != -1){
+				crc.update(bytes, 0, read);
+			}
+		} finally{
+			in.close();
+		}
+		return crc.getValue();
+	}
+
+	public static void writeInts(DataOutputStream out, int[] values) throws IOException{
+		for (int value: values){
+			out.writeInt(value);
+		}
+	}
+
+	/**
+	 * Fills the array with the next values of the buffer
+	 * @param buffer
+	 * @param values
+	 */
+	public static void readInts(ByteBuffer buffer, int[] values){
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + values.length * 4);
+	}
+
+	public static void writeShorts(DataOutputStream out, short[] values) throws IOException{
+		for (short value: values){
+			out.writeShort(value);
+		}
+	}
+
+	/**
+	 * Fills the array with the next values of the buffer
+	 * @param buffer
+	 * @param values
+	 */
+	public static void readShorts(ByteBuffer buffer, short[] values){
+		buffer.asShortBuffer().get(values);
+		buffer.position(buffer.position() + values.length * 2);
+	}
+
+	public static void writeLongs(DataOutputStream out, long[] values) throws IOException{
+		for (long value: values){
+			out.writeLong(value);
+		}
+	}
+
+	/**
+	 * Fills the array with the next values of the buffer
+	 * @param buffer
+	 * @param values
+	 */
+	public static void readLongs(ByteBuffer buffer, long[] values){
+		buffer.asLongBuffer().get(values);
+		buffer.position(buffer.position() + values.length * 8);
+	}
+
+	public static void writeDoubles(DataOutputStream out, double[] values) throws IOException{
+		for (double value: values){
+			out.writeDouble(value);
+		}
+	}
+
+	/**
+	 * Fills the array with the next values of the buffer
+	 * @param buffer
+	 * @param values
+	 */
+	public static void readDoubles(ByteBuffer buffer, double[] values){
+		buffer.asDoubleBuffer().get(values);
+		buffer.position(buffer.position() + values.length * 8);
+	}
+
+	public static void writeBooleans(DataOutputStream out, boolean[] values) throws IOException{
+		for (boolean value: values){
+			out.writeBoolean(value);
+		}
+	}
+
+	/**
+	 * Fills the array with the next values of the buffer
+	 * @param buffer
+	 * @param values
+	 */
+	public static void readBooleans(ByteBuffer buffer, boolean[] values){
+		for (int i = 0; i < values.length; i++){
+			values[i] = buffer.get() != 0;
+		}
+	}
+}
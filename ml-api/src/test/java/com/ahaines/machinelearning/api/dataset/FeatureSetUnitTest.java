@@ -16,6 +16,7 @@ import com.haines.ml.model.ContinuousFeature.LongFeature;
 import static org.junit.Assert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
 
 public class FeatureSetUnitTest {
 
@@ -48,6 +49,28 @@ public class FeatureSetUnitTest {
 		assertThat(instance.getFeature(TestFeature5.class).getValue(), is(equalTo(3466767573245L)));
 	}
 	
+	@Test
+	public void givenCorrectFeatureValues_whenCallingCreate_thenFeaturesAccessibleBySchemaSlot(){
+		
+		List<FeatureDefinition> features = new ArrayList<FeatureDefinition>();
+		features.add(FeatureDefinition.get(new TestFeature5(3466767573245L)));
+		features.add(FeatureDefinition.get(new TestFeature3(Feature1Vals.TEST_VAL1)));
+		features.add(FeatureDefinition.get(new TestFeature1(12L)));
+		features.add(FeatureDefinition.get(new TestFeature4(Feature2Vals.TEST_VAL3)));
+		features.add(FeatureDefinition.get(new TestFeature2(23)));
+		
+		FeatureSet instance = candidate.createFeatureSet(Identifier.FACTORY.createIdentifier(100), features);
+		
+		FeatureSchema schema = instance.getSchema();
+		
+		assertThat(schema, is(sameInstance(candidate.getSchema())));
+		assertThat(schema.getSlot(TestFeature1.class), is(equalTo(0)));
+		assertThat(schema.getSlot(TestFeature5.class), is(equalTo(4)));
+		assertThat(schema.getSlot(TestFeature6.class), is(equalTo(FeatureSchema.NOT_IN_SCHEMA)));
+		assertThat(instance.getFeature(schema.getSlot(TestFeature2.class)).getValue(), is(equalTo((Object)23)));
+		assertThat(instance.getFeature(schema.getSlot(TestFeature4.class)).getValue(), is(equalTo((Object)Feature2Vals.TEST_VAL3)));
+	}
+	
 	@Test(expected=IllegalArgumentException.class)
 	public void givenMissingFeatureValues_whenCallingCreate_thenExceptionThrown(){
 		
@@ -0,0 +1,52 @@
+package com.ahaines.machinelearning.api.dataset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+public class IdentifierMapUnitTest {
+
+	@Test
+	public void givenIntAndLongIdentifiersOfSameValue_whenComparing_thenNotEqualButHashedAsBoxedValues(){
+		Identifier intId = Identifier.FACTORY.createIdentifier(5);
+		Identifier longId = Identifier.FACTORY.createIdentifier(5L);
+
+		assertThat(intId.equals(Identifier.FACTORY.createIdentifier(5)), is(equalTo(true)));
+		assertThat(intId.equals(longId), is(equalTo(false)));
+		assertThat(intId.hashCode(), is(equalTo(Integer.valueOf(5).hashCode())));
+		assertThat(Identifier.FACTORY.createIdentifier(-3L << 40).hashCode(), is(equalTo(Long.valueOf(-3L << 40).hashCode())));
+		assertThat(longId.toString(), is(equalTo("5")));
+	}
+
+	@Test
+	public void givenMixedIdentifiers_whenPutting_thenEachFoundAndIteratedInPutOrder(){
+		Identifier randomId = Identifier.FACTORY.createRandomIdentifier();
+		Map<Identifier, String> candidate = new IdentifierMap<String>(1);
+
+		candidate.put(Identifier.FACTORY.createIdentifier(5), "int");
+		candidate.put(randomId, "random");
+		candidate.put(Identifier.FACTORY.createIdentifier(5L), "long");
+		assertThat(candidate.put(Identifier.FACTORY.createIdentifier(5), "int again"), is(equalTo("int")));
+
+		assertThat(candidate.size(), is(equalTo(3)));
+		assertThat(candidate.get(Identifier.FACTORY.createIdentifier(5)), is(equalTo("int again")));
+		assertThat(candidate.get(Identifier.FACTORY.createIdentifier(5L)), is(equalTo("long")));
+		assertThat(candidate.get(randomId), is(equalTo("random")));
+		assertThat(candidate.get(Identifier.FACTORY.createIdentifier(6)), is(nullValue()));
+		assertThat(candidate.containsKey("5"), is(equalTo(false)));
+		assertThat(new ArrayList<String>(candidate.values()), is(equalTo((List<String>)Arrays.asList("int again", "random", "long"))));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void givenDuplicateIdentifiers_whenIndexing_thenIllegalArgumentExceptionThrown(){
+		IdentifierIndex.index(new Identifier[]{Identifier.FACTORY.createIdentifier(1), Identifier.FACTORY.createIdentifier(1)});
+	}
+}
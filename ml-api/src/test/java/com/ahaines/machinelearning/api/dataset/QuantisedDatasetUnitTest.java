@@ -0,0 +1,106 @@
+package com.ahaines.machinelearning.api.dataset;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ahaines.machinelearning.api.dataset.Dataset.DatasetBuilder;
+import com.ahaines.machinelearning.api.dataset.columnar.ColumnarClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.columnar.FeatureColumn.SubstitutedColumn;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser.QuantiserEventProcessor;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantisers;
+import com.ahaines.machinelearning.api.dataset.quantiser.RangeFeature;
+import com.ahaines.machinelearning.test.spam.Email.EmailClassification;
+import com.ahaines.machinelearning.test.spam.Email.Features;
+import com.ahaines.machinelearning.test.spam.Email.Features.Contains;
+import com.haines.ml.model.Feature;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class QuantisedDatasetUnitTest {
+
+	@SuppressWarnings("unchecked")
+	private static final Iterable<Class<? extends Feature<?>>> TEST_FEATURE_TYPES = (Iterable<Class<? extends Feature<?>>>)(Iterable<?>)Arrays.asList(Features.ViagraFeature.class, Features.HoursIgnoredFeature.class);
+	private static final FeatureSet.FeatureSetFactory FACTORY = new FeatureSet.FeatureSetFactory(TEST_FEATURE_TYPES);
+	private static final int[] HOURS_IGNORED = {100, 30, 26, 75, 103, 44, 45, 97, 56, 100, 45, 98, 22, 65};
+
+	private ContinuousFeatureQuantiser quantiser;
+	private ClassifiedDataset<EmailClassification> dataset;
+	private Map<Identifier, String> expectedRanges;
+
+	@Before
+	public void before(){
+		quantiser = ContinuousFeatureQuantisers.getConstantBucketQuantiser(5);
+		DatasetBuilder builder = new DatasetBuilder(TEST_FEATURE_TYPES);
+		Map<Identifier, Classification<EmailClassification>> classifications = new HashMap<Identifier, Classification<EmailClassification>>();
+		for (int i = 0; i < HOURS_IGNORED.length; i++){
+			Identifier identifier = Identifier.FACTORY.createIdentifier(i);
+			builder.addInstance(FACTORY.createFeatureSet(identifier, Arrays.asList(new FeatureDefinition(new Features.ViagraFeature((i % 2 == 0)? Contains.PRESENT: Contains.ABSENT)), new FeatureDefinition(new Features.HoursIgnoredFeature(HOURS_IGNORED[i])))));
+			classifications.put(identifier, new Classification<EmailClassification>(identifier, (i % 3 == 0)? EmailClassification.SPAM: EmailClassification.HAM));
+		}
+		dataset = ClassifiedDataset.FACTORY.create(builder.build(), classifications);
+
+		expectedRanges = new HashMap<Identifier, String>();
+		quantiser.quantise(dataset.getInstances(), Features.HoursIgnoredFeature.class, new QuantiserEventProcessor(){
+
+			@Override
+			public <T extends Number & Comparable<T>> void newRangeDetermined(RangeFeature<T> range, Iterable<? extends ClassifiedFeatureSet<? extends Enum<?>>> instancesInRange) {
+				for (ClassifiedFeatureSet<? extends Enum<?>> instance: instancesInRange){
+					expectedRanges.put(instance.getId(), range.toString());
+				}
+			}
+		});
+	}
+
+	@Test
+	public void givenRowDataset_whenDiscretising_thenContinuousFeaturesReplacedByTheirRangesAndOthersShared(){
+		QuantisedDataset<EmailClassification> candidate = QuantisedDataset.discretise(dataset, quantiser);
+
+		assertThat(candidate.getQuantisedRanges().get(Features.HoursIgnoredFeature.class).size(), is(equalTo(5)));
+		assertDiscretised(candidate);
+	}
+
+	@Test
+	public void givenColumnarDataset_whenDiscretising_thenColumnarViewWithSubstitutedColumnReturned(){
+		ColumnarClassifiedDataset<EmailClassification> columnarDataset = ColumnarClassifiedDataset.create(dataset, EmailClassification.class);
+
+		QuantisedDataset<EmailClassification> candidate = QuantisedDataset.discretise(columnarDataset, quantiser);
+
+		assertThat(candidate.getDataset(), is(instanceOf(ColumnarClassifiedDataset.class)));
+		ColumnarClassifiedDataset<EmailClassification> view = (ColumnarClassifiedDataset<EmailClassification>)candidate.getDataset();
+		assertThat(view.getColumn(Features.HoursIgnoredFeature.class), is(instanceOf(SubstitutedColumn.class)));
+		assertThat(view.getColumn(Features.ViagraFeature.class), is(sameInstance(columnarDataset.getColumn(Features.ViagraFeature.class))));
+		assertDiscretised(candidate);
+	}
+
+	private void assertDiscretised(QuantisedDataset<EmailClassification> candidate){
+		int numInstances = 0;
+		for (ClassifiedFeatureSet<EmailClassification> instance: candidate.getInstances()){
+			ClassifiedFeatureSet<EmailClassification> original = dataset.getInstance(instance.getId());
+
+			assertThat(getHoursIgnored(instance), is(equalTo(expectedRanges.get(instance.getId()))));
+			assertThat(instance.getFeature(Features.ViagraFeature.class), is(equalTo(original.getFeature(Features.ViagraFeature.class))));
+			assertThat(instance.getClassification().getValue(), is(equalTo(original.getClassification().getValue())));
+			assertThat(getHoursIgnored(candidate.getInstance(instance.getId())), is(equalTo(expectedRanges.get(instance.getId()))));
+			numInstances++;
+		}
+		assertThat(numInstances, is(equalTo(HOURS_IGNORED.length)));
+	}
+
+	/*
+	 * the discretised feature is a range rather than the declared feature type so is read without the typed cast
+	 */
+	private static String getHoursIgnored(FeatureSet instance){
+		Class<? extends Feature<?>> featureType = Features.HoursIgnoredFeature.class;
+
+		return instance.getFeature(featureType).toString();
+	}
+}
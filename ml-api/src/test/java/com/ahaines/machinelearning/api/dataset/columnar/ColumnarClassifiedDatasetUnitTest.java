@@ -0,0 +1,354 @@
+package com.ahaines.machinelearning.api.dataset.columnar;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ahaines.machinelearning.api.dataset.Classification;
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.Dataset.DatasetBuilder;
+import com.ahaines.machinelearning.api.dataset.FeatureDefinition;
+import com.ahaines.machinelearning.api.dataset.FeatureSchema;
+import com.ahaines.machinelearning.api.dataset.FeatureSet;
+import com.ahaines.machinelearning.api.dataset.Identifier;
+import com.ahaines.machinelearning.api.dataset.columnar.FeatureColumn.IntColumn;
+import com.ahaines.machinelearning.api.dataset.columnar.FeatureColumn.NumericColumn;
+import com.ahaines.machinelearning.api.dataset.columnar.FeatureColumn.ObjectColumn;
+import com.ahaines.machinelearning.api.dataset.columnar.FeatureColumn.OrdinalColumn;
+import com.ahaines.machinelearning.test.spam.Email.EmailClassification;
+import com.ahaines.machinelearning.test.spam.Email.Features;
+import com.ahaines.machinelearning.test.spam.Email.Features.Contains;
+import com.google.common.base.Predicate;
+import com.haines.ml.model.DiscreteFeature;
+import com.haines.ml.model.Feature;
+
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class ColumnarClassifiedDatasetUnitTest {
+
+	@SuppressWarnings("unchecked")
+	private static final Iterable<Class<? extends Feature<?>>> TEST_FEATURE_TYPES = (Iterable<Class<? extends Feature<?>>>)(Iterable<?>)Arrays.asList(Features.ViagraFeature.class, Features.HoursIgnoredFeature.class, SenderFeature.class);
+	@SuppressWarnings("unchecked")
+	private static final Iterable<Class<? extends Feature<?>>> PRIMITIVE_FEATURE_TYPES = (Iterable<Class<? extends Feature<?>>>)(Iterable<?>)Arrays.asList(Features.HoursIgnoredFeature.class, SenderFeature.class);
+	private static final FeatureSet.FeatureSetFactory FACTORY = new FeatureSet.FeatureSetFactory(TEST_FEATURE_TYPES);
+	private static final long CHECKSUM = 0x12345678L;
+
+	private ClassifiedDataset<EmailClassification> rowDataset;
+	private ColumnarClassifiedDataset<EmailClassification> candidate;
+
+	@Before
+	public void before(){
+		DatasetBuilder builder = new DatasetBuilder(TEST_FEATURE_TYPES);
+		Map<Identifier, Classification<EmailClassification>> classifications = new HashMap<Identifier, Classification<EmailClassification>>();
+
+		addInstance(1, new Features.ViagraFeature(Contains.PRESENT), new Features.HoursIgnoredFeature(12), SenderFeature.UNKNOWN, EmailClassification.SPAM, builder, classifications);
+		addInstance(2, new Features.ViagraFeature(Contains.ABSENT), com.haines.ml.model.Feature.Features.MISSING, SenderFeature.CONTACT, EmailClassification.HAM, builder, classifications);
+		addInstance(3, com.haines.ml.model.Feature.Features.MISSING, new Features.HoursIgnoredFeature(-4), com.haines.ml.model.Feature.Features.MISSING, EmailClassification.HAM, builder, classifications);
+
+		rowDataset = ClassifiedDataset.FACTORY.create(builder.build(), classifications);
+		candidate = ColumnarClassifiedDataset.create(rowDataset, EmailClassification.class);
+	}
+
+	@Test
+	public void givenRowDataset_whenConvertingToColumnar_thenAllFeaturesAndClassificationsRetained(){
+		assertThat(candidate.size(), is(equalTo(3)));
+
+		for (ClassifiedFeatureSet<EmailClassification> expected: rowDataset.getInstances()){
+			ClassifiedFeatureSet<EmailClassification> actual = candidate.getInstance(expected.getId());
+
+			for (Class<? extends Feature<?>> featureType: TEST_FEATURE_TYPES){
+				assertThat(actual.getFeature(featureType), is(equalTo((Object)expected.getFeature(featureType))));
+			}
+			assertThat(actual.getClassification().getValue(), is(equalTo(expected.getClassification().getValue())));
+			assertThat(candidate.getClassifications().get(expected.getId()).getValue(), is(equalTo(expected.getClassification().getValue())));
+		}
+	}
+
+	@Test
+	public void givenColumnarDataset_whenGettingColumns_thenPrimitiveColumnsUsedWherePossible(){
+		assertThat(candidate.getColumn(Features.HoursIgnoredFeature.class), is(instanceOf(IntColumn.class)));
+		assertThat(candidate.getColumn(SenderFeature.class), is(instanceOf(OrdinalColumn.class)));
+		assertThat(candidate.getColumn(Features.ViagraFeature.class), is(instanceOf(ObjectColumn.class)));
+
+		int row = candidate.getRowIndex(Identifier.FACTORY.createIdentifier(3));
+
+		assertThat(((IntColumn)candidate.getColumn(Features.HoursIgnoredFeature.class)).getInt(row), is(equalTo(-4)));
+		assertThat(candidate.getColumn(SenderFeature.class).isMissing(row), is(equalTo(true)));
+		assertThat(candidate.getClassificationOrdinal(row), is(equalTo(EmailClassification.HAM.ordinal())));
+	}
+
+	@Test
+	public void givenColumnarRow_whenReadingThroughColumnReader_thenValuesReadFromColumns(){
+		ColumnReader hoursReader = new ColumnReader(Features.HoursIgnoredFeature.class);
+		ColumnReader senderReader = new ColumnReader(SenderFeature.class);
+
+		ClassifiedFeatureSet<EmailClassification> row = candidate.getInstance(Identifier.FACTORY.createIdentifier(1));
+
+		assertThat(hoursReader.getColumn(row), is(sameInstance(candidate.getColumn(Features.HoursIgnoredFeature.class))));
+		assertThat(hoursReader.getDouble(row), is(equalTo(12.0)));
+		assertThat(senderReader.getOrdinal(row), is(equalTo(SenderFeature.UNKNOWN.ordinal())));
+		assertThat(senderReader.getOrdinal(candidate.getInstance(Identifier.FACTORY.createIdentifier(3))), is(equalTo(-1)));
+
+		ClassifiedFeatureSet<EmailClassification> nonColumnarRow = rowDataset.getInstance(Identifier.FACTORY.createIdentifier(1));
+
+		assertThat(hoursReader.getColumn(nonColumnarRow), is(nullValue()));
+		assertThat(hoursReader.getDouble(nonColumnarRow), is(equalTo(12.0)));
+		assertThat(senderReader.getOrdinal(nonColumnarRow), is(equalTo(SenderFeature.UNKNOWN.ordinal())));
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void givenIncompleteRow_whenEndingRow_thenExceptionThrown(){
+		ColumnarClassifiedDataset.Builder<EmailClassification> builder = new ColumnarClassifiedDataset.Builder<EmailClassification>(TEST_FEATURE_TYPES, EmailClassification.class);
+
+		((FeatureColumn.IntColumnBuilder)builder.getColumnBuilder(Features.HoursIgnoredFeature.class)).appendInt(4);
+
+		builder.endRow(Identifier.FACTORY.createIdentifier(1), EmailClassification.SPAM);
+	}
+
+	@Test
+	public void givenDatasetOfPrimitiveColumns_whenWrittenAndLoaded_thenSameValuesReturned() throws IOException{
+		FeatureSchema schema = new FeatureSchema(PRIMITIVE_FEATURE_TYPES);
+		ColumnarClassifiedDataset<EmailClassification> dataset = createPrimitiveDataset(schema);
+		Path file = Files.createTempFile("dataset", ".columns");
+		try{
+			dataset.write(file, CHECKSUM);
+
+			ColumnarClassifiedDataset<EmailClassification> loaded = ColumnarClassifiedDataset.load(file, schema, EmailClassification.class, CHECKSUM);
+
+			assertThat(loaded.size(), is(equalTo(dataset.size())));
+			assertThat(loaded.getSchema(), is(sameInstance(schema)));
+			for (ClassifiedFeatureSet<EmailClassification> expected: rowDataset.getInstances()){
+				ClassifiedFeatureSet<EmailClassification> actual = loaded.getInstance(expected.getId());
+
+				for (Class<? extends Feature<?>> featureType: PRIMITIVE_FEATURE_TYPES){
+					assertThat(actual.getFeature(featureType), is(equalTo((Object)expected.getFeature(featureType))));
+				}
+				assertThat(actual.getClassification().getValue(), is(equalTo(expected.getClassification().getValue())));
+			}
+		} finally{
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void givenWrittenDataset_whenOpened_thenValuesReadInPlaceUntilClosed() throws IOException{
+		FeatureSchema schema = new FeatureSchema(PRIMITIVE_FEATURE_TYPES);
+		Path file = Files.createTempFile("dataset", ".columns");
+		try{
+			createPrimitiveDataset(schema).write(file, CHECKSUM);
+
+			ColumnarClassifiedDataset<EmailClassification> opened = ColumnarClassifiedDataset.open(file, schema, EmailClassification.class, CHECKSUM);
+			ColumnarClassifiedDataset<EmailClassification> view = opened.filter(new Predicate<ClassifiedFeatureSet<EmailClassification>>(){
+
+				@Override
+				public boolean apply(ClassifiedFeatureSet<EmailClassification> input) {
+					return input.getClassification().getValue() == EmailClassification.HAM;
+				}
+			});
+			try{
+				assertThat(opened.size(), is(equalTo(3)));
+				assertThat(opened.getColumn(Features.HoursIgnoredFeature.class), is(instanceOf(NumericColumn.class)));
+				assertThat(opened.getColumn(SenderFeature.class), is(instanceOf(OrdinalColumn.class)));
+				for (ClassifiedFeatureSet<EmailClassification> expected: rowDataset.getInstances()){
+					ClassifiedFeatureSet<EmailClassification> actual = opened.getInstance(expected.getId());
+
+					for (Class<? extends Feature<?>> featureType: PRIMITIVE_FEATURE_TYPES){
+						assertThat(actual.getFeature(featureType), is(equalTo((Object)expected.getFeature(featureType))));
+					}
+					assertThat(opened.getClassifications().get(expected.getId()).getValue(), is(equalTo(expected.getClassification().getValue())));
+				}
+				assertThat(view.size(), is(equalTo(2)));
+				assertThat(view.getInstance(Identifier.FACTORY.createIdentifier(3)).getFeature(SenderFeature.class), is(equalTo((Object)com.haines.ml.model.Feature.Features.MISSING)));
+			} finally{
+				view.close();
+			}
+			try{
+				opened.getColumn(SenderFeature.class).isMissing(0);
+				fail("the opened dataset should not be readable once its view has closed the file");
+			} catch (IllegalStateException e){
+				// expected
+			}
+		} finally{
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void givenWrittenDataset_whenOpeningWithDifferentChecksum_thenNullReturned() throws IOException{
+		FeatureSchema schema = new FeatureSchema(PRIMITIVE_FEATURE_TYPES);
+		Path file = Files.createTempFile("dataset", ".columns");
+		try{
+			createPrimitiveDataset(schema).write(file, CHECKSUM);
+
+			assertThat(ColumnarClassifiedDataset.open(file, schema, EmailClassification.class, CHECKSUM + 1), is(nullValue()));
+		} finally{
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void givenWrittenDataset_whenLoadingWithDifferentChecksum_thenNullReturned() throws IOException{
+		FeatureSchema schema = new FeatureSchema(PRIMITIVE_FEATURE_TYPES);
+		Path file = Files.createTempFile("dataset", ".columns");
+		try{
+			createPrimitiveDataset(schema).write(file, CHECKSUM);
+
+			assertThat(ColumnarClassifiedDataset.load(file, schema, EmailClassification.class, CHECKSUM + 1), is(nullValue()));
+		} finally{
+			Files.delete(file);
+		}
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void givenDatasetWithObjectColumn_whenWriting_thenExceptionThrown() throws IOException{
+		Path file = Files.createTempFile("dataset", ".columns");
+		try{
+			candidate.write(file, CHECKSUM);
+		} finally{
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void givenColumnarDataset_whenSelectingRows_thenViewSharesColumnsAndResolvesRowsByIndex(){
+		Identifier id1 = Identifier.FACTORY.createIdentifier(1);
+		Identifier id2 = Identifier.FACTORY.createIdentifier(2);
+		Identifier id3 = Identifier.FACTORY.createIdentifier(3);
+		int[] rows = {candidate.getRowIndex(id1), candidate.getRowIndex(id3)};
+		Arrays.sort(rows);
+
+		ColumnarClassifiedDataset<EmailClassification> view = candidate.select(rows);
+
+		assertThat(view.size(), is(equalTo(2)));
+		assertThat(view.getInstance(id2), is(nullValue()));
+		assertThat(view.getClassifications().containsKey(id2), is(equalTo(false)));
+		assertThat(view.getClassifications().get(id3).getValue(), is(equalTo(EmailClassification.HAM)));
+		assertThat(view.getColumn(Features.HoursIgnoredFeature.class), is(instanceOf(NumericColumn.class)));
+		assertThat(view.getColumn(SenderFeature.class), is(instanceOf(OrdinalColumn.class)));
+
+		ColumnReader hoursReader = new ColumnReader(Features.HoursIgnoredFeature.class);
+		ColumnReader senderReader = new ColumnReader(SenderFeature.class);
+		for (Identifier id: Arrays.asList(id1, id3)){
+			ClassifiedFeatureSet<EmailClassification> expected = rowDataset.getInstance(id);
+			ClassifiedFeatureSet<EmailClassification> actual = view.getInstance(id);
+
+			for (Class<? extends Feature<?>> featureType: TEST_FEATURE_TYPES){
+				assertThat(actual.getFeature(featureType), is(equalTo((Object)expected.getFeature(featureType))));
+			}
+			assertThat(hoursReader.getDouble(actual), is(equalTo(hoursReader.getDouble(expected))));
+			assertThat(senderReader.getOrdinal(actual), is(equalTo(senderReader.getOrdinal(expected))));
+			assertThat(actual.getClassification().getValue(), is(equalTo(expected.getClassification().getValue())));
+		}
+	}
+
+	@Test
+	public void givenColumnarDataset_whenFilteringTwice_thenViewsChainOverOriginalColumns(){
+		ColumnarClassifiedDataset<EmailClassification> hamView = candidate.filter(new Predicate<ClassifiedFeatureSet<EmailClassification>>(){
+
+			@Override
+			public boolean apply(ClassifiedFeatureSet<EmailClassification> instance) {
+				return instance.getClassification().getValue() == EmailClassification.HAM;
+			}
+		});
+		ColumnarClassifiedDataset<EmailClassification> presentHoursView = hamView.filter(new Predicate<ClassifiedFeatureSet<EmailClassification>>(){
+
+			@Override
+			public boolean apply(ClassifiedFeatureSet<EmailClassification> instance) {
+				return !new ColumnReader(Features.HoursIgnoredFeature.class).isMissing(instance);
+			}
+		});
+
+		assertThat(hamView.size(), is(equalTo(2)));
+		assertThat(presentHoursView.size(), is(equalTo(1)));
+		assertThat(presentHoursView.getId(0), is(equalTo(Identifier.FACTORY.createIdentifier(3))));
+		assertThat(presentHoursView.getRowIndex(Identifier.FACTORY.createIdentifier(3)), is(equalTo(0)));
+		assertThat(presentHoursView.getRowIndex(Identifier.FACTORY.createIdentifier(1)), is(equalTo(-1)));
+		assertThat(((NumericColumn)presentHoursView.getColumn(Features.HoursIgnoredFeature.class)).getIntValue(0), is(equalTo(-4)));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void givenRowsOutOfOrder_whenSelecting_thenExceptionThrown(){
+		candidate.select(new int[]{2, 0});
+	}
+
+	@Test
+	public void givenColumnarDataset_whenProjecting_thenOnlyProjectedColumnsSharedWithDataset(){
+		@SuppressWarnings("unchecked")
+		ColumnarClassifiedDataset<EmailClassification> view = candidate.project(Arrays.<Class<? extends Feature<?>>>asList(SenderFeature.class, Features.HoursIgnoredFeature.class));
+
+		assertThat(view.getSchema().getFeatureTypes().toString(), is(equalTo(Arrays.asList(SenderFeature.class, Features.HoursIgnoredFeature.class).toString())));
+		assertThat(view.getColumn(SenderFeature.class), is(sameInstance(candidate.getColumn(SenderFeature.class))));
+		assertThat(view.getInstance(Identifier.FACTORY.createIdentifier(1)).getFeature(0), is(equalTo((Object)SenderFeature.UNKNOWN)));
+		assertThat(view.getSchema().getSlot(Features.ViagraFeature.class), is(equalTo(FeatureSchema.NOT_IN_SCHEMA)));
+	}
+
+	@Test
+	public void givenSubstitutedColumn_whenReadingRows_thenSubstitutesReturnedAndOtherRowsKeepOriginalFeature(){
+		Feature<?>[] substitutes = {SenderFeature.CONTACT};
+		int[] substituteIndexes = new int[candidate.size()];
+		Arrays.fill(substituteIndexes, -1);
+		int row1 = candidate.getRowIndex(Identifier.FACTORY.createIdentifier(1));
+		int row3 = candidate.getRowIndex(Identifier.FACTORY.createIdentifier(3));
+		substituteIndexes[row3] = 0;
+
+		ColumnarClassifiedDataset<EmailClassification> view = candidate.withColumns(Arrays.asList(candidate.getColumn(SenderFeature.class).substitute(substitutes, substituteIndexes)));
+
+		assertThat(view.getRow(row3).getFeature(SenderFeature.class), is(equalTo(SenderFeature.CONTACT)));
+		assertThat(view.getColumn(SenderFeature.class).isMissing(row3), is(equalTo(false)));
+		assertThat(view.getRow(row1).getFeature(SenderFeature.class), is(equalTo(SenderFeature.UNKNOWN)));
+		assertThat(candidate.getRow(row3).getFeature(SenderFeature.class), is(equalTo((Object)com.haines.ml.model.Feature.Features.MISSING)));
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void givenSelectedViewOfPrimitiveColumns_whenWriting_thenExceptionThrown() throws IOException{
+		ColumnarClassifiedDataset<EmailClassification> view = createPrimitiveDataset(new FeatureSchema(PRIMITIVE_FEATURE_TYPES)).select(new int[]{0, 1});
+		Path file = Files.createTempFile("dataset", ".columns");
+		try{
+			view.write(file, CHECKSUM);
+		} finally{
+			Files.delete(file);
+		}
+	}
+
+	private ColumnarClassifiedDataset<EmailClassification> createPrimitiveDataset(FeatureSchema schema){
+		ColumnarClassifiedDataset.Builder<EmailClassification> builder = new ColumnarClassifiedDataset.Builder<EmailClassification>(schema, EmailClassification.class);
+		for (ClassifiedFeatureSet<EmailClassification> instance: rowDataset.getInstances()){
+			builder.addInstance(instance, instance.getClassification().getValue());
+		}
+		return builder.build();
+	}
+
+	private static void addInstance(int id, Feature<?> viagra, Feature<?> hoursIgnored, Feature<?> sender, EmailClassification classification, DatasetBuilder builder, Map<Identifier, Classification<EmailClassification>> classifications){
+		Identifier identifier = Identifier.FACTORY.createIdentifier(id);
+		builder.addInstance(FACTORY.createFeatureSet(identifier, Arrays.asList(new FeatureDefinition(viagra, Features.ViagraFeature.class), new FeatureDefinition(hoursIgnored, Features.HoursIgnoredFeature.class), new FeatureDefinition(sender, SenderFeature.class))));
+		classifications.put(identifier, new Classification<EmailClassification>(identifier, classification));
+	}
+
+	private static enum SenderFeature implements DiscreteFeature<SenderFeature>{
+		CONTACT,
+		UNKNOWN;
+
+		@Override
+		public SenderFeature getValue() {
+			return this;
+		}
+
+		@Override
+		public boolean intersects(Feature<SenderFeature> otherFeature) {
+			return this == otherFeature.getValue();
+		}
+	}
+}
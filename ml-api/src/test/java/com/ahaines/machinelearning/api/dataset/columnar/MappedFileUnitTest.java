@@ -0,0 +1,82 @@
+package com.ahaines.machinelearning.api.dataset.columnar;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+public class MappedFileUnitTest {
+
+	private static final int NUM_VALUES = 37;
+
+	private Path file;
+
+	@Before
+	public void before() throws IOException{
+		file = Files.createTempFile("mapped", ".bin");
+		DataOutputStream out = new DataOutputStream(Files.newOutputStream(file));
+		try{
+			out.writeByte(7); // a header byte so that the regions do not start at a segment boundary of the file
+			for (int i = 0; i < NUM_VALUES; i++){
+				out.writeInt(i * 1000 - 5);
+			}
+			for (int i = 0; i < NUM_VALUES; i++){
+				out.writeDouble(i / 4.0);
+			}
+		} finally{
+			out.close();
+		}
+	}
+
+	@After
+	public void after() throws IOException{
+		Files.delete(file);
+	}
+
+	@Test
+	public void givenRegionsSpanningManySegments_whenReadingValues_thenEachValueReadFromItsSegment() throws IOException{
+		MappedFile candidate = MappedFile.open(file, 4); // 16 byte segments
+		try{
+			assertThat(candidate.window().get(), is(equalTo((byte)7)));
+			candidate.skip(1);
+			MappedFile.Region ints = candidate.mapNext(NUM_VALUES * 4L);
+			MappedFile.Region doubles = candidate.mapNext(NUM_VALUES * 8L);
+
+			for (int i = 0; i < NUM_VALUES; i++){
+				assertThat(ints.getInt(i), is(equalTo(i * 1000 - 5)));
+				assertThat(doubles.getDouble(i), is(equalTo(i / 4.0)));
+			}
+			assertThat(candidate.getPosition(), is(equalTo(Files.size(file))));
+		} finally{
+			candidate.close();
+		}
+	}
+
+	@Test(expected=IOException.class)
+	public void givenRegionBeyondEndOfFile_whenMapping_thenIOExceptionThrown() throws IOException{
+		MappedFile candidate = MappedFile.open(file);
+		try{
+			candidate.mapNext(Files.size(file) + 1);
+		} finally{
+			candidate.close();
+		}
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void givenClosedFile_whenReadingRegion_thenIllegalStateExceptionThrown() throws IOException{
+		MappedFile candidate = MappedFile.open(file);
+		candidate.skip(1);
+		MappedFile.Region ints = candidate.mapNext(NUM_VALUES * 4L);
+		candidate.close();
+
+		ints.getInt(0);
+	}
+}
@@ -0,0 +1,83 @@
+package com.ahaines.machinelearning.api.dataset.quantiser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.quantiser.ColumnQuantiser.ValueType;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser.QuantiserEventProcessor;
+import com.ahaines.machinelearning.test.spam.Email.Features;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+public class ColumnQuantisersUnitTest {
+
+	private static final String MIN = Integer.toString(Integer.MIN_VALUE);
+	private static final String MAX = Integer.toString(Integer.MAX_VALUE);
+
+	@Test
+	public void givenAveragePivotQuantiser_whenQuantising_thenRowsSplitAroundAverageInColumnOrder(){
+		ColumnQuantisation quantisation = ColumnQuantisers.getAveragePivotQuantiser().quantise(new double[]{5, 1, 9, 3}, ValueType.INT, new int[]{0, 1, 0, 1}, 4);
+
+		assertThat(describe(quantisation), is(equalTo("["+MIN+",4):1,3 [4,"+MAX+"]:0,2")));
+	}
+
+	@Test
+	public void givenClusteredQuantiser_whenQuantisingUnsortedColumnWithTies_thenNewBinAtEachClassificationChangeInValueOrder(){
+		ColumnQuantisation quantisation = ColumnQuantisers.getClusteredQuantiser().quantise(new double[]{3, 1, 3, 2, 1}, ValueType.INT, new int[]{0, 0, 1, 1, 1}, 5);
+
+		assertThat(describe(quantisation), is(equalTo("["+MIN+",2):1,4 [2,3):3 [3,"+MAX+"]:0,2")));
+	}
+
+	@Test
+	public void givenConstantBucketQuantiser_whenQuantising_thenEqualWidthBucketsBetweenExtremityBuckets(){
+		ColumnQuantisation quantisation = ColumnQuantisers.getConstantBucketQuantiser(4).quantise(new double[]{10, 0, 5, 7, 2, 10}, ValueType.INT, new int[6], 6);
+
+		assertThat(describe(quantisation), is(equalTo("["+MIN+",1):1 [1,5):4 [5,10):2,3 [10,"+MAX+"]:5,0")));
+	}
+
+	@Test
+	public void givenConstantBucketQuantiser_whenAllValuesSame_thenSingleBinOfAllRows(){
+		ColumnQuantisation quantisation = ColumnQuantisers.getConstantBucketQuantiser(4).quantise(new double[]{3, 3, 3}, ValueType.INT, new int[3], 3);
+
+		assertThat(describe(quantisation), is(equalTo("["+MIN+","+MAX+"]:0,1,2")));
+	}
+
+	@Test
+	public void givenUnsortedColumnWithTies_whenSortingRows_thenRowsInValueOrderWithTiesInRowOrder(){
+		assertThat(Arrays.toString(ColumnQuantisers.sortRows(new double[]{2, 1, 2, 0, 1, 2}, 6)), is(equalTo("[3, 1, 4, 0, 2, 5]")));
+		assertThat(Arrays.toString(ColumnQuantisers.sortRows(new double[]{0, 1, 1, 2, 5}, 4)), is(equalTo("[0, 1, 2, 3]")));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void givenAdapter_whenQuantisingNoInstances_thenIllegalArgumentExceptionThrown(){
+		ContinuousFeatureQuantisers.getColumnQuantiserAdapter(ColumnQuantisers.getClusteredQuantiser()).quantise(new ArrayList<ClassifiedFeatureSet<? extends Enum<?>>>(), Features.HoursIgnoredFeature.class, new QuantiserEventProcessor(){
+
+			@Override
+			public <T extends Number & Comparable<T>> void newRangeDetermined(RangeFeature<T> range, Iterable<? extends ClassifiedFeatureSet<? extends Enum<?>>> instancesInRange) {
+			}
+		});
+	}
+
+	private static String describe(ColumnQuantisation quantisation){
+		StringBuilder description = new StringBuilder();
+		for (int bin = 0; bin < quantisation.getNumBins(); bin++){
+			if (bin > 0){
+				description.append(' ');
+			}
+			description.append('[').append((long)quantisation.getLowerBound(bin)).append(',').append((long)quantisation.getUpperBound(bin));
+			description.append(quantisation.isUpperBoundInclusive(bin)? "]:": "):");
+			for (int index = quantisation.getBinStart(bin); index < quantisation.getBinEnd(bin); index++){
+				if (index > quantisation.getBinStart(bin)){
+					description.append(',');
+				}
+				description.append(quantisation.getRow(index));
+			}
+		}
+		return description.toString();
+	}
+}
@@ -0,0 +1,168 @@
+package com.ahaines.machinelearning.api.dataset.quantiser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ahaines.machinelearning.api.dataset.Classification;
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.Dataset.DatasetBuilder;
+import com.ahaines.machinelearning.api.dataset.FeatureDefinition;
+import com.ahaines.machinelearning.api.dataset.FeatureSet;
+import com.ahaines.machinelearning.api.dataset.Identifier;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser.QuantiserEventProcessor;
+import com.ahaines.machinelearning.test.spam.Email.EmailClassification;
+import com.ahaines.machinelearning.test.spam.Email.Features;
+import com.ahaines.machinelearning.test.spam.Email.Features.Contains;
+import com.haines.ml.model.ContinuousFeature;
+import com.haines.ml.model.Feature;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.equalTo;
+
+public class QuantisationCacheUnitTest {
+
+	@SuppressWarnings("unchecked")
+	private static final Iterable<Class<? extends Feature<?>>> TEST_FEATURE_TYPES = (Iterable<Class<? extends Feature<?>>>)(Iterable<?>)Arrays.asList(Features.ViagraFeature.class, Features.HoursIgnoredFeature.class);
+	private static final FeatureSet.FeatureSetFactory FACTORY = new FeatureSet.FeatureSetFactory(TEST_FEATURE_TYPES);
+	private static final int[] HOURS_IGNORED = {100, 30, 26, 75, 103, 44, 45, 97, 56, 100, 45, 98, 22, 65};
+
+	private CountingQuantiser quantiser;
+	private ClassifiedDataset<EmailClassification> dataset;
+	private ClassifiedDataset<EmailClassification> otherDataset;
+
+	@Before
+	public void before(){
+		quantiser = new CountingQuantiser(ContinuousFeatureQuantisers.getConstantBucketQuantiser(5));
+		dataset = createDataset(0);
+		otherDataset = createDataset(1);
+	}
+
+	@Test
+	public void givenCachedQuantisation_whenQuantisingSameDatasetAgain_thenQuantiserNotRunAndSameRangesReported(){
+		QuantisationCache candidate = new QuantisationCache(1000);
+		List<String> expectedEvents = new ArrayList<String>();
+		Collection<?> expectedRanges = quantise(quantiser, dataset, expectedEvents);
+
+		for (int i = 0; i < 2; i++){
+			List<String> events = new ArrayList<String>();
+			Collection<?> ranges = quantise(candidate.getQuantiser(dataset, quantiser), dataset, events);
+
+			assertThat(events, is(equalTo(expectedEvents)));
+			assertThat(ranges.toString(), is(equalTo(expectedRanges.toString())));
+		}
+		assertThat(quantiser.calls, is(equalTo(2))); // once directly and once to fill the cache
+		assertThat(candidate.size(), is(equalTo(1)));
+		assertThat(candidate.getWeight(), is(equalTo((long)(expectedRanges.size() + HOURS_IGNORED.length))));
+	}
+
+	@Test
+	public void givenCachedQuantisation_whenQuantisingDifferentDatasetOrQuantiser_thenQuantisedAgain(){
+		QuantisationCache candidate = new QuantisationCache(1000);
+		CountingQuantiser otherQuantiser = new CountingQuantiser(ContinuousFeatureQuantisers.getAveragePivotQuantiser());
+
+		quantise(candidate.getQuantiser(dataset, quantiser), dataset, new ArrayList<String>());
+		quantise(candidate.getQuantiser(otherDataset, quantiser), otherDataset, new ArrayList<String>());
+		quantise(candidate.getQuantiser(dataset, otherQuantiser), dataset, new ArrayList<String>());
+
+		assertThat(quantiser.calls, is(equalTo(2)));
+		assertThat(otherQuantiser.calls, is(equalTo(1)));
+		assertThat(candidate.size(), is(equalTo(3)));
+	}
+
+	@Test
+	public void givenMaximumWeightExceeded_whenQuantising_thenLeastRecentlyUsedEntryEvicted(){
+		QuantisationCache sizingCache = new QuantisationCache(1000);
+		quantise(sizingCache.getQuantiser(dataset, quantiser), dataset, new ArrayList<String>());
+		QuantisationCache candidate = new QuantisationCache(sizingCache.getWeight());
+		quantiser.calls = 0;
+
+		quantise(candidate.getQuantiser(dataset, quantiser), dataset, new ArrayList<String>());
+		quantise(candidate.getQuantiser(otherDataset, quantiser), otherDataset, new ArrayList<String>());
+		assertThat(candidate.size(), is(equalTo(1)));
+
+		quantise(candidate.getQuantiser(otherDataset, quantiser), otherDataset, new ArrayList<String>());
+		assertThat(quantiser.calls, is(equalTo(2)));
+
+		quantise(candidate.getQuantiser(dataset, quantiser), dataset, new ArrayList<String>());
+		assertThat(quantiser.calls, is(equalTo(3)));
+		assertThat(candidate.getWeight(), is(equalTo(sizingCache.getWeight())));
+	}
+
+	@Test
+	public void givenBoundQuantiser_whenQuantisingSubsetOfDataset_thenQuantisedWithoutCache(){
+		QuantisationCache candidate = new QuantisationCache(1000);
+		ContinuousFeatureQuantiser boundQuantiser = candidate.getQuantiser(dataset, quantiser);
+		quantise(boundQuantiser, dataset, new ArrayList<String>());
+
+		List<ClassifiedFeatureSet<EmailClassification>> subset = new ArrayList<ClassifiedFeatureSet<EmailClassification>>();
+		for (ClassifiedFeatureSet<EmailClassification> instance: dataset.getInstances()){
+			if (subset.size() < 5){
+				subset.add(instance);
+			}
+		}
+		List<String> expectedEvents = new ArrayList<String>();
+		quantise(quantiser, subset, expectedEvents);
+		List<String> events = new ArrayList<String>();
+		quantise(boundQuantiser, subset, events);
+
+		assertThat(events, is(equalTo(expectedEvents)));
+		assertThat(quantiser.calls, is(equalTo(3)));
+	}
+
+	private static Collection<?> quantise(ContinuousFeatureQuantiser quantiser, ClassifiedDataset<EmailClassification> dataset, List<String> events){
+		return quantise(quantiser, dataset.getInstances(), events);
+	}
+
+	/*
+	 * records each range reported along with the ids of the instances in it
+	 */
+	private static Collection<?> quantise(ContinuousFeatureQuantiser quantiser, Iterable<ClassifiedFeatureSet<EmailClassification>> instances, final List<String> events){
+		return quantiser.quantise(instances, Features.HoursIgnoredFeature.class, new QuantiserEventProcessor(){
+
+			@Override
+			public <T extends Number & Comparable<T>> void newRangeDetermined(RangeFeature<T> range, Iterable<? extends ClassifiedFeatureSet<? extends Enum<?>>> instancesInRange) {
+				StringBuilder event = new StringBuilder(range.toString()).append(':');
+				for (ClassifiedFeatureSet<? extends Enum<?>> instance: instancesInRange){
+					event.append(instance.getId()).append(',');
+				}
+				events.add(event.toString());
+			}
+		});
+	}
+
+	private static ClassifiedDataset<EmailClassification> createDataset(int offset){
+		DatasetBuilder builder = new DatasetBuilder(TEST_FEATURE_TYPES);
+		Map<Identifier, Classification<EmailClassification>> classifications = new HashMap<Identifier, Classification<EmailClassification>>();
+		for (int i = 0; i < HOURS_IGNORED.length; i++){
+			Identifier identifier = Identifier.FACTORY.createIdentifier(i);
+			builder.addInstance(FACTORY.createFeatureSet(identifier, Arrays.asList(new FeatureDefinition(new Features.ViagraFeature((i % 2 == 0)? Contains.PRESENT: Contains.ABSENT)), new FeatureDefinition(new Features.HoursIgnoredFeature(HOURS_IGNORED[i] + offset)))));
+			classifications.put(identifier, new Classification<EmailClassification>(identifier, (i % 3 == 0)? EmailClassification.SPAM: EmailClassification.HAM));
+		}
+		return ClassifiedDataset.FACTORY.create(builder.build(), classifications);
+	}
+
+	private static class CountingQuantiser implements ContinuousFeatureQuantiser{
+
+		private final ContinuousFeatureQuantiser quantiser;
+		private int calls = 0;
+
+		private CountingQuantiser(ContinuousFeatureQuantiser quantiser){
+			this.quantiser = quantiser;
+		}
+
+		@Override
+		public <T extends Number & Comparable<T>> Collection<RangeFeature<T>> quantise(Iterable<? extends ClassifiedFeatureSet<? extends Enum<?>>> instances, Class<? extends ContinuousFeature<T>> featureQuantiserType, QuantiserEventProcessor processor) {
+			calls++;
+			return quantiser.quantise(instances, featureQuantiserType, processor);
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package com.ahaines.machinelearning.api.dataset.quantiser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ahaines.machinelearning.api.dataset.Classification;
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.FeatureDefinition;
+import com.ahaines.machinelearning.api.dataset.FeatureSet;
+import com.ahaines.machinelearning.api.dataset.Identifier;
+import com.ahaines.machinelearning.test.spam.Email.EmailClassification;
+import com.ahaines.machinelearning.test.spam.Email.Features;
+import com.haines.ml.model.Feature;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.equalTo;
+
+public class SortedInstanceListUnitTest {
+
+	@SuppressWarnings("unchecked")
+	private static final Iterable<Class<? extends Feature<?>>> TEST_FEATURE_TYPES = (Iterable<Class<? extends Feature<?>>>)(Iterable<?>)Arrays.asList(Features.HoursIgnoredFeature.class);
+	private static final FeatureSet.FeatureSetFactory FACTORY = new FeatureSet.FeatureSetFactory(TEST_FEATURE_TYPES);
+	private static final int[] HOURS_IGNORED = {100, 30, 26, 75, 30, 44};
+
+	@Test
+	public void givenSortedList_whenPartitioning_thenEachSubsetKeepsSortedOrder(){
+		List<ClassifiedFeatureSet<EmailClassification>> instances = new ArrayList<ClassifiedFeatureSet<EmailClassification>>();
+		for (int i = 0; i < HOURS_IGNORED.length; i++){
+			FeatureSet instance = FACTORY.createFeatureSet(Identifier.FACTORY.createIdentifier(i), Arrays.asList(new FeatureDefinition(new Features.HoursIgnoredFeature(HOURS_IGNORED[i]))));
+			instances.add(new ClassifiedFeatureSet<EmailClassification>(instance, new Classification<EmailClassification>(instance.getId(), EmailClassification.HAM)));
+		}
+		SortedInstanceList<ClassifiedFeatureSet<EmailClassification>> candidate = SortedInstanceList.sort(instances, Features.HoursIgnoredFeature.class);
+
+		// instance 1 is in both subsets and instance 5 in neither
+		List<List<ClassifiedFeatureSet<EmailClassification>>> subsets = Arrays.asList(Arrays.asList(instances.get(0), instances.get(1), instances.get(4)), Arrays.asList(instances.get(3), instances.get(2), instances.get(1)));
+		List<SortedInstanceList<ClassifiedFeatureSet<EmailClassification>>> partitioned = candidate.partition(SortedInstanceList.Partition.of(subsets));
+
+		assertThat(partitioned.size(), is(equalTo(2)));
+		assertThat(partitioned.get(0), is(equalTo((List<ClassifiedFeatureSet<EmailClassification>>)Arrays.asList(instances.get(1), instances.get(4), instances.get(0)))));
+		assertThat(partitioned.get(1), is(equalTo((List<ClassifiedFeatureSet<EmailClassification>>)Arrays.asList(instances.get(2), instances.get(1), instances.get(3)))));
+		assertThat(partitioned.get(1).getFeatureType(), is(equalTo((Object)Features.HoursIgnoredFeature.class)));
+	}
+}
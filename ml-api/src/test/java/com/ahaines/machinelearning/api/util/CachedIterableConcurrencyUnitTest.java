@@ -0,0 +1,84 @@
+package com.ahaines.machinelearning.api.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class CachedIterableConcurrencyUnitTest {
+
+	@Test
+	public void givenConcurrentFirstIterations_whenIterating_thenEachItemIsCreatedOnceAndAllIterationsSeeAllItems() throws Exception{
+		final int numItems = 10000;
+		final AtomicInteger numIterators = new AtomicInteger();
+		final AtomicInteger numCreated = new AtomicInteger();
+		final CachedIterable<Integer> concurrentCandidate = new CachedIterable<Integer>(new Iterable<Integer>(){
+
+			@Override
+			public Iterator<Integer> iterator() {
+				numIterators.incrementAndGet();
+				return new Iterator<Integer>(){
+					
+					private int next = 0;
+
+					@Override
+					public boolean hasNext() {
+						return next < numItems;
+					}
+
+					@Override
+					public Integer next() {
+						numCreated.incrementAndGet();
+						return next++;
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		});
+		
+		int numThreads = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try{
+			final CountDownLatch start = new CountDownLatch(1);
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int i = 0; i < numThreads; i++){
+				results.add(executor.submit(new Callable<Boolean>(){
+
+					@Override
+					public Boolean call() throws Exception {
+						start.await();
+						int expected = 0;
+						for (Integer item: concurrentCandidate){
+							if (item.intValue() != expected++){
+								return false;
+							}
+						}
+						return expected == numItems;
+					}
+				}));
+			}
+			start.countDown();
+			for (Future<Boolean> result: results){
+				assertThat(result.get(), is(equalTo(true)));
+			}
+		} finally{
+			executor.shutdown();
+		}
+		assertThat(numIterators.get(), is(equalTo(1)));
+		assertThat(numCreated.get(), is(equalTo(numItems)));
+	}
+}
@@ -109,18 +109,7 @@ public class CachedIterableUnitTest {
 	}
 	
 	@Test
-	public void givenCachedIterable_whenCallingIteratorAndThrowingErrorMidWay_thenIteratorIsNotCached(){
-		reset(iterationAwareIterable);
-		expect(iterationAwareIterable.iterator()).andAnswer(new IAnswer<Iterator<String>>(){
-
-			@Override
-			public Iterator<String> answer() throws Throwable {
-				return TEST_LIST.iterator();
-			}
-			
-		}).times(2); // we expect it to have been invoked twice as the first iteration does not complete
-		replay(iterationAwareIterable);
-		
+	public void givenCachedIterable_whenCallingIteratorAndStoppingMidWay_thenPrefixIsReusedByNextIteration(){
 		Iterator<String> it = candidate.iterator();
 		for (int i = 0; i < TEST_LIST.size()/2; i++){
 			if (it.hasNext()){
@@ -128,12 +117,70 @@ public class CachedIterableUnitTest {
 			} else{
 				throw new AssertionError("Should never get here!");
 			}
-		}		
+		}
+		assertThat(candidate.getNumCachedItems(), is(equalTo(TEST_LIST.size()/2)));
 		iterateAndConfirmValues(); 
 		
 		verify(iterationAwareIterable); // verify that it was only called once
 	}
 	
+	@Test
+	public void givenCachedIterable_whenCallingGet_thenOnlyItemsUpToIndexAreMaterialised(){
+		assertThat(candidate.get(1), is(equalTo(TEST_LIST.get(1))));
+		assertThat(candidate.getNumCachedItems(), is(equalTo(2)));
+		assertThat(candidate.get(3), is(equalTo(TEST_LIST.get(3))));
+		assertThat(candidate.size(), is(equalTo(TEST_LIST.size())));
+		verify(iterationAwareIterable); // verify that it was only called once
+	}
+	
+	@Test
+	public void givenDelegateThrowingErrorMidWay_whenIteratingAgain_thenNewDelegateIteratorResumesAfterCachedPrefix(){
+		reset(iterationAwareIterable);
+		final Iterator<String> failingIt = new Iterator<String>(){
+			
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+
+			@Override
+			public String next() {
+				if (index == 2){
+					throw new IllegalStateException("delegate failed");
+				}
+				return TEST_LIST.get(index++);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		expect(iterationAwareIterable.iterator()).andReturn(failingIt).andAnswer(new IAnswer<Iterator<String>>(){
+
+			@Override
+			public Iterator<String> answer() throws Throwable {
+				return TEST_LIST.iterator();
+			}
+			
+		});
+		replay(iterationAwareIterable);
+		
+		try{
+			iterateAndConfirmValues();
+			throw new AssertionError("Should never get here!");
+		} catch (IllegalStateException e){
+			// expected
+		}
+		assertThat(candidate.getNumCachedItems(), is(equalTo(2)));
+		iterateAndConfirmValues();
+		assertThat(candidate.size(), is(equalTo(TEST_LIST.size())));
+		
+		verify(iterationAwareIterable); // verify that it was called twice
+	}
+	
 	private void iterateAndConfirmValues(){
 		int idx = 0;
 		for (String item: candidate){
@@ -0,0 +1,61 @@
+package com.ahaines.machinelearning.api.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+public class LongIntMapUnitTest {
+
+	private LongIntMap candidate;
+
+	@Before
+	public void before(){
+		candidate = new LongIntMap();
+	}
+
+	@Test
+	public void givenEmptyMap_whenGettingKey_thenNoValueReturned(){
+		assertThat(candidate.get(0), is(equalTo(LongIntMap.NO_VALUE)));
+		assertThat(candidate.containsKey(0), is(equalTo(false)));
+	}
+
+	@Test
+	public void givenManyKeys_whenPuttingBeyondInitialCapacity_thenAllValuesRetained(){
+		for (int i = 0; i < 10000; i++){
+			assertThat(candidate.put(i * 31L - 5000, i), is(equalTo(LongIntMap.NO_VALUE)));
+		}
+		assertThat(candidate.size(), is(equalTo(10000)));
+		for (int i = 0; i < 10000; i++){
+			assertThat(candidate.get(i * 31L - 5000), is(equalTo(i)));
+		}
+		assertThat(candidate.get(1), is(equalTo(LongIntMap.NO_VALUE)));
+	}
+
+	@Test
+	public void givenKeysDifferingOnlyInHighBits_whenPutting_thenKeptApart(){
+		candidate.put(1L, 1);
+		candidate.put(1L << 32 | 1L, 2);
+		candidate.put(Long.MIN_VALUE, 3);
+
+		assertThat(candidate.get(1L), is(equalTo(1)));
+		assertThat(candidate.get(1L << 32 | 1L), is(equalTo(2)));
+		assertThat(candidate.get(Long.MIN_VALUE), is(equalTo(3)));
+	}
+
+	@Test
+	public void givenExistingKey_whenPutting_thenValueReplacedAndPreviousReturned(){
+		candidate.put(7, 1);
+
+		assertThat(candidate.put(7, 2), is(equalTo(1)));
+		assertThat(candidate.get(7), is(equalTo(2)));
+		assertThat(candidate.size(), is(equalTo(1)));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void givenNegativeValue_whenPutting_thenIllegalArgumentExceptionThrown(){
+		candidate.put(7, -1);
+	}
+}
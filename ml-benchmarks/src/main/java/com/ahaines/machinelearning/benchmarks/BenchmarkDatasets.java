@@ -0,0 +1,124 @@
+package com.ahaines.machinelearning.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.Dataset.DatasetBuilder;
+import com.ahaines.machinelearning.api.dataset.FeatureDefinition;
+import com.ahaines.machinelearning.api.dataset.Identifier;
+import com.ahaines.machinelearning.api.dataset.IdentifierMap;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassification;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassificationType;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsDatasetLoaders;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsFeaures;
+import com.haines.ml.model.Feature;
+
+/**
+ * Creates the datasets that the benchmarks are run against. Datasets are derived from the adult earnings data and can be
+ * of any size: smaller sizes take the first instances of the data and larger sizes are synthetic scale ups that repeat the
+ * instances of the data under new identifiers until the requested size is reached.
+ *
+ * @author andrewhaines
+ *
+ */
+public final class BenchmarkDatasets {
+
+	private static final String TRAINING_DATASET = "/adult.data.txt";
+	private static final int NUM_HEADER_LINES = 4;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private BenchmarkDatasets(){
+	}
+
+	public static ClassifiedDataset<AdultEarningsClassificationType> getTrainingDataset(int size) throws IOException{
+		return resize(AdultEarningsDatasetLoaders.getTrainingDatasetLoader().getClassifiedDataset(), size);
+	}
+
+	public static ClassifiedDataset<AdultEarningsClassificationType> getTestDataset(int size) throws IOException{
+		return resize(AdultEarningsDatasetLoaders.getTestDatasetLoader().getClassifiedDataset(), size);
+	}
+
+	/**
+	 * Returns a dataset of exactly the supplied size made from the instances of the supplied dataset. Instances are
+	 * identified by their position in the new dataset.
+	 * @param dataset
+	 * @param size
+	 * @return
+	 */
+	public static ClassifiedDataset<AdultEarningsClassificationType> resize(ClassifiedDataset<AdultEarningsClassificationType> dataset, int size){
+		if (size < 1){
+			throw new IllegalArgumentException("size must be positive: "+size);
+		}
+		List<ClassifiedFeatureSet<AdultEarningsClassificationType>> instances = new ArrayList<ClassifiedFeatureSet<AdultEarningsClassificationType>>();
+		for (ClassifiedFeatureSet<AdultEarningsClassificationType> instance: dataset.getInstances()){
+			instances.add(instance);
+		}
+
+		DatasetBuilder builder = new DatasetBuilder(AdultEarningsFeaures.ALL_FEATURE_TYPES);
+		Map<Identifier, AdultEarningsClassification> classifications = new IdentifierMap<AdultEarningsClassification>(size);
+
+		for (int i = 0; i < size; i++){
+			ClassifiedFeatureSet<AdultEarningsClassificationType> instance = instances.get(i % instances.size());
+			Identifier id = Identifier.FACTORY.createIdentifier(i);
+
+			List<FeatureDefinition> features = new ArrayList<FeatureDefinition>(AdultEarningsFeaures.ALL_FEATURE_TYPES.size());
+			for (Class<? extends Feature<?>> featureType: AdultEarningsFeaures.ALL_FEATURE_TYPES){
+				features.add(new FeatureDefinition(instance.getFeature(featureType), featureType));
+			}
+			builder.addInstance(AdultEarningsFeaures.ADULT_FEATURE_SET.createFeatureSet(id, features));
+			classifications.put(id, new AdultEarningsClassification(id, instance.getClassification().getValue()));
+		}
+
+		return ClassifiedDataset.FACTORY.create(builder.build(), classifications);
+	}
+
+	/**
+	 * Writes a file in the adult earnings format containing the supplied number of rows of the training file, repeating
+	 * the rows of the file if more are requested than it contains.
+	 * @param file
+	 * @param size
+	 * @throws IOException
+	 */
+	public static void writeTrainingFile(Path file, int size) throws IOException{
+		List<String> header = new ArrayList<String>(NUM_HEADER_LINES);
+		List<String> rows = new ArrayList<String>();
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(BenchmarkDatasets.class.getResourceAsStream(TRAINING_DATASET), UTF8));
+		try{
+			String line;
+			while ((line = reader.readLine()) != null){
+				if (header.size() < NUM_HEADER_LINES){
+					header.add(line);
+				} else if (!line.trim().isEmpty()){
+					rows.add(line);
+				}
+			}
+		} finally{
+			reader.close();
+		}
+
+		BufferedWriter writer = Files.newBufferedWriter(file, UTF8);
+		try{
+			for (String line: header){
+				writer.write(line);
+				writer.newLine();
+			}
+			for (int i = 0; i < size; i++){
+				writer.write(rows.get(i % rows.size()));
+				writer.newLine();
+			}
+		} finally{
+			writer.close();
+		}
+	}
+}
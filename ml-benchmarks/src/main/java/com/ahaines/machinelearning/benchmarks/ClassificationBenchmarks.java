@@ -0,0 +1,118 @@
+package com.ahaines.machinelearning.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.FeatureSet;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassificationType;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantisers;
+import com.ahaines.machinelearning.decisiontree.DecisionTreeModelService;
+import com.ahaines.machinelearning.decisiontree.Id3Model;
+import com.ahaines.machinelearning.decisiontree.ImpurityProcessor.ImpurityProcessors;
+import com.ahaines.machinelearning.naivebayes.CompiledNaiveBayesModel;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModel;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModelService;
+
+/**
+ * Measures the time taken to classify test sets of different sizes against models trained once on the full training set.
+ *
+ * @author andrewhaines
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClassificationBenchmarks {
+
+	private static final int DEFAULT_BUCKET_SIZE = 10;
+	private static final int TRAINING_SIZE = 32561;
+
+	@Param({"1000", "16281", "130248"})
+	private int size;
+
+	private ClassifiedDataset<AdultEarningsClassificationType> testData;
+	private DecisionTreeModelService<AdultEarningsClassificationType> decisionTreeService;
+	private NaiveBayesModelService<AdultEarningsClassificationType> naiveBayesService;
+	private Id3Model<AdultEarningsClassificationType> decisionTree;
+	private NaiveBayesModel<AdultEarningsClassificationType> naiveBayes;
+	private CompiledNaiveBayesModel<AdultEarningsClassificationType> compiledNaiveBayes;
+	private List<FeatureSet> batch;
+	private int[] classificationOrdinals;
+	private double[] classificationProbabilities;
+	private ExecutorService executor;
+
+	@Setup
+	public void setUp() throws IOException{
+		ClassifiedDataset<AdultEarningsClassificationType> trainingData = BenchmarkDatasets.getTrainingDataset(TRAINING_SIZE);
+		testData = BenchmarkDatasets.getTestDataset(size);
+
+		ContinuousFeatureQuantiser quantiser = ContinuousFeatureQuantisers.getConstantBucketQuantiser(DEFAULT_BUCKET_SIZE);
+		decisionTreeService = new DecisionTreeModelService<AdultEarningsClassificationType>(ImpurityProcessors.getEntropyImpurityProcessor(), quantiser);
+		naiveBayesService = new NaiveBayesModelService<AdultEarningsClassificationType>(quantiser);
+
+		decisionTree = decisionTreeService.trainModel(trainingData);
+		naiveBayes = naiveBayesService.trainModel(trainingData);
+		compiledNaiveBayes = naiveBayes.compile();
+
+		batch = new ArrayList<FeatureSet>();
+		for (FeatureSet instance: testData.getInstances()){
+			batch.add(instance);
+		}
+		classificationOrdinals = new int[batch.size()];
+		classificationProbabilities = new double[batch.size()];
+		executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+	}
+
+	@TearDown
+	public void tearDown(){
+		executor.shutdown();
+	}
+
+	@Benchmark
+	public ClassifiedDataset<AdultEarningsClassificationType> classifyDecisionTree(){
+		return decisionTreeService.classifyDataset(testData, decisionTree);
+	}
+
+	@Benchmark
+	public ClassifiedDataset<AdultEarningsClassificationType> classifyDecisionTreeInParallel(){
+		return decisionTreeService.classifyDataset(testData, decisionTree, executor);
+	}
+
+	@Benchmark
+	public ClassifiedDataset<AdultEarningsClassificationType> classifyNaiveBayes(){
+		return naiveBayesService.classifyDataset(testData, naiveBayes);
+	}
+
+	@Benchmark
+	public ClassifiedDataset<AdultEarningsClassificationType> classifyNaiveBayesInParallel(){
+		return naiveBayesService.classifyDataset(testData, naiveBayes, executor);
+	}
+
+	@Benchmark
+	public double[] classifyCompiledNaiveBayes(){
+		compiledNaiveBayes.classifyBatch(batch, classificationOrdinals, classificationProbabilities);
+		return classificationProbabilities;
+	}
+}
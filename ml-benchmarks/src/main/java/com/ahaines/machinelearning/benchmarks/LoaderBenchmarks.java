@@ -0,0 +1,90 @@
+package com.ahaines.machinelearning.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.InstanceSink;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassificationType;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsDatasetLoaders;
+
+/**
+ * Measures loading adult earnings files of different sizes into each of the dataset representations. Files larger than
+ * the training file are synthetic scale ups written once before the benchmark is run. The cached loader is measured once
+ * its cache has been written, which is the cost every load after the first pays.
+ *
+ * @author andrewhaines
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoaderBenchmarks {
+
+	@Param({"1000", "10000", "32561", "130244"})
+	private int size;
+
+	private Path file;
+	private Path cacheDirectory;
+
+	@Setup
+	public void setUp() throws IOException{
+		file = Files.createTempFile("adult.data-"+size, ".txt");
+		BenchmarkDatasets.writeTrainingFile(file, size);
+		cacheDirectory = Files.createTempDirectory("dataset-cache-"+size);
+		AdultEarningsDatasetLoaders.getCachedColumnarDatasetLoader(file, cacheDirectory);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException{
+		Files.deleteIfExists(cacheDirectory.resolve(file.getFileName()+".columns"));
+		Files.deleteIfExists(cacheDirectory);
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	public ClassifiedDataset<AdultEarningsClassificationType> loadDataset() throws IOException{
+		return AdultEarningsDatasetLoaders.getDatasetLoader(file).getClassifiedDataset();
+	}
+
+	@Benchmark
+	public ClassifiedDataset<AdultEarningsClassificationType> loadColumnarDataset() throws IOException{
+		return AdultEarningsDatasetLoaders.getColumnarDatasetLoader(file).getClassifiedDataset();
+	}
+
+	@Benchmark
+	public ClassifiedDataset<AdultEarningsClassificationType> loadCachedColumnarDataset() throws IOException{
+		return AdultEarningsDatasetLoaders.getCachedColumnarDatasetLoader(file, cacheDirectory).getClassifiedDataset();
+	}
+
+	@Benchmark
+	public int streamDataset(final Blackhole blackhole) throws IOException{
+		return AdultEarningsDatasetLoaders.streamDataset(file, true, new InstanceSink<AdultEarningsClassificationType>(){
+
+			@Override
+			public void addInstance(ClassifiedFeatureSet<AdultEarningsClassificationType> instance) {
+				blackhole.consume(instance);
+			}
+		});
+	}
+}
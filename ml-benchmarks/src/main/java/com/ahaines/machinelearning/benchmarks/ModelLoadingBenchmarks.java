@@ -0,0 +1,81 @@
+package com.ahaines.machinelearning.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassificationType;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantisers;
+import com.ahaines.machinelearning.decisiontree.CompiledId3Model;
+import com.ahaines.machinelearning.decisiontree.DecisionTreeModelService;
+import com.ahaines.machinelearning.decisiontree.ImpurityProcessor.ImpurityProcessors;
+import com.ahaines.machinelearning.naivebayes.CompiledNaiveBayesModel;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModelService;
+
+/**
+ * Measures the time taken to load saved models, which is the start up cost of a scoring service that does not retrain.
+ * Models are trained on training sets of different sizes so that trees of different sizes are loaded.
+ *
+ * @author andrewhaines
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ModelLoadingBenchmarks {
+
+	private static final int DEFAULT_BUCKET_SIZE = 10;
+
+	@Param({"1000", "32561"})
+	private int size;
+
+	private Path decisionTreeFile;
+	private Path naiveBayesFile;
+
+	@Setup
+	public void setUp() throws IOException{
+		ClassifiedDataset<AdultEarningsClassificationType> trainingData = BenchmarkDatasets.getTrainingDataset(size);
+		ContinuousFeatureQuantiser quantiser = ContinuousFeatureQuantisers.getConstantBucketQuantiser(DEFAULT_BUCKET_SIZE);
+
+		decisionTreeFile = Files.createTempFile("decisiontree-"+size, ".bin");
+		new DecisionTreeModelService<AdultEarningsClassificationType>(ImpurityProcessors.getEntropyImpurityProcessor(), quantiser).trainModel(trainingData).write(decisionTreeFile);
+
+		naiveBayesFile = Files.createTempFile("naivebayes-"+size, ".bin");
+		new NaiveBayesModelService<AdultEarningsClassificationType>(quantiser).trainModel(trainingData).write(naiveBayesFile);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException{
+		Files.deleteIfExists(decisionTreeFile);
+		Files.deleteIfExists(naiveBayesFile);
+	}
+
+	@Benchmark
+	public CompiledId3Model<AdultEarningsClassificationType> loadDecisionTree() throws IOException{
+		return CompiledId3Model.load(decisionTreeFile, AdultEarningsClassificationType.class);
+	}
+
+	@Benchmark
+	public CompiledNaiveBayesModel<AdultEarningsClassificationType> loadNaiveBayes() throws IOException{
+		return CompiledNaiveBayesModel.load(naiveBayesFile, AdultEarningsClassificationType.class);
+	}
+}
@@ -0,0 +1,117 @@
+package com.ahaines.machinelearning.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.QuantisedDataset;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassificationType;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsFeaures;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser.QuantiserEventProcessor;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantisers;
+import com.ahaines.machinelearning.api.dataset.quantiser.QuantisationCache;
+import com.ahaines.machinelearning.api.dataset.quantiser.RangeFeature;
+import com.haines.ml.model.ContinuousFeature;
+import com.haines.ml.model.Feature;
+
+/**
+ * Measures each {@link ContinuousFeatureQuantisers} strategy quantising every continuous feature of training sets of
+ * different sizes, and the discretisation of a whole dataset using that strategy, with and without the quantisation
+ * already held in a {@link QuantisationCache}.
+ *
+ * @author andrewhaines
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QuantiserBenchmarks {
+
+	private static final int DEFAULT_BUCKET_SIZE = 10;
+	private static final QuantiserEventProcessor NO_OP_PROCESSOR = new QuantiserEventProcessor(){
+
+		@Override
+		public <T extends Number & Comparable<T>> void newRangeDetermined(RangeFeature<T> range, Iterable<? extends ClassifiedFeatureSet<? extends Enum<?>>> instanceInSplit) {
+		}
+	};
+
+	@Param({"averagePivot", "clustered", "constantBucket"})
+	private String quantiserType;
+
+	@Param({"1000", "10000", "32561", "130244"})
+	private int size;
+
+	private ClassifiedDataset<AdultEarningsClassificationType> trainingData;
+	private ContinuousFeatureQuantiser quantiser;
+	private ContinuousFeatureQuantiser cachedQuantiser;
+	private List<Class<? extends ContinuousFeature<?>>> continuousFeatureTypes;
+
+	@Setup
+	public void setUp() throws IOException{
+		trainingData = BenchmarkDatasets.getTrainingDataset(size);
+		quantiser = getQuantiser(quantiserType);
+		cachedQuantiser = new QuantisationCache(Long.MAX_VALUE).getQuantiser(trainingData, quantiser);
+		QuantisedDataset.discretise(trainingData, cachedQuantiser); // fill the cache
+
+		continuousFeatureTypes = new ArrayList<Class<? extends ContinuousFeature<?>>>();
+		for (Class<? extends Feature<?>> featureType: AdultEarningsFeaures.ALL_FEATURE_TYPES){
+			if (ContinuousFeature.class.isAssignableFrom(featureType)){
+				continuousFeatureTypes.add(asContinuousFeatureType(featureType));
+			}
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Benchmark
+	public void quantise(Blackhole blackhole){
+		for (Class<? extends ContinuousFeature<?>> featureType: continuousFeatureTypes){
+			blackhole.consume(quantiser.quantise(trainingData.getInstances(), (Class)featureType, NO_OP_PROCESSOR));
+		}
+	}
+
+	@Benchmark
+	public QuantisedDataset<AdultEarningsClassificationType> discretise(){
+		return QuantisedDataset.discretise(trainingData, quantiser);
+	}
+
+	@Benchmark
+	public QuantisedDataset<AdultEarningsClassificationType> discretiseCached(){
+		return QuantisedDataset.discretise(trainingData, cachedQuantiser);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Class<? extends ContinuousFeature<?>> asContinuousFeatureType(Class<? extends Feature<?>> featureType){
+		return (Class<? extends ContinuousFeature<?>>)featureType;
+	}
+
+	private static ContinuousFeatureQuantiser getQuantiser(String quantiserType){
+		if ("averagePivot".equals(quantiserType)){
+			return ContinuousFeatureQuantisers.getAveragePivotQuantiser();
+		} else if ("clustered".equals(quantiserType)){
+			return ContinuousFeatureQuantisers.getClusteredQuantiser();
+		} else if ("constantBucket".equals(quantiserType)){
+			return ContinuousFeatureQuantisers.getConstantBucketQuantiser(DEFAULT_BUCKET_SIZE);
+		}
+		throw new IllegalArgumentException("unknown quantiser: "+quantiserType);
+	}
+}
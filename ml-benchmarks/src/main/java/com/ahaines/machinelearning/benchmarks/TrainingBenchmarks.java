@@ -0,0 +1,132 @@
+package com.ahaines.machinelearning.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassificationType;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantisers;
+import com.ahaines.machinelearning.decisiontree.DecisionTreeModelService;
+import com.ahaines.machinelearning.decisiontree.Id3Model;
+import com.ahaines.machinelearning.decisiontree.Id3ThresholdPath;
+import com.ahaines.machinelearning.decisiontree.ImpurityProcessor.ImpurityProcessors;
+import com.ahaines.machinelearning.decisiontree.MissingFeatureClassifier;
+import com.ahaines.machinelearning.decisiontree.QuantisedDecisionTreeModelService;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModel;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModelService;
+
+/**
+ * Measures the time taken to train each type of model on training sets of different sizes. The services are configured
+ * with the defaults used by the main runner.
+ *
+ * @author andrewhaines
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TrainingBenchmarks {
+
+	private static final int DEFAULT_BUCKET_SIZE = 10;
+	private static final double[] SWEEP_THRESHOLDS = {1, 0.95, 0.9, 0.85, 0.8, 0.75};
+
+	@Param({"1000", "10000", "32561", "130244"})
+	private int size;
+
+	private ClassifiedDataset<AdultEarningsClassificationType> trainingData;
+	private DecisionTreeModelService<AdultEarningsClassificationType> decisionTreeService;
+	private QuantisedDecisionTreeModelService<AdultEarningsClassificationType> quantisedDecisionTreeService;
+	private NaiveBayesModelService<AdultEarningsClassificationType> naiveBayesService;
+	private NaiveBayesModelService<AdultEarningsClassificationType> parallelNaiveBayesService;
+	private List<DecisionTreeModelService<AdultEarningsClassificationType>> sweepDecisionTreeServices;
+	private ExecutorService executor;
+
+	@Setup
+	public void setUp() throws IOException{
+		trainingData = BenchmarkDatasets.getTrainingDataset(size);
+
+		ContinuousFeatureQuantiser quantiser = ContinuousFeatureQuantisers.getConstantBucketQuantiser(DEFAULT_BUCKET_SIZE);
+		decisionTreeService = new DecisionTreeModelService<AdultEarningsClassificationType>(ImpurityProcessors.getEntropyImpurityProcessor(), quantiser);
+		quantisedDecisionTreeService = new QuantisedDecisionTreeModelService<AdultEarningsClassificationType>(ImpurityProcessors.getEntropyImpurityProcessor(), quantiser);
+		naiveBayesService = new NaiveBayesModelService<AdultEarningsClassificationType>(quantiser);
+		sweepDecisionTreeServices = new ArrayList<DecisionTreeModelService<AdultEarningsClassificationType>>();
+		for (double threshold: SWEEP_THRESHOLDS){
+			sweepDecisionTreeServices.add(new DecisionTreeModelService<AdultEarningsClassificationType>(ImpurityProcessors.getEntropyImpurityProcessor(), quantiser, threshold, MissingFeatureClassifier.CLASSIFIERS.getHomogeniousMissingFeatureClassifier()));
+		}
+		
+		int numProcessors = Runtime.getRuntime().availableProcessors();
+		executor = Executors.newFixedThreadPool(numProcessors);
+		parallelNaiveBayesService = new NaiveBayesModelService<AdultEarningsClassificationType>(quantiser, executor, numProcessors);
+	}
+
+	@TearDown
+	public void tearDown(){
+		executor.shutdown();
+	}
+
+	@Benchmark
+	public Id3Model<AdultEarningsClassificationType> trainDecisionTree(){
+		return decisionTreeService.trainModel(trainingData);
+	}
+
+	@Benchmark
+	public Id3Model<AdultEarningsClassificationType> trainQuantisedDecisionTree(){
+		return quantisedDecisionTreeService.trainModel(trainingData);
+	}
+
+	/**
+	 * Trains a tree for each threshold of a sweep from scratch
+	 */
+	@Benchmark
+	public List<Id3Model<AdultEarningsClassificationType>> trainDecisionTreeThresholdSweep(){
+		List<Id3Model<AdultEarningsClassificationType>> models = new ArrayList<Id3Model<AdultEarningsClassificationType>>(SWEEP_THRESHOLDS.length);
+		for (DecisionTreeModelService<AdultEarningsClassificationType> service: sweepDecisionTreeServices){
+			models.add(service.trainModel(trainingData));
+		}
+		return models;
+	}
+
+	/**
+	 * Derives the trees of the same sweep from one tree grown with the highest threshold
+	 */
+	@Benchmark
+	public List<Id3Model<AdultEarningsClassificationType>> trainDecisionTreeThresholdSweepFromPath(){
+		List<Id3Model<AdultEarningsClassificationType>> models = new ArrayList<Id3Model<AdultEarningsClassificationType>>(SWEEP_THRESHOLDS.length);
+		Id3ThresholdPath<AdultEarningsClassificationType> path = sweepDecisionTreeServices.get(0).trainThresholdPath(trainingData);
+		for (double threshold: SWEEP_THRESHOLDS){
+			models.add(path.getModel(threshold));
+		}
+		return models;
+	}
+
+	@Benchmark
+	public NaiveBayesModel<AdultEarningsClassificationType> trainNaiveBayes(){
+		return naiveBayesService.trainModel(trainingData);
+	}
+
+	@Benchmark
+	public NaiveBayesModel<AdultEarningsClassificationType> trainNaiveBayesInParallel(){
+		return parallelNaiveBayesService.trainModel(trainingData);
+	}
+}
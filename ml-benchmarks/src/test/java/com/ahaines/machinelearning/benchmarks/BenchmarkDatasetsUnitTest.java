@@ -0,0 +1,51 @@
+package com.ahaines.machinelearning.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.Identifier;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassificationType;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsDatasetLoaders;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.equalTo;
+
+public class BenchmarkDatasetsUnitTest {
+
+	private static final int TRAINING_SIZE = 32561;
+
+	@Test
+	public void givenSizeLargerThanTrainingSet_whenCallingGetTrainingDataset_thenInstancesRepeatedUnderUniqueIds() throws IOException{
+		ClassifiedDataset<AdultEarningsClassificationType> dataset = BenchmarkDatasets.getTrainingDataset(TRAINING_SIZE * 2 + 10);
+
+		Set<Identifier> ids = new HashSet<Identifier>();
+		for (ClassifiedFeatureSet<AdultEarningsClassificationType> instance: dataset.getInstances()){
+			ids.add(instance.getId());
+		}
+
+		assertThat(ids.size(), is(equalTo(TRAINING_SIZE * 2 + 10)));
+		assertThat(dataset.getClassifications().size(), is(equalTo(TRAINING_SIZE * 2 + 10)));
+	}
+
+	@Test
+	public void givenSize_whenCallingWriteTrainingFile_thenLoadedFileHasSizeInstances() throws IOException{
+		Path file = Files.createTempFile("adult.data", ".txt");
+		try{
+			BenchmarkDatasets.writeTrainingFile(file, 1000);
+
+			ClassifiedDataset<AdultEarningsClassificationType> dataset = AdultEarningsDatasetLoaders.getColumnarDatasetLoader(file).getClassifiedDataset();
+
+			assertThat(dataset.getClassifications().size(), is(equalTo(1000)));
+		} finally{
+			Files.delete(file);
+		}
+	}
+}
@@ -1,31 +1,30 @@
 package com.ahaines.machinelearning.api.dataset.adultearnings;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.nio.file.Paths;
 import java.util.Map;
 
-import org.apache.commons.lang3.EnumUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.ahaines.machinelearning.api.Model;
+import com.ahaines.machinelearning.api.ModelService;
+import com.ahaines.machinelearning.api.StreamingClassifier;
 import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
 import com.ahaines.machinelearning.api.dataset.ClassifiedDatasetLoader;
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
 import com.ahaines.machinelearning.api.dataset.Dataset.DatasetBuilder;
-import com.ahaines.machinelearning.api.dataset.FeatureDefinition;
 import com.ahaines.machinelearning.api.dataset.Identifier;
-import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsFeaures.EducationFeature;
-import com.haines.ml.model.ContinuousFeature.IntegerFeature;
-import com.haines.ml.model.DiscreteFeature;
-import com.haines.ml.model.Feature;
-import com.haines.ml.model.Feature.Features;
+import com.ahaines.machinelearning.api.dataset.IdentifierMap;
+import com.ahaines.machinelearning.api.dataset.InstanceSink;
+import com.ahaines.machinelearning.api.dataset.columnar.ColumnarClassifiedDataset;
+import com.ahaines.machinelearning.api.util.ModelFiles;
 
 /**
  * The dataloaders for loading and parsing the raw training and test files into the domain
@@ -38,6 +37,9 @@ public final class AdultEarningsDatasetLoaders{
 	private static final String TRAINING_DATASET = "/adult.data.txt";
 	private static final String TEST_DATASET = "/adult.test.txt";
 	private static final Logger LOG = LoggerFactory.getLogger(AdultEarningsDatasetLoaders.class);
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String CACHE_DIRECTORY = "ml-dataset-cache";
+	private static final String CACHE_FILE_SUFFIX = ".columns";
 
 	private AdultEarningsDatasetLoaders(){
 	}
@@ -54,120 +56,189 @@ public final class AdultEarningsDatasetLoaders{
 		URL fileLocation = AdultEarningsDatasetLoaders.class.getResource(location);
 		LOG.debug("loading dataset: "+fileLocation);
 		try{
-			final ClassifiedDataset<AdultEarningsClassificationType> dataset = loadDataset(fileLocation.toURI(), true);
-			return new ClassifiedDatasetLoader<AdultEarningsClassificationType>(){
-
-				@Override
-				public ClassifiedDataset<AdultEarningsClassificationType> getClassifiedDataset() {
-					return dataset;
-				}
-				
-			};
+			return getDatasetLoader(ClassifiedDatasetLoader.UTIL.getPath(fileLocation.toURI()));
 		} catch (URISyntaxException e){
 			throw new RuntimeException("unable to load training set", e);
 		}
 		
 	}
+	
+	/**
+	 * Returns a loader of the dataset read from the supplied file, which does not need to be on the classpath
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	public static ClassifiedDatasetLoader<AdultEarningsClassificationType> getDatasetLoader(Path path) throws IOException {
+		final ClassifiedDataset<AdultEarningsClassificationType> dataset = loadDataset(path, true);
+		return new ClassifiedDatasetLoader<AdultEarningsClassificationType>(){
 
-	private static ClassifiedDataset<AdultEarningsClassificationType> loadDataset(final URI uri, boolean includeMissingFeatures) throws IOException {
-		
-		Path path = ClassifiedDatasetLoader.UTIL.getPath(uri);
-		
-		List<String> lines = Files.readAllLines(path, Charset.forName("UTF-8"));
-		// trim first 4 lines
-		
-		lines = lines.subList(4, lines.size());
-		DatasetBuilder dataset = new DatasetBuilder(AdultEarningsFeaures.ALL_FEATURE_TYPES);
-		Map<Identifier, AdultEarningsClassification> classifications = new HashMap<Identifier, AdultEarningsClassification>();
-		int id = 0;
-		int count = 0;
-		for (String rawInstance: lines){
-			Identifier instanceIdentifier = Identifier.FACTORY.createIdentifier(id++);
-			List<FeatureDefinition> instanceFeatures = new ArrayList<FeatureDefinition>();
-			String[] features = rawInstance.split(",");
-			boolean containsMissingFeatures = false;
+			@Override
+			public ClassifiedDataset<AdultEarningsClassificationType> getClassifiedDataset() {
+				return dataset;
+			}
 			
-			for (int i = 0; i < features.length; i++){
-				if (i < AdultEarningsFeaures.ALL_FEATURE_TYPES.size()){
-					Class<? extends Feature<?>> featureType = AdultEarningsFeaures.ALL_FEATURE_TYPES.get(i);
-					
-					Feature<?> featureValue = getFeature(featureType, features[i]);
-					if (featureValue == Features.MISSING){
-						containsMissingFeatures = true;
-					}
-					if (featureValue == null){
-						throw new NullPointerException("feature type: "+featureType+" value: "+features[i]);
-					}
-					instanceFeatures.add(new FeatureDefinition(featureValue, featureType));
-					
-				} else if (i == AdultEarningsFeaures.ALL_FEATURE_TYPES.size()){ // this is the classification entry
-					AdultEarningsClassificationType classifier;
-					
-					String featureValue = features[i].trim();
-					if (">50K".equalsIgnoreCase(featureValue)){
-						classifier = AdultEarningsClassificationType.GREATER_THEN_50K;
-					} else if ("<=50K".equalsIgnoreCase(featureValue)){
-						classifier = AdultEarningsClassificationType.LESS_THEN_50K;
-					} else {
-						throw new IllegalArgumentException("unknown classification: "+features[i]);
-					}
-					
-					classifications.put(instanceIdentifier, new AdultEarningsClassification(instanceIdentifier, classifier));
-				}
-				else{
-					throw new RuntimeException("Unknown feature index: "+i+". Instance data is: "+rawInstance);
-				}
+		};
+	}
+
+	/**
+	 * Returns a loader of a columnar dataset read from the supplied location on the classpath
+	 * @param location
+	 * @return
+	 * @throws IOException
+	 */
+	public static ClassifiedDatasetLoader<AdultEarningsClassificationType> getColumnarDatasetLoader(String location) throws IOException {
+		URL fileLocation = AdultEarningsDatasetLoaders.class.getResource(location);
+		try{
+			return getColumnarDatasetLoader(ClassifiedDatasetLoader.UTIL.getPath(fileLocation.toURI()));
+		} catch (URISyntaxException e){
+			throw new RuntimeException("unable to load dataset", e);
+		}
+	}
+	
+	/**
+	 * Returns a loader of a columnar dataset read from the supplied file. The file is streamed a line at a time
+	 * straight into primitive columns, so only the resulting dataset is held in memory.
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	public static ClassifiedDatasetLoader<AdultEarningsClassificationType> getColumnarDatasetLoader(Path path) throws IOException {
+		return createLoader(readColumnarDataset(path));
+	}
+
+	/**
+	 * Returns a loader of a columnar dataset read from the supplied location on the classpath, cached in the
+	 * <code>ml-dataset-cache</code> directory of the system temporary directory. See
+	 * {@link #getCachedColumnarDatasetLoader(Path, Path)}.
+	 * @param location
+	 * @return
+	 * @throws IOException
+	 */
+	public static ClassifiedDatasetLoader<AdultEarningsClassificationType> getCachedColumnarDatasetLoader(String location) throws IOException {
+		URL fileLocation = AdultEarningsDatasetLoaders.class.getResource(location);
+		try{
+			return getCachedColumnarDatasetLoader(ClassifiedDatasetLoader.UTIL.getPath(fileLocation.toURI()), Paths.get(System.getProperty("java.io.tmpdir"), CACHE_DIRECTORY));
+		} catch (URISyntaxException e){
+			throw new RuntimeException("unable to load dataset", e);
+		}
+	}
+
+	/**
+	 * Returns a loader of a columnar dataset read from the supplied file, using a binary copy of its columns in the
+	 * cache directory when one exists. The cache holds the checksum of the file it was written from, so the file is only
+	 * parsed the first time it is loaded or after it has changed, after which the cache is rewritten. Loading from the
+	 * cache memory maps it and copies each column out in bulk rather than parsing text. A cache that cannot be read or
+	 * written is logged and the file parsed instead.
+	 * @param path
+	 * @param cacheDirectory
+	 * @return
+	 * @throws IOException
+	 */
+	public static ClassifiedDatasetLoader<AdultEarningsClassificationType> getCachedColumnarDatasetLoader(Path path, Path cacheDirectory) throws IOException {
+		long checksum = ModelFiles.checksum(path);
+		Path cacheFile = cacheDirectory.resolve(path.getFileName()+CACHE_FILE_SUFFIX);
+
+		ColumnarClassifiedDataset<AdultEarningsClassificationType> dataset = null;
+		if (Files.exists(cacheFile)){
+			try{
+				dataset = ColumnarClassifiedDataset.load(cacheFile, AdultEarningsFeaures.ADULT_FEATURE_SET.getSchema(), AdultEarningsClassificationType.class, checksum);
+			} catch (IOException e){
+				LOG.warn("ignoring unreadable dataset cache: "+cacheFile, e);
 			}
-			if (!containsMissingFeatures || includeMissingFeatures){
-				count++;
-				dataset.addInstance(AdultEarningsFeaures.ADULT_FEATURE_SET.createFeatureSet(instanceIdentifier, instanceFeatures));
+		}
+		if (dataset == null){
+			dataset = readColumnarDataset(path);
+			try{
+				Files.createDirectories(cacheDirectory);
+				dataset.write(cacheFile, checksum);
+				LOG.debug("cached columnar dataset: "+path+" in "+cacheFile);
+			} catch (IOException e){
+				LOG.warn("unable to write dataset cache: "+cacheFile, e);
 			}
 		}
-		
-		System.out.println("loaded: "+count+" instances");
-		
-		return ClassifiedDataset.FACTORY.create(dataset.build(), classifications);
+		return createLoader(dataset);
 	}
 
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	private static Feature<?> getFeature(Class<? extends Feature<?>> featureType, String featureString) {
-		String processedFeatureString = featureString.trim()
-													 .toUpperCase()
-													 .replaceAll("-|&|\\(|\\)", "_");
-		if (processedFeatureString.equals("?")){
-			return Features.MISSING;
-		} else if (IntegerFeature.class.isAssignableFrom(featureType)){ // i hate reflection but it does reduce alot of code in this instance
-			try {
-				return featureType.getConstructor(Integer.class).newInstance(Integer.parseInt(processedFeatureString));
-				
-			} catch (Exception e) {
-				throw new RuntimeException("Unable to parse adult data file for feature: "+featureType+" and value: "+featureString, e);
-			}
-		} else if (Enum.class.isAssignableFrom(featureType)){
-		
-			if (featureType == EducationFeature.class){
-				
-				if("11TH".equalsIgnoreCase(processedFeatureString)){
-					return EducationFeature.ELEVETH;
-				} else if ("9TH".equalsIgnoreCase(processedFeatureString)){
-					return EducationFeature.NINTH;
-				} else if ("10TH".equalsIgnoreCase(processedFeatureString)){
-					return EducationFeature.TENTH;
-				} else if ("12TH".equalsIgnoreCase(processedFeatureString)){
-					return EducationFeature.TWELFTH;
-				} else if ("7TH_8TH".equalsIgnoreCase(processedFeatureString)){
-					return EducationFeature.SEVENTH_EIGHTH;
-				} else if ("5TH_6TH".equalsIgnoreCase(processedFeatureString)){
-					return EducationFeature.FIFTH_SIXTH;
-				} else if ("1ST_4TH".equalsIgnoreCase(processedFeatureString)){
-					return EducationFeature.FIRST_FOURTH;
-				}
+	private static ColumnarClassifiedDataset<AdultEarningsClassificationType> readColumnarDataset(Path path) throws IOException {
+		LOG.debug("loading columnar dataset: "+path);
+		AdultEarningsDatasetReader reader = AdultEarningsDatasetReader.open(path, true);
+		try{
+			return reader.readColumnarDataset();
+		} finally{
+			reader.close();
+		}
+	}
+
+	private static ClassifiedDatasetLoader<AdultEarningsClassificationType> createLoader(final ClassifiedDataset<AdultEarningsClassificationType> dataset){
+		return new ClassifiedDatasetLoader<AdultEarningsClassificationType>(){
+
+			@Override
+			public ClassifiedDataset<AdultEarningsClassificationType> getClassifiedDataset() {
+				return dataset;
 			}
-			
-			return (DiscreteFeature) EnumUtils.getEnum((Class<? extends Enum>)featureType, processedFeatureString);
+		};
+	}
+	
+	/**
+	 * Reads the supplied file a line at a time, passing each instance to the sink as it is read without holding the
+	 * dataset in memory.
+	 * @param path
+	 * @param includeMissingFeatures
+	 * @param sink
+	 * @return the number of instances passed to the sink
+	 * @throws IOException
+	 */
+	public static int streamDataset(Path path, boolean includeMissingFeatures, InstanceSink<AdultEarningsClassificationType> sink) throws IOException {
+		AdultEarningsDatasetReader reader = AdultEarningsDatasetReader.open(path, includeMissingFeatures);
+		try{
+			return reader.readInstances(sink);
+		} finally{
+			reader.close();
 		}
-		else{
-			throw new RuntimeException("Unknown feature type: "+featureType);
+	}
+
+	/**
+	 * Classifies every instance of the input file against the model, writing the predictions to the output file as they
+	 * are made. Instances are read and classified in batches of the supplied size so that neither file is held in memory.
+	 * See {@link StreamingClassifier} for the format of the output.
+	 * @param input
+	 * @param output
+	 * @param modelService
+	 * @param model
+	 * @param batchSize
+	 * @return the number of instances classified
+	 * @throws IOException
+	 */
+	public static <T extends Model> long classifyFile(Path input, Path output, ModelService<T, AdultEarningsClassificationType> modelService, T model, int batchSize) throws IOException {
+		BufferedWriter writer = Files.newBufferedWriter(output, UTF8);
+		try{
+			StreamingClassifier<T, AdultEarningsClassificationType> classifier = new StreamingClassifier<T, AdultEarningsClassificationType>(modelService, model, AdultEarningsClassificationType.class, batchSize, writer);
+			streamDataset(input, true, classifier);
+			classifier.close();
+			
+			return classifier.getInstancesClassified();
+		} finally{
+			writer.close();
 		}
 	}
-}
\ No newline at end of file
+
+	private static ClassifiedDataset<AdultEarningsClassificationType> loadDataset(Path path, boolean includeMissingFeatures) throws IOException {
+		
+		final DatasetBuilder dataset = new DatasetBuilder(AdultEarningsFeaures.ALL_FEATURE_TYPES);
+		final Map<Identifier, AdultEarningsClassification> classifications = new IdentifierMap<AdultEarningsClassification>();
+		
+		int count = streamDataset(path, includeMissingFeatures, new InstanceSink<AdultEarningsClassificationType>(){
+
+			@Override
+			public void addInstance(ClassifiedFeatureSet<AdultEarningsClassificationType> instance) {
+				dataset.addInstance(instance);
+				classifications.put(instance.getId(), (AdultEarningsClassification)instance.getClassification());
+			}
+		});
+		
+		System.out.println("loaded: "+count+" instances");
+		
+		return ClassifiedDataset.FACTORY.create(dataset.build(), classifications);
+	}
+}
@@ -0,0 +1,512 @@
+package com.ahaines.machinelearning.api.dataset.adultearnings;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.FeatureDefinition;
+import com.ahaines.machinelearning.api.dataset.FeatureSet;
+import com.ahaines.machinelearning.api.dataset.Identifier;
+import com.ahaines.machinelearning.api.dataset.InstanceSink;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsFeaures.AgeFeature;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsFeaures.CapitalGainFeature;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsFeaures.CapitalLossFeature;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsFeaures.EducationFeature;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsFeaures.EducationNumFeature;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsFeaures.FnlWgtFeature;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsFeaures.HoursPerWeekFeature;
+import com.ahaines.machinelearning.api.dataset.columnar.ColumnarClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.columnar.FeatureColumn.ColumnBuilder;
+import com.ahaines.machinelearning.api.dataset.columnar.FeatureColumn.IntColumnBuilder;
+import com.ahaines.machinelearning.api.dataset.columnar.FeatureColumn.OrdinalColumnBuilder;
+import com.haines.ml.model.Feature;
+import com.haines.ml.model.Feature.Features;
+
+/**
+ * Reads the adult earnings file format a line at a time so that memory use does not depend on the size of the file.
+ * Lines are tokenised by scanning for commas and each column is parsed by a parser resolved once up front. Integer
+ * columns are parsed straight from the line's characters and enum columns are looked up in a table of the raw tokens
+ * already seen, so the clean up of a token into an enum name only happens the first time a distinct token is read.
+ *
+ * Rows are either streamed to an {@link InstanceSink} or appended directly to the columns of a
+ * {@link ColumnarClassifiedDataset} without creating any feature objects.
+ *
+ * A reader is not thread safe and should be closed once finished with.
+ *
+ * @author andrewhaines
+ *
+ */
+public class AdultEarningsDatasetReader implements Closeable{
+
+	private static final int NUM_HEADER_LINES = 4;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final Map<Class<? extends Feature<?>>, IntegerFeatureFactory> INTEGER_FEATURE_FACTORIES = createIntegerFeatureFactories();
+
+	private final BufferedReader reader;
+	private final boolean includeMissingFeatures;
+	private final ColumnParser[] parsers;
+
+	// the current row
+	private final int[] rowValues;
+	private final boolean[] rowMissing;
+	private Identifier rowId;
+	private AdultEarningsClassificationType rowClassification;
+
+	private int lineNumber = 0;
+	private int nextId = 0;
+
+	public AdultEarningsDatasetReader(Reader reader, boolean includeMissingFeatures){
+		this.reader = (reader instanceof BufferedReader)? (BufferedReader)reader: new BufferedReader(reader);
+		this.includeMissingFeatures = includeMissingFeatures;
+
+		List<Class<? extends Feature<?>>> featureTypes = AdultEarningsFeaures.ALL_FEATURE_TYPES;
+		this.parsers = new ColumnParser[featureTypes.size()];
+		for (int i = 0; i < parsers.length; i++){
+			parsers[i] = createParser(featureTypes.get(i));
+		}
+		this.rowValues = new int[parsers.length];
+		this.rowMissing = new boolean[parsers.length];
+	}
+
+	public static AdultEarningsDatasetReader open(Path path, boolean includeMissingFeatures) throws IOException{
+		return new AdultEarningsDatasetReader(Files.newBufferedReader(path, UTF8), includeMissingFeatures);
+	}
+
+	/**
+	 * Advances to the next row of the file, skipping rows with missing features if they are not being included.
+	 * @return false if the end of the file has been reached
+	 * @throws IOException
+	 */
+	public boolean nextRow() throws IOException{
+		String line;
+		while ((line = reader.readLine()) != null){
+			lineNumber++;
+			if (lineNumber <= NUM_HEADER_LINES || isBlank(line)){
+				continue;
+			}
+			rowId = Identifier.FACTORY.createIdentifier(nextId++);
+
+			if (parseLine(line)){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public Identifier getId(){
+		return rowId;
+	}
+
+	public AdultEarningsClassificationType getClassification(){
+		return rowClassification;
+	}
+
+	/**
+	 * Creates a feature set of the current row
+	 * @return
+	 */
+	public FeatureSet getFeatureSet(){
+		List<FeatureDefinition> features = new ArrayList<FeatureDefinition>(parsers.length);
+		for (int i = 0; i < parsers.length; i++){
+			Feature<?> feature = rowMissing[i]? Features.MISSING: parsers[i].createFeature(rowValues[i]);
+
+			features.add(new FeatureDefinition(feature, parsers[i].featureType));
+		}
+		return AdultEarningsFeaures.ADULT_FEATURE_SET.createFeatureSet(rowId, features);
+	}
+
+	/**
+	 * Passes every remaining row of the file to the sink as it is read.
+	 * @param sink
+	 * @return the number of rows passed to the sink
+	 * @throws IOException
+	 */
+	public int readInstances(InstanceSink<AdultEarningsClassificationType> sink) throws IOException{
+		int count = 0;
+		while (nextRow()){
+			sink.addInstance(new ClassifiedFeatureSet<AdultEarningsClassificationType>(getFeatureSet(), new AdultEarningsClassification(rowId, rowClassification)));
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Reads every remaining row of the file into a columnar dataset, appending the parsed values straight into the
+	 * primitive columns.
+	 * @return
+	 * @throws IOException
+	 */
+	public ColumnarClassifiedDataset<AdultEarningsClassificationType> readColumnarDataset() throws IOException{
+		ColumnarClassifiedDataset.Builder<AdultEarningsClassificationType> builder = new ColumnarClassifiedDataset.Builder<AdultEarningsClassificationType>(AdultEarningsFeaures.ADULT_FEATURE_SET.getSchema(), AdultEarningsClassificationType.class);
+
+		ColumnBuilder[] columns = new ColumnBuilder[parsers.length];
+		for (int i = 0; i < columns.length; i++){
+			columns[i] = builder.getColumnBuilder(i);
+		}
+
+		while (nextRow()){
+			for (int i = 0; i < columns.length; i++){
+				if (rowMissing[i]){
+					columns[i].appendMissing();
+				} else{
+					parsers[i].append(columns[i], rowValues[i]);
+				}
+			}
+			builder.endRow(rowId, rowClassification);
+		}
+		return builder.build();
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	/*
+	 * Parses the line into the current row, returning true if the row should be read.
+	 */
+	private boolean parseLine(String line){
+		int length = line.length();
+		int column = 0;
+		int position = 0;
+		boolean containsMissingFeatures = false;
+
+		while (true){
+			int end = line.indexOf(',', position);
+			if (end == -1){
+				end = length;
+			}
+
+			int tokenStart = position;
+			int tokenEnd = end;
+			while (tokenStart < tokenEnd && line.charAt(tokenStart) <= ' '){
+				tokenStart++;
+			}
+			while (tokenEnd > tokenStart && line.charAt(tokenEnd - 1) <= ' '){
+				tokenEnd--;
+			}
+
+			if (column < parsers.length){
+				if (tokenEnd - tokenStart == 1 && line.charAt(tokenStart) == '?'){
+					rowMissing[column] = true;
+					containsMissingFeatures = true;
+				} else{
+					rowMissing[column] = false;
+					try{
+						rowValues[column] = parsers[column].parse(line, tokenStart, tokenEnd);
+					} catch (IllegalArgumentException e){
+						throw new IllegalArgumentException("Unable to parse line "+lineNumber+" for feature: "+parsers[column].featureType.getSimpleName()+" and value: "+line.substring(tokenStart, tokenEnd), e);
+					}
+				}
+			} else if (column == parsers.length){ // this is the classification entry
+				rowClassification = parseClassification(line, tokenStart, tokenEnd);
+			} else{
+				throw new IllegalArgumentException("Unknown feature index: "+column+" on line "+lineNumber+". Instance data is: "+line);
+			}
+			column++;
+
+			if (end == length){
+				break;
+			}
+			position = end + 1;
+		}
+
+		if (column != parsers.length + 1){
+			throw new IllegalArgumentException("expected "+(parsers.length + 1)+" values but found "+column+" on line "+lineNumber+". Instance data is: "+line);
+		}
+		return !containsMissingFeatures || includeMissingFeatures;
+	}
+
+	private AdultEarningsClassificationType parseClassification(String line, int start, int end){
+		int length = end - start;
+		if (length == 4 && line.regionMatches(true, start, ">50K", 0, 4)){
+			return AdultEarningsClassificationType.GREATER_THEN_50K;
+		} else if (length == 5 && line.regionMatches(true, start, "<=50K", 0, 5)){
+			return AdultEarningsClassificationType.LESS_THEN_50K;
+		}
+		throw new IllegalArgumentException("unknown classification: "+line.substring(start, end)+" on line "+lineNumber);
+	}
+
+	private static boolean isBlank(String line){
+		for (int i = 0; i < line.length(); i++){
+			if (line.charAt(i) > ' '){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static ColumnParser createParser(Class<? extends Feature<?>> featureType){
+		IntegerFeatureFactory integerFactory = INTEGER_FEATURE_FACTORIES.get(featureType);
+		if (integerFactory != null){
+			return new IntegerParser(featureType, integerFactory);
+		} else if (featureType.isEnum()){
+			return new EnumParser(featureType);
+		}
+		throw new IllegalArgumentException("Unknown feature type: "+featureType);
+	}
+
+	private static Map<Class<? extends Feature<?>>, IntegerFeatureFactory> createIntegerFeatureFactories(){
+		Map<Class<? extends Feature<?>>, IntegerFeatureFactory> factories = new IdentityHashMap<Class<? extends Feature<?>>, IntegerFeatureFactory>();
+
+		factories.put(AgeFeature.class, new IntegerFeatureFactory(){
+			@Override
+			public Feature<?> createFeature(int value) {
+				return new AgeFeature(value);
+			}
+		});
+		factories.put(FnlWgtFeature.class, new IntegerFeatureFactory(){
+			@Override
+			public Feature<?> createFeature(int value) {
+				return new FnlWgtFeature(value);
+			}
+		});
+		factories.put(EducationNumFeature.class, new IntegerFeatureFactory(){
+			@Override
+			public Feature<?> createFeature(int value) {
+				return new EducationNumFeature(value);
+			}
+		});
+		factories.put(CapitalGainFeature.class, new IntegerFeatureFactory(){
+			@Override
+			public Feature<?> createFeature(int value) {
+				return new CapitalGainFeature(value);
+			}
+		});
+		factories.put(CapitalLossFeature.class, new IntegerFeatureFactory(){
+			@Override
+			public Feature<?> createFeature(int value) {
+				return new CapitalLossFeature(value);
+			}
+		});
+		factories.put(HoursPerWeekFeature.class, new IntegerFeatureFactory(){
+			@Override
+			public Feature<?> createFeature(int value) {
+				return new HoursPerWeekFeature(value);
+			}
+		});
+		return factories;
+	}
+
+	private static interface IntegerFeatureFactory{
+
+		Feature<?> createFeature(int value);
+	}
+
+	/*
+	 * Parses a column's tokens into an int, either the value itself or an enum ordinal.
+	 */
+	private static abstract class ColumnParser{
+
+		protected final Class<? extends Feature<?>> featureType;
+
+		protected ColumnParser(Class<? extends Feature<?>> featureType){
+			this.featureType = featureType;
+		}
+
+		protected abstract int parse(String line, int start, int end);
+
+		protected abstract Feature<?> createFeature(int value);
+
+		protected abstract void append(ColumnBuilder column, int value);
+	}
+
+	private static class IntegerParser extends ColumnParser{
+
+		private final IntegerFeatureFactory factory;
+
+		private IntegerParser(Class<? extends Feature<?>> featureType, IntegerFeatureFactory factory){
+			super(featureType);
+			this.factory = factory;
+		}
+
+		@Override
+		protected int parse(String line, int start, int end) {
+			if (start == end){
+				throw new NumberFormatException("empty value");
+			}
+			int position = start;
+			boolean negative = false;
+			char first = line.charAt(position);
+			if (first == '-' || first == '+'){
+				negative = first == '-';
+				position++;
+				if (position == end){
+					throw new NumberFormatException("no digits");
+				}
+			}
+
+			long value = 0;
+			for (; position < end; position++){
+				char digit = line.charAt(position);
+				if (digit < '0' || digit > '9'){
+					throw new NumberFormatException("not a digit: "+digit);
+				}
+				value = value * 10 + (digit - '0');
+				if (value > (long)Integer.MAX_VALUE + 1){
+					throw new NumberFormatException("value out of range");
+				}
+			}
+			if (negative){
+				value = -value;
+			}
+			if (value > Integer.MAX_VALUE){
+				throw new NumberFormatException("value out of range");
+			}
+			return (int)value;
+		}
+
+		@Override
+		protected Feature<?> createFeature(int value) {
+			return factory.createFeature(value);
+		}
+
+		@Override
+		protected void append(ColumnBuilder column, int value) {
+			if (column instanceof IntColumnBuilder){
+				((IntColumnBuilder)column).appendInt(value);
+			} else{
+				column.append(createFeature(value));
+			}
+		}
+	}
+
+	private static class EnumParser extends ColumnParser{
+
+		private final Feature<?>[] values;
+		private final TokenTable seenTokens = new TokenTable();
+
+		private EnumParser(Class<? extends Feature<?>> featureType){
+			super(featureType);
+			this.values = featureType.getEnumConstants();
+		}
+
+		@Override
+		protected int parse(String line, int start, int end) {
+			int ordinal = seenTokens.get(line, start, end);
+			if (ordinal == TokenTable.NOT_FOUND){
+				String token = line.substring(start, end);
+				ordinal = ((Enum<?>)getFeature(token)).ordinal();
+				seenTokens.put(token, ordinal);
+			}
+			return ordinal;
+		}
+
+		/*
+		 * The same clean up of the raw value into an enum name as the original loader
+		 */
+		private Feature<?> getFeature(String token){
+			String processedFeatureString = token.toUpperCase()
+												 .replace('-', '_')
+												 .replace('&', '_')
+												 .replace('(', '_')
+												 .replace(')', '_');
+
+			if (featureType == EducationFeature.class){
+				if("11TH".equals(processedFeatureString)){
+					return EducationFeature.ELEVETH;
+				} else if ("9TH".equals(processedFeatureString)){
+					return EducationFeature.NINTH;
+				} else if ("10TH".equals(processedFeatureString)){
+					return EducationFeature.TENTH;
+				} else if ("12TH".equals(processedFeatureString)){
+					return EducationFeature.TWELFTH;
+				} else if ("7TH_8TH".equals(processedFeatureString)){
+					return EducationFeature.SEVENTH_EIGHTH;
+				} else if ("5TH_6TH".equals(processedFeatureString)){
+					return EducationFeature.FIFTH_SIXTH;
+				} else if ("1ST_4TH".equals(processedFeatureString)){
+					return EducationFeature.FIRST_FOURTH;
+				}
+			}
+
+			for (Feature<?> value: values){
+				if (((Enum<?>)value).name().equals(processedFeatureString)){
+					return value;
+				}
+			}
+			throw new IllegalArgumentException("unknown value: "+token);
+		}
+
+		@Override
+		protected Feature<?> createFeature(int value) {
+			return values[value];
+		}
+
+		@Override
+		protected void append(ColumnBuilder column, int value) {
+			if (column instanceof OrdinalColumnBuilder){
+				((OrdinalColumnBuilder)column).appendOrdinal(value);
+			} else{
+				column.append(createFeature(value));
+			}
+		}
+	}
+
+	/*
+	 * An open addressing table from a region of a line to a value. Regions are hashed the same way as String#hashCode so
+	 * no substring is needed to look a token up.
+	 */
+	private static class TokenTable{
+
+		private static final int NOT_FOUND = -1;
+
+		private String[] tokens = new String[16];
+		private int[] values = new int[16];
+		private int size = 0;
+
+		private int get(String line, int start, int end){
+			int length = end - start;
+			int mask = tokens.length - 1;
+			for (int i = hash(line, start, end) & mask;; i = (i + 1) & mask){
+				String token = tokens[i];
+				if (token == null){
+					return NOT_FOUND;
+				}
+				if (token.length() == length && line.regionMatches(start, token, 0, length)){
+					return values[i];
+				}
+			}
+		}
+
+		private void put(String token, int value){
+			if ((size + 1) * 2 > tokens.length){
+				String[] oldTokens = tokens;
+				int[] oldValues = values;
+				tokens = new String[oldTokens.length * 2];
+				values = new int[oldValues.length * 2];
+				size = 0;
+				for (int i = 0; i < oldTokens.length; i++){
+					if (oldTokens[i] != null){
+						put(oldTokens[i], oldValues[i]);
+					}
+				}
+			}
+			int mask = tokens.length - 1;
+			int i = token.hashCode() & mask;
+			while (tokens[i] != null){
+				i = (i + 1) & mask;
+			}
+			tokens[i] = token;
+			values[i] = value;
+			size++;
+		}
+
+		private static int hash(String line, int start, int end){
+			int hash = 0;
+			for (int i = start; i < end; i++){
+				hash = 31 * hash + line.charAt(i);
+			}
+			return hash;
+		}
+	}
+}
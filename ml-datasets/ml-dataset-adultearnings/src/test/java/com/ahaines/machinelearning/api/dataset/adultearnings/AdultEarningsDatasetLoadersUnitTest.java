@@ -1,18 +1,25 @@
 package com.ahaines.machinelearning.api.dataset.adultearnings;
 
 import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
 
 import org.junit.Test;
 
 import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
 import com.ahaines.machinelearning.api.dataset.ClassifiedDatasetLoader;
 import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.columnar.ColumnarClassifiedDataset;
+import com.haines.ml.model.Feature;
 
 import static org.junit.Assert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
 
 public class AdultEarningsDatasetLoadersUnitTest {
 
@@ -32,4 +39,84 @@ public class AdultEarningsDatasetLoadersUnitTest {
 		
 		assertThat(size, is(equalTo(32561)));
 	}
+
+	@Test
+	public void givenCandidate_whenCallingGetColumnarDatasetLoader_thenSameInstancesAsTrainingDatasetLoaderReturned() throws IOException{
+		ClassifiedDataset<AdultEarningsClassificationType> expectedDataset = AdultEarningsDatasetLoaders.getTrainingDatasetLoader().getClassifiedDataset();
+		ClassifiedDataset<AdultEarningsClassificationType> dataset = AdultEarningsDatasetLoaders.getColumnarDatasetLoader("/adult.data.txt").getClassifiedDataset();
+		
+		Iterator<ClassifiedFeatureSet<AdultEarningsClassificationType>> expectedInstances = expectedDataset.getInstances().iterator();
+		int size = 0;
+		for (ClassifiedFeatureSet<AdultEarningsClassificationType> instance: dataset.getInstances()){
+			ClassifiedFeatureSet<AdultEarningsClassificationType> expected = expectedInstances.next();
+			
+			assertThat(instance.getId(), is(equalTo(expected.getId())));
+			assertThat(instance.getClassification().getValue(), is(equalTo(expected.getClassification().getValue())));
+			for (Class<? extends Feature<?>> featureType: AdultEarningsFeaures.ALL_FEATURE_TYPES){
+				assertThat(instance.getId()+": "+featureType, instance.getFeature(featureType).getValue(), is(equalTo(expected.getFeature(featureType).getValue())));
+			}
+			size++;
+		}
+		
+		assertThat(expectedInstances.hasNext(), is(equalTo(false)));
+		assertThat(size, is(equalTo(32561)));
+	}
+
+	@Test
+	public void givenCacheDirectory_whenCallingGetCachedColumnarDatasetLoader_thenCacheWrittenAndSameInstancesLoadedFromIt() throws IOException, URISyntaxException{
+		Path cacheDirectory = Files.createTempDirectory("dataset-cache");
+		Path source = cacheDirectory.resolve("adult.test.txt");
+		Path cacheFile = cacheDirectory.resolve("adult.test.txt.columns");
+		try{
+			Files.copy(ClassifiedDatasetLoader.UTIL.getPath(AdultEarningsDatasetLoaders.class.getResource("/adult.test.txt").toURI()), source);
+
+			ClassifiedDataset<AdultEarningsClassificationType> parsed = AdultEarningsDatasetLoaders.getCachedColumnarDatasetLoader(source, cacheDirectory).getClassifiedDataset();
+
+			assertThat(Files.exists(cacheFile), is(equalTo(true)));
+
+			ClassifiedDataset<AdultEarningsClassificationType> cached = AdultEarningsDatasetLoaders.getCachedColumnarDatasetLoader(source, cacheDirectory).getClassifiedDataset();
+
+			assertThat(cached, is(instanceOf(ColumnarClassifiedDataset.class)));
+			assertSameInstances(cached, parsed);
+		} finally{
+			Files.deleteIfExists(cacheFile);
+			Files.deleteIfExists(source);
+			Files.delete(cacheDirectory);
+		}
+	}
+
+	@Test
+	public void givenSourceChangedSinceCached_whenCallingGetCachedColumnarDatasetLoader_thenSourceParsedAgain() throws IOException{
+		Path cacheDirectory = Files.createTempDirectory("dataset-cache");
+		Path source = cacheDirectory.resolve("adult.txt");
+		Path cacheFile = cacheDirectory.resolve("adult.txt.columns");
+		String header = "header\nheader\nheader\nheader\n";
+		String row = "39, State-gov, 77516, Bachelors, 13, Never-married, Adm-clerical, Not-in-family, White, Male, 2174, 0, 40, United-States, <=50K\n";
+		try{
+			Files.write(source, (header+row).getBytes("UTF-8"));
+			assertThat(AdultEarningsDatasetLoaders.getCachedColumnarDatasetLoader(source, cacheDirectory).getClassifiedDataset().getClassifications().size(), is(equalTo(1)));
+
+			Files.write(source, (header+row+row).getBytes("UTF-8"));
+			assertThat(AdultEarningsDatasetLoaders.getCachedColumnarDatasetLoader(source, cacheDirectory).getClassifiedDataset().getClassifications().size(), is(equalTo(2)));
+			assertThat(AdultEarningsDatasetLoaders.getCachedColumnarDatasetLoader(source, cacheDirectory).getClassifiedDataset().getClassifications().size(), is(equalTo(2)));
+		} finally{
+			Files.deleteIfExists(cacheFile);
+			Files.deleteIfExists(source);
+			Files.delete(cacheDirectory);
+		}
+	}
+
+	private static void assertSameInstances(ClassifiedDataset<AdultEarningsClassificationType> dataset, ClassifiedDataset<AdultEarningsClassificationType> expectedDataset){
+		Iterator<ClassifiedFeatureSet<AdultEarningsClassificationType>> expectedInstances = expectedDataset.getInstances().iterator();
+		for (ClassifiedFeatureSet<AdultEarningsClassificationType> instance: dataset.getInstances()){
+			ClassifiedFeatureSet<AdultEarningsClassificationType> expected = expectedInstances.next();
+
+			assertThat(instance.getId(), is(equalTo(expected.getId())));
+			assertThat(instance.getClassification().getValue(), is(equalTo(expected.getClassification().getValue())));
+			for (Class<? extends Feature<?>> featureType: AdultEarningsFeaures.ALL_FEATURE_TYPES){
+				assertThat(instance.getId()+": "+featureType, instance.getFeature(featureType).getValue(), is(equalTo(expected.getFeature(featureType).getValue())));
+			}
+		}
+		assertThat(expectedInstances.hasNext(), is(equalTo(false)));
+	}
 }
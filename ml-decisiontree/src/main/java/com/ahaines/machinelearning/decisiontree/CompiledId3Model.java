@@ -0,0 +1,639 @@
+package com.ahaines.machinelearning.decisiontree;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ahaines.machinelearning.api.ModelService;
+import com.ahaines.machinelearning.api.dataset.Classification;
+import com.ahaines.machinelearning.api.dataset.FeatureSchema;
+import com.ahaines.machinelearning.api.dataset.FeatureSet;
+import com.ahaines.machinelearning.api.dataset.columnar.ColumnarClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.columnar.FeatureColumn;
+import com.ahaines.machinelearning.api.dataset.columnar.FeatureColumn.NumericColumn;
+import com.ahaines.machinelearning.api.dataset.columnar.FeatureColumn.OrdinalColumn;
+import com.ahaines.machinelearning.api.dataset.quantiser.RangeFeature;
+import com.ahaines.machinelearning.api.util.ModelFiles;
+import com.ahaines.machinelearning.decisiontree.Id3Node.DecisionId3Node;
+import com.haines.ml.model.Feature;
+import com.haines.ml.model.Feature.Features;
+
+/**
+ * A read only form of an {@link Id3Model} where the tree is flattened into parallel arrays indexed by node. Walking the
+ * tree to classify an instance does not allocate and is safe to do from multiple threads.
+ *
+ * Each decision node is compiled into one of the following branch types:
+ *
+ * ordinal:	The feature is an enum and the child is found by indexing a table with the feature's ordinal.
+ *
+ * range:	The children are non overlapping {@link RangeFeature}s whose bounds are held as doubles sorted by lower bound,
+ * 			and the child is found with a binary search. Ranges that overlap are scanned linearly in the same order.
+ *
+ * generic:	Anything else falls back to checking each child's feature with {@link Feature#intersects(Feature)} in the
+ * 			order the children were added, the same as the tree itself.
+ *
+ * Features of {@link ColumnarClassifiedDataset.Row} instances are read straight from the primitive columns.
+ *
+ * A compiled tree can be saved with {@link #write(Path)} and loaded again with {@link #load(Path, Class)}. The file holds
+ * the node arrays as they are laid out here, so loading maps the file and copies each array out in bulk rather than
+ * rebuilding the tree. Trees with generic branches cannot be saved as their features are arbitrary objects.
+ *
+ * @author andrewhaines
+ *
+ * @param <C>
+ */
+public class CompiledId3Model<C extends Enum<C>> {
+
+	private static final byte LEAF = 0;
+	private static final byte ORDINAL_BRANCH = 1;
+	private static final byte SORTED_RANGE_BRANCH = 2;
+	private static final byte RANGE_BRANCH = 3;
+	private static final byte GENERIC_BRANCH = 4;
+
+	private static final int MAGIC = 0x4944334D; // ID3M
+	private static final int FORMAT_VERSION = 1;
+	private static final int NODE_SIZE = 17; // bytes of a node in a saved tree: its type then four ints
+	private static final int CHILD_SIZE = 21; // bytes of a child in a saved tree: its node, two bounds and a flag
+
+	private static final int NO_CHILD = -1;
+	private static final int NO_CLASSIFICATION = -1;
+
+	private final C[] classificationValues;
+	private final Class<? extends Feature<?>>[] featureTypes;
+
+	// per node
+	private final byte[] nodeTypes;
+	private final int[] nodeFeatureIndexes;
+	private final int[] nodeClassifications;
+	private final int[] childOffsets;
+	private final int[] childCounts;
+
+	// per child entry, addressed by the node's child offset
+	private final int[] children;
+	private final double[] lowerBounds;
+	private final double[] upperBounds;
+	private final boolean[] inclusiveUpperBounds;
+	private final Feature<?>[] childFeatures;
+
+	private volatile SchemaSlots schemaSlots;
+
+	private CompiledId3Model(Compiler<C> compiler){
+		this.classificationValues = compiler.classificationValues;
+		this.featureTypes = compiler.getFeatureTypes();
+
+		int numNodes = compiler.nodeTypes.size();
+		this.nodeTypes = new byte[numNodes];
+		this.nodeFeatureIndexes = toArray(compiler.nodeFeatureIndexes);
+		this.nodeClassifications = toArray(compiler.nodeClassifications);
+		this.childOffsets = toArray(compiler.childOffsets);
+		this.childCounts = toArray(compiler.childCounts);
+		for (int i = 0; i < numNodes; i++){
+			nodeTypes[i] = compiler.nodeTypes.get(i);
+		}
+
+		int numChildren = compiler.children.size();
+		this.children = toArray(compiler.children);
+		this.lowerBounds = new double[numChildren];
+		this.upperBounds = new double[numChildren];
+		this.inclusiveUpperBounds = new boolean[numChildren];
+		this.childFeatures = compiler.childFeatures.toArray(new Feature<?>[numChildren]);
+		for (int i = 0; i < numChildren; i++){
+			lowerBounds[i] = compiler.lowerBounds.get(i);
+			upperBounds[i] = compiler.upperBounds.get(i);
+			inclusiveUpperBounds[i] = compiler.inclusiveUpperBounds.get(i);
+		}
+	}
+
+	private CompiledId3Model(C[] classificationValues, Class<? extends Feature<?>>[] featureTypes, byte[] nodeTypes, int[] nodeFeatureIndexes, int[] nodeClassifications, int[] childOffsets, int[] childCounts, int[] children, double[] lowerBounds, double[] upperBounds, boolean[] inclusiveUpperBounds){
+		this.classificationValues = classificationValues;
+		this.featureTypes = featureTypes;
+		this.nodeTypes = nodeTypes;
+		this.nodeFeatureIndexes = nodeFeatureIndexes;
+		this.nodeClassifications = nodeClassifications;
+		this.childOffsets = childOffsets;
+		this.childCounts = childCounts;
+		this.children = children;
+		this.lowerBounds = lowerBounds;
+		this.upperBounds = upperBounds;
+		this.inclusiveUpperBounds = inclusiveUpperBounds;
+		this.childFeatures = new Feature<?>[children.length];
+	}
+
+	static <C extends Enum<C>> CompiledId3Model<C> compile(Id3Node<C> root){
+		Compiler<C> compiler = new Compiler<C>(root);
+		compiler.compile(root);
+
+		return new CompiledId3Model<C>(compiler);
+	}
+
+	public Classification<C> getClassification(FeatureSet instance){
+		return new Classification<C>(instance.getId(), getClassificationValue(instance));
+	}
+
+	/**
+	 * Returns the classification of the instance without allocating any intermediate objects
+	 * @param instance
+	 * @return
+	 */
+	public C getClassificationValue(FeatureSet instance){
+		int ordinal = getClassificationOrdinal(instance);
+
+		if (ordinal == NO_CLASSIFICATION){
+			return null;
+		}
+		return classificationValues[ordinal];
+	}
+
+	/**
+	 * Returns the ordinal of the instance's classification or -1 if the tree was trained without any instances
+	 * @param instance
+	 * @return
+	 */
+	public int getClassificationOrdinal(FeatureSet instance){
+		int[] slots = getSlots(instance.getSchema());
+
+		ColumnarClassifiedDataset<?> dataset = null;
+		int row = 0;
+		if (instance instanceof ColumnarClassifiedDataset.Row){
+			ColumnarClassifiedDataset<?>.Row columnarRow = (ColumnarClassifiedDataset<?>.Row)instance;
+			dataset = columnarRow.getDataset();
+			row = columnarRow.getRow();
+		}
+
+		int node = 0;
+		while (nodeTypes[node] != LEAF){
+			int slot = slots[nodeFeatureIndexes[node]];
+			if (slot == FeatureSchema.NOT_IN_SCHEMA){
+				throw new IllegalArgumentException("a feature of type: "+featureTypes[nodeFeatureIndexes[node]]+" does not exist in this feature set");
+			}
+			FeatureColumn column = (dataset == null)? null : dataset.getColumn(slot);
+
+			int child;
+			if (column != null){
+				if (column.isMissing(row)){
+					return nodeClassifications[node]; // the most common classification at this node, as the tree does
+				}
+				child = getChild(node, column, row);
+			} else{
+				Feature<?> featureValue = instance.getFeature(slot);
+				if (featureValue == Features.MISSING){
+					return nodeClassifications[node];
+				}
+				child = getChild(node, featureValue);
+			}
+
+			if (child == NO_CHILD){
+				throw new IllegalStateException("there is no child for feature: "+((column != null)? column.getFeature(row): instance.getFeature(slot))+":"+featureTypes[nodeFeatureIndexes[node]].getSimpleName()+" at this decision branch");
+			}
+			node = child;
+		}
+
+		return nodeClassifications[node];
+	}
+
+	/**
+	 * Writes the classification ordinal of each instance into the supplied array. Trees do not estimate probabilities so,
+	 * when supplied, each probability is set to {@link Double#NaN}.
+	 * @param instances
+	 * @param classificationOrdinals
+	 * @param classificationProbabilities
+	 */
+	public void classifyBatch(List<? extends FeatureSet> instances, int[] classificationOrdinals, double[] classificationProbabilities){
+		ModelService.UTIL.checkBatch(instances.size(), classificationOrdinals, classificationProbabilities);
+
+		for (int i = 0; i < instances.size(); i++){
+			classificationOrdinals[i] = getClassificationOrdinal(instances.get(i));
+			if (classificationProbabilities != null){
+				classificationProbabilities[i] = Double.NaN;
+			}
+		}
+	}
+
+	public int countNodes(){
+		return nodeTypes.length;
+	}
+
+	/**
+	 * Writes the compiled tree to the file
+	 * @param file
+	 * @throws IOException
+	 * @throws UnsupportedOperationException if the tree has a generic branch
+	 */
+	public void write(Path file) throws IOException{
+		for (int node = 0; node < nodeTypes.length; node++){
+			if (nodeTypes[node] == GENERIC_BRANCH){
+				throw new UnsupportedOperationException("the branch on feature: "+featureTypes[nodeFeatureIndexes[node]].getName()+" cannot be written as its features are not enums or ranges");
+			}
+		}
+
+		DataOutputStream out = ModelFiles.create(file, MAGIC, FORMAT_VERSION);
+		try{
+			ModelFiles.writeClass(out, (classificationValues == null)? null: classificationValues[0].getDeclaringClass());
+			out.writeInt(featureTypes.length);
+			for (Class<? extends Feature<?>> featureType: featureTypes){
+				ModelFiles.writeClass(out, featureType);
+			}
+
+			out.writeInt(nodeTypes.length);
+			out.write(nodeTypes);
+			ModelFiles.writeInts(out, nodeFeatureIndexes);
+			ModelFiles.writeInts(out, nodeClassifications);
+			ModelFiles.writeInts(out, childOffsets);
+			ModelFiles.writeInts(out, childCounts);
+
+			out.writeInt(children.length);
+			ModelFiles.writeInts(out, children);
+			ModelFiles.writeDoubles(out, lowerBounds);
+			ModelFiles.writeDoubles(out, upperBounds);
+			ModelFiles.writeBooleans(out, inclusiveUpperBounds);
+		} finally{
+			out.close();
+		}
+	}
+
+	/**
+	 * Loads a tree saved with {@link #write(Path)}
+	 * @param file
+	 * @param classificationType
+	 * @return
+	 * @throws IOException if the file is not a saved tree or was trained with a different classification type
+	 */
+	@SuppressWarnings("unchecked")
+	public static <C extends Enum<C>> CompiledId3Model<C> load(Path file, Class<C> classificationType) throws IOException{
+		ByteBuffer buffer = ModelFiles.map(file, MAGIC, FORMAT_VERSION);
+		try{
+			Class<?> fileClassificationType = ModelFiles.readClass(buffer);
+			if (fileClassificationType != null && fileClassificationType != classificationType){
+				throw new IOException(file+" classifies "+fileClassificationType.getName()+" not "+classificationType.getName());
+			}
+			@SuppressWarnings("rawtypes")
+			Class<? extends Feature<?>>[] featureTypes = new Class[ModelFiles.readLength(buffer, file, 4)]; // each name is preceded by its length
+			for (int i = 0; i < featureTypes.length; i++){
+				featureTypes[i] = (Class<? extends Feature<?>>)ModelFiles.readClass(buffer);
+			}
+
+			int numNodes = ModelFiles.readLength(buffer, file, NODE_SIZE);
+			byte[] nodeTypes = new byte[numNodes];
+			int[] nodeFeatureIndexes = new int[numNodes];
+			int[] nodeClassifications = new int[numNodes];
+			int[] childOffsets = new int[numNodes];
+			int[] childCounts = new int[numNodes];
+			buffer.get(nodeTypes);
+			ModelFiles.readInts(buffer, nodeFeatureIndexes);
+			ModelFiles.readInts(buffer, nodeClassifications);
+			ModelFiles.readInts(buffer, childOffsets);
+			ModelFiles.readInts(buffer, childCounts);
+
+			int numChildren = ModelFiles.readLength(buffer, file, CHILD_SIZE);
+			int[] children = new int[numChildren];
+			double[] lowerBounds = new double[numChildren];
+			double[] upperBounds = new double[numChildren];
+			boolean[] inclusiveUpperBounds = new boolean[numChildren];
+			ModelFiles.readInts(buffer, children);
+			ModelFiles.readDoubles(buffer, lowerBounds);
+			ModelFiles.readDoubles(buffer, upperBounds);
+			ModelFiles.readBooleans(buffer, inclusiveUpperBounds);
+
+			return new CompiledId3Model<C>((fileClassificationType == null)? null: classificationType.getEnumConstants(), featureTypes, nodeTypes, nodeFeatureIndexes, nodeClassifications, childOffsets, childCounts, children, lowerBounds, upperBounds, inclusiveUpperBounds);
+		} catch (BufferUnderflowException e){
+			throw new IOException(file+" is truncated", e);
+		}
+	}
+
+	private int getChild(int node, FeatureColumn column, int row){
+		switch (nodeTypes[node]){
+			case ORDINAL_BRANCH:
+				if (column instanceof OrdinalColumn){
+					return getOrdinalChild(node, ((OrdinalColumn)column).getOrdinal(row));
+				}
+				break;
+			case SORTED_RANGE_BRANCH:
+			case RANGE_BRANCH:
+				if (column instanceof NumericColumn){
+					return getRangeChild(node, ((NumericColumn)column).getDouble(row));
+				}
+				break;
+		}
+		return getChild(node, column.getFeature(row));
+	}
+
+	private int getChild(int node, Feature<?> featureValue){
+		switch (nodeTypes[node]){
+			case ORDINAL_BRANCH:
+				return getOrdinalChild(node, ((Enum<?>)featureValue).ordinal());
+			case SORTED_RANGE_BRANCH:
+			case RANGE_BRANCH:
+				return getRangeChild(node, ((Number)featureValue.getValue()).doubleValue());
+			default:
+				return getGenericChild(node, featureValue);
+		}
+	}
+
+	private int getOrdinalChild(int node, int ordinal){
+		if (ordinal >= childCounts[node]){
+			return NO_CHILD;
+		}
+		return children[childOffsets[node] + ordinal];
+	}
+
+	private int getRangeChild(int node, double value){
+		int from = childOffsets[node];
+		int to = from + childCounts[node];
+
+		if (nodeTypes[node] == SORTED_RANGE_BRANCH){
+			// find the last range whose lower bound is not above the value. No other range can contain it
+			int low = from;
+			int high = to - 1;
+			int candidate = NO_CHILD;
+			while (low <= high){
+				int mid = (low + high) >>> 1;
+				if (lowerBounds[mid] <= value){
+					candidate = mid;
+					low = mid + 1;
+				} else{
+					high = mid - 1;
+				}
+			}
+			if (candidate != NO_CHILD && isInRange(candidate, value)){
+				return children[candidate];
+			}
+			return NO_CHILD;
+		}
+		for (int i = from; i < to; i++){
+			if (lowerBounds[i] <= value && isInRange(i, value)){
+				return children[i];
+			}
+		}
+		return NO_CHILD;
+	}
+
+	private boolean isInRange(int childEntry, double value){
+		if (inclusiveUpperBounds[childEntry]){
+			return value <= upperBounds[childEntry];
+		}
+		return value < upperBounds[childEntry];
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private int getGenericChild(int node, Feature<?> featureValue){
+		int from = childOffsets[node];
+		int to = from + childCounts[node];
+
+		for (int i = from; i < to; i++){
+			if (((Feature)childFeatures[i]).intersects(featureValue)){
+				return children[i];
+			}
+		}
+		return NO_CHILD;
+	}
+
+	/*
+	 * Slots are resolved once per schema. The mapping is immutable so it can be swapped in when a different schema is
+	 * seen without any locking.
+	 */
+	private int[] getSlots(FeatureSchema schema){
+		SchemaSlots currentSlots = schemaSlots;
+		if (currentSlots == null || currentSlots.schema != schema){
+			int[] slots = new int[featureTypes.length];
+			for (int i = 0; i < featureTypes.length; i++){
+				slots[i] = schema.getSlot(featureTypes[i]);
+			}
+			currentSlots = new SchemaSlots(schema, slots);
+			schemaSlots = currentSlots;
+		}
+		return currentSlots.slots;
+	}
+
+	private static int[] toArray(List<Integer> values){
+		int[] array = new int[values.size()];
+		for (int i = 0; i < array.length; i++){
+			array[i] = values.get(i);
+		}
+		return array;
+	}
+
+	private static class SchemaSlots{
+		private final FeatureSchema schema;
+		private final int[] slots;
+
+		private SchemaSlots(FeatureSchema schema, int[] slots){
+			this.schema = schema;
+			this.slots = slots;
+		}
+	}
+
+	/*
+	 * Lays the nodes out breadth first so that children of a node are written next to each other.
+	 */
+	private static class Compiler<C extends Enum<C>>{
+
+		private static final Comparator<ChildEntry> LOWER_BOUND_COMPARATOR = new Comparator<ChildEntry>(){
+
+			@Override
+			public int compare(ChildEntry o1, ChildEntry o2) {
+				return Double.compare(o1.lowerBound, o2.lowerBound);
+			}
+		};
+
+		private final C[] classificationValues;
+		private final Map<Class<? extends Feature<?>>, Integer> featureTypeIndexes = new IdentityHashMap<Class<? extends Feature<?>>, Integer>();
+		private final List<Class<? extends Feature<?>>> featureTypes = new ArrayList<Class<? extends Feature<?>>>();
+
+		private final List<Byte> nodeTypes = new ArrayList<Byte>();
+		private final List<Integer> nodeFeatureIndexes = new ArrayList<Integer>();
+		private final List<Integer> nodeClassifications = new ArrayList<Integer>();
+		private final List<Integer> childOffsets = new ArrayList<Integer>();
+		private final List<Integer> childCounts = new ArrayList<Integer>();
+
+		private final List<Integer> children = new ArrayList<Integer>();
+		private final List<Double> lowerBounds = new ArrayList<Double>();
+		private final List<Double> upperBounds = new ArrayList<Double>();
+		private final List<Boolean> inclusiveUpperBounds = new ArrayList<Boolean>();
+		private final List<Feature<?>> childFeatures = new ArrayList<Feature<?>>();
+
+		private Compiler(Id3Node<C> root){
+			if (root.mostCommonClassification == null){
+				this.classificationValues = null;
+			} else{
+				this.classificationValues = root.mostCommonClassification.getDeclaringClass().getEnumConstants();
+			}
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private Class<? extends Feature<?>>[] getFeatureTypes(){
+			return featureTypes.toArray(new Class[featureTypes.size()]);
+		}
+
+		private void compile(Id3Node<C> root){
+			List<Id3Node<C>> nodes = new ArrayList<Id3Node<C>>();
+			nodes.add(root);
+
+			// nodes is appended to as children are allocated, so their index in this list is their node index
+			for (int node = 0; node < nodes.size(); node++){
+				Id3Node<C> current = nodes.get(node);
+
+				nodeClassifications.add((current.mostCommonClassification == null)? NO_CLASSIFICATION: current.mostCommonClassification.ordinal());
+				childOffsets.add(children.size());
+
+				if (current instanceof DecisionId3Node){
+					DecisionId3Node<C> decisionNode = (DecisionId3Node<C>)current;
+					Class<? extends Feature<?>> featureType = decisionNode.getFeature().getFeatureType();
+
+					List<ChildEntry> entries = new ArrayList<ChildEntry>();
+					for (Id3Node<C> child: decisionNode.getChildren()){
+						entries.add(new ChildEntry(child.getFeature().getFeature(), nodes.size()));
+						nodes.add(child);
+					}
+
+					nodeFeatureIndexes.add(getFeatureTypeIndex(featureType));
+					if (isOrdinalBranch(featureType, entries)){
+						addOrdinalBranch(featureType, entries);
+					} else if (isRangeBranch(entries)){
+						addRangeBranch(entries);
+					} else{
+						nodeTypes.add(GENERIC_BRANCH);
+						addChildEntries(entries);
+					}
+				} else{
+					nodeTypes.add(LEAF);
+					nodeFeatureIndexes.add(-1);
+				}
+				childCounts.add(children.size() - childOffsets.get(node));
+			}
+		}
+
+		private int getFeatureTypeIndex(Class<? extends Feature<?>> featureType){
+			Integer index = featureTypeIndexes.get(featureType);
+			if (index == null){
+				index = featureTypes.size();
+				featureTypes.add(featureType);
+				featureTypeIndexes.put(featureType, index);
+			}
+			return index;
+		}
+
+		private static boolean isOrdinalBranch(Class<? extends Feature<?>> featureType, List<ChildEntry> entries){
+			if (!featureType.isEnum()){
+				return false;
+			}
+			for (ChildEntry entry: entries){
+				if (!featureType.isInstance(entry.feature)){
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void addOrdinalBranch(Class<? extends Feature<?>> featureType, List<ChildEntry> entries){
+			int[] ordinalTable = new int[featureType.getEnumConstants().length];
+			Arrays.fill(ordinalTable, NO_CHILD);
+
+			// the first child for a value wins, as it would when scanning the children in order
+			for (ChildEntry entry: entries){
+				int ordinal = ((Enum<?>)entry.feature).ordinal();
+				if (ordinalTable[ordinal] == NO_CHILD){
+					ordinalTable[ordinal] = entry.node;
+				}
+			}
+
+			nodeTypes.add(ORDINAL_BRANCH);
+			for (int node: ordinalTable){
+				addChildEntry(node, null, 0, 0, false);
+			}
+		}
+
+		/*
+		 * Only ranges whose bounds survive the conversion to a double are compiled so that comparisons are exact.
+		 */
+		private static boolean isRangeBranch(List<ChildEntry> entries){
+			if (entries.isEmpty()){
+				return false;
+			}
+			for (ChildEntry entry: entries){
+				if (!(entry.feature instanceof RangeFeature)){
+					return false;
+				}
+				RangeFeature<?> range = (RangeFeature<?>)entry.feature;
+				if (!isExactDouble(range.getLowerBound()) || !isExactDouble(range.getUpperBound())){
+					return false;
+				}
+				entry.lowerBound = range.getLowerBound().doubleValue();
+				entry.upperBound = range.getUpperBound().doubleValue();
+				entry.inclusive = range.isInclusive();
+			}
+			return true;
+		}
+
+		private static boolean isExactDouble(Number value){
+			if (value instanceof Integer || value instanceof Short || value instanceof Byte || value instanceof Double || value instanceof Float){
+				return true;
+			} else if (value instanceof Long){
+				return (long)value.doubleValue() == value.longValue() && Math.abs(value.longValue()) <= (1L << 53);
+			}
+			return false;
+		}
+
+		private void addRangeBranch(List<ChildEntry> entries){
+			List<ChildEntry> sortedEntries = new ArrayList<ChildEntry>(entries);
+			Collections.sort(sortedEntries, LOWER_BOUND_COMPARATOR);
+
+			if (isDisjoint(sortedEntries)){
+				nodeTypes.add(SORTED_RANGE_BRANCH);
+				addChildEntries(sortedEntries);
+			} else{
+				// overlapping ranges keep their order so that the first matching child still wins
+				nodeTypes.add(RANGE_BRANCH);
+				addChildEntries(entries);
+			}
+		}
+
+		private static boolean isDisjoint(List<ChildEntry> sortedEntries){
+			for (int i = 1; i < sortedEntries.size(); i++){
+				ChildEntry previous = sortedEntries.get(i - 1);
+				ChildEntry next = sortedEntries.get(i);
+
+				if (previous.upperBound > next.lowerBound || (previous.inclusive && previous.upperBound == next.lowerBound) || previous.lowerBound == next.lowerBound){
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void addChildEntries(List<ChildEntry> entries){
+			for (ChildEntry entry: entries){
+				addChildEntry(entry.node, entry.feature, entry.lowerBound, entry.upperBound, entry.inclusive);
+			}
+		}
+
+		private void addChildEntry(int node, Feature<?> feature, double lowerBound, double upperBound, boolean inclusive){
+			children.add(node);
+			childFeatures.add(feature);
+			lowerBounds.add(lowerBound);
+			upperBounds.add(upperBound);
+			inclusiveUpperBounds.add(inclusive);
+		}
+	}
+
+	private static class ChildEntry{
+
+		private final Feature<?> feature;
+		private final int node;
+		private double lowerBound;
+		private double upperBound;
+		private boolean inclusive;
+
+		private ChildEntry(Feature<?> feature, int node){
+			this.feature = feature;
+			this.node = node;
+		}
+	}
+}
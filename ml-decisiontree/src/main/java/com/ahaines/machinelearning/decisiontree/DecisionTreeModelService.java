@@ -3,8 +3,16 @@ package com.ahaines.machinelearning.decisiontree;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,11 +25,16 @@ import com.ahaines.machinelearning.api.dataset.Dataset;
 import com.ahaines.machinelearning.api.dataset.FeatureDefinition;
 import com.ahaines.machinelearning.api.dataset.FeatureSet;
 import com.ahaines.machinelearning.api.dataset.Identifier;
+import com.ahaines.machinelearning.api.dataset.IdentifierMap;
+import com.ahaines.machinelearning.api.dataset.columnar.ColumnReader;
 import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser;
+import com.ahaines.machinelearning.api.dataset.quantiser.SortedInstanceList;
+import com.ahaines.machinelearning.api.util.Utils;
 import com.ahaines.machinelearning.decisiontree.ContinuousFeatureSplitter.ContinuousFeatureSplitters;
 import com.ahaines.machinelearning.decisiontree.Id3Node.DecisionId3Node;
 import com.ahaines.machinelearning.decisiontree.ImpurityProcessor.ImpurityProcessors;
 import com.ahaines.machinelearning.decisiontree.MissingFeatureClassifier.MissingFeatureClassifiers;
+import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -52,6 +65,8 @@ import com.haines.ml.model.Feature.Features;
  * 
  * impurityProcessor: This defines a number of different functions that can be used to define how impure a split of instances
  * 					  is. The provided implementations are minority class, gini index and entropy.
+ * 
+ * trainingOptions: Optional strategies for how the tree is grown. See {@link TrainingOptions}.
  *   
  * @author andrewhaines
  *
@@ -63,15 +78,21 @@ public class DecisionTreeModelService<C extends Enum<C>> implements ModelService
 	private final ContinuousFeatureSplitter continousFeatureSplitter;
 	private final double homogeniousThreshold;
 	private final MissingFeatureClassifier missingFeatureClassifier;
+	private final TrainingOptions trainingOptions;
 	private final Logger LOG = LoggerFactory.getLogger(DecisionTreeModelService.class);
 	
-	public DecisionTreeModelService(ImpurityProcessor impurityProcessor, ContinuousFeatureQuantiser continuousFeatureQuantiser, double homogeniousThreshold, MissingFeatureClassifier missingFeatureClassifier){
+	public DecisionTreeModelService(ImpurityProcessor impurityProcessor, ContinuousFeatureQuantiser continuousFeatureQuantiser, double homogeniousThreshold, MissingFeatureClassifier missingFeatureClassifier, TrainingOptions trainingOptions){
 		this.impurityProcessor = impurityProcessor;
 		this.homogeniousThreshold = homogeniousThreshold;
 		this.missingFeatureClassifier = missingFeatureClassifier;
+		this.trainingOptions = trainingOptions;
 		this.continousFeatureSplitter = ContinuousFeatureSplitters.getFeatureSplitter(continuousFeatureQuantiser);
 	}
 	
+	public DecisionTreeModelService(ImpurityProcessor impurityProcessor, ContinuousFeatureQuantiser continuousFeatureQuantiser, double homogeniousThreshold, MissingFeatureClassifier missingFeatureClassifier){
+		this(impurityProcessor, continuousFeatureQuantiser, homogeniousThreshold, missingFeatureClassifier, TrainingOptions.DEFAULT);
+	}
+	
 	public DecisionTreeModelService(ImpurityProcessor impurityProcessor, ContinuousFeatureQuantiser continuousFeatureQuantiser){
 		this(impurityProcessor, continuousFeatureQuantiser, DEFAULT_HOMOGENIOUS_THRESHOLD, MissingFeatureClassifier.CLASSIFIERS.getHomogeniousMissingFeatureClassifier());
 	}
@@ -79,7 +100,21 @@ public class DecisionTreeModelService<C extends Enum<C>> implements ModelService
 	@Override
 	public Id3Model<C> trainModel(ClassifiedDataset<C> trainingData){
 		
-		Id3Node<C> root = growTree(trainingData.getInstances(), trainingData.getFeatureTypes(), new FeatureDefinition(Features.ROOT, Features.class));
+		Iterable<ClassifiedFeatureSet<C>> instances = trainingData.getInstances();
+		Map<Class<? extends Feature<?>>, SortedInstanceList<ClassifiedFeatureSet<C>>> sortedInstances = null;
+		if (isPresortingContinuousFeatures()){
+			List<ClassifiedFeatureSet<C>> instanceList = Lists.newArrayList(instances);
+			sortedInstances = presortContinuousFeatures(instanceList, trainingData.getFeatureTypes());
+			instances = instanceList;
+		}
+		
+		GrowTreeTask rootTask = new GrowTreeTask(instances, ImpurityProcessors.getClassCounts(instances), sortedInstances, trainingData.getFeatureTypes(), new FeatureDefinition(Features.ROOT, Features.class));
+		Id3Node<C> root;
+		if (trainingOptions.isParallel()){
+			root = trainingOptions.getForkJoinPool().invoke(rootTask);
+		} else{
+			root = rootTask.compute();
+		}
 		Id3Model<C> newModel = new Id3Model<C>(root);
 		
 		if (LOG.isDebugEnabled()){
@@ -88,40 +123,138 @@ public class DecisionTreeModelService<C extends Enum<C>> implements ModelService
 		return newModel;
 	}
 
+	/**
+	 * Grows a tree with this service's homogenious threshold from which the tree of any lower threshold can then be
+	 * derived without retraining. Lowering the threshold only ever stops a branch growing sooner, and the split chosen
+	 * at each node does not depend on the threshold, so the tree of a lower threshold is this tree with every branch
+	 * cut at the first node that is homogenious under it. Each node records how homogenious its training instances
+	 * were so that the cut can be made later. Construct the service with a threshold of 1 to derive every threshold.
+	 * @param trainingData
+	 * @return
+	 */
+	public Id3ThresholdPath<C> trainThresholdPath(ClassifiedDataset<C> trainingData){
+		return new Id3ThresholdPath<C>(trainModel(trainingData).getRoot(), homogeniousThreshold);
+	}
+
 	public boolean isHomogenious(HomogeniousRating<C> rating) {
 		return rating.maximumClassificationSplit >= homogeniousThreshold;
 	}
 	
-	private Id3Node<C> growTree(Iterable<ClassifiedFeatureSet<C>> instances, Iterable<Class<? extends Feature<?>>> featureTypes, FeatureDefinition featureDef){
-		HomogeniousRating<C> homogenious = getHomogeniousRating(instances);
+	public TrainingOptions getTrainingOptions() {
+		return trainingOptions;
+	}
+	
+	/**
+	 * Returns true if continuous features should be sorted once up front and handed to {@link #splitContinuousFeature(Iterable, Class)}
+	 * already sorted. Subclasses that do not split continuous features using the quantiser should return false.
+	 * @return
+	 */
+	protected boolean isPresortingContinuousFeatures(){
+		return trainingOptions.isPresortedContinuousFeatures();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Map<Class<? extends Feature<?>>, SortedInstanceList<ClassifiedFeatureSet<C>>> presortContinuousFeatures(Iterable<ClassifiedFeatureSet<C>> instances, Iterable<Class<? extends Feature<?>>> featureTypes){
+		Map<Class<? extends Feature<?>>, SortedInstanceList<ClassifiedFeatureSet<C>>> sortedInstances = new HashMap<Class<? extends Feature<?>>, SortedInstanceList<ClassifiedFeatureSet<C>>>();
+		
+		for (Class<? extends Feature<?>> featureType: featureTypes){
+			if (ContinuousFeature.class.isAssignableFrom(featureType)){
+				sortedInstances.put(featureType, SortedInstanceList.sort(instances, (Class<? extends ContinuousFeature<?>>)featureType));
+			}
+		}
+		return sortedInstances;
+	}
+	
+	/*
+	 * Derives the sorted orderings of each child node from those of the parent. The children of every instance are
+	 * recorded once, then each sorted list of the parent is split between the children in a single pass that keeps the
+	 * relative ordering, so the children never need to sort again. This is linear in the size of the parent, plus any
+	 * instances with a missing value that are copied into several children, for each continuous feature.
+	 */
+	private List<Map<Class<? extends Feature<?>>, SortedInstanceList<ClassifiedFeatureSet<C>>>> partitionSortedInstances(Map<Class<? extends Feature<?>>, SortedInstanceList<ClassifiedFeatureSet<C>>> sortedInstances, FeatureSplits<C> featureSplit){
+		List<Collection<ClassifiedFeatureSet<C>>> splitInstances = new ArrayList<Collection<ClassifiedFeatureSet<C>>>();
+		for (Split<C> split: featureSplit.splits){
+			splitInstances.add(split.getInstancesInSplit());
+		}
+		SortedInstanceList.Partition partition = SortedInstanceList.Partition.of(splitInstances);
+		
+		List<Map<Class<? extends Feature<?>>, SortedInstanceList<ClassifiedFeatureSet<C>>>> childSortedInstances = new ArrayList<Map<Class<? extends Feature<?>>, SortedInstanceList<ClassifiedFeatureSet<C>>>>(splitInstances.size());
+		for (int i = 0; i < splitInstances.size(); i++){
+			childSortedInstances.add(new HashMap<Class<? extends Feature<?>>, SortedInstanceList<ClassifiedFeatureSet<C>>>());
+		}
+		for (Entry<Class<? extends Feature<?>>, SortedInstanceList<ClassifiedFeatureSet<C>>> sortedFeature: sortedInstances.entrySet()){
+			if (!sortedFeature.getKey().equals(featureSplit.featureType)){
+				List<SortedInstanceList<ClassifiedFeatureSet<C>>> childLists = sortedFeature.getValue().partition(partition);
+				for (int i = 0; i < childLists.size(); i++){
+					childSortedInstances.get(i).put(sortedFeature.getKey(), childLists.get(i));
+				}
+			}
+		}
+		return childSortedInstances;
+	}
+	
+	private Id3Node<C> growTree(Iterable<ClassifiedFeatureSet<C>> instances, int[] classCounts, Map<Class<? extends Feature<?>>, SortedInstanceList<ClassifiedFeatureSet<C>>> sortedInstances, Iterable<Class<? extends Feature<?>>> featureTypes, FeatureDefinition featureDef){
+		HomogeniousRating<C> homogenious = getHomogeniousRating(instances, classCounts);
 		if (isHomogenious(homogenious) || Iterables.isEmpty(featureTypes)){
 			if (isHomogenious(homogenious)){
 				LOG.debug("Prunning");
 			} else{
 				LOG.debug("no more feature to split on");
 			}
-			return new Id3Node<C>(homogenious.mostHomogeniousClassification, featureDef);
+			return new Id3Node<C>(homogenious.mostHomogeniousClassification, featureDef, homogenious.maximumClassificationSplit);
 		}
 		
-		FeatureSplits<C> bestFeatureSplit = getBestSplit(instances, featureTypes);
+		FeatureSplits<C> bestFeatureSplit = getBestSplit(instances, sortedInstances, featureTypes);
 		DecisionId3Node<C> parentNode;
 		if (featureDef.getFeature() == Features.ROOT){
-			parentNode = new DecisionId3Node<C>(homogenious.mostHomogeniousClassification, new FeatureDefinition(Features.ROOT, bestFeatureSplit.featureType), missingFeatureClassifier);
+			parentNode = new DecisionId3Node<C>(homogenious.mostHomogeniousClassification, new FeatureDefinition(Features.ROOT, bestFeatureSplit.featureType), missingFeatureClassifier, homogenious.maximumClassificationSplit);
 		} else{
-			parentNode = new DecisionId3Node<C>(homogenious.mostHomogeniousClassification, new FeatureDefinition(featureDef.getFeature(), bestFeatureSplit.featureType), missingFeatureClassifier);
+			parentNode = new DecisionId3Node<C>(homogenious.mostHomogeniousClassification, new FeatureDefinition(featureDef.getFeature(), bestFeatureSplit.featureType), missingFeatureClassifier, homogenious.maximumClassificationSplit);
 		}
 		
+		/*
+		 * Subtrees are independent, so when running in a fork join pool the larger ones are forked first and the rest
+		 * grown on this thread. Children are always attached in split order so the tree is the same as a serial run.
+		 */
+		List<Map<Class<? extends Feature<?>>, SortedInstanceList<ClassifiedFeatureSet<C>>>> allChildSortedInstances = null;
+		if (sortedInstances != null){
+			allChildSortedInstances = partitionSortedInstances(sortedInstances, bestFeatureSplit);
+		}
+		List<GrowTreeTask> childTasks = new ArrayList<GrowTreeTask>();
+		int splitIndex = 0;
 		for (final Split<C> split: bestFeatureSplit.splits){
+			Map<Class<? extends Feature<?>>, SortedInstanceList<ClassifiedFeatureSet<C>>> childSortedInstances = null;
+			if (allChildSortedInstances != null){
+				childSortedInstances = allChildSortedInstances.get(splitIndex);
+			}
+			splitIndex++;
 			if (Iterables.isEmpty(split.getInstancesInSplit())){
-				parentNode.addDecisionNode(new Id3Node<C>(homogenious.mostHomogeniousClassification, split.getFeature()));
+				childTasks.add(null);
 			} else{
-				parentNode.addDecisionNode(growTree(split.getInstancesInSplit(), Iterables.filter(featureTypes, new Predicate<Class<? extends Feature<?>>>(){
+				GrowTreeTask childTask = new GrowTreeTask(split.getInstancesInSplit(), split.getClassCounts(), childSortedInstances, Iterables.filter(featureTypes, new Predicate<Class<? extends Feature<?>>>(){
 					
 					@Override
 					public boolean apply(Class<? extends Feature<?>> feature){
 						return !feature.equals(split.getFeature().getFeatureType());
 					}
-				}), split.feature));
+				}), split.feature);
+				
+				if (trainingOptions.isParallel() && ForkJoinTask.inForkJoinPool() && split.getInstancesInSplit().size() >= trainingOptions.getParallelThreshold()){
+					childTask.forkSubtree();
+				}
+				childTasks.add(childTask);
+			}
+		}
+		
+		Iterator<GrowTreeTask> childTaskIt = childTasks.iterator();
+		for (Split<C> split: bestFeatureSplit.splits){
+			GrowTreeTask childTask = childTaskIt.next();
+			if (childTask == null){
+				parentNode.addDecisionNode(new Id3Node<C>(homogenious.mostHomogeniousClassification, split.getFeature()));
+			} else if (childTask.isForked()){
+				parentNode.addDecisionNode(childTask.join());
+			} else{
+				parentNode.addDecisionNode(childTask.compute());
 			}
 		}
 		
@@ -133,7 +266,7 @@ public class DecisionTreeModelService<C extends Enum<C>> implements ModelService
 		double totalImpurity = 0;
 		
 		for (Split<C> split: splits){
-			totalImpurity += getWeight(split, totalInstances) * impurityProcessor.getImpurity(split.getInstancesInSplit());
+			totalImpurity += getWeight(split, totalInstances) * impurityProcessor.getImpurity(split.getClassCounts(), split.getInstancesInSplit().size());
 		}
 		
 		return totalImpurity;
@@ -144,61 +277,171 @@ public class DecisionTreeModelService<C extends Enum<C>> implements ModelService
 	}
 
 	/*
-	 * Looks at the proportions of all classifications and takes the biggest proportion
+	 * Looks at the class counts of the instances and takes the biggest proportion. Ties go to the lowest ordinal.
 	 */
-	private HomogeniousRating<C> getHomogeniousRating(Iterable<ClassifiedFeatureSet<C>> instances){
-		Map<C, Double> proportions = ImpurityProcessors.getProportions(instances);
-		
-		Double totalClassifications = 0D;
-		double maximumClassificationProportion = 0;
-		C currentBestClassification = null;
-		for (Entry<C, Double> classificationProportion: proportions.entrySet()){
-			totalClassifications += classificationProportion.getValue();
-			if (maximumClassificationProportion < classificationProportion.getValue()){
-				maximumClassificationProportion = classificationProportion.getValue();
-				currentBestClassification = classificationProportion.getKey();
+	private HomogeniousRating<C> getHomogeniousRating(Iterable<ClassifiedFeatureSet<C>> instances, int[] classCounts){
+		int total = ImpurityProcessors.sum(classCounts);
+		
+		int maximumClassCount = 0;
+		int currentBestOrdinal = -1;
+		for (int i = 0; i < classCounts.length; i++){
+			if (maximumClassCount < classCounts[i]){
+				maximumClassCount = classCounts[i];
+				currentBestOrdinal = i;
 			}
 		}
-		return new HomogeniousRating<C>(maximumClassificationProportion, currentBestClassification);
-
+		if (currentBestOrdinal == -1){
+			return new HomogeniousRating<C>(0, null);
+		}
+		C currentBestClassification = instances.iterator().next().getClassification().getValue().getDeclaringClass().getEnumConstants()[currentBestOrdinal];
+		
+		return new HomogeniousRating<C>((double)maximumClassCount / (double)total, currentBestClassification);
 	}
 	
-	@SuppressWarnings("unchecked")
-	private FeatureSplits<C> getBestSplit(Iterable<ClassifiedFeatureSet<C>> instances, Iterable<Class<? extends Feature<?>>> featureTypes) {
-		double minImpurity = Double.MAX_VALUE;
-		Iterable<Split<C>> bestSplits = null;
-		Class<? extends Feature<?>> bestFeatureType = null;
-		for (Class<? extends Feature<?>> featureType: featureTypes){
-			// split instances based on feature properties.
+	private FeatureSplits<C> getBestSplit(Iterable<ClassifiedFeatureSet<C>> instances, final Map<Class<? extends Feature<?>>, SortedInstanceList<ClassifiedFeatureSet<C>>> sortedInstances, Iterable<Class<? extends Feature<?>>> featureTypes) {
+		List<FeatureSplits<C>> candidateSplits = new ArrayList<FeatureSplits<C>>();
+		
+		ExecutorService splitExecutor = trainingOptions.getSplitEvaluationExecutor();
+		if (splitExecutor != null){
+			// the instances are shared between threads so make sure they are not lazily iterated
+			final Collection<ClassifiedFeatureSet<C>> instanceCollection = Utils.toCollection(instances);
 			
-			Iterable<Split<C>> splits;
-			if (DiscreteFeature.class.isAssignableFrom(featureType)){
-				splits = splitDiscreteFeature(instances, (Class<DiscreteFeature<?>>) featureType);
-			} else if (ContinuousFeature.class.isAssignableFrom(featureType)){
-				splits = splitContinuousFeature(instances, (Class)featureType);
+			if (instanceCollection.size() >= trainingOptions.getParallelThreshold() && ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == splitExecutor){
+				/*
+				 * blocking a worker of the pool on tasks queued behind it can starve or deadlock the pool, so within the
+				 * pool the evaluations are forked and joined, which lets this worker run them whilst it waits
+				 */
+				List<EvaluateSplitTask> evaluations = new ArrayList<EvaluateSplitTask>();
+				for (Class<? extends Feature<?>> featureType: featureTypes){
+					evaluations.add(new EvaluateSplitTask(instanceCollection, sortedInstances, featureType));
+				}
+				for (EvaluateSplitTask evaluation: ForkJoinTask.invokeAll(evaluations)){
+					candidateSplits.add(evaluation.join());
+				}
+			} else if (instanceCollection.size() >= trainingOptions.getParallelThreshold()){
+				List<Callable<FeatureSplits<C>>> evaluations = new ArrayList<Callable<FeatureSplits<C>>>();
+				for (final Class<? extends Feature<?>> featureType: featureTypes){
+					evaluations.add(new Callable<FeatureSplits<C>>(){
+						
+						@Override
+						public FeatureSplits<C> call(){
+							return evaluateSplit(instanceCollection, sortedInstances, featureType);
+						}
+					});
+				}
+				candidateSplits.addAll(invokeAll(splitExecutor, evaluations));
 			} else{
-				throw new IllegalArgumentException("unknown type of feature");
+				for (Class<? extends Feature<?>> featureType: featureTypes){
+					candidateSplits.add(evaluateSplit(instanceCollection, sortedInstances, featureType));
+				}
 			}
-			
-			// now work out the impurity of this split and check if it is less then the current minimum
-			
-			double currentSplitImpurity = getImpurityOfSplit(splits, sizeOf(splits));
-			if (currentSplitImpurity < minImpurity){
-				minImpurity = currentSplitImpurity;
-				bestSplits = splits;
-				bestFeatureType = featureType;
+		} else{
+			for (Class<? extends Feature<?>> featureType: featureTypes){
+				candidateSplits.add(evaluateSplit(instances, sortedInstances, featureType));
 			}
 		}
-		return new FeatureSplits<C>(bestFeatureType, bestSplits);
-
+		
+		// candidates are in feature type order so ties always go to the first feature regardless of how they were evaluated
+		
+		double minImpurity = Double.MAX_VALUE;
+		FeatureSplits<C> bestSplit = new FeatureSplits<C>(null, null, Double.MAX_VALUE);
+		for (FeatureSplits<C> candidateSplit: candidateSplits){
+			if (candidateSplit.impurity < minImpurity){
+				minImpurity = candidateSplit.impurity;
+				bestSplit = candidateSplit;
+			}
+		}
+		return bestSplit;
 	}
 	
+	private static <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks){
+		List<T> results = new ArrayList<T>(tasks.size());
+		try{
+			for (Future<T> result: executor.invokeAll(tasks)){
+				results.add(result.get());
+			}
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("interrupted whilst evaluating splits", e);
+		} catch (ExecutionException e){
+			if (e.getCause() instanceof RuntimeException){
+				throw (RuntimeException)e.getCause();
+			}
+			throw new RuntimeException("issue evaluating split", e.getCause());
+		}
+		return results;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private FeatureSplits<C> evaluateSplit(Iterable<ClassifiedFeatureSet<C>> instances, Map<Class<? extends Feature<?>>, SortedInstanceList<ClassifiedFeatureSet<C>>> sortedInstances, Class<? extends Feature<?>> featureType){
+		// split instances based on feature properties.
+		
+		Iterable<Split<C>> splits;
+		if (DiscreteFeature.class.isAssignableFrom(featureType)){
+			splits = splitDiscreteFeature(instances, (Class<DiscreteFeature<?>>) featureType);
+		} else if (ContinuousFeature.class.isAssignableFrom(featureType)){
+			Iterable<ClassifiedFeatureSet<C>> continuousInstances = instances;
+			if (sortedInstances != null){
+				continuousInstances = sortedInstances.get(featureType);
+			}
+			splits = splitContinuousFeature(continuousInstances, (Class)featureType);
+		} else{
+			throw new IllegalArgumentException("unknown type of feature");
+		}
+		
+		// now work out the impurity of this split
+		
+		return new FeatureSplits<C>(featureType, splits, getImpurityOfSplit(splits, sizeOf(splits)));
+	}
+	
+	/*
+	 * Enum based discrete features are split by ordinal. When the instances are rows of a columnar dataset the ordinals
+	 * are read straight from the column without materialising the features. The class histogram of each split is built
+	 * in the same pass so the impurity of the split does not need to visit the instances again.
+	 */
 	private Iterable<Split<C>> splitDiscreteFeature(Iterable<ClassifiedFeatureSet<C>> instances, Class<? extends DiscreteFeature<?>> featureType) {
-		Class<? extends DiscreteFeature<?>> discreteType = (Class<? extends DiscreteFeature<?>>)featureType;
-
-		Collection<? extends Feature<?>> featureValues = Lists.newArrayList(discreteType.getEnumConstants());
+		Feature<?>[] featureValues = (Feature<?>[])featureType.getEnumConstants();
+		
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Collection<ClassifiedFeatureSet<C>>[] splits = new Collection[featureValues.length];
+		
+		for (int i = 0; i < splits.length; i++){
+			splits[i] = new ArrayList<ClassifiedFeatureSet<C>>();
+		}
+		
+		int[][] classCounts = null;
+		
+		ColumnReader reader = new ColumnReader(featureType);
+		for (ClassifiedFeatureSet<C> instance: instances){
+			int ordinal = reader.getOrdinal(instance);
+			
+			if (classCounts == null){
+				classCounts = new int[splits.length][ImpurityProcessors.getNumClasses(instance)];
+			}
+			int classificationOrdinal = ImpurityProcessors.getClassificationOrdinal(instance);
+			
+			if (ordinal == -1){ // missing features should get added to all splits.
+				for (int i = 0; i < splits.length; i++){
+					splits[i].add(instance);
+					classCounts[i][classificationOrdinal]++;
+				}
+			} else{
+				splits[ordinal].add(instance);
+				classCounts[ordinal][classificationOrdinal]++;
+			}
+		}
+		
+		Collection<Split<C>> allSplits = new ArrayList<Split<C>>(splits.length);
+		for (int i = 0; i < splits.length; i++){
+			FeatureDefinition featureDefinition = new FeatureDefinition(featureValues[i], featureType);
+			if (classCounts == null){
+				allSplits.add(new Split<C>(featureDefinition, splits[i]));
+			} else{
+				allSplits.add(new Split<C>(featureDefinition, splits[i], classCounts[i]));
+			}
+		}
 		
-		return splitDiscreteFeature(instances, featureType, featureValues);
+		return allSplits;
 	}
 	
 	protected Iterable<Split<C>> splitDiscreteFeature(Iterable<ClassifiedFeatureSet<C>> instances, Class<? extends Feature<?>> featureType, Collection<? extends Feature<?>> allPossibleDiscreteValues){
@@ -241,7 +484,7 @@ public class DecisionTreeModelService<C extends Enum<C>> implements ModelService
 		int total = 0;
 		
 		for (Split<C> split: splits){
-			total += Iterables.size(split.getInstancesInSplit());
+			total += split.getInstancesInSplit().size();
 		}
 		
 		return total;
@@ -249,10 +492,11 @@ public class DecisionTreeModelService<C extends Enum<C>> implements ModelService
 
 	@Override
 	public ClassifiedDataset<C> classifyDataset(Dataset<? extends FeatureSet> dataset, Id3Model<C> model) {
-		Map<Identifier, Classification<C>> classifications = new HashMap<Identifier, Classification<C>>();
+		CompiledId3Model<C> compiledModel = model.compile();
+		Map<Identifier, Classification<C>> classifications = new IdentifierMap<Classification<C>>();
 		for (FeatureSet instance: dataset.getInstances()){
 			try{
-				classifications.put(instance.getId(), model.getClassification(instance));
+				classifications.put(instance.getId(), compiledModel.getClassification(instance));
 			} catch (Exception e){
 				throw new RuntimeException("issue with classifying instance: "+instance, e);
 			}
@@ -261,6 +505,96 @@ public class DecisionTreeModelService<C extends Enum<C>> implements ModelService
 		return ClassifiedDataset.FACTORY.create(dataset, classifications);
 	}
 	
+	/**
+	 * Classifies the dataset as {@link #classifyDataset(Dataset, Id3Model)} does but scores partitions of the dataset
+	 * concurrently on the supplied executor
+	 * @param dataset
+	 * @param model
+	 * @param executor
+	 * @return
+	 */
+	public ClassifiedDataset<C> classifyDataset(Dataset<? extends FeatureSet> dataset, Id3Model<C> model, ExecutorService executor) {
+		final CompiledId3Model<C> compiledModel = model.compile();
+		Map<Identifier, Classification<C>> classifications = ModelService.UTIL.classifyInParallel(dataset.getInstances(), new Function<FeatureSet, Classification<C>>(){
+			
+			@Override
+			public Classification<C> apply(FeatureSet instance){
+				try{
+					return compiledModel.getClassification(instance);
+				} catch (Exception e){
+					throw new RuntimeException("issue with classifying instance: "+instance, e);
+				}
+			}
+		}, executor);
+		
+		return ClassifiedDataset.FACTORY.create(dataset, classifications);
+	}
+	
+	@Override
+	public void classifyBatch(List<? extends FeatureSet> instances, Id3Model<C> model, int[] classificationOrdinals, double[] classificationProbabilities) {
+		model.classifyBatch(instances, classificationOrdinals, classificationProbabilities);
+	}
+	
+	/*
+	 * Grows the subtree for a set of instances. Only forked when training in parallel, otherwise compute() is called directly.
+	 */
+	private class GrowTreeTask extends RecursiveTask<Id3Node<C>>{
+
+		private static final long serialVersionUID = 1L;
+		
+		private final Iterable<ClassifiedFeatureSet<C>> instances;
+		private final int[] classCounts;
+		private final Map<Class<? extends Feature<?>>, SortedInstanceList<ClassifiedFeatureSet<C>>> sortedInstances;
+		private final Iterable<Class<? extends Feature<?>>> featureTypes;
+		private final FeatureDefinition featureDef;
+		private boolean forked = false;
+		
+		private GrowTreeTask(Iterable<ClassifiedFeatureSet<C>> instances, int[] classCounts, Map<Class<? extends Feature<?>>, SortedInstanceList<ClassifiedFeatureSet<C>>> sortedInstances, Iterable<Class<? extends Feature<?>>> featureTypes, FeatureDefinition featureDef){
+			this.instances = instances;
+			this.classCounts = classCounts;
+			this.sortedInstances = sortedInstances;
+			this.featureTypes = featureTypes;
+			this.featureDef = featureDef;
+		}
+		
+		private void forkSubtree(){
+			forked = true;
+			fork();
+		}
+		
+		private boolean isForked(){
+			return forked;
+		}
+		
+		@Override
+		protected Id3Node<C> compute() {
+			return growTree(instances, classCounts, sortedInstances, featureTypes, featureDef);
+		}
+	}
+	
+	/*
+	 * Evaluates the split of a single feature when the split executor is the fork join pool the tree is grown in
+	 */
+	private class EvaluateSplitTask extends RecursiveTask<FeatureSplits<C>>{
+
+		private static final long serialVersionUID = 1L;
+		
+		private final Iterable<ClassifiedFeatureSet<C>> instances;
+		private final Map<Class<? extends Feature<?>>, SortedInstanceList<ClassifiedFeatureSet<C>>> sortedInstances;
+		private final Class<? extends Feature<?>> featureType;
+		
+		private EvaluateSplitTask(Iterable<ClassifiedFeatureSet<C>> instances, Map<Class<? extends Feature<?>>, SortedInstanceList<ClassifiedFeatureSet<C>>> sortedInstances, Class<? extends Feature<?>> featureType){
+			this.instances = instances;
+			this.sortedInstances = sortedInstances;
+			this.featureType = featureType;
+		}
+		
+		@Override
+		protected FeatureSplits<C> compute() {
+			return evaluateSplit(instances, sortedInstances, featureType);
+		}
+	}
+	
 	private static class HomogeniousRating<C extends Enum<C>>{
 		
 		private final double maximumClassificationSplit;
@@ -275,10 +609,22 @@ public class DecisionTreeModelService<C extends Enum<C>> implements ModelService
 	static class Split<C extends Enum<C>>{
 		private final FeatureDefinition feature;
 		private final Collection<ClassifiedFeatureSet<C>> instancesInSplit;
+		private final int[] classCounts;
 		
 		public Split(FeatureDefinition feature, Collection<ClassifiedFeatureSet<C>> instances){
+			this(feature, instances, ImpurityProcessors.getClassCounts(instances));
+		}
+		
+		/**
+		 * Creates a split whose class histogram has already been counted whilst partitioning the instances
+		 * @param feature
+		 * @param instances
+		 * @param classCounts the number of instances in the split per classification ordinal
+		 */
+		public Split(FeatureDefinition feature, Collection<ClassifiedFeatureSet<C>> instances, int[] classCounts){
 			this.feature = feature;
 			this.instancesInSplit = instances;
+			this.classCounts = classCounts;
 		}
 
 		public Collection<ClassifiedFeatureSet<C>> getInstancesInSplit() {
@@ -289,6 +635,10 @@ public class DecisionTreeModelService<C extends Enum<C>> implements ModelService
 			return feature;
 		}
 		
+		public int[] getClassCounts() {
+			return classCounts;
+		}
+		
 		@Override
 		public String toString(){
 			return feature+": "+instancesInSplit;
@@ -299,10 +649,12 @@ public class DecisionTreeModelService<C extends Enum<C>> implements ModelService
 		
 		private final Class<? extends Feature<?>> featureType;
 		private final Iterable<Split<C>> splits;
+		private final double impurity;
 		
-		public FeatureSplits(Class<? extends Feature<?>> featureType, Iterable<Split<C>> splits){
+		public FeatureSplits(Class<? extends Feature<?>> featureType, Iterable<Split<C>> splits, double impurity){
 			this.featureType = featureType;
 			this.splits = splits;
+			this.impurity = impurity;
 		}
 	}
 
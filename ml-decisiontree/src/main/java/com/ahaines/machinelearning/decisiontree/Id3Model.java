@@ -1,5 +1,9 @@
 package com.ahaines.machinelearning.decisiontree;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
 import com.ahaines.machinelearning.api.Model;
 import com.ahaines.machinelearning.api.dataset.Classification;
 import com.ahaines.machinelearning.api.dataset.FeatureSet;
@@ -8,6 +12,7 @@ public class Id3Model<C extends Enum<C>> implements Model{
 
 	private final Id3Node<C> root;
 	private final Metrics metrics;
+	private volatile CompiledId3Model<C> compiledModel;
 	
 	public Id3Model(Id3Node<C> root){
 		this.root = root;
@@ -18,6 +23,41 @@ public class Id3Model<C extends Enum<C>> implements Model{
 		return new Classification<C>(instance.getId(), root.getClassification(instance));
 	}
 	
+	/**
+	 * Writes the classification ordinal of each instance into the supplied array using the compiled form of this tree.
+	 * Trees do not estimate probabilities so, when supplied, each probability is set to {@link Double#NaN}.
+	 * @param instances
+	 * @param classificationOrdinals
+	 * @param classificationProbabilities
+	 */
+	public void classifyBatch(List<? extends FeatureSet> instances, int[] classificationOrdinals, double[] classificationProbabilities){
+		compile().classifyBatch(instances, classificationOrdinals, classificationProbabilities);
+	}
+	
+	/**
+	 * Returns a flattened form of this tree that classifies instances without allocating as it walks the nodes. The
+	 * compiled model is built on the first call and reused thereafter.
+	 * @return
+	 */
+	public CompiledId3Model<C> compile(){
+		CompiledId3Model<C> compiled = compiledModel;
+		if (compiled == null){
+			compiled = CompiledId3Model.compile(root);
+			compiledModel = compiled;
+		}
+		return compiled;
+	}
+	
+	/**
+	 * Saves the compiled form of this tree to the file so that it can be loaded with
+	 * {@link CompiledId3Model#load(java.nio.file.Path, Class)} without retraining
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(Path file) throws IOException{
+		compile().write(file);
+	}
+	
 	public String toString(){
 		return root.printTree("", false, new StringBuilder()).toString();
 	}
@@ -25,6 +65,10 @@ public class Id3Model<C extends Enum<C>> implements Model{
 	public int countNodes(){
 		return root.countNodes();
 	}
+	
+	Id3Node<C> getRoot(){
+		return root;
+	}
 
 	@Override
 	public Metrics getMetrics() {
@@ -20,19 +20,35 @@ class Id3Node<C extends Enum<C>> {
 
 	protected final C mostCommonClassification;
 	private final FeatureDefinition feature;
+	private final double homogeniousRating;
 	
 	public Id3Node(C mostCommonClassification, FeatureDefinition feature){
+		this(mostCommonClassification, feature, Double.NaN);
+	}
+	
+	/**
+	 * @param mostCommonClassification
+	 * @param feature
+	 * @param homogeniousRating the proportion of the training instances reaching this node that had its most common
+	 * classification, or NaN if no instances reached it
+	 */
+	public Id3Node(C mostCommonClassification, FeatureDefinition feature, double homogeniousRating){
 		this.mostCommonClassification = mostCommonClassification;
 		if (feature == null){
 			throw new NullPointerException("feature == null");
 		}
 		this.feature = feature;
+		this.homogeniousRating = homogeniousRating;
 	}
 	
 	public FeatureDefinition getFeature() {
 		return feature;
 	}
 	
+	double getHomogeniousRating() {
+		return homogeniousRating;
+	}
+	
 	C getClassification(FeatureSet instance){
 		return mostCommonClassification;
 	}
@@ -71,7 +87,11 @@ class Id3Node<C extends Enum<C>> {
 		private final MissingFeatureClassifier missingFeatureProcessor;
 		
 		DecisionId3Node(C mostCommonClassification, FeatureDefinition feature, MissingFeatureClassifier missingFeatureProcessor) {
-			super(mostCommonClassification, feature);
+			this(mostCommonClassification, feature, missingFeatureProcessor, Double.NaN);
+		}
+		
+		DecisionId3Node(C mostCommonClassification, FeatureDefinition feature, MissingFeatureClassifier missingFeatureProcessor, double homogeniousRating) {
+			super(mostCommonClassification, feature, homogeniousRating);
 			this.children = new ArrayList<Id3Node<C>>();
 			this.missingFeatureProcessor = missingFeatureProcessor;
 		}
@@ -134,5 +154,9 @@ class Id3Node<C extends Enum<C>> {
 		Iterable<Id3Node<C>> getChildren(){
 			return children;
 		}
+		
+		MissingFeatureClassifier getMissingFeatureClassifier(){
+			return missingFeatureProcessor;
+		}
 	}
 }
@@ -0,0 +1,76 @@
+package com.ahaines.machinelearning.decisiontree;
+
+import com.ahaines.machinelearning.api.dataset.FeatureDefinition;
+import com.ahaines.machinelearning.decisiontree.Id3Node.DecisionId3Node;
+import com.haines.ml.model.Feature.Features;
+
+/**
+ * A decision tree grown once with the highest homogenious threshold of interest, from which the tree of any lower
+ * threshold can be derived without retraining. Growing stops at a node once the proportion of its instances sharing
+ * the most common classification reaches the threshold, so lowering the threshold cuts the tree at the first node on
+ * each branch whose rating reaches it. Branches above the cut are unchanged and subtrees below no cut are shared with
+ * this path rather than copied.
+ *
+ * Instances are created using {@link DecisionTreeModelService#trainThresholdPath(com.ahaines.machinelearning.api.dataset.ClassifiedDataset)}.
+ *
+ * @author andrewhaines
+ *
+ * @param <C>
+ */
+public class Id3ThresholdPath<C extends Enum<C>> {
+
+	private static final FeatureDefinition ROOT = new FeatureDefinition(Features.ROOT, Features.class);
+
+	private final Id3Node<C> root;
+	private final double maximumThreshold;
+
+	Id3ThresholdPath(Id3Node<C> root, double maximumThreshold){
+		this.root = root;
+		this.maximumThreshold = maximumThreshold;
+	}
+
+	/**
+	 * Returns the homogenious threshold the full tree was grown with. Models can be derived for this or any lower threshold.
+	 * @return
+	 */
+	public double getMaximumThreshold(){
+		return maximumThreshold;
+	}
+
+	/**
+	 * Returns the model that {@link DecisionTreeModelService} would train with the supplied homogenious threshold and
+	 * otherwise the same settings
+	 * @param homogeniousThreshold
+	 * @return
+	 * @throws IllegalArgumentException if the threshold is greater than the one the tree was grown with
+	 */
+	public Id3Model<C> getModel(double homogeniousThreshold){
+		if (homogeniousThreshold > maximumThreshold){
+			throw new IllegalArgumentException("threshold "+homogeniousThreshold+" is greater than the threshold the tree was grown with: "+maximumThreshold);
+		}
+		return new Id3Model<C>(prune(root, ROOT, homogeniousThreshold));
+	}
+
+	/*
+	 * leafFeature is the definition the node would have been given had growing stopped at it: the value of the branch
+	 * leading to it, typed by the feature its parent split on.
+	 */
+	private Id3Node<C> prune(Id3Node<C> node, FeatureDefinition leafFeature, double homogeniousThreshold){
+		if (!(node instanceof DecisionId3Node)){
+			return node;
+		}
+		if (node.getHomogeniousRating() >= homogeniousThreshold){
+			return new Id3Node<C>(node.mostCommonClassification, leafFeature, node.getHomogeniousRating());
+		}
+		DecisionId3Node<C> decisionNode = (DecisionId3Node<C>)node;
+		DecisionId3Node<C> prunedNode = new DecisionId3Node<C>(decisionNode.mostCommonClassification, decisionNode.getFeature(), decisionNode.getMissingFeatureClassifier(), decisionNode.getHomogeniousRating());
+		boolean pruned = false;
+		for (Id3Node<C> child: decisionNode.getChildren()){
+			Id3Node<C> prunedChild = prune(child, new FeatureDefinition(child.getFeature().getFeature(), decisionNode.getFeature().getFeatureType()), homogeniousThreshold);
+			prunedNode.addDecisionNode(prunedChild);
+			pruned |= prunedChild != child;
+		}
+
+		return pruned? prunedNode: decisionNode;
+	}
+}
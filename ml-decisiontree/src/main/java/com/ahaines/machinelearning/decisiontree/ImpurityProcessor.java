@@ -1,11 +1,7 @@
 package com.ahaines.machinelearning.decisiontree;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
-
-import com.ahaines.machinelearning.api.dataset.Classification;
 import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.columnar.ColumnarClassifiedDataset;
 
 public interface ImpurityProcessor {
 
@@ -16,26 +12,63 @@ public interface ImpurityProcessor {
 	 */
 	<C extends Enum<C>> double getImpurity(Iterable<ClassifiedFeatureSet<C>> instances);
 	
+	/**
+	 * Returns the impurity of a histogram of classifications where <code>classCounts[i]</code> is the number of instances
+	 * whose classification has the ordinal <code>i</code>. This gives the same result as {@link #getImpurity(Iterable)} on
+	 * the instances that produced the histogram but only costs a pass over the classes.
+	 * @param classCounts
+	 * @param total the sum of all the class counts
+	 * @return
+	 */
+	double getImpurity(int[] classCounts, int total);
+	
 	public final static class ImpurityProcessors{
 		
+		private static final int[] NO_CLASSES = new int[0];
+		
+		/*
+		 * the number of constants of each classification enum, so that they are not cloned for every histogram
+		 */
+		private static final ClassValue<Integer> NUM_CLASSES = new ClassValue<Integer>(){
+			
+			@Override
+			protected Integer computeValue(Class<?> type) {
+				return type.getEnumConstants().length;
+			}
+		};
+		
 		private ImpurityProcessors(){}
 		
+		/*
+		 * All processors are defined against class counts, instance based impurities are calculated by first building the
+		 * histogram.
+		 */
+		private static abstract class CountingImpurityProcessor implements ImpurityProcessor{
+			
+			@Override
+			public <C extends Enum<C>> double getImpurity(Iterable<ClassifiedFeatureSet<C>> instances) {
+				int[] classCounts = getClassCounts(instances);
+				return getImpurity(classCounts, sum(classCounts));
+			}
+		}
+		
 		/**
 		 * Returns a gini index processor that calculates impurity as: 2p(1-p)
 		 * @return
 		 */
 		public static ImpurityProcessor getGiniIndexImpurityProcessor(){
-			return new ImpurityProcessor(){
+			return new CountingImpurityProcessor(){
 
 				@Override
-				public <C extends Enum<C>> double getImpurity(Iterable<ClassifiedFeatureSet<C>> instances) {
-					Map<C, Double> proportions = getProportions(instances);
-					if (proportions.size() <= 1){ // if its got 0 instances then it is pure, and if it only has one enum classification for all the instances then it is also completely pure 
+				public double getImpurity(int[] classCounts, int total) {
+					if (getNumPresentClasses(classCounts) <= 1){ // if its got 0 instances then it is pure, and if it only has one enum classification for all the instances then it is also completely pure 
 						return 0;
 					}
 					double impurity = 1;
-					for (Entry<C,Double> proportion: proportions.entrySet()){
-						impurity *= proportion.getValue();
+					for (int classCount: classCounts){
+						if (classCount > 0){
+							impurity *= (double)classCount / (double)total;
+						}
 					}
 					
 					return 2 * impurity;
@@ -49,11 +82,11 @@ public interface ImpurityProcessor {
 		 */
 		public static ImpurityProcessor getSquareRootGiniIndexImpurityProcessor(){
 			final ImpurityProcessor giniProcessor = getGiniIndexImpurityProcessor();
-			return new ImpurityProcessor(){
+			return new CountingImpurityProcessor(){
 
 				@Override
-				public <C extends Enum<C>> double getImpurity(Iterable<ClassifiedFeatureSet<C>> instances) {
-					return Math.sqrt(giniProcessor.getImpurity(instances));
+				public double getImpurity(int[] classCounts, int total) {
+					return Math.sqrt(giniProcessor.getImpurity(classCounts, total));
 				}
 			};
 		}
@@ -63,21 +96,22 @@ public interface ImpurityProcessor {
 		 * @return
 		 */
 		public static ImpurityProcessor getMinorityClassImpurityProcessor(){
-			return new ImpurityProcessor(){
+			return new CountingImpurityProcessor(){
 
 				@Override
-				public <C extends Enum<C>> double getImpurity(Iterable<ClassifiedFeatureSet<C>> instances) {
-					Map<C, Double> proportions = getProportions(instances);
-					if (proportions.size() <= 1){
+				public double getImpurity(int[] classCounts, int total) {
+					if (getNumPresentClasses(classCounts) <= 1){
 						return 0;
 					}
-					double minPropertion = Double.MAX_VALUE;
+					int minClassCount = Integer.MAX_VALUE;
 					
-					for (Double proportion: proportions.values()){
-						minPropertion = Math.min(minPropertion, proportion);
+					for (int classCount: classCounts){
+						if (classCount > 0){
+							minClassCount = Math.min(minClassCount, classCount);
+						}
 					}
 					
-					return minPropertion;
+					return (double)minClassCount / (double)total;
 				}
 				
 			};
@@ -88,16 +122,17 @@ public interface ImpurityProcessor {
 		 * @return
 		 */
 		public static ImpurityProcessor getEntropyImpurityProcessor(){
-			return new ImpurityProcessor(){
+			return new CountingImpurityProcessor(){
 
 				@Override
-				public <C extends Enum<C>> double getImpurity(Iterable<ClassifiedFeatureSet<C>> instances) {
-					Map<? extends Enum<?>, Double> proportions = getProportions(instances);
-					
+				public double getImpurity(int[] classCounts, int total) {
 					double entropy = 0;
 					
-					for (Double proportion: proportions.values()){
-						entropy -= proportion * log2(proportion);
+					for (int classCount: classCounts){
+						if (classCount > 0){
+							double proportion = (double)classCount / (double)total;
+							entropy -= proportion * log2(proportion);
+						}
 					}
 					return entropy;
 				}
@@ -109,36 +144,65 @@ public interface ImpurityProcessor {
 			return Math.log(value) / Math.log(2);
 		}
 		
-		static <C extends Enum<C>> Map<C, Double> getProportions(Iterable<ClassifiedFeatureSet<C>> instances){
-			Map<C, Double> proportions = new HashMap<C, Double>();
+		/**
+		 * Returns a histogram of the classifications of the supplied instances indexed by ordinal. The histogram has an
+		 * entry for every value of the classification enum, or is empty if there are no instances.
+		 * @param instances
+		 * @return
+		 */
+		public static int[] getClassCounts(Iterable<? extends ClassifiedFeatureSet<?>> instances){
+			int[] classCounts = NO_CLASSES;
 			
-			int totalInstances = 0;
-			// calculates running proportion
-			for (ClassifiedFeatureSet<C> instance: instances){
-				
-				totalInstances++;
-				Double runningAverageForClass = getOrCreateAccumalatorFromMap(proportions, instance.getClassification());
-				
-				runningAverageForClass++;
-				
-				proportions.put(instance.getClassification().getValue(), runningAverageForClass);
+			for (ClassifiedFeatureSet<?> instance: instances){
+				if (classCounts == NO_CLASSES){
+					classCounts = new int[getNumClasses(instance)];
+				}
+				classCounts[getClassificationOrdinal(instance)]++;
 			}
-			
-			for (Entry<C, Double> accumaltor: proportions.entrySet()){
-				proportions.put(accumaltor.getKey(), accumaltor.getValue() / (double)totalInstances);
+			return classCounts;
+		}
+		
+		/**
+		 * Returns the ordinal of the instance's classification, reading it straight from the dataset for columnar rows
+		 * @param instance
+		 * @return
+		 */
+		static int getClassificationOrdinal(ClassifiedFeatureSet<?> instance){
+			if (instance instanceof ColumnarClassifiedDataset.Row){
+				ColumnarClassifiedDataset<?>.Row row = (ColumnarClassifiedDataset<?>.Row)instance;
+				return row.getDataset().getClassificationOrdinal(row.getRow());
 			}
-			return proportions;
+			return ((Enum<?>)instance.getClassification().getValue()).ordinal();
 		}
 		
-		private static <C extends Enum<C>> Double getOrCreateAccumalatorFromMap(Map<C, Double> proportions, Classification<C> classification){
-			Double proportion = proportions.get(classification.getValue());
-			
-			if (proportion == null){
-				proportion = new Double(0);
+		/**
+		 * Returns the number of possible values of the instance's classification enum
+		 * @param instance
+		 * @return
+		 */
+		static int getNumClasses(ClassifiedFeatureSet<?> instance){
+			if (instance instanceof ColumnarClassifiedDataset.Row){
+				return ((ColumnarClassifiedDataset<?>.Row)instance).getDataset().getNumClassificationValues();
 			}
-			
-			
-			return proportion;
+			return NUM_CLASSES.get(((Enum<?>)instance.getClassification().getValue()).getDeclaringClass());
+		}
+		
+		static int sum(int[] classCounts){
+			int total = 0;
+			for (int classCount: classCounts){
+				total += classCount;
+			}
+			return total;
+		}
+		
+		private static int getNumPresentClasses(int[] classCounts){
+			int numPresentClasses = 0;
+			for (int classCount: classCounts){
+				if (classCount > 0){
+					numPresentClasses++;
+				}
+			}
+			return numPresentClasses;
 		}
 	}
 }
@@ -7,6 +7,7 @@ import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
 import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
 import com.ahaines.machinelearning.api.dataset.QuantisedDataset;
 import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser;
+import com.ahaines.machinelearning.api.dataset.quantiser.QuantisationCache;
 import com.ahaines.machinelearning.api.dataset.quantiser.RangeFeature;
 import com.haines.ml.model.ContinuousFeature;
 
@@ -26,10 +27,24 @@ public class QuantisedDecisionTreeModelService<C extends Enum<C>> extends Decisi
 			double homogeniousThreshold,
 			MissingFeatureClassifier missingFeatureClassifier) {
 		
+		this(impurityProcessor, 
+				continuousFeatureQuantiser, 
+				homogeniousThreshold,
+				missingFeatureClassifier,
+				TrainingOptions.DEFAULT);
+	}
+	
+	public QuantisedDecisionTreeModelService(ImpurityProcessor impurityProcessor, 
+			ContinuousFeatureQuantiser continuousFeatureQuantiser,
+			double homogeniousThreshold,
+			MissingFeatureClassifier missingFeatureClassifier,
+			TrainingOptions trainingOptions) {
+		
 		super(impurityProcessor, 
 				continuousFeatureQuantiser, 
 				homogeniousThreshold,
-				missingFeatureClassifier);
+				missingFeatureClassifier,
+				trainingOptions);
 		
 		this.continuousFeatureQuantiser = continuousFeatureQuantiser;
 	}
@@ -46,8 +61,20 @@ public class QuantisedDecisionTreeModelService<C extends Enum<C>> extends Decisi
 		return super.trainModel(quantisedTrainingData);
 	}
 	
+	/*
+	 * continuous features are quantised once before the tree is grown so there is nothing to presort
+	 */
+	@Override
+	protected boolean isPresortingContinuousFeatures(){
+		return false;
+	}
+	
 	private QuantisedDataset<C> preQuantiseDataSet(ClassifiedDataset<C> trainingData) {
 		
+		QuantisationCache quantisationCache = getTrainingOptions().getQuantisationCache();
+		if (quantisationCache != null){
+			return QuantisedDataset.discretise(trainingData, quantisationCache.getQuantiser(trainingData, continuousFeatureQuantiser));
+		}
 		return QuantisedDataset.discretise(trainingData, continuousFeatureQuantiser);
 	}
 
@@ -0,0 +1,127 @@
+package com.ahaines.machinelearning.decisiontree;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import com.ahaines.machinelearning.api.dataset.quantiser.QuantisationCache;
+
+/**
+ * Defines optional strategies that a {@link DecisionTreeModelService} can use when growing a tree. None of these options
+ * change the semantics of the algorithm, only how the work is carried out. Instances are immutable, with each
+ * <code>with</code> method returning a modified copy of the current options.
+ *
+ * presortedContinuousFeatures: When set, each continuous feature is sorted once for the entire training set and the sorted
+ * 								orderings are partitioned stably as the tree is split, instead of the quantiser sorting the
+ * 								instances of every node again each time the feature is considered.
+ *
+ * forkJoinPool: When set, independent subtrees are grown in parallel as tasks on this pool. The resulting model is
+ * 				 identical to the one grown serially as children are always attached in split order.
+ *
+ * splitEvaluationExecutor: When set, the candidate features of a node are each split and scored concurrently on this
+ * 							  executor. Ties between features are still broken in feature type order so the tree is
+ * 							  reproducible. The fork join pool used for growing subtrees can also be supplied here, in
+ * 							  which case the evaluations of a node grown in the pool are forked as tasks of the pool
+ * 							  rather than blocking its workers. Any other executor is waited on by blocking, so it must
+ * 							  not be one whose threads grow the tree or evaluate splits themselves.
+ *
+ * parallelThreshold: The minimum number of instances a split must contain before its subtree is forked as a separate task,
+ * 					  and the minimum number of instances in a node before its features are evaluated concurrently.
+ * 					  Smaller amounts of work are done on the current thread.
+ *
+ * quantisationCache: When set, the quantisation of the whole training set is looked up in this cache before the quantiser
+ * 					  is run, so services sharing the cache quantise a training set once per quantiser. This only applies
+ * 					  to {@link QuantisedDecisionTreeModelService}, which quantises the whole training set up front. The
+ * 					  quantiser of a {@link DecisionTreeModelService} runs on the instances of each node, which differ
+ * 					  between trees.
+ *
+ * @author andrewhaines
+ *
+ */
+public class TrainingOptions {
+
+	private static final int DEFAULT_PARALLEL_THRESHOLD = 1000;
+	
+	public static final TrainingOptions DEFAULT = new TrainingOptions(false, null, null, DEFAULT_PARALLEL_THRESHOLD, null);
+
+	private final boolean presortedContinuousFeatures;
+	private final ForkJoinPool forkJoinPool;
+	private final ExecutorService splitEvaluationExecutor;
+	private final int parallelThreshold;
+	private final QuantisationCache quantisationCache;
+
+	private TrainingOptions(boolean presortedContinuousFeatures, ForkJoinPool forkJoinPool, ExecutorService splitEvaluationExecutor, int parallelThreshold, QuantisationCache quantisationCache){
+		this.presortedContinuousFeatures = presortedContinuousFeatures;
+		this.forkJoinPool = forkJoinPool;
+		this.splitEvaluationExecutor = splitEvaluationExecutor;
+		this.parallelThreshold = parallelThreshold;
+		this.quantisationCache = quantisationCache;
+	}
+
+	public TrainingOptions withPresortedContinuousFeatures(boolean presortedContinuousFeatures){
+		return new TrainingOptions(presortedContinuousFeatures, forkJoinPool, splitEvaluationExecutor, parallelThreshold, quantisationCache);
+	}
+
+	/**
+	 * Grows the tree in parallel on the supplied pool. Passing null reverts to serial growth.
+	 * @param forkJoinPool
+	 * @return
+	 */
+	public TrainingOptions withForkJoinPool(ForkJoinPool forkJoinPool){
+		return new TrainingOptions(presortedContinuousFeatures, forkJoinPool, splitEvaluationExecutor, parallelThreshold, quantisationCache);
+	}
+
+	/**
+	 * Scores the candidate features of each node concurrently on the supplied executor. Passing null reverts to serial
+	 * evaluation.
+	 * @param splitEvaluationExecutor
+	 * @return
+	 */
+	public TrainingOptions withSplitEvaluationExecutor(ExecutorService splitEvaluationExecutor){
+		return new TrainingOptions(presortedContinuousFeatures, forkJoinPool, splitEvaluationExecutor, parallelThreshold, quantisationCache);
+	}
+
+	public TrainingOptions withParallelThreshold(int parallelThreshold){
+		if (parallelThreshold < 1){
+			throw new IllegalArgumentException("parallelThreshold must be positive: "+parallelThreshold);
+		}
+		return new TrainingOptions(presortedContinuousFeatures, forkJoinPool, splitEvaluationExecutor, parallelThreshold, quantisationCache);
+	}
+
+	/**
+	 * Looks up the quantisation of the training set in the supplied cache. Passing null reverts to quantising on every
+	 * training run.
+	 * @param quantisationCache
+	 * @return
+	 */
+	public TrainingOptions withQuantisationCache(QuantisationCache quantisationCache){
+		return new TrainingOptions(presortedContinuousFeatures, forkJoinPool, splitEvaluationExecutor, parallelThreshold, quantisationCache);
+	}
+
+	public boolean isPresortedContinuousFeatures() {
+		return presortedContinuousFeatures;
+	}
+
+	public ForkJoinPool getForkJoinPool() {
+		return forkJoinPool;
+	}
+
+	public ExecutorService getSplitEvaluationExecutor() {
+		return splitEvaluationExecutor;
+	}
+
+	public boolean isParallel(){
+		return forkJoinPool != null;
+	}
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	public QuantisationCache getQuantisationCache() {
+		return quantisationCache;
+	}
+
+	public String toString(){
+		return "{presortedContinuousFeatures="+presortedContinuousFeatures+", forkJoinPool="+forkJoinPool+", splitEvaluationExecutor="+splitEvaluationExecutor+", parallelThreshold="+parallelThreshold+", quantisationCache="+quantisationCache+"}";
+	}
+}
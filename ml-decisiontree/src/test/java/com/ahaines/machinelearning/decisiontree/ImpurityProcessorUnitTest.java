@@ -76,6 +76,26 @@ public class ImpurityProcessorUnitTest {
 		
 		assertThat(impurity, is(closeTo(0.91, 0.01)));
 	}
+	
+	@Test
+	public void givenImpureSet_whenCallingGetClassCounts_thenHistogramIndexedByOrdinalReturned(){
+		int[] classCounts = ImpurityProcessors.getClassCounts(getImpureFeatureSet());
+		
+		assertThat(classCounts[TestClassification.TRUE.ordinal()], is(equalTo(1)));
+		assertThat(classCounts[TestClassification.FALSE.ordinal()], is(equalTo(2)));
+	}
+	
+	@Test
+	public void givenClassCounts_whenCallingGetImpurity_thenSameValueAsInstancesReturned(){
+		int[] impureCounts = ImpurityProcessors.getClassCounts(getImpureFeatureSet());
+		int[] pureCounts = ImpurityProcessors.getClassCounts(getPureFeatureSet());
+		
+		for (ImpurityProcessor candidate: Arrays.asList(giniCandidate, minorityClassCandidate, entropyCandidate, ImpurityProcessors.getSquareRootGiniIndexImpurityProcessor())){
+			assertThat(candidate.getImpurity(impureCounts, 3), is(closeTo(candidate.getImpurity(getImpureFeatureSet()), 1e-12)));
+			assertThat(candidate.getImpurity(pureCounts, 3), is(equalTo(0.0)));
+			assertThat(candidate.getImpurity(new int[0], 0), is(equalTo(0.0)));
+		}
+	}
 
 	private static Iterable<ClassifiedFeatureSet<TestClassification>> getPureFeatureSet() {
 		List<ClassifiedFeatureSet<TestClassification>> features = new ArrayList<ClassifiedFeatureSet<TestClassification>>();
@@ -0,0 +1,509 @@
+package com.ahaines.machinelearning.main;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ahaines.machinelearning.api.Model;
+import com.ahaines.machinelearning.api.Model.Metrics;
+import com.ahaines.machinelearning.api.ModelService;
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.Dataset;
+import com.ahaines.machinelearning.api.dataset.FeatureSet;
+import com.ahaines.machinelearning.api.dataset.columnar.ColumnarClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser;
+import com.ahaines.machinelearning.api.dataset.quantiser.QuantisationCache;
+import com.ahaines.machinelearning.decisiontree.DecisionTreeModelService;
+import com.ahaines.machinelearning.decisiontree.Id3Model;
+import com.ahaines.machinelearning.decisiontree.Id3ThresholdPath;
+import com.ahaines.machinelearning.decisiontree.ImpurityProcessor;
+import com.ahaines.machinelearning.decisiontree.MissingFeatureClassifier;
+import com.ahaines.machinelearning.decisiontree.QuantisedDecisionTreeModelService;
+import com.ahaines.machinelearning.decisiontree.TrainingOptions;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModelService;
+
+/**
+ * Runs a sweep of experiments concurrently on a supplied executor. Each experiment trains a model with one configuration
+ * and measures it against the test set. The training and test sets are converted to their immutable columnar form once
+ * and shared by every experiment, so the size of the executor bounds both the concurrency and the number of models held
+ * in memory at once. The configurations to sweep are usually generated from a {@link Grid}. The results can be written
+ * as a single CSV report with {@link #writeCsv(List, Writer)}.
+ *
+ * Build and classification times are wall clock times, so they include any contention with the experiments running
+ * alongside. Decision tree experiments that differ only in their threshold share one tree, so only the first of them is
+ * charged the time to grow it. The others are marked as derived and their build time only covers deriving their model
+ * from the shared tree.
+ *
+ * @author andrewhaines
+ *
+ * @param <C>
+ */
+public class ExperimentSweep<C extends Enum<C>> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ExperimentSweep.class);
+
+	private final ClassifiedDataset<C> trainingSet;
+	private final ClassifiedDataset<C> testSet;
+	private final C positiveClassification;
+	private final ExecutorService executor;
+
+	public ExperimentSweep(ClassifiedDataset<C> trainingSet, ClassifiedDataset<C> testSet, Class<C> classificationType, C positiveClassification, ExecutorService executor){
+		this.trainingSet = ColumnarClassifiedDataset.create(trainingSet, classificationType);
+		this.testSet = ColumnarClassifiedDataset.create(testSet, classificationType);
+		this.positiveClassification = positiveClassification;
+		this.executor = executor;
+	}
+
+	/**
+	 * Runs every experiment, returning their results in the order the experiments were supplied. Decision tree
+	 * experiments that differ only in their homogenious threshold are run together as one task: the tree is grown once
+	 * with the highest of their thresholds and the model of each threshold is derived from it with an
+	 * {@link Id3ThresholdPath}, so the time to build the tree is reported against the first of them and the results of the
+	 * others are marked as {@link Result#isDerived() derived}.
+	 * @param experiments
+	 * @return
+	 */
+	public List<Result<C>> run(List<Experiment<C>> experiments){
+		Map<Object, List<Experiment<C>>> groups = new LinkedHashMap<Object, List<Experiment<C>>>();
+		for (Experiment<C> experiment: experiments){
+			Object key = (experiment instanceof DecisionTreeExperiment)? ((DecisionTreeExperiment<C>)experiment).configuration: experiment;
+			List<Experiment<C>> group = groups.get(key);
+			if (group == null){
+				group = new ArrayList<Experiment<C>>();
+				groups.put(key, group);
+			}
+			group.add(experiment);
+		}
+
+		List<Callable<List<Result<C>>>> runs = new ArrayList<Callable<List<Result<C>>>>(groups.size());
+		for (final List<Experiment<C>> group: groups.values()){
+			runs.add(new Callable<List<Result<C>>>(){
+
+				@Override
+				public List<Result<C>> call(){
+					return runGroup(group);
+				}
+			});
+		}
+
+		Map<Experiment<C>, Result<C>> results = new IdentityHashMap<Experiment<C>, Result<C>>();
+		try{
+			for (Future<List<Result<C>>> groupResults: executor.invokeAll(runs)){
+				for (Result<C> result: groupResults.get()){
+					results.put(result.getExperiment(), result);
+				}
+			}
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("interrupted whilst running experiments", e);
+		} catch (ExecutionException e){
+			if (e.getCause() instanceof RuntimeException){
+				throw (RuntimeException)e.getCause();
+			}
+			throw new RuntimeException("issue running experiment", e.getCause());
+		}
+
+		List<Result<C>> orderedResults = new ArrayList<Result<C>>(experiments.size());
+		for (Experiment<C> experiment: experiments){
+			orderedResults.add(results.get(experiment));
+		}
+		return orderedResults;
+	}
+
+	private List<Result<C>> runGroup(List<Experiment<C>> group){
+		List<Result<C>> results = new ArrayList<Result<C>>(group.size());
+		if (group.size() == 1){
+			results.add(group.get(0).run(trainingSet, testSet, positiveClassification));
+			LOG.info("finished: "+group.get(0));
+
+			return results;
+		}
+
+		double maximumThreshold = Double.NEGATIVE_INFINITY;
+		for (Experiment<C> experiment: group){
+			maximumThreshold = Math.max(maximumThreshold, experiment.getHomogeniousThreshold());
+		}
+		ThresholdPathModelService<C> modelService = new ThresholdPathModelService<C>(((DecisionTreeExperiment<C>)group.get(0)).createModelService(maximumThreshold));
+		for (Experiment<C> experiment: group){
+			modelService.homogeniousThreshold = experiment.getHomogeniousThreshold();
+			results.add(experiment.run(modelService, trainingSet, testSet, positiveClassification, !results.isEmpty()));
+			LOG.info("finished: "+experiment);
+		}
+		return results;
+	}
+
+	/**
+	 * Writes the results as CSV with a header row. Each row holds the configuration of an experiment, the number of nodes
+	 * of its model if it is a decision tree, whether the model was {@link Result#isDerived() derived} from a tree grown for
+	 * another experiment and then its {@link Metrics#getCommonCsv()}. Values that do not apply to the type of model are
+	 * left empty.
+	 * @param results
+	 * @param writer
+	 * @throws IOException
+	 */
+	public static void writeCsv(List<? extends Result<?>> results, Writer writer) throws IOException{
+		DecimalFormat thresholdFormat = new DecimalFormat("0.###");
+
+		StringBuilder builder = new StringBuilder();
+		Metrics.appendCsvValue("model", builder);
+		Metrics.appendCsvValue("impurityProcessor", builder);
+		Metrics.appendCsvValue("missingFeatureClassifier", builder);
+		Metrics.appendCsvValue("quantiser", builder);
+		Metrics.appendCsvValue("homogeniousThreshold", builder);
+		Metrics.appendCsvValue("modelSize", builder);
+		Metrics.appendCsvValue("derivedModel", builder);
+		builder.append(Metrics.getCsvHeader()).append('\n');
+
+		for (Result<?> result: results){
+			Experiment<?> experiment = result.getExperiment();
+
+			Metrics.appendCsvValue(experiment.getModelType(), builder);
+			Metrics.appendCsvValue(nullToEmpty(experiment.getImpurityProcessor()), builder);
+			Metrics.appendCsvValue(nullToEmpty(experiment.getMissingFeatureClassifier()), builder);
+			Metrics.appendCsvValue(experiment.getQuantiser(), builder);
+			Metrics.appendCsvValue(Double.isNaN(experiment.getHomogeniousThreshold())? "": thresholdFormat.format(experiment.getHomogeniousThreshold()), builder);
+			Metrics.appendCsvValue((result.getModelSize() == Result.NO_MODEL_SIZE)? "": result.getModelSize(), builder);
+			Metrics.appendCsvValue(result.isDerived(), builder);
+			builder.append(result.getMetrics().getCommonCsv()).append('\n');
+		}
+		writer.write(builder.toString());
+		writer.flush();
+	}
+
+	private static String nullToEmpty(String value){
+		return (value == null)? "": value;
+	}
+
+	/**
+	 * A single configuration of a model service to train and measure. Parameters that do not apply to the type of model
+	 * are null, or NaN for the homogenious threshold.
+	 * @author andrewhaines
+	 *
+	 * @param <C>
+	 */
+	public static abstract class Experiment<C extends Enum<C>>{
+
+		private final String modelType;
+		private final String impurityProcessor;
+		private final String missingFeatureClassifier;
+		private final String quantiser;
+		private final double homogeniousThreshold;
+
+		protected Experiment(String modelType, String impurityProcessor, String missingFeatureClassifier, String quantiser, double homogeniousThreshold){
+			this.modelType = modelType;
+			this.impurityProcessor = impurityProcessor;
+			this.missingFeatureClassifier = missingFeatureClassifier;
+			this.quantiser = quantiser;
+			this.homogeniousThreshold = homogeniousThreshold;
+		}
+
+		/**
+		 * Creates a new model service of this configuration. A new service is created for every run so that no state is
+		 * shared between experiments.
+		 * @return
+		 */
+		protected abstract ModelService<? extends Model, C> createModelService();
+
+		Result<C> run(ClassifiedDataset<C> trainingSet, ClassifiedDataset<C> testSet, C positiveClassification){
+			return run(createModelService(), trainingSet, testSet, positiveClassification, false);
+		}
+
+		Result<C> run(ModelService<? extends Model, C> modelService, ClassifiedDataset<C> trainingSet, ClassifiedDataset<C> testSet, C positiveClassification, boolean derived){
+			Model model = train(modelService, trainingSet, testSet, positiveClassification);
+			int modelSize = (model instanceof Id3Model)? ((Id3Model<?>)model).countNodes(): Result.NO_MODEL_SIZE;
+
+			return new Result<C>(this, model.getMetrics(), modelSize, derived);
+		}
+
+		private static <T extends Model, C> T train(ModelService<T, C> modelService, ClassifiedDataset<C> trainingSet, ClassifiedDataset<C> testSet, C positiveClassification){
+			return ModelService.UTIL.getMetrics(trainingSet, testSet, modelService, positiveClassification);
+		}
+
+		public String getModelType() {
+			return modelType;
+		}
+
+		public String getImpurityProcessor() {
+			return impurityProcessor;
+		}
+
+		public String getMissingFeatureClassifier() {
+			return missingFeatureClassifier;
+		}
+
+		public String getQuantiser() {
+			return quantiser;
+		}
+
+		public double getHomogeniousThreshold() {
+			return homogeniousThreshold;
+		}
+
+		public String toString(){
+			StringBuilder builder = new StringBuilder(modelType);
+			if (impurityProcessor != null){
+				builder.append(", impurity = ").append(impurityProcessor);
+			}
+			if (missingFeatureClassifier != null){
+				builder.append(", missing features = ").append(missingFeatureClassifier);
+			}
+			builder.append(", quantiser = ").append(quantiser);
+			if (!Double.isNaN(homogeniousThreshold)){
+				builder.append(", threshold = ").append(homogeniousThreshold);
+			}
+			return builder.toString();
+		}
+	}
+
+	/*
+	 * An experiment of one of the decision tree services. Experiments generated for the same combination of settings
+	 * other than the threshold share the same configuration object, which is how the sweep groups them.
+	 */
+	private static class DecisionTreeExperiment<C extends Enum<C>> extends Experiment<C>{
+
+		private final Object configuration;
+		private final boolean preQuantised;
+		private final ImpurityProcessor impurityProcessor;
+		private final MissingFeatureClassifier missingFeatureClassifier;
+		private final ContinuousFeatureQuantiser quantiser;
+		private final QuantisationCache quantisationCache;
+
+		private DecisionTreeExperiment(Object configuration, boolean preQuantised, Entry<String, ImpurityProcessor> impurityProcessor, Entry<String, MissingFeatureClassifier> missingFeatureClassifier, Entry<String, ContinuousFeatureQuantiser> quantiser, double homogeniousThreshold, QuantisationCache quantisationCache){
+			super(preQuantised? Grid.PRE_QUANTISED_DECISION_TREE: Grid.DECISION_TREE, impurityProcessor.getKey(), missingFeatureClassifier.getKey(), quantiser.getKey(), homogeniousThreshold);
+			this.configuration = configuration;
+			this.preQuantised = preQuantised;
+			this.impurityProcessor = impurityProcessor.getValue();
+			this.missingFeatureClassifier = missingFeatureClassifier.getValue();
+			this.quantiser = quantiser.getValue();
+			this.quantisationCache = quantisationCache;
+		}
+
+		@Override
+		protected DecisionTreeModelService<C> createModelService() {
+			return createModelService(getHomogeniousThreshold());
+		}
+
+		private DecisionTreeModelService<C> createModelService(double homogeniousThreshold) {
+			if (preQuantised){
+				return new QuantisedDecisionTreeModelService<C>(impurityProcessor, quantiser, homogeniousThreshold, missingFeatureClassifier, TrainingOptions.DEFAULT.withQuantisationCache(quantisationCache));
+			}
+			return new DecisionTreeModelService<C>(impurityProcessor, quantiser, homogeniousThreshold, missingFeatureClassifier);
+		}
+	}
+
+	/*
+	 * Grows the tree of the first training set it is given once and then returns the model of the current threshold for
+	 * each call to trainModel. The training set is the same for every experiment of a sweep.
+	 */
+	private static class ThresholdPathModelService<C extends Enum<C>> implements ModelService<Id3Model<C>, C>{
+
+		private final DecisionTreeModelService<C> modelService;
+		private Id3ThresholdPath<C> thresholdPath;
+		private double homogeniousThreshold;
+
+		private ThresholdPathModelService(DecisionTreeModelService<C> modelService){
+			this.modelService = modelService;
+		}
+
+		@Override
+		public Id3Model<C> trainModel(ClassifiedDataset<C> trainingData) {
+			if (thresholdPath == null){
+				thresholdPath = modelService.trainThresholdPath(trainingData);
+			}
+			return thresholdPath.getModel(homogeniousThreshold);
+		}
+
+		@Override
+		public ClassifiedDataset<C> classifyDataset(Dataset<? extends FeatureSet> dataset, Id3Model<C> model) {
+			return modelService.classifyDataset(dataset, model);
+		}
+
+		@Override
+		public void classifyBatch(List<? extends FeatureSet> instances, Id3Model<C> model, int[] classificationOrdinals, double[] classificationProbabilities) {
+			modelService.classifyBatch(instances, model, classificationOrdinals, classificationProbabilities);
+		}
+	}
+
+	/**
+	 * The result of running an experiment
+	 * @author andrewhaines
+	 *
+	 * @param <C>
+	 */
+	public static class Result<C extends Enum<C>>{
+
+		public static final int NO_MODEL_SIZE = -1;
+
+		private final Experiment<C> experiment;
+		private final Metrics metrics;
+		private final int modelSize;
+		private final boolean derived;
+
+		private Result(Experiment<C> experiment, Metrics metrics, int modelSize, boolean derived){
+			this.experiment = experiment;
+			this.metrics = metrics;
+			this.modelSize = modelSize;
+			this.derived = derived;
+		}
+
+		public Experiment<C> getExperiment() {
+			return experiment;
+		}
+
+		public Metrics getMetrics() {
+			return metrics;
+		}
+
+		/**
+		 * Returns the number of nodes of the trained tree or {@link #NO_MODEL_SIZE} if the model is not a decision tree
+		 * @return
+		 */
+		public int getModelSize() {
+			return modelSize;
+		}
+
+		/**
+		 * Returns true if the model was derived from a tree grown for an earlier experiment of the sweep. The time to
+		 * build a derived model only covers deriving it, the time to grow the tree is reported against that experiment.
+		 * @return
+		 */
+		public boolean isDerived() {
+			return derived;
+		}
+	}
+
+	/**
+	 * Generates the experiments of every combination of the named settings added to it. Settings are combined in the
+	 * order they were added, with the homogenious threshold varying fastest.
+	 * @author andrewhaines
+	 *
+	 * @param <C>
+	 */
+	public static class Grid<C extends Enum<C>>{
+
+		public static final String DECISION_TREE = "decision tree";
+		public static final String PRE_QUANTISED_DECISION_TREE = "pre quantised decision tree";
+		public static final String NAIVE_BAYES = "naive bayes";
+
+		private final Map<String, ImpurityProcessor> impurityProcessors = new LinkedHashMap<String, ImpurityProcessor>();
+		private final Map<String, MissingFeatureClassifier> missingFeatureClassifiers = new LinkedHashMap<String, MissingFeatureClassifier>();
+		private final Map<String, ContinuousFeatureQuantiser> quantisers = new LinkedHashMap<String, ContinuousFeatureQuantiser>();
+		private final List<Double> homogeniousThresholds = new ArrayList<Double>();
+		private QuantisationCache quantisationCache;
+
+		public Grid<C> addImpurityProcessor(String name, ImpurityProcessor impurityProcessor){
+			impurityProcessors.put(name, impurityProcessor);
+			return this;
+		}
+
+		public Grid<C> addMissingFeatureClassifier(String name, MissingFeatureClassifier missingFeatureClassifier){
+			missingFeatureClassifiers.put(name, missingFeatureClassifier);
+			return this;
+		}
+
+		public Grid<C> addQuantiser(String name, ContinuousFeatureQuantiser quantiser){
+			quantisers.put(name, quantiser);
+			return this;
+		}
+
+		public Grid<C> addHomogeniousThreshold(double homogeniousThreshold){
+			homogeniousThresholds.add(homogeniousThreshold);
+			return this;
+		}
+
+		/**
+		 * Shares the supplied cache between the services of the experiments so that each quantiser only quantises the
+		 * training set once. Passing null, the default, quantises on every training run.
+		 * @param quantisationCache
+		 * @return
+		 */
+		public Grid<C> setQuantisationCache(QuantisationCache quantisationCache){
+			this.quantisationCache = quantisationCache;
+			return this;
+		}
+
+		/**
+		 * Adds the thresholds stepping down from the first threshold to the last threshold inclusive. The thresholds
+		 * are computed from the number of steps taken rather than by repeated subtraction so that rounding errors do not
+		 * drop the last threshold.
+		 * @param from
+		 * @param to
+		 * @param step
+		 * @return
+		 */
+		public Grid<C> addHomogeniousThresholds(double from, double to, double step){
+			int numSteps = (int)Math.round((from - to) / step);
+			for (int i = 0; i <= numSteps; i++){
+				homogeniousThresholds.add(from - i * step);
+			}
+			return this;
+		}
+
+		/**
+		 * Returns a {@link DecisionTreeModelService} experiment for every combination of impurity processor, missing
+		 * feature classifier, quantiser and threshold
+		 * @return
+		 */
+		public List<Experiment<C>> getDecisionTreeExperiments(){
+			return getDecisionTreeExperiments(false);
+		}
+
+		/**
+		 * Returns a {@link QuantisedDecisionTreeModelService} experiment for every combination of impurity processor,
+		 * missing feature classifier, quantiser and threshold
+		 * @return
+		 */
+		public List<Experiment<C>> getPreQuantisedDecisionTreeExperiments(){
+			return getDecisionTreeExperiments(true);
+		}
+
+		private List<Experiment<C>> getDecisionTreeExperiments(boolean preQuantised){
+			List<Experiment<C>> experiments = new ArrayList<Experiment<C>>();
+			for (Entry<String, ImpurityProcessor> impurityProcessor: impurityProcessors.entrySet()){
+				for (Entry<String, MissingFeatureClassifier> missingFeatureClassifier: missingFeatureClassifiers.entrySet()){
+					for (Entry<String, ContinuousFeatureQuantiser> quantiser: quantisers.entrySet()){
+						Object configuration = new Object();
+						for (double homogeniousThreshold: homogeniousThresholds){
+							experiments.add(new DecisionTreeExperiment<C>(configuration, preQuantised, impurityProcessor, missingFeatureClassifier, quantiser, homogeniousThreshold, quantisationCache));
+						}
+					}
+				}
+			}
+			return Collections.unmodifiableList(experiments);
+		}
+
+		/**
+		 * Returns a {@link NaiveBayesModelService} experiment for every quantiser. The other settings do not apply to
+		 * naive Bayes and are ignored.
+		 * @return
+		 */
+		public List<Experiment<C>> getNaiveBayesExperiments(){
+			List<Experiment<C>> experiments = new ArrayList<Experiment<C>>();
+			for (final Entry<String, ContinuousFeatureQuantiser> quantiser: quantisers.entrySet()){
+				final QuantisationCache quantisationCache = this.quantisationCache;
+				experiments.add(new Experiment<C>(NAIVE_BAYES, null, null, quantiser.getKey(), Double.NaN){
+
+					@Override
+					protected ModelService<? extends Model, C> createModelService() {
+						return new NaiveBayesModelService<C>(quantiser.getValue(), quantisationCache);
+					}
+				});
+			}
+			return Collections.unmodifiableList(experiments);
+		}
+	}
+}
@@ -1,8 +1,16 @@
 package com.ahaines.machinelearning.main;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.net.URISyntaxException;
-import java.text.DecimalFormat;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,23 +21,18 @@ import ch.qos.logback.classic.PatternLayout;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.ConsoleAppender;
 
-import com.ahaines.machinelearning.api.Model;
-import com.ahaines.machinelearning.api.Model.Metrics;
-import com.ahaines.machinelearning.api.ModelService;
 import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
-import com.ahaines.machinelearning.api.dataset.ClassifiedDatasetLoader;
 import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassification;
 import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassificationType;
 import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsDatasetLoaders;
 import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser;
 import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantisers;
-import com.ahaines.machinelearning.decisiontree.DecisionTreeModelService;
-import com.ahaines.machinelearning.decisiontree.Id3Model;
-import com.ahaines.machinelearning.decisiontree.ImpurityProcessor;
+import com.ahaines.machinelearning.api.dataset.quantiser.QuantisationCache;
 import com.ahaines.machinelearning.decisiontree.MissingFeatureClassifier;
 import com.ahaines.machinelearning.decisiontree.ImpurityProcessor.ImpurityProcessors;
-import com.ahaines.machinelearning.decisiontree.QuantisedDecisionTreeModelService;
-import com.ahaines.machinelearning.naivebayes.NaiveBayesModelService;
+import com.ahaines.machinelearning.main.ExperimentSweep.Experiment;
+import com.ahaines.machinelearning.main.ExperimentSweep.Grid;
+import com.ahaines.machinelearning.main.ExperimentSweep.Result;
 
 /**
  * The main application for running the comparision of different configurations and their performance. 
@@ -42,7 +45,7 @@ import com.ahaines.machinelearning.naivebayes.NaiveBayesModelService;
  * - error rate against test set
  * - size of model
  * 
- * For each parameter changed we run the test multiple times with different homogenious threshold values from (0.01->0.3)
+ * For each parameter changed we run the test multiple times with different homogenious threshold values from (1->0.75)
  * 
  * The parameters changed are:
  * 
@@ -58,13 +61,19 @@ import com.ahaines.machinelearning.naivebayes.NaiveBayesModelService;
  * Continuous feature split - How we split on continuous features. 2 implementations are considered. One that splits around
  * 							  the average value and the other that splits based on incremental clustering of values.
  * 
+ * Every combination of these parameters is run concurrently by an {@link ExperimentSweep} and the metrics of each are written
+ * to a single CSV report. The report is written to the path of the first argument, or sweep-results.csv if none is given,
+ * and the second argument sets the number of experiments run at once, which defaults to the number of processors.
+ * 
  * @author andrewhaines
  *
  */
 public class MainRunner {
 
 	private static final int DEFAULT_BUCKET_SIZE = 10;
-	private static final DecimalFormat DEFAULT_DECIMAL_FORMAT = new DecimalFormat("0.###");
+	private static final long QUANTISATION_CACHE_WEIGHT = 10000000; // row assignments, roughly 40MB
+	private static final String DEFAULT_REPORT_FILE = "sweep-results.csv";
+	private static final Charset UTF8 = Charset.forName("UTF-8");
 	
 	private static final Logger LOG = LoggerFactory.getLogger(MainRunner.class);
 
@@ -72,82 +81,63 @@ public class MainRunner {
 		
 		setupLogger();
 		
-		ClassifiedDatasetLoader<AdultEarningsClassificationType> trainingLoader = AdultEarningsDatasetLoaders.getTrainingDatasetLoader();
-		ClassifiedDatasetLoader<AdultEarningsClassificationType> testLoader = AdultEarningsDatasetLoaders.getTestDatasetLoader();
-		
-		ContinuousFeatureQuantiser cluster = ContinuousFeatureQuantisers.getClusteredQuantiser();
-		ContinuousFeatureQuantiser average = ContinuousFeatureQuantisers.getAveragePivotQuantiser();
-		ContinuousFeatureQuantiser constantBucket = ContinuousFeatureQuantisers.getConstantBucketQuantiser(DEFAULT_BUCKET_SIZE);
-		
-		LOG.info("############ ---- Decision Tree Tests ---- ############\n");
-		LOG.info("\timpurity calculations\n");
-		LOG.info("\t\tMinority class impurity calculations");
-		performContinuousDecisionTreeRuns(trainingLoader, testLoader, ImpurityProcessors.getMinorityClassImpurityProcessor(), MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier(), constantBucket);
-		LOG.info("\t\tGini index impurity calculations");
-		performContinuousDecisionTreeRuns(trainingLoader, testLoader, ImpurityProcessors.getGiniIndexImpurityProcessor(), MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier(), constantBucket);
-		LOG.info("\t\tEntropy impurity calculations");
-		performContinuousDecisionTreeRuns(trainingLoader, testLoader, ImpurityProcessors.getEntropyImpurityProcessor(), MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier(), constantBucket);
-		
-		LOG.info("\t\tSquare root Gini index calculations");
-		performContinuousDecisionTreeRuns(trainingLoader, testLoader, ImpurityProcessors.getSquareRootGiniIndexImpurityProcessor(), MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier(), constantBucket);
-		
-		LOG.info("\tMissing Features\n");
-		LOG.info("\t\tMost Homogenious");
-		performContinuousDecisionTreeRuns(trainingLoader, testLoader, ImpurityProcessors.getSquareRootGiniIndexImpurityProcessor(), MissingFeatureClassifier.CLASSIFIERS.getHomogeniousMissingFeatureClassifier(), constantBucket);
-		LOG.info("\t\tMost Rated");
-		performContinuousDecisionTreeRuns(trainingLoader, testLoader, ImpurityProcessors.getSquareRootGiniIndexImpurityProcessor(), MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier(), constantBucket);
-		
-
-		LOG.info("\tContinuous Feature Splitters\n");
-		LOG.info("\t\tAverage feature splitter");
-		performContinuousDecisionTreeRuns(trainingLoader, testLoader, ImpurityProcessors.getSquareRootGiniIndexImpurityProcessor(), MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier(), average);
-		LOG.info("\t\tCluster splitter");
-		performContinuousDecisionTreeRuns(trainingLoader, testLoader, ImpurityProcessors.getSquareRootGiniIndexImpurityProcessor(), MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier(), cluster);
-		LOG.info("\t\tConstant Bucket splitter");
-		performContinuousDecisionTreeRuns(trainingLoader, testLoader, ImpurityProcessors.getSquareRootGiniIndexImpurityProcessor(), MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier(), constantBucket);
-		
-		LOG.info("############ ---- Pre Quantised Decision Tree Tests ---- ############\n");
-		LOG.info("\timpurity calculations\n");
-		LOG.info("\t\tMinority class impurity calculations");
-		performPreQuantisedDecisionTreeRuns(trainingLoader, testLoader, ImpurityProcessors.getMinorityClassImpurityProcessor(), MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier(), constantBucket);
-		LOG.info("\t\tGini index impurity calculations");
-		performPreQuantisedDecisionTreeRuns(trainingLoader, testLoader, ImpurityProcessors.getGiniIndexImpurityProcessor(), MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier(), constantBucket);
-		LOG.info("\t\tEntropy impurity calculations");
-		performPreQuantisedDecisionTreeRuns(trainingLoader, testLoader, ImpurityProcessors.getEntropyImpurityProcessor(), MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier(), constantBucket);
-		
-		LOG.info("\t\tSquare root Gini index calculations");
-		performPreQuantisedDecisionTreeRuns(trainingLoader, testLoader, ImpurityProcessors.getSquareRootGiniIndexImpurityProcessor(), MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier(), constantBucket);
-		
-		LOG.info("\tMissing Features\n");
-		LOG.info("\t\tMost Homogenious");
-		performPreQuantisedDecisionTreeRuns(trainingLoader, testLoader, ImpurityProcessors.getSquareRootGiniIndexImpurityProcessor(), MissingFeatureClassifier.CLASSIFIERS.getHomogeniousMissingFeatureClassifier(), constantBucket);
-		LOG.info("\t\tMost Rated");
-		performPreQuantisedDecisionTreeRuns(trainingLoader, testLoader, ImpurityProcessors.getSquareRootGiniIndexImpurityProcessor(), MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier(), constantBucket);
-		
-
-		LOG.info("\tContinuous Feature Splitters\n");
-		LOG.info("\t\tAverage feature splitter");
-		performPreQuantisedDecisionTreeRuns(trainingLoader, testLoader, ImpurityProcessors.getSquareRootGiniIndexImpurityProcessor(), MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier(), average);
-		LOG.info("\t\tCluster splitter");
-		performPreQuantisedDecisionTreeRuns(trainingLoader, testLoader, ImpurityProcessors.getSquareRootGiniIndexImpurityProcessor(), MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier(), cluster);
-		LOG.info("\t\tConstant Bucket splitter");
-		performPreQuantisedDecisionTreeRuns(trainingLoader, testLoader, ImpurityProcessors.getSquareRootGiniIndexImpurityProcessor(), MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier(), constantBucket);
+		Path reportFile = Paths.get((args.length > 0)? args[0]: DEFAULT_REPORT_FILE);
+		int numThreads = (args.length > 1)? Integer.parseInt(args[1]): Runtime.getRuntime().availableProcessors();
+		
+		ClassifiedDataset<AdultEarningsClassificationType> trainingSet = AdultEarningsDatasetLoaders.getCachedColumnarDatasetLoader("/adult.data.txt").getClassifiedDataset();
+		ClassifiedDataset<AdultEarningsClassificationType> testSet = AdultEarningsDatasetLoaders.getCachedColumnarDatasetLoader("/adult.test.txt").getClassifiedDataset();
+		
+		/*
+		 * the quantisers are shared between the grids, along with the cache, so that each quantises the training set once
+		 */
+		ContinuousFeatureQuantiser averageQuantiser = ContinuousFeatureQuantisers.getAveragePivotQuantiser();
+		ContinuousFeatureQuantiser clusterQuantiser = ContinuousFeatureQuantisers.getClusteredQuantiser();
+		ContinuousFeatureQuantiser constantBucketQuantiser = ContinuousFeatureQuantisers.getConstantBucketQuantiser(DEFAULT_BUCKET_SIZE);
+		QuantisationCache quantisationCache = new QuantisationCache(QUANTISATION_CACHE_WEIGHT);
+		
+		Grid<AdultEarningsClassificationType> decisionTreeGrid = new Grid<AdultEarningsClassificationType>()
+				.addImpurityProcessor("minority class", ImpurityProcessors.getMinorityClassImpurityProcessor())
+				.addImpurityProcessor("gini index", ImpurityProcessors.getGiniIndexImpurityProcessor())
+				.addImpurityProcessor("entropy", ImpurityProcessors.getEntropyImpurityProcessor())
+				.addImpurityProcessor("square root gini index", ImpurityProcessors.getSquareRootGiniIndexImpurityProcessor())
+				.addMissingFeatureClassifier("most homogenious", MissingFeatureClassifier.CLASSIFIERS.getHomogeniousMissingFeatureClassifier())
+				.addMissingFeatureClassifier("most rated", MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier())
+				.addQuantiser("average", averageQuantiser)
+				.addQuantiser("cluster", clusterQuantiser)
+				.addQuantiser("constant bucket "+DEFAULT_BUCKET_SIZE, constantBucketQuantiser)
+				.addHomogeniousThresholds(1, 0.75, 0.05)
+				.setQuantisationCache(quantisationCache);
+		
+		Grid<AdultEarningsClassificationType> naiveBayesGrid = new Grid<AdultEarningsClassificationType>()
+				.addQuantiser("average", averageQuantiser)
+				.addQuantiser("cluster", clusterQuantiser)
+				.setQuantisationCache(quantisationCache);
+		for (int numBuckets: new int[]{5, 10, 25, 50}){
+			naiveBayesGrid.addQuantiser("constant bucket "+numBuckets, (numBuckets == DEFAULT_BUCKET_SIZE)? constantBucketQuantiser: ContinuousFeatureQuantisers.getConstantBucketQuantiser(numBuckets));
+		}
 		
+		List<Experiment<AdultEarningsClassificationType>> experiments = new ArrayList<Experiment<AdultEarningsClassificationType>>();
+		experiments.addAll(decisionTreeGrid.getDecisionTreeExperiments());
+		experiments.addAll(decisionTreeGrid.getPreQuantisedDecisionTreeExperiments());
+		experiments.addAll(naiveBayesGrid.getNaiveBayesExperiments());
 		
-		LOG.info("############ ---- Naive Bayes Tests ---- ############\n");
+		LOG.info("running "+experiments.size()+" experiments on "+numThreads+" threads");
 		
-		LOG.info("\t\tAverage feature splitter");
-		performNaiveBayesRun(trainingLoader, testLoader, average);
-		LOG.info("\t\tCluster splitter");
-		performNaiveBayesRun(trainingLoader, testLoader, cluster);
-		LOG.info("\t\tConstant Bucket splitter - 5 buckets");
-		performNaiveBayesRun(trainingLoader, testLoader, ContinuousFeatureQuantisers.getConstantBucketQuantiser(5));
-		LOG.info("\t\tConstant Bucket splitter - 10 buckets");
-		performNaiveBayesRun(trainingLoader, testLoader, constantBucket);
-		LOG.info("\t\tConstant Bucket splitter - 25 buckets");
-		performNaiveBayesRun(trainingLoader, testLoader, ContinuousFeatureQuantisers.getConstantBucketQuantiser(25));
-		LOG.info("\t\tConstant Bucket splitter - 50 buckets");
-		performNaiveBayesRun(trainingLoader, testLoader, ContinuousFeatureQuantisers.getConstantBucketQuantiser(50));
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try{
+			ExperimentSweep<AdultEarningsClassificationType> sweep = new ExperimentSweep<AdultEarningsClassificationType>(trainingSet, testSet, AdultEarningsClassificationType.class, AdultEarningsClassification.getLessThen50K(), executor);
+			List<Result<AdultEarningsClassificationType>> results = sweep.run(experiments);
+			
+			BufferedWriter writer = Files.newBufferedWriter(reportFile, UTF8);
+			try{
+				ExperimentSweep.writeCsv(results, writer);
+			} finally{
+				writer.close();
+			}
+		} finally{
+			executor.shutdown();
+		}
+		LOG.info("written report: "+reportFile.toAbsolutePath());
 	}
 	
 	private static void setupLogger() {
@@ -170,78 +160,4 @@ public class MainRunner {
 	       consoleAppender.start();
 	     }
 	}
-	//0.3311
-	private static void performContinuousDecisionTreeRuns(ClassifiedDatasetLoader<AdultEarningsClassificationType> trainingLoader, ClassifiedDatasetLoader<AdultEarningsClassificationType> testLoader, ImpurityProcessor processor, MissingFeatureClassifier missingFeatureClassifier, ContinuousFeatureQuantiser continuousFeatureQuantiser) throws IOException{
-		double homogeniousThreshold = 1;
-		
-		StringBuilder builder = new StringBuilder();
-		while(homogeniousThreshold >= 0.75){
-			Metrics runMetrics = performRun(trainingLoader, testLoader, homogeniousThreshold, processor, missingFeatureClassifier, continuousFeatureQuantiser);
-			//Metrics.appendCsvValue(DEFAULT_DECIMAL_FORMAT.format(homogeniousThreshold), builder);
-			//builder.append(runMetrics.toCsv());
-			//builder.append("\n");
-		
-			System.out.println("\tthreshold = "+homogeniousThreshold);
-			System.out.println(runMetrics);
-			
-			homogeniousThreshold -= 0.05;
-		}
-		LOG.info(builder.toString());
-	}
-	
-	private static void performPreQuantisedDecisionTreeRuns(ClassifiedDatasetLoader<AdultEarningsClassificationType> trainingLoader, ClassifiedDatasetLoader<AdultEarningsClassificationType> testLoader, ImpurityProcessor processor, MissingFeatureClassifier missingFeatureClassifier, ContinuousFeatureQuantiser continuousFeatureQuantiser) throws IOException{
-		double homogeniousThreshold = 1;
-		
-		StringBuilder builder = new StringBuilder();
-		while(homogeniousThreshold >= 0.75){
-			Metrics runMetrics = performQuantisedRun(trainingLoader, testLoader, homogeniousThreshold, processor, missingFeatureClassifier, continuousFeatureQuantiser);
-			//Metrics.appendCsvValue(DEFAULT_DECIMAL_FORMAT.format(homogeniousThreshold), builder);
-			//builder.append(runMetrics.toCsv());
-			//builder.append("\n");
-		
-			System.out.println("\tthreshold = "+homogeniousThreshold);
-			System.out.println(runMetrics);
-			
-			homogeniousThreshold -= 0.05;
-		}
-		LOG.info(builder.toString());
-	}
-	
-	private static Metrics performRun(ClassifiedDatasetLoader<AdultEarningsClassificationType> trainingLoader, ClassifiedDatasetLoader<AdultEarningsClassificationType> testLoader, double homogeniousThreshold, ImpurityProcessor processor, MissingFeatureClassifier missingFeatureClassifier, ContinuousFeatureQuantiser continuousFeatureQuantiser) throws IOException{
-		ModelService<Id3Model<AdultEarningsClassificationType>, AdultEarningsClassificationType> service = new DecisionTreeModelService<AdultEarningsClassificationType>(processor, continuousFeatureQuantiser, homogeniousThreshold, missingFeatureClassifier);
-		
-		return performRun(trainingLoader, testLoader, service);
-	}
-	
-	private static Metrics performQuantisedRun(ClassifiedDatasetLoader<AdultEarningsClassificationType> trainingLoader, ClassifiedDatasetLoader<AdultEarningsClassificationType> testLoader, double homogeniousThreshold, ImpurityProcessor processor, MissingFeatureClassifier missingFeatureClassifier, ContinuousFeatureQuantiser continuousFeatureQuantiser) throws IOException{
-		ModelService<Id3Model<AdultEarningsClassificationType>, AdultEarningsClassificationType> service = new QuantisedDecisionTreeModelService<AdultEarningsClassificationType>(processor, continuousFeatureQuantiser, homogeniousThreshold, missingFeatureClassifier);
-		
-		return performRun(trainingLoader, testLoader, service);
-	}
-	
-	
-	private static <T extends Model> Metrics performRun(ClassifiedDatasetLoader<AdultEarningsClassificationType> trainingLoader, ClassifiedDatasetLoader<AdultEarningsClassificationType> testLoader, ModelService<T, AdultEarningsClassificationType> modelService) throws IOException{
-		try{
-			ClassifiedDataset<AdultEarningsClassificationType> trainingDataset = trainingLoader.getClassifiedDataset();
-	
-			ClassifiedDataset<AdultEarningsClassificationType> testDataset = testLoader.getClassifiedDataset();
-	
-			Model model = ModelService.UTIL.getMetrics(trainingDataset, testDataset, modelService, AdultEarningsClassification.getLessThen50K());
-			return model.getMetrics();
-		} catch (Error e){
-			throw e;
-		}
-	}
-	
-	private static void performNaiveBayesRun(ClassifiedDatasetLoader<AdultEarningsClassificationType> trainingLoader, ClassifiedDatasetLoader<AdultEarningsClassificationType> testLoader, ContinuousFeatureQuantiser continuousFeatureQuantiser) throws IOException{
-		NaiveBayesModelService service = new NaiveBayesModelService(continuousFeatureQuantiser);
-		
-		Metrics metrics = performRun(trainingLoader, testLoader, service);
-		StringBuilder builder = new StringBuilder();
-		
-		builder.append(metrics.toString());
-		builder.append("\n");
-		
-		LOG.info(builder.toString());
-	}
 }
@@ -0,0 +1,132 @@
+package com.ahaines.machinelearning.main;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassificationType;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsDatasetLoaders;
+import com.ahaines.machinelearning.api.dataset.columnar.ColumnarClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantisers;
+import com.ahaines.machinelearning.decisiontree.CompiledId3Model;
+import com.ahaines.machinelearning.decisiontree.DecisionTreeModelService;
+import com.ahaines.machinelearning.decisiontree.Id3Model;
+import com.ahaines.machinelearning.decisiontree.ImpurityProcessor.ImpurityProcessors;
+import com.ahaines.machinelearning.decisiontree.QuantisedDecisionTreeModelService;
+import com.google.common.collect.Lists;
+import com.haines.ml.model.Feature;
+import com.haines.ml.model.Feature.Features;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class CompiledDecisionTreeIntegrationTest {
+
+	private static final Iterable<String> DATASETS = Arrays.asList("/adult.data-discrete", "/adult.data-continuous", "/adult.data-mixed");
+
+	@Test
+	public void givenTrainedModel_whenCallingCompile_thenClassificationsIdenticalToTree() throws IOException{
+		DecisionTreeModelService<AdultEarningsClassificationType> service = new DecisionTreeModelService<AdultEarningsClassificationType>(ImpurityProcessors.getEntropyImpurityProcessor(), ContinuousFeatureQuantisers.getAveragePivotQuantiser());
+
+		for (String dataset: DATASETS){
+			assertCompiledModelMatchesTree(service, dataset);
+		}
+	}
+
+	@Test
+	public void givenTrainedQuantisedModel_whenCallingCompile_thenClassificationsIdenticalToTree() throws IOException{
+		QuantisedDecisionTreeModelService<AdultEarningsClassificationType> service = new QuantisedDecisionTreeModelService<AdultEarningsClassificationType>(ImpurityProcessors.getGiniIndexImpurityProcessor(), ContinuousFeatureQuantisers.getConstantBucketQuantiser(4));
+
+		for (String dataset: DATASETS){
+			assertCompiledModelMatchesTree(service, dataset);
+		}
+	}
+
+	@Test
+	public void givenModelsTrainedOnFullTrainingSet_whenClassifyingFullTestSet_thenCompiledClassificationsAndProbabilitiesIdenticalToTree() throws IOException{
+		ClassifiedDataset<AdultEarningsClassificationType> trainingData = AdultEarningsDatasetLoaders.getTrainingDatasetLoader().getClassifiedDataset();
+		ClassifiedDataset<AdultEarningsClassificationType> testData = AdultEarningsDatasetLoaders.getTestDatasetLoader().getClassifiedDataset();
+		List<ClassifiedFeatureSet<AdultEarningsClassificationType>> testInstances = Lists.newArrayList(testData.getInstances());
+
+		// make sure the test set exercises both missing values and values that were never seen when training
+		Set<Feature<?>> trainingValues = new HashSet<Feature<?>>();
+		for (ClassifiedFeatureSet<AdultEarningsClassificationType> instance: trainingData.getInstances()){
+			for (Feature<?> feature: instance.getFeatures()){
+				trainingValues.add(feature);
+			}
+		}
+		int numMissing = 0;
+		int numUnseen = 0;
+		for (ClassifiedFeatureSet<AdultEarningsClassificationType> instance: testInstances){
+			for (Feature<?> feature: instance.getFeatures()){
+				if (feature == Features.MISSING){
+					numMissing++;
+				} else if (!trainingValues.contains(feature)){
+					numUnseen++;
+				}
+			}
+		}
+		assertThat(numMissing, is(greaterThan(0)));
+		assertThat(numUnseen, is(greaterThan(0)));
+
+		Id3Model<AdultEarningsClassificationType> model = new DecisionTreeModelService<AdultEarningsClassificationType>(ImpurityProcessors.getEntropyImpurityProcessor(), ContinuousFeatureQuantisers.getAveragePivotQuantiser()).trainModel(trainingData);
+		Id3Model<AdultEarningsClassificationType> quantisedModel = new QuantisedDecisionTreeModelService<AdultEarningsClassificationType>(ImpurityProcessors.getGiniIndexImpurityProcessor(), ContinuousFeatureQuantisers.getConstantBucketQuantiser(4)).trainModel(trainingData);
+
+		List<ClassifiedFeatureSet<AdultEarningsClassificationType>> columnarTestInstances = Lists.newArrayList(ColumnarClassifiedDataset.create(testData, AdultEarningsClassificationType.class).getInstances());
+		for (Id3Model<AdultEarningsClassificationType> candidate: Arrays.asList(model, quantisedModel)){
+			assertCompiledBatchMatchesTree(candidate, testInstances);
+			assertCompiledBatchMatchesTree(candidate, columnarTestInstances);
+		}
+	}
+
+	@Test
+	public void givenTrainedModel_whenCallingCompileTwice_thenSameCompiledModelReturned() throws IOException{
+		DecisionTreeModelService<AdultEarningsClassificationType> service = new DecisionTreeModelService<AdultEarningsClassificationType>(ImpurityProcessors.getEntropyImpurityProcessor(), ContinuousFeatureQuantisers.getAveragePivotQuantiser());
+		Id3Model<AdultEarningsClassificationType> model = service.trainModel(AdultEarningsDatasetLoaders.getTrainingDatasetLoader("/adult.data-mixed.txt").getClassifiedDataset());
+
+		assertThat(model.compile(), is(sameInstance(model.compile())));
+		assertThat(model.compile().countNodes(), is(equalTo(model.countNodes())));
+	}
+
+	private static void assertCompiledBatchMatchesTree(Id3Model<AdultEarningsClassificationType> model, List<ClassifiedFeatureSet<AdultEarningsClassificationType>> instances){
+		int[] expectedOrdinals = new int[instances.size()];
+		double[] expectedProbabilities = new double[instances.size()];
+		model.classifyBatch(instances, expectedOrdinals, expectedProbabilities);
+
+		int[] ordinals = new int[instances.size()];
+		double[] probabilities = new double[instances.size()];
+		model.compile().classifyBatch(instances, ordinals, probabilities);
+
+		for (int i = 0; i < instances.size(); i++){
+			assertThat(instances.get(i).toString(), ordinals[i], is(equalTo(expectedOrdinals[i])));
+			assertThat(instances.get(i).toString(), probabilities[i], is(equalTo(expectedProbabilities[i])));
+			assertThat(instances.get(i).toString(), model.compile().getClassification(instances.get(i)).getValue(), is(equalTo(model.getClassification(instances.get(i)).getValue())));
+		}
+	}
+
+	private static void assertCompiledModelMatchesTree(DecisionTreeModelService<AdultEarningsClassificationType> service, String dataset) throws IOException{
+		ClassifiedDataset<AdultEarningsClassificationType> trainingData = AdultEarningsDatasetLoaders.getTrainingDatasetLoader(dataset+".txt").getClassifiedDataset();
+		ClassifiedDataset<AdultEarningsClassificationType> testData = AdultEarningsDatasetLoaders.getTrainingDatasetLoader(dataset+"-test.txt").getClassifiedDataset();
+
+		Id3Model<AdultEarningsClassificationType> model = service.trainModel(trainingData);
+		CompiledId3Model<AdultEarningsClassificationType> compiledModel = model.compile();
+
+		for (ClassifiedDataset<AdultEarningsClassificationType> data: Arrays.asList(trainingData, testData, ColumnarClassifiedDataset.create(testData, AdultEarningsClassificationType.class))){
+			for (ClassifiedFeatureSet<AdultEarningsClassificationType> instance: data.getInstances()){
+				AdultEarningsClassificationType expected = model.getClassification(instance).getValue();
+
+				assertThat(dataset+": "+instance, compiledModel.getClassificationValue(instance), is(equalTo(expected)));
+				assertThat(dataset+": "+instance, compiledModel.getClassificationOrdinal(instance), is(equalTo(expected.ordinal())));
+			}
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package com.ahaines.machinelearning.main;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassificationType;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsDatasetLoaders;
+import com.ahaines.machinelearning.api.dataset.columnar.ColumnarClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantisers;
+import com.ahaines.machinelearning.naivebayes.CompiledNaiveBayesModel;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModel;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModel.ClassificationProbability;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModelService;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class CompiledNaiveBayesIntegrationTest {
+
+	private static final Iterable<String> DATASETS = Arrays.asList("/adult.data-discrete", "/adult.data-continuous", "/adult.data-mixed");
+
+	@Test
+	public void givenTrainedModel_whenCallingCompile_thenClassificationsIdenticalToModel() throws IOException{
+		NaiveBayesModelService<AdultEarningsClassificationType> service = new NaiveBayesModelService<AdultEarningsClassificationType>(ContinuousFeatureQuantisers.getConstantBucketQuantiser(4));
+
+		for (String dataset: DATASETS){
+			ClassifiedDataset<AdultEarningsClassificationType> trainingData = AdultEarningsDatasetLoaders.getTrainingDatasetLoader(dataset+".txt").getClassifiedDataset();
+			ClassifiedDataset<AdultEarningsClassificationType> testData = AdultEarningsDatasetLoaders.getTrainingDatasetLoader(dataset+"-test.txt").getClassifiedDataset();
+
+			NaiveBayesModel<AdultEarningsClassificationType> model = service.trainModel(trainingData);
+			CompiledNaiveBayesModel<AdultEarningsClassificationType> compiledModel = model.compile();
+
+			for (ClassifiedDataset<AdultEarningsClassificationType> data: Arrays.asList(trainingData, testData, ColumnarClassifiedDataset.create(testData, AdultEarningsClassificationType.class))){
+				for (ClassifiedFeatureSet<AdultEarningsClassificationType> instance: data.getInstances()){
+					ClassificationProbability<AdultEarningsClassificationType> expected = model.getClassification(instance);
+					ClassificationProbability<AdultEarningsClassificationType> classification = compiledModel.getClassification(instance);
+
+					assertThat(dataset+": "+instance, classification.getValue(), is(equalTo(expected.getValue())));
+					assertThat(dataset+": "+instance, classification.getProbability(), is(closeTo(expected.getProbability(), expected.getProbability() * 1e-9)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void givenTrainedModel_whenCallingCompileTwice_thenSameCompiledModelReturned() throws IOException{
+		NaiveBayesModelService<AdultEarningsClassificationType> service = new NaiveBayesModelService<AdultEarningsClassificationType>(ContinuousFeatureQuantisers.getConstantBucketQuantiser(4));
+		NaiveBayesModel<AdultEarningsClassificationType> model = service.trainModel(AdultEarningsDatasetLoaders.getTrainingDatasetLoader("/adult.data-mixed.txt").getClassifiedDataset());
+
+		assertThat(model.compile(), is(sameInstance(model.compile())));
+	}
+}
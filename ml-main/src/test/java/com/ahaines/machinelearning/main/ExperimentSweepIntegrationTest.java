@@ -0,0 +1,155 @@
+package com.ahaines.machinelearning.main;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ahaines.machinelearning.api.Model;
+import com.ahaines.machinelearning.api.ModelService;
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassification;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassificationType;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsDatasetLoaders;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantisers;
+import com.ahaines.machinelearning.api.dataset.quantiser.QuantisationCache;
+import com.ahaines.machinelearning.decisiontree.DecisionTreeModelService;
+import com.ahaines.machinelearning.decisiontree.ImpurityProcessor.ImpurityProcessors;
+import com.ahaines.machinelearning.decisiontree.MissingFeatureClassifier;
+import com.ahaines.machinelearning.decisiontree.QuantisedDecisionTreeModelService;
+import com.ahaines.machinelearning.main.ExperimentSweep.Experiment;
+import com.ahaines.machinelearning.main.ExperimentSweep.Grid;
+import com.ahaines.machinelearning.main.ExperimentSweep.Result;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModelService;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+
+public class ExperimentSweepIntegrationTest {
+
+	private static ExecutorService executor;
+	private static ClassifiedDataset<AdultEarningsClassificationType> trainingData;
+	private static ClassifiedDataset<AdultEarningsClassificationType> testData;
+
+	@BeforeClass
+	public static void beforeClass() throws IOException{
+		executor = Executors.newFixedThreadPool(4);
+		trainingData = AdultEarningsDatasetLoaders.getTrainingDatasetLoader().getClassifiedDataset();
+		testData = AdultEarningsDatasetLoaders.getTestDatasetLoader().getClassifiedDataset();
+	}
+
+	@AfterClass
+	public static void afterClass(){
+		executor.shutdown();
+	}
+
+	@Test
+	public void givenGrid_whenRunningSweepConcurrently_thenSameAccuracyAsRunningEachConfigurationSerially() throws IOException{
+		Grid<AdultEarningsClassificationType> grid = new Grid<AdultEarningsClassificationType>()
+				.addImpurityProcessor("entropy", ImpurityProcessors.getEntropyImpurityProcessor())
+				.addMissingFeatureClassifier("most rated", MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier())
+				.addQuantiser("constant bucket 10", ContinuousFeatureQuantisers.getConstantBucketQuantiser(10))
+				.addHomogeniousThresholds(1, 0.9, 0.1);
+
+		List<Experiment<AdultEarningsClassificationType>> experiments = new ArrayList<Experiment<AdultEarningsClassificationType>>();
+		experiments.addAll(grid.getDecisionTreeExperiments());
+		experiments.addAll(grid.getNaiveBayesExperiments());
+
+		List<Result<AdultEarningsClassificationType>> results = new ExperimentSweep<AdultEarningsClassificationType>(trainingData, testData, AdultEarningsClassificationType.class, AdultEarningsClassification.getLessThen50K(), executor).run(experiments);
+
+		assertThat(results.size(), is(equalTo(3)));
+		assertThat(results.get(0).getExperiment().getHomogeniousThreshold(), is(equalTo(1.0)));
+		assertThat(results.get(1).getExperiment().getHomogeniousThreshold(), is(equalTo(0.9)));
+		assertThat(results.get(2).getExperiment().getModelType(), is(equalTo(Grid.NAIVE_BAYES)));
+
+		StringWriter writer = new StringWriter();
+		ExperimentSweep.writeCsv(results, writer);
+		String[] lines = writer.toString().split("\n");
+		for (String line: lines){
+			assertThat(line, line.split(",").length, is(equalTo(lines[0].split(",").length)));
+		}
+		assertThat(results.get(0).getModelSize(), is(greaterThan(0)));
+		assertThat(results.get(2).getModelSize(), is(equalTo(Result.NO_MODEL_SIZE)));
+		assertThat(results.get(0).isDerived(), is(equalTo(false)));
+		assertThat(results.get(1).isDerived(), is(equalTo(true)));
+		assertThat(results.get(2).isDerived(), is(equalTo(false)));
+		assertThat(lines[2], containsString("\"true\""));
+
+		for (int i = 0; i < 2; i++){
+			DecisionTreeModelService<AdultEarningsClassificationType> service = new DecisionTreeModelService<AdultEarningsClassificationType>(ImpurityProcessors.getEntropyImpurityProcessor(), ContinuousFeatureQuantisers.getConstantBucketQuantiser(10), results.get(i).getExperiment().getHomogeniousThreshold(), MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier());
+			double expectedAccuracy = ModelService.UTIL.getMetrics(trainingData, testData, service, AdultEarningsClassification.getLessThen50K()).getMetrics().getAccuracy();
+
+			assertThat(results.get(i).getMetrics().getAccuracy(), is(equalTo(expectedAccuracy)));
+		}
+		NaiveBayesModelService<AdultEarningsClassificationType> naiveBayesService = new NaiveBayesModelService<AdultEarningsClassificationType>(ContinuousFeatureQuantisers.getConstantBucketQuantiser(10));
+		double expectedAccuracy = ModelService.UTIL.getMetrics(trainingData, testData, naiveBayesService, AdultEarningsClassification.getLessThen50K()).getMetrics().getAccuracy();
+
+		assertThat(results.get(2).getMetrics().getAccuracy(), is(equalTo(expectedAccuracy)));
+	}
+
+	@Test
+	public void givenGridSharingQuantisationCache_whenRunningSweep_thenSameAccuracyAsUncachedServices(){
+		QuantisationCache quantisationCache = new QuantisationCache(10000000);
+		ContinuousFeatureQuantiser quantiser = ContinuousFeatureQuantisers.getConstantBucketQuantiser(10);
+		Grid<AdultEarningsClassificationType> grid = new Grid<AdultEarningsClassificationType>()
+				.addImpurityProcessor("entropy", ImpurityProcessors.getEntropyImpurityProcessor())
+				.addImpurityProcessor("gini index", ImpurityProcessors.getGiniIndexImpurityProcessor())
+				.addMissingFeatureClassifier("most rated", MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier())
+				.addQuantiser("constant bucket 10", quantiser)
+				.addHomogeniousThreshold(0.9)
+				.setQuantisationCache(quantisationCache);
+
+		List<Experiment<AdultEarningsClassificationType>> experiments = new ArrayList<Experiment<AdultEarningsClassificationType>>();
+		experiments.addAll(grid.getPreQuantisedDecisionTreeExperiments());
+		experiments.addAll(grid.getNaiveBayesExperiments());
+
+		List<Result<AdultEarningsClassificationType>> results = new ExperimentSweep<AdultEarningsClassificationType>(trainingData, testData, AdultEarningsClassificationType.class, AdultEarningsClassification.getLessThen50K(), executor).run(experiments);
+
+		assertThat(quantisationCache.size(), is(greaterThan(0)));
+
+		List<ModelService<?, AdultEarningsClassificationType>> uncachedServices = new ArrayList<ModelService<?, AdultEarningsClassificationType>>();
+		uncachedServices.add(new QuantisedDecisionTreeModelService<AdultEarningsClassificationType>(ImpurityProcessors.getEntropyImpurityProcessor(), quantiser, 0.9, MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier()));
+		uncachedServices.add(new QuantisedDecisionTreeModelService<AdultEarningsClassificationType>(ImpurityProcessors.getGiniIndexImpurityProcessor(), quantiser, 0.9, MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier()));
+		uncachedServices.add(new NaiveBayesModelService<AdultEarningsClassificationType>(quantiser));
+
+		for (int i = 0; i < uncachedServices.size(); i++){
+			double expectedAccuracy = getAccuracy(uncachedServices.get(i));
+
+			assertThat(results.get(i).getExperiment().toString(), results.get(i).getMetrics().getAccuracy(), is(equalTo(expectedAccuracy)));
+		}
+	}
+
+	private static <T extends Model> double getAccuracy(ModelService<T, AdultEarningsClassificationType> service){
+		return ModelService.UTIL.getMetrics(trainingData, testData, service, AdultEarningsClassification.getLessThen50K()).getMetrics().getAccuracy();
+	}
+
+	@Test
+	public void givenResults_whenWritingCsv_thenHeaderAndOneRowPerExperimentWritten() throws IOException{
+		Grid<AdultEarningsClassificationType> grid = new Grid<AdultEarningsClassificationType>()
+				.addQuantiser("constant bucket 5", ContinuousFeatureQuantisers.getConstantBucketQuantiser(5))
+				.addQuantiser("constant bucket 10", ContinuousFeatureQuantisers.getConstantBucketQuantiser(10));
+
+		List<Result<AdultEarningsClassificationType>> results = new ExperimentSweep<AdultEarningsClassificationType>(trainingData, testData, AdultEarningsClassificationType.class, AdultEarningsClassification.getLessThen50K(), executor).run(grid.getNaiveBayesExperiments());
+
+		StringWriter writer = new StringWriter();
+		ExperimentSweep.writeCsv(results, writer);
+		String[] lines = writer.toString().split("\n");
+
+		assertThat(lines.length, is(equalTo(3)));
+		assertThat(lines[0], startsWith("\"model\",\"impurityProcessor\",\"missingFeatureClassifier\",\"quantiser\",\"homogeniousThreshold\",\"modelSize\",\"derivedModel\",\"timeToBuildModel\""));
+		assertThat(lines[1], startsWith("\"naive bayes\",\"\",\"\",\"constant bucket 5\",\"\",\"\",\"false\","));
+		assertThat(lines[2], startsWith("\"naive bayes\",\"\",\"\",\"constant bucket 10\",\"\",\"\",\"false\","));
+		assertThat(lines[1].split(",").length, is(equalTo(lines[0].split(",").length)));
+	}
+}
@@ -0,0 +1,167 @@
+package com.ahaines.machinelearning.main;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.FeatureSet;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassificationType;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsDatasetLoaders;
+import com.ahaines.machinelearning.api.dataset.columnar.ColumnarClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantisers;
+import com.ahaines.machinelearning.decisiontree.CompiledId3Model;
+import com.ahaines.machinelearning.decisiontree.DecisionTreeModelService;
+import com.ahaines.machinelearning.decisiontree.Id3Model;
+import com.ahaines.machinelearning.decisiontree.ImpurityProcessor.ImpurityProcessors;
+import com.ahaines.machinelearning.naivebayes.CompiledNaiveBayesModel;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModel;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModelService;
+
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.equalTo;
+
+public class ModelPersistenceIntegrationTest {
+
+	private Path file;
+	private ClassifiedDataset<AdultEarningsClassificationType> trainingData;
+	private List<FeatureSet> testInstances;
+
+	@Before
+	public void before() throws IOException{
+		file = Files.createTempFile("model", ".bin");
+		trainingData = AdultEarningsDatasetLoaders.getTrainingDatasetLoader().getClassifiedDataset();
+
+		ClassifiedDataset<AdultEarningsClassificationType> testData = AdultEarningsDatasetLoaders.getTestDatasetLoader().getClassifiedDataset();
+		testInstances = new ArrayList<FeatureSet>();
+		for (ClassifiedFeatureSet<AdultEarningsClassificationType> instance: testData.getInstances()){
+			testInstances.add(instance);
+		}
+		for (ClassifiedFeatureSet<AdultEarningsClassificationType> instance: ColumnarClassifiedDataset.create(testData, AdultEarningsClassificationType.class).getInstances()){
+			testInstances.add(instance);
+		}
+	}
+
+	@After
+	public void after() throws IOException{
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void givenSavedDecisionTree_whenLoading_thenClassificationsIdenticalToTrainedTree() throws IOException{
+		Id3Model<AdultEarningsClassificationType> model = new DecisionTreeModelService<AdultEarningsClassificationType>(ImpurityProcessors.getEntropyImpurityProcessor(), ContinuousFeatureQuantisers.getAveragePivotQuantiser()).trainModel(trainingData);
+		model.write(file);
+
+		CompiledId3Model<AdultEarningsClassificationType> loadedModel = CompiledId3Model.load(file, AdultEarningsClassificationType.class);
+
+		assertThat(loadedModel.countNodes(), is(equalTo(model.compile().countNodes())));
+		for (FeatureSet instance: testInstances){
+			assertThat(instance.toString(), loadedModel.getClassificationValue(instance), is(equalTo(model.compile().getClassificationValue(instance))));
+		}
+	}
+
+	@Test
+	public void givenSavedNaiveBayesModel_whenLoading_thenClassificationsIdenticalToTrainedModel() throws IOException{
+		NaiveBayesModel<AdultEarningsClassificationType> model = new NaiveBayesModelService<AdultEarningsClassificationType>(ContinuousFeatureQuantisers.getConstantBucketQuantiser(4)).trainModel(trainingData);
+		model.write(file);
+
+		CompiledNaiveBayesModel<AdultEarningsClassificationType> loadedModel = CompiledNaiveBayesModel.load(file, AdultEarningsClassificationType.class);
+
+		int[] expectedOrdinals = new int[testInstances.size()];
+		double[] expectedProbabilities = new double[testInstances.size()];
+		model.compile().classifyBatch(testInstances, expectedOrdinals, expectedProbabilities);
+
+		int[] ordinals = new int[testInstances.size()];
+		double[] probabilities = new double[testInstances.size()];
+		loadedModel.classifyBatch(testInstances, ordinals, probabilities);
+
+		for (int i = 0; i < testInstances.size(); i++){
+			assertThat(ordinals[i], is(equalTo(expectedOrdinals[i])));
+			assertThat(probabilities[i], is(equalTo(expectedProbabilities[i])));
+		}
+	}
+
+	@Test
+	public void givenSavedModel_whenLoadingWithDifferentClassificationType_thenIOExceptionThrown() throws IOException{
+		new NaiveBayesModelService<AdultEarningsClassificationType>(ContinuousFeatureQuantisers.getConstantBucketQuantiser(4)).trainModel(trainingData).write(file);
+
+		try{
+			CompiledNaiveBayesModel.load(file, TimeUnit.class);
+			fail("expected the classification type to be checked");
+		} catch (IOException e){
+			// expected
+		}
+		try{
+			CompiledId3Model.load(file, AdultEarningsClassificationType.class);
+			fail("expected a naive Bayes file to be rejected as a tree");
+		} catch (IOException e){
+			// expected
+		}
+	}
+
+	@Test
+	public void givenTruncatedOrCorruptModelFiles_whenLoading_thenOnlyIOExceptionsThrown() throws IOException{
+		new DecisionTreeModelService<AdultEarningsClassificationType>(ImpurityProcessors.getEntropyImpurityProcessor(), ContinuousFeatureQuantisers.getAveragePivotQuantiser()).trainModel(trainingData).write(file);
+		byte[] treeBytes = Files.readAllBytes(file);
+		new NaiveBayesModelService<AdultEarningsClassificationType>(ContinuousFeatureQuantisers.getConstantBucketQuantiser(4)).trainModel(trainingData).write(file);
+		byte[] naiveBayesBytes = Files.readAllBytes(file);
+
+		for (byte[] bytes: Arrays.asList(treeBytes, naiveBayesBytes)){
+			int step = Math.max(1, bytes.length / 200);
+			for (int length = 0; length < bytes.length; length += step){
+				Files.write(file, Arrays.copyOf(bytes, length));
+				assertLoadingThrowsIOException();
+			}
+			for (int position = 8; position + 4 <= bytes.length; position += step){ // after the header
+				for (byte corruption: new byte[]{(byte)0xFF, (byte)0x7F}){
+					byte[] corruptBytes = bytes.clone();
+					Arrays.fill(corruptBytes, position, position + 4, corruption);
+					Files.write(file, corruptBytes);
+					loadIgnoringIOExceptions();
+				}
+			}
+		}
+	}
+
+	private void assertLoadingThrowsIOException(){
+		try{
+			CompiledId3Model.load(file, AdultEarningsClassificationType.class);
+			fail("expected a truncated file to be rejected");
+		} catch (IOException e){
+			// expected
+		}
+		try{
+			CompiledNaiveBayesModel.load(file, AdultEarningsClassificationType.class);
+			fail("expected a truncated file to be rejected");
+		} catch (IOException e){
+			// expected
+		}
+	}
+
+	/*
+	 * a corrupt value may still be a valid one, so the file may load, but any failure must be an IOException
+	 */
+	private void loadIgnoringIOExceptions(){
+		try{
+			CompiledId3Model.load(file, AdultEarningsClassificationType.class);
+		} catch (IOException e){
+			// expected
+		}
+		try{
+			CompiledNaiveBayesModel.load(file, AdultEarningsClassificationType.class);
+		} catch (IOException e){
+			// expected
+		}
+	}
+}
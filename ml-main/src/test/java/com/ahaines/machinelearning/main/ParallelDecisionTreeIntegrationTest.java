@@ -0,0 +1,130 @@
+package com.ahaines.machinelearning.main;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import com.ahaines.machinelearning.api.ModelService;
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassificationType;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsDatasetLoaders;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantisers;
+import com.ahaines.machinelearning.decisiontree.DecisionTreeModelService;
+import com.ahaines.machinelearning.decisiontree.Id3Model;
+import com.ahaines.machinelearning.decisiontree.ImpurityProcessor.ImpurityProcessors;
+import com.ahaines.machinelearning.decisiontree.MissingFeatureClassifier;
+import com.ahaines.machinelearning.decisiontree.QuantisedDecisionTreeModelService;
+import com.ahaines.machinelearning.decisiontree.TrainingOptions;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.equalTo;
+
+public class ParallelDecisionTreeIntegrationTest extends SimpleIntegrationTest<Id3Model<AdultEarningsClassificationType>>{
+
+	private static final ForkJoinPool POOL = new ForkJoinPool(4);
+	
+	@AfterClass
+	public static void shutdownPool(){
+		POOL.shutdown();
+	}
+	
+	@Override
+	protected ModelService<Id3Model<AdultEarningsClassificationType>, AdultEarningsClassificationType> getModelService() {
+		return createModelService(TrainingOptions.DEFAULT.withForkJoinPool(POOL).withParallelThreshold(1));
+	}
+	
+	@Test
+	public void givenParallelTraining_whenCallingTrainModel_thenModelIdenticalToSerialTraining() throws IOException{
+		ClassifiedDataset<AdultEarningsClassificationType> dataset = AdultEarningsDatasetLoaders.getTrainingDatasetLoader("/adult.data-mixed.txt").getClassifiedDataset();
+		
+		Id3Model<AdultEarningsClassificationType> serialModel = createModelService(TrainingOptions.DEFAULT).trainModel(dataset);
+		Id3Model<AdultEarningsClassificationType> parallelModel = getModelService().trainModel(dataset);
+		
+		assertThat(parallelModel.toString(), is(equalTo(serialModel.toString())));
+		assertThat(parallelModel.countNodes(), is(equalTo(serialModel.countNodes())));
+	}
+	
+	@Test
+	public void givenFullTrainingSet_whenTrainingInParallel_thenModelIdenticalToSerialTraining() throws IOException{
+		ClassifiedDataset<AdultEarningsClassificationType> dataset = AdultEarningsDatasetLoaders.getTrainingDatasetLoader().getClassifiedDataset();
+		
+		Id3Model<AdultEarningsClassificationType> serialModel = createModelService(TrainingOptions.DEFAULT).trainModel(dataset);
+		Id3Model<AdultEarningsClassificationType> parallelModel = createModelService(TrainingOptions.DEFAULT.withForkJoinPool(POOL).withParallelThreshold(100)).trainModel(dataset);
+		
+		assertThat(parallelModel.toString(), is(equalTo(serialModel.toString())));
+		assertThat(parallelModel.countNodes(), is(equalTo(serialModel.countNodes())));
+		
+		Id3Model<AdultEarningsClassificationType> serialQuantisedModel = createQuantisedModelService(TrainingOptions.DEFAULT).trainModel(dataset);
+		Id3Model<AdultEarningsClassificationType> parallelQuantisedModel = createQuantisedModelService(TrainingOptions.DEFAULT.withForkJoinPool(POOL).withParallelThreshold(100)).trainModel(dataset);
+		
+		assertThat(parallelQuantisedModel.toString(), is(equalTo(serialQuantisedModel.toString())));
+		assertThat(parallelQuantisedModel.countNodes(), is(equalTo(serialQuantisedModel.countNodes())));
+	}
+	
+	@Test
+	public void givenParallelSplitEvaluation_whenCallingTrainModel_thenModelIdenticalToSerialTraining() throws IOException{
+		ClassifiedDataset<AdultEarningsClassificationType> dataset = AdultEarningsDatasetLoaders.getTrainingDatasetLoader("/adult.data-mixed.txt").getClassifiedDataset();
+		TrainingOptions parallelOptions = TrainingOptions.DEFAULT.withSplitEvaluationExecutor(POOL).withParallelThreshold(1);
+		
+		Id3Model<AdultEarningsClassificationType> serialModel = createModelService(TrainingOptions.DEFAULT).trainModel(dataset);
+		Id3Model<AdultEarningsClassificationType> parallelModel = createModelService(parallelOptions).trainModel(dataset);
+		
+		assertThat(parallelModel.toString(), is(equalTo(serialModel.toString())));
+		
+		Id3Model<AdultEarningsClassificationType> serialQuantisedModel = createQuantisedModelService(TrainingOptions.DEFAULT).trainModel(dataset);
+		Id3Model<AdultEarningsClassificationType> parallelQuantisedModel = createQuantisedModelService(parallelOptions.withForkJoinPool(POOL)).trainModel(dataset);
+		
+		assertThat(parallelQuantisedModel.toString(), is(equalTo(serialQuantisedModel.toString())));
+	}
+	
+	@Test
+	public void givenFullTrainingSetAndSharedPool_whenEvaluatingSplitsInParallel_thenModelIdenticalToSerialTraining() throws IOException{
+		ClassifiedDataset<AdultEarningsClassificationType> dataset = AdultEarningsDatasetLoaders.getTrainingDatasetLoader().getClassifiedDataset();
+		
+		Id3Model<AdultEarningsClassificationType> serialModel = createModelService(TrainingOptions.DEFAULT).trainModel(dataset);
+		
+		// the split evaluations of nodes grown in the pool are forked in the same pool
+		Id3Model<AdultEarningsClassificationType> sharedPoolModel = createModelService(TrainingOptions.DEFAULT.withForkJoinPool(POOL).withSplitEvaluationExecutor(POOL).withParallelThreshold(100)).trainModel(dataset);
+		
+		assertThat(sharedPoolModel.toString(), is(equalTo(serialModel.toString())));
+		assertThat(sharedPoolModel.countNodes(), is(equalTo(serialModel.countNodes())));
+		
+		ExecutorService splitExecutor = Executors.newFixedThreadPool(4);
+		try{
+			Id3Model<AdultEarningsClassificationType> separateExecutorModel = createModelService(TrainingOptions.DEFAULT.withSplitEvaluationExecutor(splitExecutor).withParallelThreshold(100)).trainModel(dataset);
+			
+			assertThat(separateExecutorModel.toString(), is(equalTo(serialModel.toString())));
+			assertThat(separateExecutorModel.countNodes(), is(equalTo(serialModel.countNodes())));
+		} finally{
+			splitExecutor.shutdown();
+		}
+	}
+	
+	@Test
+	public void givenTrainedModel_whenClassifyingDatasetInParallel_thenSameClassificationsAsSerialClassification() throws IOException{
+		DecisionTreeModelService<AdultEarningsClassificationType> service = createModelService(TrainingOptions.DEFAULT);
+		Id3Model<AdultEarningsClassificationType> model = service.trainModel(AdultEarningsDatasetLoaders.getTrainingDatasetLoader("/adult.data-mixed.txt").getClassifiedDataset());
+		ClassifiedDataset<AdultEarningsClassificationType> testData = AdultEarningsDatasetLoaders.getTestDatasetLoader().getClassifiedDataset();
+		
+		ClassifiedDataset<AdultEarningsClassificationType> serialClassifications = service.classifyDataset(testData, model);
+		ClassifiedDataset<AdultEarningsClassificationType> parallelClassifications = service.classifyDataset(testData, model, POOL);
+		
+		for (ClassifiedFeatureSet<AdultEarningsClassificationType> instance: testData.getInstances()){
+			assertThat(parallelClassifications.getInstance(instance.getId()).getClassification().getValue(), is(equalTo(serialClassifications.getInstance(instance.getId()).getClassification().getValue())));
+		}
+	}
+	
+	private static QuantisedDecisionTreeModelService<AdultEarningsClassificationType> createQuantisedModelService(TrainingOptions trainingOptions){
+		return new QuantisedDecisionTreeModelService<AdultEarningsClassificationType>(ImpurityProcessors.getGiniIndexImpurityProcessor(), ContinuousFeatureQuantisers.getConstantBucketQuantiser(4), 0.95, MissingFeatureClassifier.CLASSIFIERS.getHomogeniousMissingFeatureClassifier(), trainingOptions);
+	}
+	
+	private static DecisionTreeModelService<AdultEarningsClassificationType> createModelService(TrainingOptions trainingOptions){
+		return new DecisionTreeModelService<AdultEarningsClassificationType>(ImpurityProcessors.getEntropyImpurityProcessor(), ContinuousFeatureQuantisers.getAveragePivotQuantiser(), 0.95, MissingFeatureClassifier.CLASSIFIERS.getHomogeniousMissingFeatureClassifier(), trainingOptions);
+	}
+}
@@ -0,0 +1,85 @@
+package com.ahaines.machinelearning.main;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassificationType;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsDatasetLoaders;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantisers;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModel;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModel.ClassificationProbability;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModelService;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModelService.ClassifiedProbabilityDataSet;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesStatistics;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.equalTo;
+
+public class ParallelNaiveBayesIntegrationTest {
+
+	private static ExecutorService executor;
+
+	@BeforeClass
+	public static void beforeClass(){
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@AfterClass
+	public static void afterClass(){
+		executor.shutdown();
+	}
+
+	@Test
+	public void givenParallelService_whenTrainingOnAdultData_thenModelIdenticalToSerialTraining() throws IOException{
+		ClassifiedDataset<AdultEarningsClassificationType> trainingData = AdultEarningsDatasetLoaders.getTrainingDatasetLoader().getClassifiedDataset();
+		ClassifiedDataset<AdultEarningsClassificationType> testData = AdultEarningsDatasetLoaders.getTestDatasetLoader().getClassifiedDataset();
+
+		NaiveBayesModelService<AdultEarningsClassificationType> serialService = new NaiveBayesModelService<AdultEarningsClassificationType>(ContinuousFeatureQuantisers.getAveragePivotQuantiser());
+		NaiveBayesModelService<AdultEarningsClassificationType> parallelService = new NaiveBayesModelService<AdultEarningsClassificationType>(ContinuousFeatureQuantisers.getAveragePivotQuantiser(), executor, 7);
+
+		NaiveBayesStatistics<AdultEarningsClassificationType> serialStatistics = serialService.collectStatistics(trainingData);
+		NaiveBayesStatistics<AdultEarningsClassificationType> parallelStatistics = parallelService.collectStatistics(trainingData);
+
+		assertThat(parallelStatistics.getTotalInstancesSeen(), is(equalTo(serialStatistics.getTotalInstancesSeen())));
+		for (AdultEarningsClassificationType classification: AdultEarningsClassificationType.values()){
+			assertThat(parallelStatistics.getPriorCount(classification), is(equalTo(serialStatistics.getPriorCount(classification))));
+		}
+
+		NaiveBayesModel<AdultEarningsClassificationType> serialModel = serialStatistics.createModel();
+		NaiveBayesModel<AdultEarningsClassificationType> parallelModel = parallelStatistics.createModel();
+
+		for (ClassifiedFeatureSet<AdultEarningsClassificationType> instance: testData.getInstances()){
+			ClassificationProbability<AdultEarningsClassificationType> expected = serialModel.getClassification(instance);
+			ClassificationProbability<AdultEarningsClassificationType> classification = parallelModel.getClassification(instance);
+
+			assertThat(instance.toString(), classification.getValue(), is(equalTo(expected.getValue())));
+			assertThat(instance.toString(), classification.getProbability(), is(equalTo(expected.getProbability())));
+		}
+	}
+
+	@Test
+	public void givenTrainedModel_whenClassifyingDatasetInParallel_thenSameClassificationsAsSerialClassification() throws IOException{
+		NaiveBayesModelService<AdultEarningsClassificationType> service = new NaiveBayesModelService<AdultEarningsClassificationType>(ContinuousFeatureQuantisers.getConstantBucketQuantiser(4));
+		NaiveBayesModel<AdultEarningsClassificationType> model = service.trainModel(AdultEarningsDatasetLoaders.getTrainingDatasetLoader().getClassifiedDataset());
+		ClassifiedDataset<AdultEarningsClassificationType> testData = AdultEarningsDatasetLoaders.getTestDatasetLoader().getClassifiedDataset();
+
+		ClassifiedProbabilityDataSet<AdultEarningsClassificationType> serialClassifications = service.classifyDataset(testData, model);
+		ClassifiedProbabilityDataSet<AdultEarningsClassificationType> parallelClassifications = service.classifyDataset(testData, model, executor);
+
+		for (ClassifiedFeatureSet<AdultEarningsClassificationType> instance: testData.getInstances()){
+			ClassificationProbability<AdultEarningsClassificationType> expected = serialClassifications.getInstance(instance.getId()).getClassification();
+			ClassificationProbability<AdultEarningsClassificationType> classification = parallelClassifications.getInstance(instance.getId()).getClassification();
+
+			assertThat(instance.toString(), classification.getValue(), is(equalTo(expected.getValue())));
+			assertThat(instance.toString(), classification.getProbability(), is(equalTo(expected.getProbability())));
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package com.ahaines.machinelearning.main;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.ahaines.machinelearning.api.ModelService;
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassificationType;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsDatasetLoaders;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantisers;
+import com.ahaines.machinelearning.decisiontree.DecisionTreeModelService;
+import com.ahaines.machinelearning.decisiontree.Id3Model;
+import com.ahaines.machinelearning.decisiontree.ImpurityProcessor.ImpurityProcessors;
+import com.ahaines.machinelearning.decisiontree.MissingFeatureClassifier;
+import com.ahaines.machinelearning.decisiontree.TrainingOptions;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.equalTo;
+
+public class PresortedDecisionTreeIntegrationTest extends SimpleIntegrationTest<Id3Model<AdultEarningsClassificationType>>{
+
+	@Override
+	protected ModelService<Id3Model<AdultEarningsClassificationType>, AdultEarningsClassificationType> getModelService() {
+		return createModelService(TrainingOptions.DEFAULT.withPresortedContinuousFeatures(true));
+	}
+	
+	@Test
+	public void givenPresortedTraining_whenCallingTrainModel_thenModelIdenticalToUnsortedTraining() throws IOException{
+		ClassifiedDataset<AdultEarningsClassificationType> dataset = AdultEarningsDatasetLoaders.getTrainingDatasetLoader().getClassifiedDataset();
+		
+		Id3Model<AdultEarningsClassificationType> unsortedModel = createModelService(TrainingOptions.DEFAULT).trainModel(dataset);
+		Id3Model<AdultEarningsClassificationType> presortedModel = getModelService().trainModel(dataset);
+		
+		assertThat(presortedModel.toString(), is(equalTo(unsortedModel.toString())));
+		assertThat(presortedModel.countNodes(), is(equalTo(unsortedModel.countNodes())));
+	}
+	
+	private static DecisionTreeModelService<AdultEarningsClassificationType> createModelService(TrainingOptions trainingOptions){
+		return new DecisionTreeModelService<AdultEarningsClassificationType>(ImpurityProcessors.getEntropyImpurityProcessor(), ContinuousFeatureQuantisers.getConstantBucketQuantiser(4), 0.95, MissingFeatureClassifier.CLASSIFIERS.getHomogeniousMissingFeatureClassifier(), trainingOptions);
+	}
+}
@@ -1,6 +1,7 @@
 package com.ahaines.machinelearning.main;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -13,6 +14,7 @@ import com.ahaines.machinelearning.api.dataset.Identifier;
 import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassification;
 import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassificationType;
 import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsDatasetLoaders;
+import com.google.common.collect.Lists;
 
 import static org.junit.Assert.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -90,4 +92,25 @@ public abstract class SimpleIntegrationTest<T extends Model> {
 			}
 		}
 	}
+	
+	@Test
+	public void givenMixedFeatureDifferences_whenCallingClassifyBatch_thenSameClassificationsAsClassifyDataset() throws IOException{
+		ModelService<T, AdultEarningsClassificationType> service = getModelService();
+		
+		ClassifiedDataset<AdultEarningsClassificationType> dataset = AdultEarningsDatasetLoaders.getTrainingDatasetLoader(TEST_LOCATION_SMALL_MIXED).getClassifiedDataset();
+		ClassifiedDataset<AdultEarningsClassificationType> testdataset = AdultEarningsDatasetLoaders.getTrainingDatasetLoader(TEST_LOCATION_SMALL_MIXED_TEST).getClassifiedDataset();
+		T model = service.trainModel(dataset);
+		
+		List<ClassifiedFeatureSet<AdultEarningsClassificationType>> batch = Lists.newArrayList(testdataset.getInstances());
+		int[] classificationOrdinals = new int[batch.size()];
+		double[] classificationProbabilities = new double[batch.size()];
+		service.classifyBatch(batch, model, classificationOrdinals, classificationProbabilities);
+		
+		ClassifiedDataset<AdultEarningsClassificationType> classifiedInstances = service.classifyDataset(testdataset, model);
+		for (int i = 0; i < batch.size(); i++){
+			ClassifiedFeatureSet<AdultEarningsClassificationType> featureSet = classifiedInstances.getInstance(batch.get(i).getId());
+			
+			assertThat(""+featureSet, classificationOrdinals[i], is(equalTo(featureSet.getClassification().getValue().ordinal())));
+		}
+	}
 }
@@ -0,0 +1,57 @@
+package com.ahaines.machinelearning.main;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ahaines.machinelearning.api.dataset.ClassifiedDatasetLoader;
+import com.ahaines.machinelearning.api.dataset.Identifier;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassificationType;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsDatasetLoaders;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantisers;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModel;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModel.ClassificationProbability;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModelService;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModelService.ClassifiedProbabilityDataSet;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.equalTo;
+
+public class StreamingClassificationIntegrationTest {
+
+	@Test
+	public void givenTestFile_whenClassifyingFile_thenPredictionsWrittenForEveryInstanceInOrder() throws IOException, URISyntaxException{
+		NaiveBayesModelService<AdultEarningsClassificationType> service = new NaiveBayesModelService<AdultEarningsClassificationType>(ContinuousFeatureQuantisers.getConstantBucketQuantiser(4));
+		NaiveBayesModel<AdultEarningsClassificationType> model = service.trainModel(AdultEarningsDatasetLoaders.getTrainingDatasetLoader().getClassifiedDataset());
+
+		Path input = ClassifiedDatasetLoader.UTIL.getPath(AdultEarningsDatasetLoaders.class.getResource("/adult.test.txt").toURI());
+		ClassifiedProbabilityDataSet<AdultEarningsClassificationType> expected = service.classifyDataset(AdultEarningsDatasetLoaders.getDatasetLoader(input).getClassifiedDataset(), model);
+
+		for (int batchSize: Arrays.asList(1, 1000, 100000)){
+			Path output = Files.createTempFile("predictions", ".csv");
+			try{
+				long numClassified = AdultEarningsDatasetLoaders.classifyFile(input, output, service, model, batchSize);
+				List<String> lines = Files.readAllLines(output, Charset.forName("UTF-8"));
+
+				assertThat(numClassified, is(equalTo((long)lines.size())));
+				for (int i = 0; i < lines.size(); i++){
+					String[] prediction = lines.get(i).split(",");
+					ClassificationProbability<AdultEarningsClassificationType> expectedClassification = expected.getInstance(Identifier.FACTORY.createIdentifier(i)).getClassification();
+
+					assertThat(prediction[0], is(equalTo(Integer.toString(i))));
+					assertThat(prediction[1], is(equalTo(expectedClassification.getValue().name())));
+					assertThat(Double.parseDouble(prediction[2]), is(equalTo(expectedClassification.getProbability())));
+				}
+			} finally{
+				Files.delete(output);
+			}
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.ahaines.machinelearning.main;
+
+import java.io.IOException;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsClassificationType;
+import com.ahaines.machinelearning.api.dataset.adultearnings.AdultEarningsDatasetLoaders;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantisers;
+import com.ahaines.machinelearning.decisiontree.DecisionTreeModelService;
+import com.ahaines.machinelearning.decisiontree.Id3Model;
+import com.ahaines.machinelearning.decisiontree.Id3ThresholdPath;
+import com.ahaines.machinelearning.decisiontree.ImpurityProcessor;
+import com.ahaines.machinelearning.decisiontree.ImpurityProcessor.ImpurityProcessors;
+import com.ahaines.machinelearning.decisiontree.MissingFeatureClassifier;
+import com.ahaines.machinelearning.decisiontree.QuantisedDecisionTreeModelService;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class ThresholdPathDecisionTreeIntegrationTest {
+
+	private static final double[] THRESHOLDS = {1, 0.95, 0.9, 0.85, 0.8, 0.75};
+
+	private static ClassifiedDataset<AdultEarningsClassificationType> trainingData;
+
+	@BeforeClass
+	public static void beforeClass() throws IOException{
+		trainingData = AdultEarningsDatasetLoaders.getTrainingDatasetLoader().getClassifiedDataset();
+	}
+
+	@Test
+	public void givenPathGrownAtOne_whenGettingModelForEachThreshold_thenSameTreeAsTrainingWithThatThreshold(){
+		ImpurityProcessor impurityProcessor = ImpurityProcessors.getEntropyImpurityProcessor();
+		Id3ThresholdPath<AdultEarningsClassificationType> path = new DecisionTreeModelService<AdultEarningsClassificationType>(impurityProcessor, ContinuousFeatureQuantisers.getConstantBucketQuantiser(10), 1, MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier()).trainThresholdPath(trainingData);
+
+		int previousSize = Integer.MAX_VALUE;
+		for (double threshold: THRESHOLDS){
+			Id3Model<AdultEarningsClassificationType> expectedModel = new DecisionTreeModelService<AdultEarningsClassificationType>(impurityProcessor, ContinuousFeatureQuantisers.getConstantBucketQuantiser(10), threshold, MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier()).trainModel(trainingData);
+			Id3Model<AdultEarningsClassificationType> model = path.getModel(threshold);
+
+			assertThat(model.toString(), is(equalTo(expectedModel.toString())));
+			assertThat(model.countNodes(), is(lessThanOrEqualTo(previousSize)));
+			previousSize = model.countNodes();
+		}
+	}
+
+	@Test
+	public void givenQuantisedPath_whenGettingModelForLowerThreshold_thenSameTreeAsTrainingWithThatThreshold(){
+		ImpurityProcessor impurityProcessor = ImpurityProcessors.getGiniIndexImpurityProcessor();
+		Id3ThresholdPath<AdultEarningsClassificationType> path = new QuantisedDecisionTreeModelService<AdultEarningsClassificationType>(impurityProcessor, ContinuousFeatureQuantisers.getAveragePivotQuantiser(), 0.95, MissingFeatureClassifier.CLASSIFIERS.getHomogeniousMissingFeatureClassifier()).trainThresholdPath(trainingData);
+
+		Id3Model<AdultEarningsClassificationType> expectedModel = new QuantisedDecisionTreeModelService<AdultEarningsClassificationType>(impurityProcessor, ContinuousFeatureQuantisers.getAveragePivotQuantiser(), 0.8, MissingFeatureClassifier.CLASSIFIERS.getHomogeniousMissingFeatureClassifier()).trainModel(trainingData);
+
+		assertThat(path.getModel(0.8).toString(), is(equalTo(expectedModel.toString())));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void givenPath_whenGettingModelAboveGrownThreshold_thenIllegalArgumentExceptionThrown(){
+		Id3ThresholdPath<AdultEarningsClassificationType> path = new DecisionTreeModelService<AdultEarningsClassificationType>(ImpurityProcessors.getEntropyImpurityProcessor(), ContinuousFeatureQuantisers.getConstantBucketQuantiser(10), 0.9, MissingFeatureClassifier.CLASSIFIERS.getMostRatedMissingFeatureClassifier()).trainThresholdPath(trainingData);
+
+		path.getModel(0.95);
+	}
+}
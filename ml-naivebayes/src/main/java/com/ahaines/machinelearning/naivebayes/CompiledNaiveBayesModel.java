@@ -0,0 +1,666 @@
+package com.ahaines.machinelearning.naivebayes;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.ahaines.machinelearning.api.ModelService;
+import com.ahaines.machinelearning.api.dataset.FeatureSchema;
+import com.ahaines.machinelearning.api.dataset.FeatureSet;
+import com.ahaines.machinelearning.api.dataset.columnar.ColumnarClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.columnar.FeatureColumn;
+import com.ahaines.machinelearning.api.dataset.columnar.FeatureColumn.NumericColumn;
+import com.ahaines.machinelearning.api.dataset.columnar.FeatureColumn.OrdinalColumn;
+import com.ahaines.machinelearning.api.dataset.quantiser.RangeFeature;
+import com.ahaines.machinelearning.api.util.ModelFiles;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModel.ClassificationProbability;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModel.Probability;
+import com.haines.ml.model.Feature;
+import com.haines.ml.model.Feature.Features;
+
+/**
+ * A read only form of a {@link NaiveBayesModel} that scores instances in log space. Every probability of the model is
+ * held as a logarithm in a <code>double[classification][feature][value]</code> table, so scoring an instance is a loop
+ * of array reads and additions that does not underflow however many features the instance has.
+ *
+ * The value index of each feature is found as follows:
+ *
+ * ordinal:	The feature is an enum and its ordinal is the index.
+ *
+ * discrete:	Any other discrete feature is looked up in a map of the values seen when training.
+ *
+ * range:	The feature was quantised into non overlapping {@link RangeFeature}s whose bounds are held as sorted doubles,
+ * 			and the index of the range containing the value is found with a binary search.
+ *
+ * generic:	Ranges that cannot be held exactly as doubles, or that overlap, fall back to the probabilities of the model
+ * 			itself.
+ *
+ * Values that were never seen when training score the model's negligible probability, missing features are ignored and
+ * ties between classifications are broken in favour of the lowest ordinal. Features of
+ * {@link ColumnarClassifiedDataset.Row} instances are read straight from the primitive columns.
+ *
+ * A compiled model can be saved with {@link #write(Path)} and loaded again with {@link #load(Path, Class)}. The file holds
+ * the probability tables and range bounds as they are laid out here, so loading maps the file and copies each table out
+ * in bulk. Only models whose features are all ordinal or range features can be saved, as the values of other features
+ * are arbitrary objects.
+ *
+ * @author andrewhaines
+ *
+ * @param <C>
+ */
+public class CompiledNaiveBayesModel<C extends Enum<C>> {
+
+	private static final byte ORDINAL_FEATURE = 0;
+	private static final byte DISCRETE_FEATURE = 1;
+	private static final byte RANGE_FEATURE = 2;
+	private static final byte GENERIC_FEATURE = 3;
+
+	private static final int MAGIC = 0x4E42434D; // NBCM
+	private static final int FORMAT_VERSION = 1;
+
+	private static final int NO_CLASSIFICATION = -1;
+	private static final int NOT_IN_MODEL = -1;
+	private static final int MISSING_VALUE = -1;
+	private static final int UNSEEN_VALUE = -2;
+
+	private static final double LOG_NEGLIGABLE_PROBABILITY = Math.log(NaiveBayesModel.DEFAULT_NEGLIGABLE_PROBABILITY);
+
+	private final C[] classificationValues;
+	private final double[] logPriors;
+	private final boolean[] scoredClassifications;
+	private final Class<? extends Feature<?>>[] featureTypes;
+
+	// per feature
+	private final byte[] featureKinds;
+	private final int[] numValues;
+	private final Map<Feature<?>, Integer>[] discreteValueIndexes;
+	private final double[][] lowerBounds;
+	private final double[][] upperBounds;
+	private final boolean[][] inclusiveUpperBounds;
+	private final double[][] logPriorFeatureProbabilities;
+
+	// per classification and feature
+	private final double[][][] logLikelihoods;
+	private final Probability[][] genericLikelihoods;
+	private final Probability[] genericPriors;
+
+	private volatile SchemaFeatures schemaFeatures;
+
+	private CompiledNaiveBayesModel(C[] classificationValues, List<Class<? extends Feature<?>>> featureTypes){
+		this.classificationValues = classificationValues;
+
+		int numClassifications = (classificationValues == null)? 0: classificationValues.length;
+		int numFeatures = featureTypes.size();
+
+		this.logPriors = new double[numClassifications];
+		this.scoredClassifications = new boolean[numClassifications];
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Class<? extends Feature<?>>[] featureTypeArray = featureTypes.toArray(new Class[numFeatures]);
+		this.featureTypes = featureTypeArray;
+
+		this.featureKinds = new byte[numFeatures];
+		this.numValues = new int[numFeatures];
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Map<Feature<?>, Integer>[] discreteValueIndexes = new Map[numFeatures];
+		this.discreteValueIndexes = discreteValueIndexes;
+		this.lowerBounds = new double[numFeatures][];
+		this.upperBounds = new double[numFeatures][];
+		this.inclusiveUpperBounds = new boolean[numFeatures][];
+		this.logPriorFeatureProbabilities = new double[numFeatures][];
+
+		this.logLikelihoods = new double[numClassifications][numFeatures][];
+		this.genericLikelihoods = new Probability[numClassifications][numFeatures];
+		this.genericPriors = new Probability[numFeatures];
+	}
+
+	static <C extends Enum<C>> CompiledNaiveBayesModel<C> compile(NaiveBayesModel<C> model){
+		Map<C, Double> priors = model.getPriorClassificationProbabilities();
+		Map<C, Map<Class<? extends Feature<?>>, Probability>> likelihoods = model.getLikelihoodProbabilities();
+		Map<Class<? extends Feature<?>>, Probability> priorFeatures = model.getPriorFeatureProbabilities();
+
+		C[] classificationValues = null;
+		if (!priors.isEmpty()){
+			classificationValues = priors.keySet().iterator().next().getDeclaringClass().getEnumConstants();
+		}
+
+		Set<Class<? extends Feature<?>>> featureTypes = new LinkedHashSet<Class<? extends Feature<?>>>(priorFeatures.keySet());
+		for (Map<Class<? extends Feature<?>>, Probability> classificationLikelihoods: likelihoods.values()){
+			featureTypes.addAll(classificationLikelihoods.keySet());
+		}
+
+		CompiledNaiveBayesModel<C> compiled = new CompiledNaiveBayesModel<C>(classificationValues, new ArrayList<Class<? extends Feature<?>>>(featureTypes));
+
+		Arrays.fill(compiled.logPriors, Double.NEGATIVE_INFINITY);
+		for (Entry<C, Double> prior: priors.entrySet()){
+			compiled.logPriors[prior.getKey().ordinal()] = Math.log(prior.getValue());
+		}
+		for (C classification: likelihoods.keySet()){
+			compiled.scoredClassifications[classification.ordinal()] = true;
+		}
+
+		for (int feature = 0; feature < compiled.featureTypes.length; feature++){
+			Class<? extends Feature<?>> featureType = compiled.featureTypes[feature];
+
+			List<Probability> classificationProbabilities = new ArrayList<Probability>();
+			for (int classification = 0; classification < compiled.logPriors.length; classification++){
+				Map<Class<? extends Feature<?>>, Probability> classificationLikelihoods = likelihoods.get(compiled.classificationValues[classification]);
+				classificationProbabilities.add((classificationLikelihoods == null)? null: classificationLikelihoods.get(featureType));
+			}
+			compiled.compileFeature(feature, classificationProbabilities, priorFeatures.get(featureType));
+		}
+
+		return compiled;
+	}
+
+	/**
+	 * Writes the compiled model to the file
+	 * @param file
+	 * @throws IOException
+	 * @throws UnsupportedOperationException if a feature of the model is not an ordinal or range feature
+	 */
+	public void write(Path file) throws IOException{
+		for (int feature = 0; feature < featureTypes.length; feature++){
+			if (featureKinds[feature] != ORDINAL_FEATURE && featureKinds[feature] != RANGE_FEATURE){
+				throw new UnsupportedOperationException("feature: "+featureTypes[feature].getName()+" cannot be written as its values are not enums or disjoint ranges");
+			}
+		}
+
+		DataOutputStream out = ModelFiles.create(file, MAGIC, FORMAT_VERSION);
+		try{
+			ModelFiles.writeClass(out, (classificationValues == null)? null: classificationValues[0].getDeclaringClass());
+			out.writeInt(logPriors.length);
+			ModelFiles.writeDoubles(out, logPriors);
+			ModelFiles.writeBooleans(out, scoredClassifications);
+
+			out.writeInt(featureTypes.length);
+			for (Class<? extends Feature<?>> featureType: featureTypes){
+				ModelFiles.writeClass(out, featureType);
+			}
+			for (int feature = 0; feature < featureTypes.length; feature++){
+				out.writeByte(featureKinds[feature]);
+				out.writeInt(numValues[feature]);
+				if (featureKinds[feature] == RANGE_FEATURE){
+					ModelFiles.writeDoubles(out, lowerBounds[feature]);
+					ModelFiles.writeDoubles(out, upperBounds[feature]);
+					ModelFiles.writeBooleans(out, inclusiveUpperBounds[feature]);
+				}
+				out.writeBoolean(logPriorFeatureProbabilities[feature] != null);
+				if (logPriorFeatureProbabilities[feature] != null){
+					ModelFiles.writeDoubles(out, logPriorFeatureProbabilities[feature]);
+				}
+				for (int classification = 0; classification < logPriors.length; classification++){
+					ModelFiles.writeDoubles(out, logLikelihoods[classification][feature]);
+				}
+			}
+		} finally{
+			out.close();
+		}
+	}
+
+	/**
+	 * Loads a model saved with {@link #write(Path)}
+	 * @param file
+	 * @param classificationType
+	 * @return
+	 * @throws IOException if the file is not a saved model or was trained with a different classification type
+	 */
+	@SuppressWarnings("unchecked")
+	public static <C extends Enum<C>> CompiledNaiveBayesModel<C> load(Path file, Class<C> classificationType) throws IOException{
+		ByteBuffer buffer = ModelFiles.map(file, MAGIC, FORMAT_VERSION);
+		try{
+			Class<?> fileClassificationType = ModelFiles.readClass(buffer);
+			if (fileClassificationType != null && fileClassificationType != classificationType){
+				throw new IOException(file+" classifies "+fileClassificationType.getName()+" not "+classificationType.getName());
+			}
+			C[] classificationValues = (fileClassificationType == null)? null: classificationType.getEnumConstants();
+			int numClassifications = buffer.getInt();
+			int expectedClassifications = (classificationValues == null)? 0: classificationValues.length;
+			if (numClassifications != expectedClassifications){
+				throw new IOException(file+" was saved with "+numClassifications+" classifications but "+expectedClassifications+" were expected");
+			}
+			double[] logPriors = new double[numClassifications];
+			boolean[] scoredClassifications = new boolean[numClassifications];
+			ModelFiles.readDoubles(buffer, logPriors);
+			ModelFiles.readBooleans(buffer, scoredClassifications);
+
+			int numFeatures = ModelFiles.readLength(buffer, file, 4); // each name is preceded by its length
+			List<Class<? extends Feature<?>>> featureTypes = new ArrayList<Class<? extends Feature<?>>>(numFeatures);
+			for (int feature = 0; feature < numFeatures; feature++){
+				featureTypes.add((Class<? extends Feature<?>>)ModelFiles.readClass(buffer));
+			}
+
+			CompiledNaiveBayesModel<C> compiled = new CompiledNaiveBayesModel<C>(classificationValues, featureTypes);
+			System.arraycopy(logPriors, 0, compiled.logPriors, 0, numClassifications);
+			System.arraycopy(scoredClassifications, 0, compiled.scoredClassifications, 0, numClassifications);
+			for (int feature = 0; feature < numFeatures; feature++){
+				compiled.readFeature(feature, buffer, file);
+			}
+			return compiled;
+		} catch (BufferUnderflowException e){
+			throw new IOException(file+" is truncated", e);
+		}
+	}
+
+	private void readFeature(int feature, ByteBuffer buffer, Path file) throws IOException{
+		featureKinds[feature] = buffer.get();
+		int values = ModelFiles.readLength(buffer, file, 8 * logPriors.length); // the likelihoods of every classification follow
+		numValues[feature] = values;
+		if (featureKinds[feature] == RANGE_FEATURE){
+			ModelFiles.checkRemaining(buffer, file, values, 17); // two bounds and a flag per range
+			lowerBounds[feature] = new double[values];
+			upperBounds[feature] = new double[values];
+			inclusiveUpperBounds[feature] = new boolean[values];
+			ModelFiles.readDoubles(buffer, lowerBounds[feature]);
+			ModelFiles.readDoubles(buffer, upperBounds[feature]);
+			ModelFiles.readBooleans(buffer, inclusiveUpperBounds[feature]);
+		}
+		if (buffer.get() != 0){
+			ModelFiles.checkRemaining(buffer, file, values, 8);
+			logPriorFeatureProbabilities[feature] = new double[values];
+			ModelFiles.readDoubles(buffer, logPriorFeatureProbabilities[feature]);
+		}
+		for (int classification = 0; classification < logPriors.length; classification++){
+			logLikelihoods[classification][feature] = new double[values];
+			ModelFiles.readDoubles(buffer, logLikelihoods[classification][feature]);
+		}
+	}
+
+	public ClassificationProbability<C> getClassification(FeatureSet instance){
+		double[] probability = new double[1];
+		int ordinal = classify(instance, new double[logPriors.length], probability, 0);
+
+		return new ClassificationProbability<C>(instance.getId(), (ordinal == NO_CLASSIFICATION)? null: classificationValues[ordinal], probability[0]);
+	}
+
+	/**
+	 * Returns the ordinal of the most probable classification of the instance, or -1 if the model has no classifications
+	 * @param instance
+	 * @return
+	 */
+	public int getClassificationOrdinal(FeatureSet instance){
+		return classify(instance, new double[logPriors.length], null, 0);
+	}
+
+	/**
+	 * Writes the ordinal of the most probable classification of each instance into the supplied array, or -1 if the model
+	 * has no classifications. When supplied, the probability of each classification is written to the same index.
+	 * @param instances
+	 * @param classificationOrdinals
+	 * @param classificationProbabilities may be null if the probabilities are not required
+	 */
+	public void classifyBatch(List<? extends FeatureSet> instances, int[] classificationOrdinals, double[] classificationProbabilities){
+		ModelService.UTIL.checkBatch(instances.size(), classificationOrdinals, classificationProbabilities);
+
+		double[] logScores = new double[logPriors.length];
+		for (int i = 0; i < instances.size(); i++){
+			classificationOrdinals[i] = classify(instances.get(i), logScores, classificationProbabilities, i);
+		}
+	}
+
+	/*
+	 * Accumulates the log score of every classification into logScores and returns the ordinal of the highest, writing
+	 * its probability to probabilities[index] unless the array is null
+	 */
+	private int classify(FeatureSet instance, double[] logScores, double[] probabilities, int index){
+		FeatureSchema schema = instance.getSchema();
+		int[] features = getFeatures(schema);
+
+		ColumnarClassifiedDataset<?> dataset = null;
+		int row = 0;
+		if (instance instanceof ColumnarClassifiedDataset.Row){
+			ColumnarClassifiedDataset<?>.Row columnarRow = (ColumnarClassifiedDataset<?>.Row)instance;
+			dataset = columnarRow.getDataset();
+			row = columnarRow.getRow();
+		}
+
+		int numClassifications = logScores.length;
+		System.arraycopy(logPriors, 0, logScores, 0, numClassifications);
+
+		double logPriorFeatureProduct = 0;
+		boolean hasPriorFeatureProduct = true;
+
+		for (int slot = 0; slot < features.length; slot++){
+			int feature = features[slot];
+			FeatureColumn column = (dataset == null)? null: dataset.getColumn(slot);
+
+			if (feature == NOT_IN_MODEL){
+				if (!isMissing(instance, column, slot, row)){
+					// no probabilities were determined for this feature so its likelihood is very small
+					for (int classification = 0; classification < numClassifications; classification++){
+						logScores[classification] += LOG_NEGLIGABLE_PROBABILITY;
+					}
+					hasPriorFeatureProduct = false;
+				}
+				continue;
+			}
+
+			if (featureKinds[feature] == GENERIC_FEATURE){
+				Feature<?> featureValue = (column != null)? column.getFeature(row): instance.getFeature(slot);
+				if (featureValue == Features.MISSING){
+					continue;
+				}
+				for (int classification = 0; classification < numClassifications; classification++){
+					Probability probability = genericLikelihoods[classification][feature];
+					logScores[classification] += (probability == null)? LOG_NEGLIGABLE_PROBABILITY: Math.log(probability.getProbability(featureValue));
+				}
+				if (genericPriors[feature] == null){
+					hasPriorFeatureProduct = false;
+				} else{
+					logPriorFeatureProduct += Math.log(genericPriors[feature].getProbability(featureValue));
+				}
+				continue;
+			}
+
+			int value = (column != null)? getValueIndex(feature, column, row): getValueIndex(feature, instance.getFeature(slot));
+			if (value == MISSING_VALUE){
+				continue; // we cannot use this feature to contribute to the probability as we dont have it
+			} else if (value == UNSEEN_VALUE){
+				for (int classification = 0; classification < numClassifications; classification++){
+					logScores[classification] += LOG_NEGLIGABLE_PROBABILITY;
+				}
+				logPriorFeatureProduct += LOG_NEGLIGABLE_PROBABILITY;
+			} else{
+				for (int classification = 0; classification < numClassifications; classification++){
+					logScores[classification] += logLikelihoods[classification][feature][value];
+				}
+				if (logPriorFeatureProbabilities[feature] == null){
+					hasPriorFeatureProduct = false;
+				} else{
+					logPriorFeatureProduct += logPriorFeatureProbabilities[feature][value];
+				}
+			}
+		}
+
+		int maxClassification = NO_CLASSIFICATION;
+		double maxLogScore = Double.NEGATIVE_INFINITY;
+		for (int classification = 0; classification < numClassifications; classification++){
+			if (scoredClassifications[classification] && logScores[classification] > maxLogScore){
+				maxLogScore = logScores[classification];
+				maxClassification = classification;
+			}
+		}
+
+		if (maxClassification == NO_CLASSIFICATION){
+			// just use the prior probabilities if there is no further information
+			for (int classification = 0; classification < numClassifications; classification++){
+				if (logPriors[classification] > maxLogScore){
+					maxLogScore = logPriors[classification];
+					maxClassification = classification;
+				}
+			}
+		}
+
+		if (probabilities != null){
+			if (maxClassification == NO_CLASSIFICATION){
+				probabilities[index] = 0;
+			} else if (!hasPriorFeatureProduct){
+				throw new IllegalArgumentException("the model has no prior probabilities for a feature of instance: "+instance.getId());
+			} else{
+				probabilities[index] = Math.exp(maxLogScore - logPriorFeatureProduct);
+			}
+		}
+		return maxClassification;
+	}
+
+	private boolean isMissing(FeatureSet instance, FeatureColumn column, int slot, int row){
+		if (column != null){
+			return column.isMissing(row);
+		}
+		return instance.getFeature(slot) == Features.MISSING;
+	}
+
+	private int getValueIndex(int feature, FeatureColumn column, int row){
+		if (column.isMissing(row)){
+			return MISSING_VALUE;
+		}
+		switch (featureKinds[feature]){
+			case ORDINAL_FEATURE:
+				if (column instanceof OrdinalColumn){
+					return getOrdinalIndex(feature, ((OrdinalColumn)column).getOrdinal(row));
+				}
+				break;
+			case RANGE_FEATURE:
+				if (column instanceof NumericColumn){
+					return getRangeIndex(feature, ((NumericColumn)column).getDouble(row));
+				}
+				break;
+		}
+		return getValueIndex(feature, column.getFeature(row));
+	}
+
+	private int getValueIndex(int feature, Feature<?> featureValue){
+		if (featureValue == Features.MISSING){
+			return MISSING_VALUE;
+		}
+		switch (featureKinds[feature]){
+			case ORDINAL_FEATURE:
+				if (featureTypes[feature].isInstance(featureValue)){
+					return getOrdinalIndex(feature, ((Enum<?>)featureValue).ordinal());
+				}
+				return UNSEEN_VALUE;
+			case RANGE_FEATURE:
+				return getRangeIndex(feature, ((Number)featureValue.getValue()).doubleValue());
+			default:
+				Integer value = discreteValueIndexes[feature].get(featureValue);
+				return (value == null)? UNSEEN_VALUE: value;
+		}
+	}
+
+	private int getOrdinalIndex(int feature, int ordinal){
+		if (ordinal >= numValues[feature]){
+			return UNSEEN_VALUE;
+		}
+		return ordinal;
+	}
+
+	private int getRangeIndex(int feature, double value){
+		double[] featureLowerBounds = lowerBounds[feature];
+
+		// find the last range whose lower bound is not above the value. No other range can contain it
+		int low = 0;
+		int high = featureLowerBounds.length - 1;
+		int candidate = UNSEEN_VALUE;
+		while (low <= high){
+			int mid = (low + high) >>> 1;
+			if (featureLowerBounds[mid] <= value){
+				candidate = mid;
+				low = mid + 1;
+			} else{
+				high = mid - 1;
+			}
+		}
+		if (candidate == UNSEEN_VALUE){
+			return UNSEEN_VALUE;
+		}
+		if (inclusiveUpperBounds[feature][candidate]? value <= upperBounds[feature][candidate]: value < upperBounds[feature][candidate]){
+			return candidate;
+		}
+		return UNSEEN_VALUE;
+	}
+
+	/*
+	 * Features are resolved once per schema. The mapping is immutable so it can be swapped in when a different schema is
+	 * seen without any locking.
+	 */
+	private int[] getFeatures(FeatureSchema schema){
+		SchemaFeatures currentFeatures = schemaFeatures;
+		if (currentFeatures == null || currentFeatures.schema != schema){
+			Map<Class<? extends Feature<?>>, Integer> featureIndexes = new IdentityHashMap<Class<? extends Feature<?>>, Integer>();
+			for (int feature = 0; feature < featureTypes.length; feature++){
+				featureIndexes.put(featureTypes[feature], feature);
+			}
+
+			int[] features = new int[schema.size()];
+			for (int slot = 0; slot < features.length; slot++){
+				Integer feature = featureIndexes.get(schema.getFeatureType(slot));
+				features[slot] = (feature == null)? NOT_IN_MODEL: feature;
+			}
+			currentFeatures = new SchemaFeatures(schema, features);
+			schemaFeatures = currentFeatures;
+		}
+		return currentFeatures.features;
+	}
+
+	private void compileFeature(int feature, List<Probability> classificationProbabilities, Probability priorProbability){
+		Class<? extends Feature<?>> featureType = featureTypes[feature];
+
+		List<Feature<?>> values = new ArrayList<Feature<?>>();
+		Set<Feature<?>> seenValues = new LinkedHashSet<Feature<?>>();
+		for (Probability probability: classificationProbabilities){
+			if (probability != null){
+				seenValues.addAll(probability.getValueProbabilities().keySet());
+			}
+		}
+		if (priorProbability != null){
+			seenValues.addAll(priorProbability.getValueProbabilities().keySet());
+		}
+
+		if (featureType.isEnum()){
+			featureKinds[feature] = ORDINAL_FEATURE;
+			values.addAll(Arrays.asList((Feature<?>[])featureType.getEnumConstants()));
+		} else if (isRangeFeature(seenValues)){
+			featureKinds[feature] = RANGE_FEATURE;
+			values.addAll(seenValues);
+			Collections.sort(values, LOWER_BOUND_COMPARATOR);
+
+			lowerBounds[feature] = new double[values.size()];
+			upperBounds[feature] = new double[values.size()];
+			inclusiveUpperBounds[feature] = new boolean[values.size()];
+			for (int value = 0; value < values.size(); value++){
+				RangeFeature<?> range = (RangeFeature<?>)values.get(value);
+				lowerBounds[feature][value] = range.getLowerBound().doubleValue();
+				upperBounds[feature][value] = range.getUpperBound().doubleValue();
+				inclusiveUpperBounds[feature][value] = range.isInclusive();
+			}
+			if (!isDisjoint(feature)){
+				featureKinds[feature] = GENERIC_FEATURE;
+			}
+		} else if (!hasRangeFeature(seenValues)){
+			featureKinds[feature] = DISCRETE_FEATURE;
+			values.addAll(seenValues);
+
+			Map<Feature<?>, Integer> valueIndexes = new HashMap<Feature<?>, Integer>();
+			for (int value = 0; value < values.size(); value++){
+				valueIndexes.put(values.get(value), value);
+			}
+			discreteValueIndexes[feature] = valueIndexes;
+		} else{
+			featureKinds[feature] = GENERIC_FEATURE;
+		}
+
+		if (featureKinds[feature] == GENERIC_FEATURE){
+			lowerBounds[feature] = null;
+			upperBounds[feature] = null;
+			inclusiveUpperBounds[feature] = null;
+			for (int classification = 0; classification < classificationProbabilities.size(); classification++){
+				genericLikelihoods[classification][feature] = classificationProbabilities.get(classification);
+			}
+			genericPriors[feature] = priorProbability;
+			return;
+		}
+
+		numValues[feature] = values.size();
+		for (int classification = 0; classification < classificationProbabilities.size(); classification++){
+			logLikelihoods[classification][feature] = getLogProbabilities(classificationProbabilities.get(classification), values);
+		}
+		if (priorProbability != null){
+			logPriorFeatureProbabilities[feature] = getLogProbabilities(priorProbability, values);
+		}
+	}
+
+	private static double[] getLogProbabilities(Probability probability, List<Feature<?>> values){
+		double[] logProbabilities = new double[values.size()];
+		Arrays.fill(logProbabilities, LOG_NEGLIGABLE_PROBABILITY);
+
+		if (probability != null){
+			Map<? extends Feature<?>, Double> valueProbabilities = probability.getValueProbabilities();
+			for (int value = 0; value < logProbabilities.length; value++){
+				Double valueProbability = valueProbabilities.get(values.get(value));
+				if (valueProbability != null){
+					logProbabilities[value] = Math.log(valueProbability);
+				}
+			}
+		}
+		return logProbabilities;
+	}
+
+	/*
+	 * Only ranges whose bounds survive the conversion to a double are compiled so that comparisons are exact.
+	 */
+	private static boolean isRangeFeature(Set<Feature<?>> values){
+		if (values.isEmpty()){
+			return false;
+		}
+		for (Feature<?> value: values){
+			if (!(value instanceof RangeFeature)){
+				return false;
+			}
+			RangeFeature<?> range = (RangeFeature<?>)value;
+			if (!isExactDouble(range.getLowerBound()) || !isExactDouble(range.getUpperBound())){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean hasRangeFeature(Set<Feature<?>> values){
+		for (Feature<?> value: values){
+			if (value instanceof RangeFeature){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isExactDouble(Number value){
+		if (value instanceof Integer || value instanceof Short || value instanceof Byte || value instanceof Double || value instanceof Float){
+			return true;
+		} else if (value instanceof Long){
+			return (long)value.doubleValue() == value.longValue() && Math.abs(value.longValue()) <= (1L << 53);
+		}
+		return false;
+	}
+
+	private boolean isDisjoint(int feature){
+		for (int value = 1; value < lowerBounds[feature].length; value++){
+			double previousUpperBound = upperBounds[feature][value - 1];
+			boolean previousInclusive = inclusiveUpperBounds[feature][value - 1];
+
+			if (previousUpperBound > lowerBounds[feature][value] || (previousInclusive && previousUpperBound == lowerBounds[feature][value]) || lowerBounds[feature][value - 1] == lowerBounds[feature][value]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static final Comparator<Feature<?>> LOWER_BOUND_COMPARATOR = new Comparator<Feature<?>>(){
+
+		@Override
+		public int compare(Feature<?> o1, Feature<?> o2) {
+			return Double.compare(((RangeFeature<?>)o1).getLowerBound().doubleValue(), ((RangeFeature<?>)o2).getLowerBound().doubleValue());
+		}
+	};
+
+	private static class SchemaFeatures{
+		private final FeatureSchema schema;
+		private final int[] features;
+
+		private SchemaFeatures(FeatureSchema schema, int[] features){
+			this.schema = schema;
+			this.features = features;
+		}
+	}
+}
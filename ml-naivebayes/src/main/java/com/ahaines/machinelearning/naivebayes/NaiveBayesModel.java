@@ -1,5 +1,7 @@
 package com.ahaines.machinelearning.naivebayes;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -14,14 +16,22 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.ahaines.machinelearning.api.Model;
+import com.ahaines.machinelearning.api.ModelService;
 import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
 import com.ahaines.machinelearning.api.dataset.FeatureDefinition;
+import com.ahaines.machinelearning.api.dataset.FeatureSchema;
 import com.ahaines.machinelearning.api.dataset.FeatureSet;
 import com.ahaines.machinelearning.api.dataset.Identifier;
+import com.ahaines.machinelearning.api.dataset.columnar.ColumnReader;
+import com.ahaines.machinelearning.api.dataset.columnar.ColumnarClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.columnar.FeatureColumn;
+import com.ahaines.machinelearning.api.dataset.columnar.FeatureColumn.NumericColumn;
 import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser;
 import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser.QuantiserEventProcessor;
 import com.ahaines.machinelearning.api.dataset.quantiser.RangeFeature;
 import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.haines.ml.model.ContinuousFeature;
 import com.haines.ml.model.DiscreteFeature;
@@ -31,12 +41,13 @@ import com.haines.ml.model.Feature.Features;
 public class NaiveBayesModel<C extends Enum<C>> implements Model{
 
 	private static final Logger LOG = LoggerFactory.getLogger(NaiveBayesModel.class);
-	private static final double DEFAULT_NEGLIGABLE_PROBABILITY = 0.001;
+	static final double DEFAULT_NEGLIGABLE_PROBABILITY = 0.001;
 	
 	private final Map<C, Double> priorClassificationProbabilities;
 	private final Map<C, Map<Class<? extends Feature<?>>, Probability>> likelihoodProbilities;
 	private final Map<Class<? extends Feature<?>>, Probability> priorFeatureProbabilities;
 	private final Metrics metrics;
+	private volatile CompiledNaiveBayesModel<C> compiledModel;
 	
 	public NaiveBayesModel(Map<C, Double> priorClassificationProbabilities, Map<C, Map<Class<? extends Feature<?>>, Probability>> likelihoodProbilities, Map<Class<? extends Feature<?>>, Probability> priorFeatureProbabilities){
 		this.priorClassificationProbabilities = Collections.unmodifiableMap(priorClassificationProbabilities);
@@ -50,11 +61,73 @@ public class NaiveBayesModel<C extends Enum<C>> implements Model{
 		return metrics;
 	}
 	
-	@SuppressWarnings({ "rawtypes", "unchecked" })
+	/**
+	 * Returns a read only form of this model that scores instances in log space using primitive lookup tables. The
+	 * compiled model is created on the first call and reused thereafter.
+	 * @return
+	 */
+	public CompiledNaiveBayesModel<C> compile(){
+		CompiledNaiveBayesModel<C> compiled = compiledModel;
+		if (compiled == null){
+			compiled = CompiledNaiveBayesModel.compile(this);
+			compiledModel = compiled;
+		}
+		return compiled;
+	}
+	
+	/**
+	 * Saves the compiled form of this model to the file so that it can be loaded with
+	 * {@link CompiledNaiveBayesModel#load(Path, Class)} without retraining
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(Path file) throws IOException{
+		compile().write(file);
+	}
+	
+	Map<C, Double> getPriorClassificationProbabilities() {
+		return priorClassificationProbabilities;
+	}
+	
+	Map<C, Map<Class<? extends Feature<?>>, Probability>> getLikelihoodProbabilities() {
+		return likelihoodProbilities;
+	}
+	
+	Map<Class<? extends Feature<?>>, Probability> getPriorFeatureProbabilities() {
+		return priorFeatureProbabilities;
+	}
+	
 	public ClassificationProbability<C> getClassification(FeatureSet instance) {
+		double[] probability = new double[1];
+		C classification = classify(instance, probability, 0);
+		
+		return new ClassificationProbability<C>(instance.getId(), classification, probability[0]);
+	}
+	
+	/**
+	 * Writes the ordinal of the most probable classification of each instance into the supplied array, or -1 if the model
+	 * has no classifications. When supplied, the probability of each classification is written to the same index.
+	 * @param instances
+	 * @param classificationOrdinals
+	 * @param classificationProbabilities may be null if the probabilities are not required
+	 */
+	public void classifyBatch(List<? extends FeatureSet> instances, int[] classificationOrdinals, double[] classificationProbabilities){
+		ModelService.UTIL.checkBatch(instances.size(), classificationOrdinals, classificationProbabilities);
+		
+		for (int i = 0; i < instances.size(); i++){
+			C classification = classify(instances.get(i), classificationProbabilities, i);
+			classificationOrdinals[i] = (classification == null)? -1: classification.ordinal();
+		}
+	}
+	
+	/*
+	 * Returns the most probable classification, writing its probability to probabilities[index] unless the array is null
+	 */
+	private C classify(FeatureSet instance, double[] probabilities, int index) {
 		double maxProbability = 0;
-		Enum<?> maxClassification = null;
+		C maxClassification = null;
 		
+		FeatureSchema schema = instance.getSchema();
 		for(C classification: priorClassificationProbabilities.keySet()){
 			
 			double posteriorProbabilityProduct = 1;
@@ -62,15 +135,15 @@ public class NaiveBayesModel<C extends Enum<C>> implements Model{
 			
 			if (givenClassificationProbabilities != null){ // if we have no probability then do not consider this classification
 		
-				for (Class<? extends Feature<?>> featureType: instance.getFeatureTypes()){
+				for (int slot = 0; slot < schema.size(); slot++){
 					
-					Feature<?> featureValue = instance.getFeature(featureType);
+					Feature<?> featureValue = instance.getFeature(slot);
 					if (featureValue == Features.MISSING){
 						continue; // we cannot use this feature to contribute to the probability as we dont have it!
 					}
 					
 					// if this is a continuous probability then we need to consider all the range features and use the probability of the 
-					Probability probability = givenClassificationProbabilities.get(featureType);
+					Probability probability = givenClassificationProbabilities.get(schema.getFeatureType(slot));
 					if (probability == null){
 						posteriorProbabilityProduct *= DEFAULT_NEGLIGABLE_PROBABILITY; // not possible. no probabilities determined for this value so this means the likely hood is very small. add an appropriately small probability
 						continue;
@@ -100,21 +173,23 @@ public class NaiveBayesModel<C extends Enum<C>> implements Model{
 		
 		// calculate the maximum probability for this classification
 		
-		maxProbability = maxProbability / getPriorFeatureProbabilitiesProduct(instance);
-		
-		return new ClassificationProbability(instance.getId(), maxClassification, maxProbability);
+		if (probabilities != null){
+			probabilities[index] = maxProbability / getPriorFeatureProbabilitiesProduct(instance);
+		}
+		return maxClassification;
 	}
 	
 	private double getPriorFeatureProbabilitiesProduct(FeatureSet instance) {
 		double priorProduct = 1;
-		for (Class<? extends Feature<?>> featureType: instance.getFeatureTypes()){
-			Feature<?> feature = instance.getFeature(featureType);
+		FeatureSchema schema = instance.getSchema();
+		for (int slot = 0; slot < schema.size(); slot++){
+			Feature<?> feature = instance.getFeature(slot);
 			if (feature == Features.MISSING){
 				continue;
 			}
 			try{
 				// if the feature is a continuous feature then we need to 
-				priorProduct *= priorFeatureProbabilities.get(featureType).getProbability(feature);
+				priorProduct *= priorFeatureProbabilities.get(schema.getFeatureType(slot)).getProbability(feature);
 			} catch (NullPointerException e){
 				throw e;
 			}
@@ -123,210 +198,343 @@ public class NaiveBayesModel<C extends Enum<C>> implements Model{
 		return priorProduct;
 	}
 
+	/**
+	 * Creates an immutable model from the supplied statistics
+	 * @param statistics
+	 * @return
+	 */
+	static <C extends Enum<C>> NaiveBayesModel<C> create(NaiveBayesStatistics<C> statistics){
+		
+		int totalInstancesSeen = statistics.getTotalInstancesSeen();
+		Map<C, Integer> priorCounts = statistics.getPriorCounts();
+		
+		// now calculate the prior and posterior probabilities
+		
+		Map<C, Double> priorClassificationProbabilities = new HashMap<C, Double>();
+		Map<C, Map<Class<? extends Feature<?>>, Probability>> likelihoodProbabilities = new HashMap<C, Map<Class<? extends Feature<?>>, Probability>>();
+		Map<FeatureDefinition, Integer> priorFeatureCounts = new HashMap<FeatureDefinition, Integer>();
+		
+		// prior
+		
+		for (Entry<C, Integer> priorCount: priorCounts.entrySet()){
+			double priorProbability = (double)priorCount.getValue() / (double)totalInstancesSeen;
+			priorClassificationProbabilities.put(priorCount.getKey(), priorProbability);
+			LOG.debug("p("+priorCount.getKey()+") = "+priorCount.getValue()+" / "+totalInstancesSeen+" = "+priorProbability);
+		}
+		
+		// posterior
+		
+		for (Entry<C, Map<Class<? extends Feature<?>>, Map<Feature<?>, Integer>>> posteriorCount: statistics.getLikelihoodCounts().entrySet()){
+			Map<Class<? extends Feature<?>>, ProbabilityBuilder> featureProbabilities = new HashMap<Class<? extends Feature<?>>, ProbabilityBuilder>();
+			
+			int totalInstancesInClassification = priorCounts.get(posteriorCount.getKey());
+			for (Entry<Class<? extends Feature<?>>, Map<Feature<?>, Integer>> featureCount: posteriorCount.getValue().entrySet()){
+				for (Entry<Feature<?>, Integer> feature: featureCount.getValue().entrySet()){
+					FeatureDefinition featureDefinition = new FeatureDefinition(feature.getKey(), featureCount.getKey());
+					incrementCount(featureDefinition, priorFeatureCounts, feature.getValue());
+					
+					double featurePosteriorProbability = (double)feature.getValue() / (double)totalInstancesInClassification;
+					
+					Feature<?> featureInstance = feature.getKey();
+					
+					LOG.debug("p("+getFeatureString(featureDefinition)+"|"+posteriorCount.getKey()+") = "+feature.getValue()+" / "+totalInstancesInClassification +" = "+featurePosteriorProbability);
+					
+					if (featureInstance == Features.MISSING){
+						// this should have already been dealt with and therefore should never happen
+						throw new UnsupportedOperationException();
+					} else if (featureInstance instanceof DiscreteFeature || featureInstance instanceof RangeFeature){
+						ProbabilityBuilder builder = featureProbabilities.get(featureCount.getKey());
+						if (builder == null){
+							builder = new ProbabilityBuilder(featureCount.getKey());
+						}
+						builder.addProbabilityValue(featureInstance, featurePosteriorProbability);
+						
+						featureProbabilities.put(featureCount.getKey(), builder);
+					} else if (featureInstance instanceof ContinuousFeature){
+						// we should not be dealing with continuous features in this way. All continuous features should have been quantised by this point
+						throw new UnsupportedOperationException();
+					}
+				}
+			}
+			
+			likelihoodProbabilities.put(posteriorCount.getKey(), new HashMap<Class<? extends Feature<?>>, Probability>(Maps.transformValues(featureProbabilities, new Function<ProbabilityBuilder, Probability>(){
+				
+				public Probability apply(ProbabilityBuilder builder){
+					return builder.build();
+				}
+			})));
+		}
+		
+		// now calculate the prior feature probabilities
+		
+		Map<Class<? extends Feature<?>>, ProbabilityBuilder> priorFeatureProbabilities = new HashMap<Class<? extends Feature<?>>, ProbabilityBuilder>();
+		for (Entry<FeatureDefinition, Integer> entry: priorFeatureCounts.entrySet()){
+			double priorProbability = (double)entry.getValue() / (double)totalInstancesSeen;
+			LOG.debug("p("+getFeatureString(entry.getKey())+") = "+entry.getValue()+" / "+totalInstancesSeen+" = "+priorProbability);
+			
+			ProbabilityBuilder builder = priorFeatureProbabilities.get(entry.getKey().getFeatureType());
+			
+			if (builder == null){
+				builder = new ProbabilityBuilder(entry.getKey().getFeatureType());
+			}
+			
+			builder.addProbabilityValue(entry.getKey().getFeature(), priorProbability);
+			priorFeatureProbabilities.put(entry.getKey().getFeatureType(), builder);
+		}
+		
+		return new NaiveBayesModel<C>(priorClassificationProbabilities, likelihoodProbabilities, new HashMap<Class<? extends Feature<?>>, Probability>(Maps.transformValues(priorFeatureProbabilities, new Function<ProbabilityBuilder, Probability>(){
+			
+			public Probability apply(ProbabilityBuilder value){
+				return value.build();
+			}
+		})));
+	}
+	
+	private static <T> void incrementCount(T key, Map<T, Integer> accumulator, int amount) {
+		Integer currentCount = accumulator.get(key);
+		
+		if (currentCount == null){
+			currentCount = 0;
+		}
+		
+		accumulator.put(key, currentCount+amount);
+	}
+	
+	private static String getFeatureString(FeatureDefinition feature) {
+		return feature.getFeatureType().getSimpleName()+"#"+((feature.getFeature() instanceof RangeFeature)?feature.getFeature().toString():feature.getFeature().getValue());
+	}
+
+	/**
+	 * Accumulates the {@link NaiveBayesStatistics} of a model. Continuous features are quantised using the instances added
+	 * before the first call to {@link #getModel()} that contain them, which fixes their ranges. From then on values of these
+	 * features are counted straight against the range that contains them, or the nearest range when they fall between or
+	 * beyond the ranges, so instances only need to be kept until their continuous features have been quantised. Missing
+	 * values of continuous features never count towards a range, whether they are added before or after quantisation. This
+	 * allows a factory to be added to and snapshotted repeatedly.
+	 */
 	static class NaiveBayesModelFactory<C extends Enum<C>>{
 		
-		private final Map<C, Integer> priorCounts = new HashMap<C, Integer>();
-		private final Map<C, LikelihoodCounts> discreteFeatureCounts = new HashMap<C, LikelihoodCounts>();
-		private final Set<Class<? extends ContinuousFeature<?>>> continuousFeatures = new HashSet<Class<? extends ContinuousFeature<?>>>();
+		private final NaiveBayesStatistics<C> statistics = new NaiveBayesStatistics<C>();
+		private final Set<Class<? extends ContinuousFeature<?>>> unquantisedFeatures = new HashSet<Class<? extends ContinuousFeature<?>>>();
+		private final Map<Class<? extends Feature<?>>, List<RangeFeature<?>>> quantisedRanges = new HashMap<Class<? extends Feature<?>>, List<RangeFeature<?>>>();
 		private final Collection<ClassifiedFeatureSet<C>> allInstances = new ArrayList<ClassifiedFeatureSet<C>>();
+		private final Collection<Iterable<ClassifiedFeatureSet<C>>> columnarInstances = new ArrayList<Iterable<ClassifiedFeatureSet<C>>>();
 		
-		private int totalInstancesSeen = 0;
 		private final ContinuousFeatureQuantiser quantiser;
 		
 		NaiveBayesModelFactory(ContinuousFeatureQuantiser quantiser){
 			this.quantiser = quantiser;
 		}
 		
-		@SuppressWarnings("unchecked")
 		void addInstance(ClassifiedFeatureSet<C> instance){
-			totalInstancesSeen++;
-			allInstances.add(instance);
 			C instanceClass = getClassOfInstance(instance);
-			incrementCount(instanceClass, priorCounts);
-			for (Class<? extends Feature<?>> featureType: instance.getFeatureTypes()){
-				Feature<?> feature = instance.getFeature(featureType);
-				if (feature instanceof ContinuousFeature){
-					continuousFeatures.add((Class<? extends ContinuousFeature<?>>)featureType);
-				} else {
-					addDiscreteFeatureCount(instanceClass, featureType, feature);
-				}
+			statistics.addInstance(instanceClass);
+			FeatureSchema schema = instance.getSchema();
+			boolean requiresQuantisation = false;
+			for (int slot = 0; slot < schema.size(); slot++){
+				Class<? extends Feature<?>> featureType = schema.getFeatureType(slot);
+				addFeature(instanceClass, featureType, instance.getFeature(slot));
+				requiresQuantisation |= isUnquantised(featureType);
+			}
+			if (requiresQuantisation){
+				allInstances.add(instance);
 			}
 		}
 		
-		private void addDiscreteFeatureCount(C instanceClass, Class<? extends Feature<?>> featureType, Feature<?> feature){
-			LikelihoodCounts counts = discreteFeatureCounts.get(instanceClass);
+		int getTotalInstancesSeen(){
+			return statistics.getTotalInstancesSeen();
+		}
+		
+		/**
+		 * Adds all the instances of a columnar dataset. This is equivalent to calling {@link #addInstance(ClassifiedFeatureSet)}
+		 * for each row but reads the counts straight from the columns, only materialising discrete features from their
+		 * enum constants, and retains the dataset's row view rather than copying each instance.
+		 * @param dataset
+		 */
+		@SuppressWarnings("unchecked")
+		void addDataset(ColumnarClassifiedDataset<C> dataset){
+			int size = dataset.size();
+			boolean requiresQuantisation = false;
 			
-			if (counts == null){
-				counts = new LikelihoodCounts();
+			for (int row = 0; row < size; row++){
+				statistics.addInstance(dataset.getClassificationValue(row));
 			}
 			
-			counts.seenFeature(featureType, feature);
+			for (Class<? extends Feature<?>> featureType: dataset.getFeatureTypes()){
+				FeatureColumn column = dataset.getColumn(featureType);
+				
+				if (column instanceof NumericColumn && isUnquantised(featureType)){
+					requiresQuantisation = true;
+					for (int row = 0; row < size; row++){
+						if (column.isMissing(row)){
+							statistics.addFeature(dataset.getClassificationValue(row), featureType, Features.MISSING);
+						} else {
+							unquantisedFeatures.add((Class<? extends ContinuousFeature<?>>)featureType);
+						}
+					}
+				} else{
+					for (int row = 0; row < size; row++){
+						addFeature(dataset.getClassificationValue(row), featureType, column.getFeature(row));
+					}
+				}
+			}
 			
-			discreteFeatureCounts.put(instanceClass, counts);
+			if (requiresQuantisation){
+				columnarInstances.add(dataset.getInstances());
+			}
 		}
 		
-		private C getClassOfInstance(ClassifiedFeatureSet<C> instance){
-			return instance.getClassification().getValue();
+		/*
+		 * Instances have to be kept for quantisation while any of their continuous features has not been quantised
+		 */
+		private boolean isUnquantised(Class<? extends Feature<?>> featureType){
+			return ContinuousFeature.class.isAssignableFrom(featureType) && !quantisedRanges.containsKey(featureType);
 		}
 		
-		private <T> void incrementCount(T key, Map<T, Integer> accumulator){
-			incrementCount(key, accumulator, 1);
+		@SuppressWarnings("unchecked")
+		private void addFeature(C instanceClass, Class<? extends Feature<?>> featureType, Feature<?> feature){
+			List<RangeFeature<?>> ranges = quantisedRanges.get(featureType);
+			if (ranges != null){
+				/*
+				 * continuous features are counted against their range once quantised. A missing value counts towards the values
+				 * already seen but before quantisation no range has been seen, so missing values never count towards a range.
+				 * They are left out here so that later batches count them the same way
+				 */
+				if (feature != Features.MISSING){
+					statistics.addFeature(instanceClass, featureType, getRange(ranges, feature));
+				}
+			} else if (feature instanceof ContinuousFeature){
+				unquantisedFeatures.add((Class<? extends ContinuousFeature<?>>)featureType);
+			} else {
+				statistics.addFeature(instanceClass, featureType, feature);
+			}
 		}
 		
-		private <T> void incrementCount(T key, Map<T, Integer> accumulator, int amount) {
-			Integer currentCount = accumulator.get(key);
-			
-			if (currentCount == null){
-				currentCount = 0;
+		/*
+		 * Returns the quantised range containing the feature. A feature that falls in a gap between ranges, or beyond them,
+		 * is counted against the nearest range, with ties going to the lower one.
+		 */
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		private static RangeFeature<?> getRange(List<RangeFeature<?>> sortedRanges, Feature<?> feature){
+			int foundRangeIndex = Collections.binarySearch((List)sortedRanges, feature);
+			if (foundRangeIndex >= 0){
+				return sortedRanges.get(foundRangeIndex);
 			}
-			
-			accumulator.put(key, currentCount+amount);
-		}
-
-		@SuppressWarnings({ "unchecked", "rawtypes" })
-		public NaiveBayesModel<C> getModel() {
-			
-			// now calculate the prior and posterior probabilities
-			
-			Map<C, Double> priorClassificationProbabilities = new HashMap<C, Double>();
-			Map<C, Map<Class<? extends Feature<?>>, Probability>> likelihoodProbabilities = new HashMap<C, Map<Class<? extends Feature<?>>, Probability>>();
-			Map<FeatureDefinition, Integer> priorFeatureCounts = new HashMap<FeatureDefinition, Integer>();
-			
-			// prior
-			
-			for (Entry<C, Integer> priorCount: priorCounts.entrySet()){
-				double priorProbability = (double)priorCount.getValue() / (double)totalInstancesSeen;
-				priorClassificationProbabilities.put(priorCount.getKey(), priorProbability);
-				LOG.debug("p("+priorCount.getKey()+") = "+priorCount.getValue()+" / "+totalInstancesSeen+" = "+priorProbability);
+			int insertionPoint = -foundRangeIndex - 1;
+			if (insertionPoint == 0){
+				return sortedRanges.get(0);
+			} else if (insertionPoint == sortedRanges.size()){
+				return sortedRanges.get(insertionPoint - 1);
 			}
+			RangeFeature<?> below = sortedRanges.get(insertionPoint - 1);
+			RangeFeature<?> above = sortedRanges.get(insertionPoint);
+			double value = ((Number)feature.getValue()).doubleValue();
 			
-			// posterior
-			
-			// continuous quantisation
-			
-			for (final Class<? extends ContinuousFeature<?>> featureType: continuousFeatures){
-				quantiser.quantise(allInstances, (Class)featureType, new QuantiserEventProcessor() {
-					
-					@Override
-					public <T extends Number & Comparable<T>> void newRangeDetermined(RangeFeature<T> range, Iterable<? extends ClassifiedFeatureSet<? extends Enum<?>>> instancesInSplit) {
-						LOG.debug(featureType.getSimpleName()+" range determined as: "+range);
-						for (ClassifiedFeatureSet instance: instancesInSplit){
-							C instanceClass = getClassOfInstance(instance);
-							
-							addDiscreteFeatureCount(instanceClass, featureType, range);
-						}
+			return (value - below.getUpperBound().doubleValue() <= above.getLowerBound().doubleValue() - value)? below: above;
+		}
+		
+		/**
+		 * Counts the instances discrete features into new statistics. Continuous features are left for
+		 * {@link #quantiseFeature(ContinuousFeatureQuantiser, Iterable, Class, NaiveBayesStatistics)}; the types of those that
+		 * have values are added to the supplied set.
+		 * @param instances
+		 * @param continuousFeatures
+		 * @return
+		 */
+		@SuppressWarnings("unchecked")
+		static <C extends Enum<C>> NaiveBayesStatistics<C> countDiscreteFeatures(Iterable<? extends ClassifiedFeatureSet<C>> instances, Set<Class<? extends ContinuousFeature<?>>> continuousFeatures){
+			NaiveBayesStatistics<C> statistics = new NaiveBayesStatistics<C>();
+			for (ClassifiedFeatureSet<C> instance: instances){
+				C instanceClass = instance.getClassification().getValue();
+				statistics.addInstance(instanceClass);
+				FeatureSchema schema = instance.getSchema();
+				for (int slot = 0; slot < schema.size(); slot++){
+					Class<? extends Feature<?>> featureType = schema.getFeatureType(slot);
+					Feature<?> feature = instance.getFeature(slot);
+					if (feature instanceof ContinuousFeature){
+						continuousFeatures.add((Class<? extends ContinuousFeature<?>>)featureType);
+					} else {
+						statistics.addFeature(instanceClass, featureType, feature);
 					}
-				});
+				}
 			}
-			
-			//discrete
-			
-			for (Entry<C, LikelihoodCounts> posteriorCount: discreteFeatureCounts.entrySet()){
-				Map<Class<? extends Feature<?>>, ProbabilityBuilder> featureProbabilities = new HashMap<Class<? extends Feature<?>>, ProbabilityBuilder>();
+			return statistics;
+		}
+		
+		/**
+		 * Quantises the continuous feature over the instances, counting each instance against the range the quantiser puts it
+		 * in. Instances missing the feature have already been counted as missing so are not given to the quantiser. Returns
+		 * the ranges sorted into order.
+		 * @param quantiser
+		 * @param instances
+		 * @param featureType
+		 * @param statistics
+		 * @return
+		 */
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		static <C extends Enum<C>> List<RangeFeature<?>> quantiseFeature(ContinuousFeatureQuantiser quantiser, Iterable<? extends ClassifiedFeatureSet<C>> instances, final Class<? extends ContinuousFeature<?>> featureType, final NaiveBayesStatistics<C> statistics){
+			final ColumnReader reader = new ColumnReader(featureType);
+			Iterable<? extends ClassifiedFeatureSet<C>> presentInstances = Iterables.filter(instances, new Predicate<ClassifiedFeatureSet<C>>(){
+
+				@Override
+				public boolean apply(ClassifiedFeatureSet<C> instance) {
+					return !reader.isMissing(instance);
+				}
+			});
+			Collection<RangeFeature<?>> ranges = quantiser.quantise((Iterable)presentInstances, (Class)featureType, new QuantiserEventProcessor() {
 				
-				int totalInstancesInClassification = priorCounts.get(posteriorCount.getKey());
-				for (Entry<Class<? extends Feature<?>>, FeatureCounts> featureCount: posteriorCount.getValue().featureCounts.entrySet()){
-					for (Entry<FeatureDefinition, Integer> feature: featureCount.getValue().featureCounts.entrySet()){
-						incrementCount(feature.getKey(), priorFeatureCounts, feature.getValue());
-						
-						double featurePosteriorProbability = (double)feature.getValue() / (double)totalInstancesInClassification;
-						
-						Feature<?> featureInstance = feature.getKey().getFeature();
+				@Override
+				public <T extends Number & Comparable<T>> void newRangeDetermined(RangeFeature<T> range, Iterable<? extends ClassifiedFeatureSet<? extends Enum<?>>> instancesInSplit) {
+					LOG.debug(featureType.getSimpleName()+" range determined as: "+range);
+					for (ClassifiedFeatureSet instance: instancesInSplit){
+						C instanceClass = ((ClassifiedFeatureSet<C>)instance).getClassification().getValue();
 						
-						LOG.debug("p("+getFeatureString(feature.getKey())+"|"+posteriorCount.getKey()+") = "+feature.getValue()+" / "+totalInstancesInClassification +" = "+featurePosteriorProbability);
-						
-						if (featureInstance == Features.MISSING){
-							// this should have already been dealt with and therefore should never happen
-							throw new UnsupportedOperationException();
-						} else if (featureInstance instanceof DiscreteFeature || featureInstance instanceof RangeFeature){
-							ProbabilityBuilder builder = featureProbabilities.get(featureCount.getKey());
-							if (builder == null){
-								builder = new ProbabilityBuilder(featureCount.getKey());
-							}
-							builder.addProbabilityValue(featureInstance, featurePosteriorProbability);
-							
-							featureProbabilities.put(featureCount.getKey(), builder);
-						} else if (featureInstance instanceof ContinuousFeature){
-							// we should not be dealing with continuous features in this way. All continuous features should have been quantised by this point
-							throw new UnsupportedOperationException();
-						}
+						statistics.addFeature(instanceClass, featureType, range);
 					}
 				}
-				
-				likelihoodProbabilities.put(posteriorCount.getKey(), new HashMap<Class<? extends Feature<?>>, Probability>(Maps.transformValues(featureProbabilities, new Function<ProbabilityBuilder, Probability>(){
-					
-					public Probability apply(ProbabilityBuilder builder){
-						return builder.build();
-					}
-				})));
-			}
-			
-			// now calculate the prior feature probabilities
+			});
 			
-			Map<Class<? extends Feature<?>>, ProbabilityBuilder> priorFeatureProbabilities = new HashMap<Class<? extends Feature<?>>, ProbabilityBuilder>();
-			for (Entry<FeatureDefinition, Integer> entry: priorFeatureCounts.entrySet()){
-				double priorProbability = (double)entry.getValue() / (double)totalInstancesSeen;
-				LOG.debug("p("+getFeatureString(entry.getKey())+") = "+entry.getValue()+" / "+totalInstancesSeen+" = "+priorProbability);
-				
-				ProbabilityBuilder builder = priorFeatureProbabilities.get(entry.getKey().getFeatureType());
-				
-				if (builder == null){
-					builder = new ProbabilityBuilder(entry.getKey().getFeatureType());
-				}
-				
-				builder.addProbabilityValue(entry.getKey().getFeature(), priorProbability);
-				priorFeatureProbabilities.put(entry.getKey().getFeatureType(), builder);
-			}
+			List<RangeFeature<?>> sortedRanges = new ArrayList<RangeFeature<?>>(ranges);
+			Collections.sort((List)sortedRanges);
 			
-			return new NaiveBayesModel<C>(priorClassificationProbabilities, likelihoodProbabilities, new HashMap<Class<? extends Feature<?>>, Probability>(Maps.transformValues(priorFeatureProbabilities, new Function<ProbabilityBuilder, Probability>(){
-				
-				public Probability apply(ProbabilityBuilder value){
-					return value.build();
-				}
-			})));
+			return sortedRanges;
+		}
+		
+		private C getClassOfInstance(ClassifiedFeatureSet<C> instance){
+			return instance.getClassification().getValue();
 		}
 
-		private String getFeatureString(FeatureDefinition feature) {
-			return feature.getFeatureType().getSimpleName()+"#"+((feature.getFeature() instanceof RangeFeature)?feature.getFeature().toString():feature.getFeature().getValue());
+		/**
+		 * Creates an immutable model from the counts accumulated so far. Continuous features that have not yet been quantised
+		 * are quantised over the instances kept for them, after which those instances are released.
+		 * @return
+		 */
+		public NaiveBayesModel<C> getModel() {
+			return create(getStatistics());
 		}
-	}
-	
-	private static class LikelihoodCounts{
-		
-		private final Map<Class<? extends Feature<?>>, FeatureCounts> featureCounts = new HashMap<Class<? extends Feature<?>>, FeatureCounts>();
 		
-		private void seenFeature(Class<? extends Feature<?>> featureType, Feature<?> featureValue){
-			FeatureCounts currentCount = featureCounts.get(featureType);
+		/**
+		 * Returns the statistics accumulated so far, first quantising any continuous features that have not yet been
+		 * quantised
+		 * @return
+		 */
+		NaiveBayesStatistics<C> getStatistics() {
 			
-			if (currentCount == null){
-				currentCount = new FeatureCounts();
-			}
+			// continuous quantisation
 			
-			currentCount.increment(new FeatureDefinition(featureValue, featureType));
+			Iterable<ClassifiedFeatureSet<C>> instancesToQuantise = allInstances;
+			if (!columnarInstances.isEmpty()){
+				instancesToQuantise = Iterables.concat(Iterables.concat(columnarInstances), allInstances);
+			}
 			
-			featureCounts.put(featureType, currentCount);
-		}
-	}
-	
-	private static class FeatureCounts {
-		private final Map<FeatureDefinition, Integer> featureCounts = new HashMap<FeatureDefinition, Integer>();
-		
-		private void increment(FeatureDefinition featureValue){
-			if (featureValue.getFeature() == Feature.Features.MISSING){ // we assume all of these features are the same likelyhood.
-				for (Entry<FeatureDefinition, Integer> featureCount: featureCounts.entrySet()){
-					int count = featureCount.getValue();
-					featureCount.setValue(++count);
-				}
-			} else{
-				
-				FeatureDefinition key = featureValue;
-				Integer count = featureCounts.get(key);
-				
-				if (count == null){
-					count = 0;
-				}
-				featureCounts.put(key, ++count);
+			for (Class<? extends ContinuousFeature<?>> featureType: unquantisedFeatures){
+				quantisedRanges.put(featureType, quantiseFeature(quantiser, instancesToQuantise, featureType, statistics));
 			}
+			unquantisedFeatures.clear();
+			allInstances.clear();
+			columnarInstances.clear();
+			
+			return statistics;
 		}
 	}
 	
@@ -348,9 +556,15 @@ public class NaiveBayesModel<C extends Enum<C>> implements Model{
 		}
 	}
 	
-	private static interface Probability{
+	static interface Probability{
 		
 		double getProbability(Feature<?> feature);
+		
+		/**
+		 * Returns the probability of each feature value that was seen in the training data
+		 * @return
+		 */
+		Map<? extends Feature<?>, Double> getValueProbabilities();
 	}
 	
 	private static class DiscreteProbability implements Probability{
@@ -371,6 +585,11 @@ public class NaiveBayesModel<C extends Enum<C>> implements Model{
 			}
 			return probability;
 		}
+		
+		@Override
+		public Map<? extends Feature<?>, Double> getValueProbabilities() {
+			return valueProbabilities;
+		}
 	}
 	
 	private static class RangeBasedProbability implements Probability {
@@ -398,6 +617,11 @@ public class NaiveBayesModel<C extends Enum<C>> implements Model{
 				return rangeProbabilities.get(binarySearch.get(foundRangeIndex));
 			}
 		}
+		
+		@Override
+		public Map<RangeFeature<?>, Double> getValueProbabilities() {
+			return rangeProbabilities;
+		}
 	}
 	
 	private static class ProbabilityBuilder{
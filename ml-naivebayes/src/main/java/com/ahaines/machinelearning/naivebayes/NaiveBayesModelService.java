@@ -1,6 +1,15 @@
 package com.ahaines.machinelearning.naivebayes;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import com.ahaines.machinelearning.api.ModelService;
 import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
@@ -10,42 +19,240 @@ import com.ahaines.machinelearning.api.dataset.Dataset;
 import com.ahaines.machinelearning.api.dataset.FeatureSet;
 import com.ahaines.machinelearning.api.dataset.Identifiable;
 import com.ahaines.machinelearning.api.dataset.Identifier;
+import com.ahaines.machinelearning.api.dataset.columnar.ColumnarClassifiedDataset;
 import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser;
+import com.ahaines.machinelearning.api.dataset.quantiser.QuantisationCache;
 import com.ahaines.machinelearning.naivebayes.NaiveBayesModel.ClassificationProbability;
 import com.ahaines.machinelearning.naivebayes.NaiveBayesModel.NaiveBayesModelFactory;
 import com.google.common.base.Function;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.haines.ml.model.ContinuousFeature;
 
+/**
+ * Trains and applies naive Bayes models.
+ *
+ * When created with an executor, training counts contiguous shards of the training data concurrently and merges their
+ * {@link NaiveBayesStatistics} in order, while each continuous feature is quantised as its own task over the whole dataset.
+ * The resulting model is identical to the one trained serially.
+ *
+ * When created with a {@link QuantisationCache}, the quantisation of each continuous feature of a training set is looked
+ * up in the cache before the quantiser is run, so services that share the cache and quantiser only quantise a training
+ * set once.
+ *
+ * @author andrewhaines
+ *
+ * @param <C>
+ */
 public class NaiveBayesModelService<C extends Enum<C>> implements ModelService<NaiveBayesModel<C>, C>{
 
 	private final ContinuousFeatureQuantiser quantiser;
+	private final ExecutorService trainingExecutor;
+	private final int numShards;
+	private final QuantisationCache quantisationCache;
 	
 	public NaiveBayesModelService(ContinuousFeatureQuantiser quantiser){
+		this(quantiser, (QuantisationCache)null);
+	}
+	
+	/**
+	 * Creates a service that trains models serially, looking up the quantisation of the training data in the supplied cache
+	 * @param quantiser
+	 * @param quantisationCache
+	 */
+	public NaiveBayesModelService(ContinuousFeatureQuantiser quantiser, QuantisationCache quantisationCache){
+		this.quantiser = quantiser;
+		this.trainingExecutor = null;
+		this.numShards = 1;
+		this.quantisationCache = quantisationCache;
+	}
+	
+	/**
+	 * Creates a service that trains models by splitting the training data into the supplied number of shards and counting
+	 * them, and quantising the continuous features, on the executor.
+	 * @param quantiser
+	 * @param trainingExecutor
+	 * @param numShards
+	 */
+	public NaiveBayesModelService(ContinuousFeatureQuantiser quantiser, ExecutorService trainingExecutor, int numShards){
+		this(quantiser, trainingExecutor, numShards, null);
+	}
+	
+	/**
+	 * Creates a service that trains models on the executor as {@link #NaiveBayesModelService(ContinuousFeatureQuantiser, ExecutorService, int)}
+	 * does, looking up the quantisation of the training data in the supplied cache
+	 * @param quantiser
+	 * @param trainingExecutor
+	 * @param numShards
+	 * @param quantisationCache may be null
+	 */
+	public NaiveBayesModelService(ContinuousFeatureQuantiser quantiser, ExecutorService trainingExecutor, int numShards, QuantisationCache quantisationCache){
+		if (trainingExecutor == null){
+			throw new NullPointerException("trainingExecutor");
+		}
+		if (numShards < 1){
+			throw new IllegalArgumentException("number of shards must be positive: "+numShards);
+		}
 		this.quantiser = quantiser;
+		this.trainingExecutor = trainingExecutor;
+		this.numShards = numShards;
+		this.quantisationCache = quantisationCache;
 	}
+	
 	@Override
 	public NaiveBayesModel<C> trainModel(ClassifiedDataset<C> trainingData) {
-		NaiveBayesModelFactory<C> modelFactory = new NaiveBayesModelFactory<C>(quantiser);
+		return collectStatistics(trainingData).createModel();
+	}
+	
+	/**
+	 * Returns the statistics of the training data, from which a model can be created. Continuous features are quantised
+	 * over the training data, so only statistics collected with the same ranges can be merged with them.
+	 * @param trainingData
+	 * @return
+	 */
+	public NaiveBayesStatistics<C> collectStatistics(ClassifiedDataset<C> trainingData) {
+		if (trainingExecutor != null){
+			return collectStatisticsInParallel(trainingData);
+		}
+		NaiveBayesModelFactory<C> modelFactory = new NaiveBayesModelFactory<C>(getTrainingQuantiser(trainingData));
+		
+		if (trainingData instanceof ColumnarClassifiedDataset){
+			modelFactory.addDataset((ColumnarClassifiedDataset<C>)trainingData);
+		} else{
+			for (ClassifiedFeatureSet<C> instance: trainingData.getInstances()){
+				modelFactory.addInstance(instance);
+			}
+		}
+		
+		return modelFactory.getStatistics();
+	}
+	
+	/*
+	 * the quantiser to quantise all the instances of the training data with
+	 */
+	private ContinuousFeatureQuantiser getTrainingQuantiser(ClassifiedDataset<C> trainingData){
+		if (quantisationCache != null){
+			return quantisationCache.getQuantiser(trainingData, quantiser);
+		}
+		return quantiser;
+	}
+	
+	private NaiveBayesStatistics<C> collectStatisticsInParallel(ClassifiedDataset<C> trainingData) {
+		final ContinuousFeatureQuantiser trainingQuantiser = getTrainingQuantiser(trainingData);
+		final List<ClassifiedFeatureSet<C>> instances = Lists.newArrayList(trainingData.getInstances());
+		int shardSize = Math.max(1, (instances.size() + numShards - 1) / numShards);
+		
+		// count the discrete features of each shard
 		
-		for (ClassifiedFeatureSet<C> instance: trainingData.getInstances()){
-			modelFactory.addInstance(instance);
+		List<Callable<NaiveBayesStatistics<C>>> shardTasks = new ArrayList<Callable<NaiveBayesStatistics<C>>>();
+		final Set<Class<? extends ContinuousFeature<?>>> continuousFeatures = Collections.synchronizedSet(new HashSet<Class<? extends ContinuousFeature<?>>>());
+		for (final List<ClassifiedFeatureSet<C>> shard: Lists.partition(instances, shardSize)){
+			shardTasks.add(new Callable<NaiveBayesStatistics<C>>(){
+				
+				@Override
+				public NaiveBayesStatistics<C> call(){
+					return NaiveBayesModelFactory.countDiscreteFeatures(shard, continuousFeatures);
+				}
+			});
 		}
 		
-		return modelFactory.getModel();
+		NaiveBayesStatistics<C> statistics = new NaiveBayesStatistics<C>();
+		for (NaiveBayesStatistics<C> shardStatistics: invokeAll(shardTasks)){
+			statistics = statistics.merge(shardStatistics);
+		}
+		
+		// quantise each continuous feature over all the instances
+		
+		List<Callable<NaiveBayesStatistics<C>>> quantiseTasks = new ArrayList<Callable<NaiveBayesStatistics<C>>>();
+		for (final Class<? extends ContinuousFeature<?>> featureType: continuousFeatures){
+			quantiseTasks.add(new Callable<NaiveBayesStatistics<C>>(){
+				
+				@Override
+				public NaiveBayesStatistics<C> call(){
+					NaiveBayesStatistics<C> featureStatistics = new NaiveBayesStatistics<C>();
+					NaiveBayesModelFactory.quantiseFeature(trainingQuantiser, instances, featureType, featureStatistics);
+					
+					return featureStatistics;
+				}
+			});
+		}
+		
+		for (NaiveBayesStatistics<C> featureStatistics: invokeAll(quantiseTasks)){
+			statistics = statistics.merge(featureStatistics);
+		}
+		
+		return statistics;
+	}
+	
+	private <T> List<T> invokeAll(List<Callable<T>> tasks){
+		List<T> results = new ArrayList<T>(tasks.size());
+		try{
+			for (Future<T> result: trainingExecutor.invokeAll(tasks)){
+				results.add(result.get());
+			}
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("interrupted whilst training model", e);
+		} catch (ExecutionException e){
+			if (e.getCause() instanceof RuntimeException){
+				throw (RuntimeException)e.getCause();
+			}
+			throw new RuntimeException("issue training model", e.getCause());
+		}
+		return results;
 	}
 
+	/**
+	 * Returns a model with no instances that can be trained incrementally using this service's quantiser
+	 * @return
+	 */
+	public UpdatableNaiveBayesModel<C> createUpdatableModel(){
+		return new UpdatableNaiveBayesModel<C>(quantiser);
+	}
+
+	/**
+	 * Classifies each instance of the dataset with the compiled form of the model, which scores in log space so the
+	 * probabilities of instances with many features do not underflow
+	 */
 	@Override
-	public ClassifiedProbabilityDataSet<C> classifyDataset(Dataset<? extends FeatureSet> dataset, final NaiveBayesModel<C> model) {
+	public ClassifiedProbabilityDataSet<C> classifyDataset(Dataset<? extends FeatureSet> dataset, NaiveBayesModel<C> model) {
+		final CompiledNaiveBayesModel<C> compiledModel = model.compile();
 		
 		Iterable<ClassificationProbability<C>> classifications = Iterables.transform(dataset.getInstances(), new Function<FeatureSet, ClassificationProbability<C>>(){
 			
 			public ClassificationProbability<C> apply(FeatureSet instance){
-				return model.getClassification(instance);
+				return compiledModel.getClassification(instance);
 			}
 		});
 		
 		return new ClassifiedProbabilityDataSet<C>(dataset, Identifiable.UTIL.index(classifications));
 	}
+	
+	/**
+	 * Classifies the dataset as {@link #classifyDataset(Dataset, NaiveBayesModel)} does but scores partitions of the
+	 * dataset concurrently on the supplied executor
+	 * @param dataset
+	 * @param model
+	 * @param executor
+	 * @return
+	 */
+	public ClassifiedProbabilityDataSet<C> classifyDataset(Dataset<? extends FeatureSet> dataset, NaiveBayesModel<C> model, ExecutorService executor) {
+		final CompiledNaiveBayesModel<C> compiledModel = model.compile();
+		Map<Identifier, ClassificationProbability<C>> classifications = ModelService.UTIL.classifyInParallel(dataset.getInstances(), new Function<FeatureSet, ClassificationProbability<C>>(){
+			
+			@Override
+			public ClassificationProbability<C> apply(FeatureSet instance){
+				return compiledModel.getClassification(instance);
+			}
+		}, executor);
+		
+		return new ClassifiedProbabilityDataSet<C>(dataset, classifications);
+	}
+
+	@Override
+	public void classifyBatch(List<? extends FeatureSet> instances, NaiveBayesModel<C> model, int[] classificationOrdinals, double[] classificationProbabilities) {
+		model.compile().classifyBatch(instances, classificationOrdinals, classificationProbabilities);
+	}
 
 	public static class ClassifiedProbabilityDataSet<C extends Enum<C>> extends ClassifiedDatasetImpl<C>{
 
@@ -0,0 +1,237 @@
+package com.ahaines.machinelearning.naivebayes;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.haines.ml.model.Feature;
+import com.haines.ml.model.Feature.Features;
+
+/**
+ * The sufficient statistics of a naive Bayes model: the number of instances seen, the number seen of each classification and
+ * the number of times each feature value was seen with each classification. A model can be created from them at any point
+ * using {@link #createModel()}.
+ *
+ * Statistics collected over consecutive shards of a dataset can be combined with {@link #merge(NaiveBayesStatistics)}, which
+ * is associative, so shards can be counted on separate threads or machines and reduced in any grouping. Merging the
+ * statistics of every shard in order gives exactly the statistics of counting the whole dataset in one pass. Order matters
+ * only because a missing value counts towards every value of its feature already seen with its classification; this is
+ * tracked by remembering how many missing values preceded the first sighting of each value.
+ *
+ * Statistics are serialisable provided the feature values they contain are. Continuous features are held as the
+ * {@link com.ahaines.machinelearning.api.dataset.quantiser.RangeFeature}s they were counted against, so shards that are to be
+ * merged must share the same ranges.
+ *
+ * @author andrewhaines
+ *
+ * @param <C>
+ */
+public class NaiveBayesStatistics<C extends Enum<C>> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Map<C, Integer> priorCounts;
+	private final Map<C, Map<Class<? extends Feature<?>>, FeatureStatistics>> likelihoodCounts;
+	private int totalInstancesSeen;
+
+	public NaiveBayesStatistics(){
+		this.priorCounts = new HashMap<C, Integer>();
+		this.likelihoodCounts = new HashMap<C, Map<Class<? extends Feature<?>>, FeatureStatistics>>();
+		this.totalInstancesSeen = 0;
+	}
+
+	/**
+	 * Records that an instance of the supplied classification has been seen
+	 * @param classification
+	 */
+	void addInstance(C classification){
+		totalInstancesSeen++;
+		Integer count = priorCounts.get(classification);
+		priorCounts.put(classification, (count == null)? 1: count + 1);
+	}
+
+	/**
+	 * Records that the feature value was seen with the supplied classification. The value must be discrete, a range or
+	 * missing.
+	 * @param classification
+	 * @param featureType
+	 * @param feature
+	 */
+	void addFeature(C classification, Class<? extends Feature<?>> featureType, Feature<?> feature){
+		getFeatureStatistics(classification, featureType).add(feature);
+	}
+
+	/**
+	 * Returns new statistics equal to counting the instances of these statistics followed by the instances of the supplied
+	 * statistics. Neither this nor the supplied statistics are changed.
+	 * @param other
+	 * @return
+	 */
+	public NaiveBayesStatistics<C> merge(NaiveBayesStatistics<C> other){
+		NaiveBayesStatistics<C> merged = new NaiveBayesStatistics<C>();
+		merged.mergeInto(this);
+		merged.mergeInto(other);
+
+		return merged;
+	}
+
+	/*
+	 * Appends the supplied statistics to these ones
+	 */
+	private void mergeInto(NaiveBayesStatistics<C> other){
+		totalInstancesSeen += other.totalInstancesSeen;
+		for (Entry<C, Integer> priorCount: other.priorCounts.entrySet()){
+			Integer count = priorCounts.get(priorCount.getKey());
+			priorCounts.put(priorCount.getKey(), (count == null)? priorCount.getValue(): count + priorCount.getValue());
+		}
+		for (Entry<C, Map<Class<? extends Feature<?>>, FeatureStatistics>> classificationCounts: other.likelihoodCounts.entrySet()){
+			for (Entry<Class<? extends Feature<?>>, FeatureStatistics> featureCounts: classificationCounts.getValue().entrySet()){
+				getFeatureStatistics(classificationCounts.getKey(), featureCounts.getKey()).append(featureCounts.getValue());
+			}
+		}
+	}
+
+	private FeatureStatistics getFeatureStatistics(C classification, Class<? extends Feature<?>> featureType){
+		Map<Class<? extends Feature<?>>, FeatureStatistics> classificationCounts = likelihoodCounts.get(classification);
+		if (classificationCounts == null){
+			classificationCounts = new HashMap<Class<? extends Feature<?>>, FeatureStatistics>();
+			likelihoodCounts.put(classification, classificationCounts);
+		}
+		FeatureStatistics featureCounts = classificationCounts.get(featureType);
+		if (featureCounts == null){
+			featureCounts = new FeatureStatistics();
+			classificationCounts.put(featureType, featureCounts);
+		}
+		return featureCounts;
+	}
+
+	/**
+	 * Returns the total number of instances counted
+	 * @return
+	 */
+	public int getTotalInstancesSeen(){
+		return totalInstancesSeen;
+	}
+
+	/**
+	 * Returns the number of instances counted with the supplied classification
+	 * @param classification
+	 * @return
+	 */
+	public int getPriorCount(C classification){
+		Integer count = priorCounts.get(classification);
+
+		return (count == null)? 0: count;
+	}
+
+	/**
+	 * Returns the number of times the feature value was counted with the supplied classification, including the missing
+	 * values of the feature seen with the classification after the value was first seen.
+	 * @param classification
+	 * @param featureType
+	 * @param feature
+	 * @return
+	 */
+	public int getLikelihoodCount(C classification, Class<? extends Feature<?>> featureType, Feature<?> feature){
+		Map<Class<? extends Feature<?>>, FeatureStatistics> classificationCounts = likelihoodCounts.get(classification);
+		if (classificationCounts != null){
+			FeatureStatistics featureCounts = classificationCounts.get(featureType);
+			if (featureCounts != null){
+				return featureCounts.getCount(feature);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Creates an immutable model from these statistics
+	 * @return
+	 */
+	public NaiveBayesModel<C> createModel(){
+		return NaiveBayesModel.create(this);
+	}
+
+	Map<C, Integer> getPriorCounts(){
+		return priorCounts;
+	}
+
+	/**
+	 * Returns the final count of each feature value seen with each classification
+	 * @return
+	 */
+	Map<C, Map<Class<? extends Feature<?>>, Map<Feature<?>, Integer>>> getLikelihoodCounts(){
+		Map<C, Map<Class<? extends Feature<?>>, Map<Feature<?>, Integer>>> counts = new HashMap<C, Map<Class<? extends Feature<?>>, Map<Feature<?>, Integer>>>();
+		for (Entry<C, Map<Class<? extends Feature<?>>, FeatureStatistics>> classificationCounts: likelihoodCounts.entrySet()){
+			Map<Class<? extends Feature<?>>, Map<Feature<?>, Integer>> featureCounts = new HashMap<Class<? extends Feature<?>>, Map<Feature<?>, Integer>>();
+			for (Entry<Class<? extends Feature<?>>, FeatureStatistics> featureStatistics: classificationCounts.getValue().entrySet()){
+				featureCounts.put(featureStatistics.getKey(), featureStatistics.getValue().getCounts());
+			}
+			counts.put(classificationCounts.getKey(), featureCounts);
+		}
+		return counts;
+	}
+
+	/*
+	 * The counts of the values of one feature seen with one classification
+	 */
+	private static class FeatureStatistics implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Map<Feature<?>, ValueCount> valueCounts = new LinkedHashMap<Feature<?>, ValueCount>();
+		private int missingCount = 0;
+
+		private void add(Feature<?> feature){
+			if (feature == Features.MISSING){
+				missingCount++;
+			} else{
+				ValueCount count = valueCounts.get(feature);
+				if (count == null){
+					count = new ValueCount(missingCount);
+					valueCounts.put(feature, count);
+				}
+				count.count++;
+			}
+		}
+
+		private void append(FeatureStatistics other){
+			for (Entry<Feature<?>, ValueCount> otherCount: other.valueCounts.entrySet()){
+				ValueCount count = valueCounts.get(otherCount.getKey());
+				if (count == null){
+					count = new ValueCount(missingCount + otherCount.getValue().missingBeforeFirstSeen);
+					valueCounts.put(otherCount.getKey(), count);
+				}
+				count.count += otherCount.getValue().count;
+			}
+			missingCount += other.missingCount;
+		}
+
+		private int getCount(Feature<?> feature){
+			ValueCount count = valueCounts.get(feature);
+
+			return (count == null)? 0: count.count + missingCount - count.missingBeforeFirstSeen;
+		}
+
+		private Map<Feature<?>, Integer> getCounts(){
+			Map<Feature<?>, Integer> counts = new LinkedHashMap<Feature<?>, Integer>();
+			for (Entry<Feature<?>, ValueCount> count: valueCounts.entrySet()){
+				counts.put(count.getKey(), count.getValue().count + missingCount - count.getValue().missingBeforeFirstSeen);
+			}
+			return counts;
+		}
+	}
+
+	private static class ValueCount implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int missingBeforeFirstSeen;
+		private int count = 0;
+
+		private ValueCount(int missingBeforeFirstSeen){
+			this.missingBeforeFirstSeen = missingBeforeFirstSeen;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package com.ahaines.machinelearning.naivebayes;
+
+import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
+import com.ahaines.machinelearning.api.dataset.columnar.ColumnarClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModel.NaiveBayesModelFactory;
+
+/**
+ * A naive Bayes model that can be trained incrementally. Each batch of instances updates the counts held by the model in
+ * place and publishes a new immutable {@link NaiveBayesModel} snapshot, so the cost of an update depends on the size of
+ * the batch and the number of distinct feature values rather than on all the instances seen so far.
+ *
+ * Continuous features are quantised once, using the first batch that contains values for them. The ranges are then fixed
+ * and values in later batches are counted against the range that contains them, or the nearest range when they fall
+ * between or beyond the ranges, so raw instances are not kept between updates. Missing values of continuous features
+ * never count towards a range, in the first batch or any later one. Training a new model with a single batch gives the
+ * same model as {@link NaiveBayesModelService#trainModel(ClassifiedDataset)}, and training over several batches gives the
+ * same model as training on all of them at once whenever the first batch quantises to the same ranges as all of them would.
+ *
+ * Updates are serialised with each other. Readers are never blocked and always see a complete snapshot.
+ *
+ * @author andrewhaines
+ *
+ * @param <C>
+ */
+public class UpdatableNaiveBayesModel<C extends Enum<C>> {
+
+	private final NaiveBayesModelFactory<C> modelFactory;
+	private volatile NaiveBayesModel<C> model;
+
+	UpdatableNaiveBayesModel(ContinuousFeatureQuantiser quantiser){
+		this.modelFactory = new NaiveBayesModelFactory<C>(quantiser);
+		this.model = modelFactory.getModel();
+	}
+
+	/**
+	 * Adds the instances of the dataset to the model and returns the newly published snapshot
+	 * @param batch
+	 * @return
+	 */
+	public synchronized NaiveBayesModel<C> update(ClassifiedDataset<C> batch){
+		if (batch instanceof ColumnarClassifiedDataset){
+			modelFactory.addDataset((ColumnarClassifiedDataset<C>)batch);
+		} else{
+			for (ClassifiedFeatureSet<C> instance: batch.getInstances()){
+				modelFactory.addInstance(instance);
+			}
+		}
+		return publish();
+	}
+
+	/**
+	 * Adds the instances to the model and returns the newly published snapshot
+	 * @param batch
+	 * @return
+	 */
+	public synchronized NaiveBayesModel<C> update(Iterable<? extends ClassifiedFeatureSet<C>> batch){
+		for (ClassifiedFeatureSet<C> instance: batch){
+			modelFactory.addInstance(instance);
+		}
+		return publish();
+	}
+
+	/**
+	 * Returns the snapshot published by the most recent update
+	 * @return
+	 */
+	public NaiveBayesModel<C> getModel(){
+		return model;
+	}
+
+	/**
+	 * Returns the total number of instances the model has been trained with
+	 * @return
+	 */
+	public synchronized int getInstanceCount(){
+		return modelFactory.getTotalInstancesSeen();
+	}
+
+	private NaiveBayesModel<C> publish(){
+		NaiveBayesModel<C> snapshot = modelFactory.getModel();
+		model = snapshot;
+
+		return snapshot;
+	}
+}
@@ -5,6 +5,9 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -13,24 +16,34 @@ import org.slf4j.LoggerFactory;
 
 import com.ahaines.machinelearning.api.dataset.Classification;
 import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
+import com.ahaines.machinelearning.api.dataset.ClassifiedFeatureSet;
 import com.ahaines.machinelearning.api.dataset.Dataset;
 import com.ahaines.machinelearning.api.dataset.Dataset.DatasetBuilder;
 import com.ahaines.machinelearning.api.dataset.FeatureDefinition;
 import com.ahaines.machinelearning.api.dataset.FeatureSet;
 import com.ahaines.machinelearning.api.dataset.Identifier;
+import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantiser;
 import com.ahaines.machinelearning.api.dataset.quantiser.ContinuousFeatureQuantisers;
+import com.ahaines.machinelearning.api.dataset.quantiser.RangeFeature;
 import com.ahaines.machinelearning.naivebayes.NaiveBayesModel.ClassificationProbability;
+import com.ahaines.machinelearning.naivebayes.NaiveBayesModel.NaiveBayesModelFactory;
 import com.ahaines.machinelearning.naivebayes.NaiveBayesModelService.ClassifiedProbabilityDataSet;
 import com.ahaines.machinelearning.test.spam.Email.EmailClassification;
 import com.ahaines.machinelearning.test.spam.Email.Features;
 import com.ahaines.machinelearning.test.spam.Email.Features.Contains;
 import com.ahaines.machinelearning.test.spam.Email.Features.EnlargementFeature;
 import com.ahaines.machinelearning.test.spam.Email.Features.ViagraFeature;
+import com.google.common.collect.Lists;
+import com.haines.ml.model.ContinuousFeature;
 import com.haines.ml.model.Feature;
 
 import static org.junit.Assert.assertThat;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
 public class NaiveBayesModelServiceUnitTest {
 
@@ -48,6 +61,31 @@ public class NaiveBayesModelServiceUnitTest {
 	private static final ClassifiedDataset<EmailClassification> TEST_CONTINUOUS_TRAINING_SET = loadContinuousTrainingSet();
 	private static final Dataset<FeatureSet> CONTINUOUS_TEST_SET = loadContinuousTestSet();
 	
+	private static final RangeFeature<Integer> LOWER_RANGE = new RangeFeature<Integer>(0, 40, true);
+	private static final RangeFeature<Integer> UPPER_RANGE = new RangeFeature<Integer>(60, 100, true);
+	
+	/*
+	 * quantises every continuous feature into the lower and upper ranges, leaving a gap between them
+	 */
+	private static final ContinuousFeatureQuantiser FIXED_RANGE_QUANTISER = new ContinuousFeatureQuantiser(){
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <T extends Number & Comparable<T>> Collection<RangeFeature<T>> quantise(Iterable<? extends ClassifiedFeatureSet<? extends Enum<?>>> instances, Class<? extends ContinuousFeature<T>> featureQuantiserType, QuantiserEventProcessor processor) {
+			List<RangeFeature<T>> ranges = Arrays.asList((RangeFeature<T>)(RangeFeature<?>)LOWER_RANGE, (RangeFeature<T>)(RangeFeature<?>)UPPER_RANGE);
+			for (RangeFeature<T> range: ranges){
+				List<ClassifiedFeatureSet<? extends Enum<?>>> instancesInRange = new ArrayList<ClassifiedFeatureSet<? extends Enum<?>>>();
+				for (ClassifiedFeatureSet<? extends Enum<?>> instance: instances){
+					if (range.intersects(instance.getFeature(featureQuantiserType))){
+						instancesInRange.add(instance);
+					}
+				}
+				processor.newRangeDetermined(range, instancesInRange);
+			}
+			return ranges;
+		}
+	};
+	
 	@Before
 	public void before(){
 		candidate = new NaiveBayesModelService<EmailClassification>(ContinuousFeatureQuantisers.getConstantBucketQuantiser(4));
@@ -172,22 +210,22 @@ public class NaiveBayesModelServiceUnitTest {
 		ClassificationProbability<EmailClassification> classification = (ClassificationProbability<EmailClassification>)classifiedDataset.getInstance(Identifier.FACTORY.createIdentifier(1)).getClassification();
 		
 		assertThat(classification.getValue(), is(equalTo(EmailClassification.HAM)));
-		assertThat(classification.getProbability(), is(equalTo(0.8341937565540051)));
+		assertThat(classification.getProbability(), is(closeTo(0.8341937565540051, 1e-12)));
 		
 		classification = (ClassificationProbability<EmailClassification>)classifiedDataset.getInstance(Identifier.FACTORY.createIdentifier(2)).getClassification();
 		
 		assertThat(classification.getValue(), is(equalTo(EmailClassification.SPAM)));
-		assertThat(classification.getProbability(), is(equalTo(0.9286274509803922)));
+		assertThat(classification.getProbability(), is(closeTo(0.9286274509803922, 1e-12)));
 		
 		classification = (ClassificationProbability<EmailClassification>)classifiedDataset.getInstance(Identifier.FACTORY.createIdentifier(3)).getClassification();
 		
 		assertThat(classification.getValue(), is(equalTo(EmailClassification.SPAM)));
-		assertThat(classification.getProbability(), is(equalTo(1.0295652173913046))); //TODO investigate why this is > 1
+		assertThat(classification.getProbability(), is(closeTo(1.0295652173913046, 1e-12))); //TODO investigate why this is > 1
 		
 		classification = (ClassificationProbability<EmailClassification>)classifiedDataset.getInstance(Identifier.FACTORY.createIdentifier(4)).getClassification();
 		
 		assertThat(classification.getValue(), is(equalTo(EmailClassification.HAM)));
-		assertThat(classification.getProbability(), is(equalTo(0.8971042962639604)));
+		assertThat(classification.getProbability(), is(closeTo(0.8971042962639604, 1e-12)));
 	}
 	
 	@Test
@@ -200,50 +238,254 @@ public class NaiveBayesModelServiceUnitTest {
 		ClassificationProbability<EmailClassification> classification = (ClassificationProbability<EmailClassification>)classifiedDataset.getInstance(Identifier.FACTORY.createIdentifier(1)).getClassification();
 		
 		assertThat(classification.getValue(), is(equalTo(EmailClassification.HAM)));
-		assertThat(classification.getProbability(), is(equalTo(0.6666666666666666)));
+		assertThat(classification.getProbability(), is(closeTo(0.6666666666666666, 1e-12)));
 		
 		classification = (ClassificationProbability<EmailClassification>)classifiedDataset.getInstance(Identifier.FACTORY.createIdentifier(2)).getClassification();
 		
 		assertThat(classification.getValue(), is(equalTo(EmailClassification.SPAM)));
-		assertThat(classification.getProbability(), is(equalTo(0.8571428571428572)));
+		assertThat(classification.getProbability(), is(closeTo(0.8571428571428572, 1e-12)));
 		
 		classification = (ClassificationProbability<EmailClassification>)classifiedDataset.getInstance(Identifier.FACTORY.createIdentifier(3)).getClassification();
 		
 		assertThat(classification.getValue(), is(equalTo(EmailClassification.SPAM)));
-		assertThat(classification.getProbability(), is(equalTo(0.8571428571428572)));
+		assertThat(classification.getProbability(), is(closeTo(0.8571428571428572, 1e-12)));
 		
 		classification = (ClassificationProbability<EmailClassification>)classifiedDataset.getInstance(Identifier.FACTORY.createIdentifier(4)).getClassification();
 		
 		assertThat(classification.getValue(), is(equalTo(EmailClassification.SPAM)));
-		assertThat(classification.getProbability(), is(equalTo(0.8571428571428572)));
+		assertThat(classification.getProbability(), is(closeTo(0.8571428571428572, 1e-12)));
 		
 		classification = (ClassificationProbability<EmailClassification>)classifiedDataset.getInstance(Identifier.FACTORY.createIdentifier(5)).getClassification();
 		
 		assertThat(classification.getValue(), is(equalTo(EmailClassification.SPAM)));
-		assertThat(classification.getProbability(), is(equalTo(1.0)));
+		assertThat(classification.getProbability(), is(closeTo(1.0, 1e-12)));
 		classification = (ClassificationProbability<EmailClassification>)classifiedDataset.getInstance(Identifier.FACTORY.createIdentifier(6)).getClassification();
 		
 		assertThat(classification.getValue(), is(equalTo(EmailClassification.SPAM)));
-		assertThat(classification.getProbability(), is(equalTo(1.0)));
+		assertThat(classification.getProbability(), is(closeTo(1.0, 1e-12)));
 		
 		classification = (ClassificationProbability<EmailClassification>)classifiedDataset.getInstance(Identifier.FACTORY.createIdentifier(7)).getClassification();
 		
 		assertThat(classification.getValue(), is(equalTo(EmailClassification.HAM)));
-		assertThat(classification.getProbability(), is(equalTo(1.0)));
+		assertThat(classification.getProbability(), is(closeTo(1.0, 1e-12)));
 		
 		classification = (ClassificationProbability<EmailClassification>)classifiedDataset.getInstance(Identifier.FACTORY.createIdentifier(8)).getClassification();
 		
 		assertThat(classification.getValue(), is(equalTo(EmailClassification.HAM)));
-		assertThat(classification.getProbability(), is(equalTo(0.6666666666666666)));
+		assertThat(classification.getProbability(), is(closeTo(0.6666666666666666, 1e-12)));
 		
 		classification = (ClassificationProbability<EmailClassification>)classifiedDataset.getInstance(Identifier.FACTORY.createIdentifier(9)).getClassification();
 		
 		assertThat(classification.getValue(), is(equalTo(EmailClassification.SPAM)));
-		assertThat(classification.getProbability(), is(equalTo(0.8571428571428572)));
+		assertThat(classification.getProbability(), is(closeTo(0.8571428571428572, 1e-12)));
 		
 		classification = (ClassificationProbability<EmailClassification>)classifiedDataset.getInstance(Identifier.FACTORY.createIdentifier(10)).getClassification();
 		
 		assertThat(classification.getValue(), is(equalTo(EmailClassification.SPAM)));
-		assertThat(classification.getProbability(), is(equalTo(1.0)));
+		assertThat(classification.getProbability(), is(closeTo(1.0, 1e-12)));
+	}
+	
+	@Test
+	public void givenDiscreteCandidate_whenCallingClassifyBatch_thenSameClassificationsAndProbabilitiesAsClassifyDataset(){
+		NaiveBayesModel<EmailClassification> model = candidate.trainModel(TEST_DISCRETE_TRAINING_SET);
+		
+		List<FeatureSet> batch = Lists.newArrayList(DISCRETE_TEST_SET.getInstances());
+		int[] classificationOrdinals = new int[batch.size()];
+		double[] classificationProbabilities = new double[batch.size()];
+		candidate.classifyBatch(batch, model, classificationOrdinals, classificationProbabilities);
+		
+		ClassifiedProbabilityDataSet<EmailClassification> classifiedDataset = candidate.classifyDataset(DISCRETE_TEST_SET, model);
+		for (int i = 0; i < batch.size(); i++){
+			ClassificationProbability<EmailClassification> classification = classifiedDataset.getInstance(batch.get(i).getId()).getClassification();
+			
+			assertThat(classificationOrdinals[i], is(equalTo(classification.getValue().ordinal())));
+			assertThat(classificationProbabilities[i], is(equalTo(classification.getProbability())));
+		}
+	}
+	
+	@Test
+	public void givenDiscreteCandidate_whenCallingCompile_thenSameClassificationsAndProbabilitiesAsModel(){
+		NaiveBayesModel<EmailClassification> model = candidate.trainModel(TEST_DISCRETE_TRAINING_SET);
+		
+		assertCompiledModelMatchesModel(model, DISCRETE_TEST_SET);
+	}
+	
+	@Test
+	public void givenContinuousCandidate_whenCallingCompile_thenSameClassificationsAndProbabilitiesAsModel(){
+		NaiveBayesModel<EmailClassification> model = candidate.trainModel(TEST_CONTINUOUS_TRAINING_SET);
+		
+		assertCompiledModelMatchesModel(model, CONTINUOUS_TEST_SET);
+		assertCompiledModelMatchesModel(model, TEST_CONTINUOUS_TRAINING_SET);
+	}
+	
+	private static void assertCompiledModelMatchesModel(NaiveBayesModel<EmailClassification> model, Dataset<? extends FeatureSet> dataset){
+		CompiledNaiveBayesModel<EmailClassification> compiledModel = model.compile();
+		
+		List<FeatureSet> batch = Lists.<FeatureSet>newArrayList(dataset.getInstances());
+		int[] classificationOrdinals = new int[batch.size()];
+		double[] classificationProbabilities = new double[batch.size()];
+		compiledModel.classifyBatch(batch, classificationOrdinals, classificationProbabilities);
+		
+		for (int i = 0; i < batch.size(); i++){
+			ClassificationProbability<EmailClassification> expected = model.getClassification(batch.get(i));
+			ClassificationProbability<EmailClassification> classification = compiledModel.getClassification(batch.get(i));
+			
+			assertThat(classification.getValue(), is(equalTo(expected.getValue())));
+			assertThat(classification.getProbability(), is(closeTo(expected.getProbability(), 1e-12)));
+			assertThat(classificationOrdinals[i], is(equalTo(expected.getValue().ordinal())));
+			assertThat(classificationProbabilities[i], is(equalTo(classification.getProbability())));
+		}
+	}
+	
+	@Test
+	public void givenDiscreteCandidate_whenUpdatingInBatches_thenSameProbabilitiesAsTrainModel(){
+		NaiveBayesModel<EmailClassification> expectedModel = candidate.trainModel(TEST_DISCRETE_TRAINING_SET);
+		
+		List<ClassifiedFeatureSet<EmailClassification>> instances = Lists.newArrayList(TEST_DISCRETE_TRAINING_SET.getInstances());
+		UpdatableNaiveBayesModel<EmailClassification> updatableModel = candidate.createUpdatableModel();
+		updatableModel.update(instances.subList(0, 20));
+		updatableModel.update(instances.subList(20, 50));
+		NaiveBayesModel<EmailClassification> model = updatableModel.update(instances.subList(50, instances.size()));
+		
+		assertThat(updatableModel.getInstanceCount(), is(equalTo(instances.size())));
+		assertThat(updatableModel.getModel(), is(sameInstance(model)));
+		for (FeatureSet instance: DISCRETE_TEST_SET.getInstances()){
+			ClassificationProbability<EmailClassification> expected = expectedModel.getClassification(instance);
+			ClassificationProbability<EmailClassification> classification = model.getClassification(instance);
+			
+			assertThat(classification.getValue(), is(equalTo(expected.getValue())));
+			assertThat(classification.getProbability(), is(equalTo(expected.getProbability())));
+		}
+	}
+	
+	@Test
+	public void givenContinuousCandidate_whenUpdatingInSingleBatch_thenSameProbabilitiesAsTrainModel(){
+		NaiveBayesModel<EmailClassification> expectedModel = candidate.trainModel(TEST_CONTINUOUS_TRAINING_SET);
+		NaiveBayesModel<EmailClassification> model = candidate.createUpdatableModel().update(TEST_CONTINUOUS_TRAINING_SET);
+		
+		for (FeatureSet instance: CONTINUOUS_TEST_SET.getInstances()){
+			ClassificationProbability<EmailClassification> expected = expectedModel.getClassification(instance);
+			ClassificationProbability<EmailClassification> classification = model.getClassification(instance);
+			
+			assertThat(classification.getValue(), is(equalTo(expected.getValue())));
+			assertThat(classification.getProbability(), is(equalTo(expected.getProbability())));
+		}
+	}
+	
+	@Test
+	public void givenContinuousCandidate_whenUpdatingWithSecondBatch_thenPreviousSnapshotUnchanged(){
+		List<ClassifiedFeatureSet<EmailClassification>> instances = Lists.newArrayList(TEST_CONTINUOUS_TRAINING_SET.getInstances());
+		UpdatableNaiveBayesModel<EmailClassification> updatableModel = candidate.createUpdatableModel();
+		
+		NaiveBayesModel<EmailClassification> firstSnapshot = updatableModel.update(instances.subList(0, 8));
+		List<ClassificationProbability<EmailClassification>> firstClassifications = new ArrayList<ClassificationProbability<EmailClassification>>();
+		for (FeatureSet instance: CONTINUOUS_TEST_SET.getInstances()){
+			firstClassifications.add(firstSnapshot.getClassification(instance));
+		}
+		
+		NaiveBayesModel<EmailClassification> secondSnapshot = updatableModel.update(instances.subList(8, instances.size()));
+		
+		assertThat(secondSnapshot, is(not(sameInstance(firstSnapshot))));
+		assertThat(updatableModel.getInstanceCount(), is(equalTo(instances.size())));
+		int i = 0;
+		for (FeatureSet instance: CONTINUOUS_TEST_SET.getInstances()){
+			ClassificationProbability<EmailClassification> classification = firstSnapshot.getClassification(instance);
+			
+			assertThat(classification.getValue(), is(equalTo(firstClassifications.get(i).getValue())));
+			assertThat(classification.getProbability(), is(equalTo(firstClassifications.get(i).getProbability())));
+			assertThat(secondSnapshot.getClassification(instance).getValue(), is(not(nullValue())));
+			i++;
+		}
+	}
+
+	@Test
+	public void givenContinuousCandidateAndMissingValues_whenUpdatingInBatches_thenSameProbabilitiesAsTrainModel(){
+		List<ClassifiedFeatureSet<EmailClassification>> instances = Lists.newArrayList(TEST_CONTINUOUS_TRAINING_SET.getInstances());
+		instances.add(createMissingHoursInstance(14, EmailClassification.SPAM));
+		instances.add(createMissingHoursInstance(15, EmailClassification.HAM));
+		instances.add(createMissingHoursInstance(16, EmailClassification.SPAM));
+
+		// the first batch holds the smallest and largest hours so it is quantised into the same ranges as the whole set
+		List<ClassifiedFeatureSet<EmailClassification>> firstBatch = Lists.newArrayList(instances.get(1), instances.get(2), instances.get(13));
+		List<ClassifiedFeatureSet<EmailClassification>> secondBatch = Lists.newArrayList(instances);
+		secondBatch.removeAll(firstBatch);
+
+		List<Classification<EmailClassification>> classifications = new ArrayList<Classification<EmailClassification>>();
+		DatasetBuilder builder = new DatasetBuilder(Features.ALL_FEATURE_TYPES);
+		for (ClassifiedFeatureSet<EmailClassification> instance: instances){
+			builder.addInstance(instance);
+			classifications.add(instance.getClassification());
+		}
+		NaiveBayesModel<EmailClassification> expectedModel = candidate.trainModel(ClassifiedDataset.FACTORY.create(builder.build(), classifications));
+
+		UpdatableNaiveBayesModel<EmailClassification> updatableModel = candidate.createUpdatableModel();
+		updatableModel.update(firstBatch);
+		NaiveBayesModel<EmailClassification> model = updatableModel.update(secondBatch);
+
+		assertThat(model.getPriorClassificationProbabilities(), is(equalTo(expectedModel.getPriorClassificationProbabilities())));
+		for (EmailClassification classification: EmailClassification.values()){
+			for (Class<? extends Feature<?>> featureType: Features.ALL_FEATURE_TYPES){
+				Map<? extends Feature<?>, Double> expectedProbabilities = expectedModel.getLikelihoodProbabilities().get(classification).get(featureType).getValueProbabilities();
+
+				assertThat(model.getLikelihoodProbabilities().get(classification).get(featureType).getValueProbabilities(), is(equalTo((Object)expectedProbabilities)));
+			}
+		}
+		// the 2 spam instances missing hours count towards the spam instances but not towards any range
+		double hoursProbability = 0;
+		for (double probability: model.getLikelihoodProbabilities().get(EmailClassification.SPAM).get(Features.HoursIgnoredFeature.class).getValueProbabilities().values()){
+			hoursProbability += probability;
+		}
+		assertThat(hoursProbability, is(closeTo(0.8, 1e-12)));
+	}
+
+	@Test
+	public void givenQuantisedFactory_whenAddingValuesBetweenRanges_thenCountedAgainstNearestRange(){
+		NaiveBayesModelFactory<EmailClassification> factory = new NaiveBayesModelFactory<EmailClassification>(FIXED_RANGE_QUANTISER);
+		factory.addInstance(createContinuousInstance(1, 10, EmailClassification.HAM));
+		factory.addInstance(createContinuousInstance(2, 90, EmailClassification.SPAM));
+		factory.getStatistics();
+
+		factory.addInstance(createContinuousInstance(3, 45, EmailClassification.HAM));
+		factory.addInstance(createContinuousInstance(4, 50, EmailClassification.HAM));
+		factory.addInstance(createContinuousInstance(5, 58, EmailClassification.SPAM));
+		factory.addInstance(createContinuousInstance(6, 120, EmailClassification.SPAM));
+		NaiveBayesStatistics<EmailClassification> statistics = factory.getStatistics();
+
+		// 50 is equally far from both ranges so goes to the lower one
+		assertThat(statistics.getLikelihoodCount(EmailClassification.HAM, Features.HoursIgnoredFeature.class, LOWER_RANGE), is(equalTo(3)));
+		assertThat(statistics.getLikelihoodCount(EmailClassification.HAM, Features.HoursIgnoredFeature.class, UPPER_RANGE), is(equalTo(0)));
+		assertThat(statistics.getLikelihoodCount(EmailClassification.SPAM, Features.HoursIgnoredFeature.class, UPPER_RANGE), is(equalTo(3)));
+	}
+
+	private static ClassifiedFeatureSet<EmailClassification> createContinuousInstance(int id, int hoursIgnored, EmailClassification classification){
+		return new ClassifiedFeatureSet<EmailClassification>(createContinuousInstance(id, Contains.ABSENT, Contains.ABSENT, hoursIgnored), createClassification(id, classification));
+	}
+
+	private static ClassifiedFeatureSet<EmailClassification> createMissingHoursInstance(int id, EmailClassification classification){
+		FeatureSet instance = CONTINUOUS_FACTORY.createFeatureSet(Identifier.FACTORY.createIdentifier(id), Arrays.asList(new FeatureDefinition(new Features.ViagraFeature(Contains.ABSENT)),
+																							   new FeatureDefinition(new Features.EnlargementFeature(Contains.ABSENT)),
+																							   new FeatureDefinition(Feature.Features.MISSING, Features.HoursIgnoredFeature.class)));
+		return new ClassifiedFeatureSet<EmailClassification>(instance, createClassification(id, classification));
+	}
+
+	@Test
+	public void givenParallelCandidate_whenTrainingContinuousModel_thenSameProbabilitiesAsSerialTraining(){
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try{
+			NaiveBayesModelService<EmailClassification> parallelCandidate = new NaiveBayesModelService<EmailClassification>(ContinuousFeatureQuantisers.getConstantBucketQuantiser(4), executor, 3);
+			
+			NaiveBayesModel<EmailClassification> expectedModel = candidate.trainModel(TEST_CONTINUOUS_TRAINING_SET);
+			NaiveBayesModel<EmailClassification> model = parallelCandidate.trainModel(TEST_CONTINUOUS_TRAINING_SET);
+			
+			for (FeatureSet instance: CONTINUOUS_TEST_SET.getInstances()){
+				ClassificationProbability<EmailClassification> expected = expectedModel.getClassification(instance);
+				ClassificationProbability<EmailClassification> classification = model.getClassification(instance);
+				
+				assertThat(classification.getValue(), is(equalTo(expected.getValue())));
+				assertThat(classification.getProbability(), is(equalTo(expected.getProbability())));
+			}
+		} finally{
+			executor.shutdown();
+		}
 	}
 }
@@ -0,0 +1,99 @@
+package com.ahaines.machinelearning.naivebayes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ahaines.machinelearning.api.dataset.quantiser.RangeFeature;
+import com.ahaines.machinelearning.test.spam.Email.EmailClassification;
+import com.ahaines.machinelearning.test.spam.Email.Features.Contains;
+import com.ahaines.machinelearning.test.spam.Email.Features.HoursIgnoredFeature;
+import com.ahaines.machinelearning.test.spam.Email.Features.ViagraFeature;
+import com.haines.ml.model.Feature;
+
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.equalTo;
+
+public class NaiveBayesStatisticsUnitTest {
+
+	private static final Feature<?> PRESENT = new ViagraFeature(Contains.PRESENT);
+	private static final Feature<?> ABSENT = new ViagraFeature(Contains.ABSENT);
+	private static final List<Feature<?>> VALUES = Arrays.<Feature<?>>asList(Feature.Features.MISSING, PRESENT, Feature.Features.MISSING, ABSENT, PRESENT, Feature.Features.MISSING);
+
+	@Test
+	public void givenValuesWithMissingFeatures_whenCountingInOnePass_thenMissingValuesCountTowardsValuesAlreadySeen(){
+		NaiveBayesStatistics<EmailClassification> statistics = count(VALUES);
+
+		assertThat(statistics.getTotalInstancesSeen(), is(equalTo(VALUES.size())));
+		assertThat(statistics.getPriorCount(EmailClassification.SPAM), is(equalTo(VALUES.size())));
+		assertThat(statistics.getLikelihoodCount(EmailClassification.SPAM, ViagraFeature.class, PRESENT), is(equalTo(4)));
+		assertThat(statistics.getLikelihoodCount(EmailClassification.SPAM, ViagraFeature.class, ABSENT), is(equalTo(2)));
+		assertThat(statistics.getLikelihoodCount(EmailClassification.HAM, ViagraFeature.class, ABSENT), is(equalTo(0)));
+	}
+
+	@Test
+	public void givenValuesWithMissingFeatures_whenMergingConsecutiveShards_thenSameCountsAsCountingInOnePass(){
+		NaiveBayesStatistics<EmailClassification> expected = count(VALUES);
+
+		for (int first = 0; first <= VALUES.size(); first++){
+			for (int second = first; second <= VALUES.size(); second++){
+				NaiveBayesStatistics<EmailClassification> a = count(VALUES.subList(0, first));
+				NaiveBayesStatistics<EmailClassification> b = count(VALUES.subList(first, second));
+				NaiveBayesStatistics<EmailClassification> c = count(VALUES.subList(second, VALUES.size()));
+
+				assertSameCounts(a.merge(b).merge(c), expected);
+				assertSameCounts(a.merge(b.merge(c)), expected);
+			}
+		}
+	}
+
+	@Test
+	public void givenStatistics_whenSerialised_thenSameCountsWhenDeserialised() throws IOException, ClassNotFoundException{
+		RangeFeature<Integer> lowRange = new RangeFeature<Integer>(0, 50);
+		RangeFeature<Integer> highRange = new RangeFeature<Integer>(50, 100, true);
+		NaiveBayesStatistics<EmailClassification> statistics = new NaiveBayesStatistics<EmailClassification>();
+		statistics.addInstance(EmailClassification.HAM);
+		statistics.addFeature(EmailClassification.HAM, HoursIgnoredFeature.class, lowRange);
+		statistics.addInstance(EmailClassification.SPAM);
+		statistics.addFeature(EmailClassification.SPAM, HoursIgnoredFeature.class, highRange);
+		statistics.addInstance(EmailClassification.SPAM);
+		statistics.addFeature(EmailClassification.SPAM, HoursIgnoredFeature.class, highRange);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(statistics);
+		out.close();
+
+		@SuppressWarnings("unchecked")
+		NaiveBayesStatistics<EmailClassification> deserialised = (NaiveBayesStatistics<EmailClassification>)new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+		assertThat(deserialised.getTotalInstancesSeen(), is(equalTo(3)));
+		assertThat(deserialised.getPriorCount(EmailClassification.SPAM), is(equalTo(2)));
+		assertThat(deserialised.getLikelihoodCount(EmailClassification.HAM, HoursIgnoredFeature.class, lowRange), is(equalTo(1)));
+		assertThat(deserialised.getLikelihoodCount(EmailClassification.SPAM, HoursIgnoredFeature.class, highRange), is(equalTo(2)));
+	}
+
+	private static NaiveBayesStatistics<EmailClassification> count(List<Feature<?>> values){
+		NaiveBayesStatistics<EmailClassification> statistics = new NaiveBayesStatistics<EmailClassification>();
+		for (Feature<?> value: values){
+			statistics.addInstance(EmailClassification.SPAM);
+			statistics.addFeature(EmailClassification.SPAM, ViagraFeature.class, value);
+		}
+		return statistics;
+	}
+
+	private static void assertSameCounts(NaiveBayesStatistics<EmailClassification> statistics, NaiveBayesStatistics<EmailClassification> expected){
+		assertThat(statistics.getTotalInstancesSeen(), is(equalTo(expected.getTotalInstancesSeen())));
+		assertThat(statistics.getPriorCount(EmailClassification.SPAM), is(equalTo(expected.getPriorCount(EmailClassification.SPAM))));
+		for (Feature<?> value: Arrays.asList(PRESENT, ABSENT)){
+			assertThat(statistics.getLikelihoodCount(EmailClassification.SPAM, ViagraFeature.class, value), is(equalTo(expected.getLikelihoodCount(EmailClassification.SPAM, ViagraFeature.class, value))));
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package com.ahaines.machinelearning.neuralnetwork;
 
+import java.util.List;
+
 import com.ahaines.machinelearning.api.ModelService;
 import com.ahaines.machinelearning.api.dataset.ClassifiedDataset;
 import com.ahaines.machinelearning.api.dataset.Dataset;
@@ -36,4 +38,13 @@ public class NetworkModelService<C, T extends NetworkModel<C, T>> implements Mod
 		return postProcessingPipeline.postProcess(model.classify(dataset), model);
 	}
 
+	/**
+	 * Networks classify whole datasets so that the post processors can be applied. The batch is classified as a dataset
+	 * and the results copied into the supplied arrays.
+	 */
+	@Override
+	public void classifyBatch(List<? extends FeatureSet> instances, T model, int[] classificationOrdinals, double[] classificationProbabilities) {
+		ModelService.UTIL.classifyBatchAsDataset(this, instances, model, classificationOrdinals, classificationProbabilities);
+	}
+
 }